@@ -0,0 +1,66 @@
+package com.repotodeck.service;
+
+import com.repotodeck.model.ServiceNode;
+import com.repotodeck.model.ServiceTier;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compiled Aho-Corasick classifier vs. the per-keyword {@code String.contains} scans it replaced.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClassifierBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    int services;
+
+    private final ServiceClassifier classifier = ServiceClassifier.withDefaultRules();
+    private List<ServiceNode> nodes;
+
+    @Setup
+    public void setUp() {
+        nodes = new DockerParserService().parse(SyntheticCompose.generate(services, 1));
+    }
+
+    @Benchmark
+    public void compiledMatcher(Blackhole bh) {
+        for (ServiceNode node : nodes) {
+            bh.consume(classifier.classify(node));
+        }
+    }
+
+    @Benchmark
+    public void linearScan(Blackhole bh) {
+        for (ServiceNode node : nodes) {
+            bh.consume(legacyClassify(node));
+        }
+    }
+
+    /**
+     * The pre-classifier heuristics from PptGeneratorService.organizeIntoLayers, verbatim.
+     */
+    private static ServiceTier legacyClassify(ServiceNode node) {
+        String id = node.getId().toLowerCase();
+        String image = node.getImage() != null ? node.getImage().toLowerCase() : "";
+
+        boolean isDb = image.contains("redis") || image.contains("mysql") || image.contains("mongo") ||
+                       image.contains("postgres") || image.contains("cassandra") || image.contains("elastic") ||
+                       image.contains("mariadb") || image.contains("kafka") || image.contains("minio") ||
+                       id.contains("db") || id.contains("database") || id.contains("store") ||
+                       id.contains("bucket") || id.contains("broker");
+
+        boolean isFrontend = image.contains("nginx") || image.contains("react") || image.contains("web") ||
+                             image.contains("gateway") || image.contains("balancer") || image.contains("zuul") ||
+                             image.contains("frontend") || image.contains("ui");
+
+        return isDb ? ServiceTier.DATABASE : isFrontend ? ServiceTier.FRONTEND : ServiceTier.SERVICE;
+    }
+}
@@ -0,0 +1,62 @@
+package com.repotodeck.service;
+
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stage 3: POI shape construction (connectors, shadows, nodes) via {@link PptGeneratorService#drawSlide}.
+ * A fresh deck is created outside the timed region for every invocation (the gc profiler
+ * still counts its allocations, so compare alloc.rate.norm across sizes rather than absolutely).
+ * <p>
+ * The {@code draw:nodes} secondary result is nodes drawn per second. The draw pass is linear
+ * when it stays flat from 100 to 5000 services; a quadratic pass makes it fall with size.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DrawBenchmark {
+
+    @Param({"10", "100", "1000", "5000"})
+    int services;
+
+    @Param({"1", "4"})
+    int edgesPerNode;
+
+    private final PptGeneratorService generator = new PptGeneratorService();
+    private SlideLayout layout;
+    private XMLSlideShow pptx;
+
+    @Setup(Level.Trial)
+    public void setUpLayout() {
+        layout = generator.layout(new DockerParserService().parse(SyntheticCompose.generate(services, edgesPerNode)));
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpDeck() {
+        pptx = generator.createDeck(List.of(layout));
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownDeck() throws IOException {
+        pptx.close();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public long nodes;
+    }
+
+    @Benchmark
+    public Object draw(Throughput counters) {
+        counters.nodes += layout.renderNodes().size();
+        return generator.drawSlide(pptx, layout, null);
+    }
+}
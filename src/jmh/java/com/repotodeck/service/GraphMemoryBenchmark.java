@@ -0,0 +1,99 @@
+package com.repotodeck.service;
+
+import com.repotodeck.model.ServiceNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memory of the parsed model: the {@link ServiceNode} list against the compact {@link ServiceGraph}.
+ * <p>
+ * The throughput methods are meant to be read with {@code -prof gc}: gc.alloc.rate.norm is what
+ * one parse (and one parse + layout) allocates either way. The {@code retained*} methods hold
+ * {@link #COPIES} parses at once and report the heap they keep per service as the
+ * {@code bytesPerService} counter.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GraphMemoryBenchmark {
+
+    private static final int COPIES = 20;
+
+    @Param({"1000", "5000"})
+    int services;
+
+    @Param({"1", "4"})
+    int edgesPerNode;
+
+    private final DockerParserService parser = new DockerParserService();
+    private final PptGeneratorService generator = new PptGeneratorService();
+    private String yaml;
+
+    @Setup
+    public void setUp() {
+        yaml = SyntheticCompose.generate(services, edgesPerNode);
+    }
+
+    @Benchmark
+    public List<ServiceNode> parseNodes() {
+        return parser.parse(yaml);
+    }
+
+    @Benchmark
+    public ServiceGraph parseGraph() {
+        return parser.parseGraph(yaml);
+    }
+
+    @Benchmark
+    public SlideLayout layoutNodes() {
+        return generator.layout(parser.parse(yaml));
+    }
+
+    @Benchmark
+    public SlideLayout layoutGraph() {
+        return generator.layout(parser.parseGraph(yaml));
+    }
+
+    /**
+     * Retained heap of the last op of an iteration.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Retained {
+        public long bytesPerService;
+    }
+
+    @Benchmark
+    public Object[] retainedNodes(Retained retained) {
+        Object[] kept = new Object[COPIES];
+        long before = usedHeap();
+        for (int i = 0; i < COPIES; i++) kept[i] = parser.parse(yaml);
+        retained.bytesPerService = (usedHeap() - before) / ((long) COPIES * services);
+        return kept;
+    }
+
+    @Benchmark
+    public Object[] retainedGraph(Retained retained) {
+        Object[] kept = new Object[COPIES];
+        long before = usedHeap();
+        for (int i = 0; i < COPIES; i++) kept[i] = parser.parseGraph(yaml);
+        retained.bytesPerService = (usedHeap() - before) / ((long) COPIES * services);
+        return kept;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // A few rounds, since one System.gc() may leave garbage behind
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
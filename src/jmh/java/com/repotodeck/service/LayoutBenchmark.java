@@ -0,0 +1,38 @@
+package com.repotodeck.service;
+
+import com.repotodeck.model.ServiceNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stage 2: tiering + layered/grid positions ({@link PptGeneratorService#layout}).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LayoutBenchmark {
+
+    @Param({"10", "100", "1000", "5000"})
+    int services;
+
+    @Param({"1", "4"})
+    int edgesPerNode;
+
+    private final PptGeneratorService generator = new PptGeneratorService();
+    private List<ServiceNode> nodes;
+
+    @Setup
+    public void setUp() {
+        nodes = new DockerParserService().parse(SyntheticCompose.generate(services, edgesPerNode));
+    }
+
+    @Benchmark
+    public SlideLayout layout() {
+        return generator.layout(nodes);
+    }
+}
@@ -0,0 +1,36 @@
+package com.repotodeck.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stage 1: YAML text to ServiceNode list ({@link DockerParserService#parse}).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    @Param({"10", "100", "1000", "5000"})
+    int services;
+
+    @Param({"1", "4"})
+    int edgesPerNode;
+
+    private final DockerParserService parser = new DockerParserService();
+    private String yaml;
+
+    @Setup
+    public void setUp() {
+        yaml = SyntheticCompose.generate(services, edgesPerNode);
+    }
+
+    @Benchmark
+    public Object parse() {
+        return parser.parse(yaml);
+    }
+}
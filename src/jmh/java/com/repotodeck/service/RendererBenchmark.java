@@ -0,0 +1,47 @@
+package com.repotodeck.service;
+
+import com.repotodeck.model.ServiceNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stages 3 + 4 together (draw and serialize) for the POI usermodel and the template renderer,
+ * via {@link PptGeneratorService#generateSlide(List, OutputStream)} into a discarding stream.
+ * Layout is included in both and is small next to either renderer.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RendererBenchmark {
+
+    @Param({"10", "100", "1000", "5000"})
+    int services;
+
+    @Param({"1", "4"})
+    int edgesPerNode;
+
+    @Param({"POI", "TEMPLATE"})
+    PptGeneratorService.Renderer renderer;
+
+    private PptGeneratorService generator;
+    private List<ServiceNode> nodes;
+
+    @Setup
+    public void setUp() {
+        generator = new PptGeneratorService(ServiceClassifier.withDefaultRules(), PipelineMetrics.noop(),
+                PptGeneratorService.LayoutMode.LAYERED, 250, 20_000, renderer);
+        nodes = new DockerParserService().parse(SyntheticCompose.generate(services, edgesPerNode));
+    }
+
+    @Benchmark
+    public long render() throws IOException {
+        return generator.generateSlide(nodes, OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,46 @@
+package com.repotodeck.service;
+
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stage 4: zipping the POI model into .pptx bytes ({@code writeToByteArray}).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializeBenchmark {
+
+    @Param({"10", "100", "1000", "5000"})
+    int services;
+
+    @Param({"1", "4"})
+    int edgesPerNode;
+
+    private final PptGeneratorService generator = new PptGeneratorService();
+    private XMLSlideShow pptx;
+
+    @Setup
+    public void setUp() {
+        SlideLayout layout = generator.layout(new DockerParserService().parse(SyntheticCompose.generate(services, edgesPerNode)));
+        pptx = generator.createDeck(List.of(layout));
+        generator.drawSlide(pptx, layout, null);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pptx.close();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return generator.writeToByteArray(pptx);
+    }
+}
@@ -0,0 +1,44 @@
+package com.repotodeck.service;
+
+import java.util.Random;
+
+/**
+ * Generates deterministic docker-compose documents for benchmarks.
+ * <p>
+ * Services get a mix of frontend, service and database images (so every tier is populated)
+ * plus an env block, which real generated compose files carry and the parser has to skip.
+ * Each service depends on {@code edgesPerNode} random other services.
+ */
+final class SyntheticCompose {
+
+    private static final String[] IMAGES = {
+            "nginx:1.25", "node:20-alpine", "eclipse-temurin:21", "python:3.12",
+            "golang:1.22", "postgres:16", "redis:7", "mongo:7", "kafka:3.7", "busybox"
+    };
+
+    private SyntheticCompose() {
+    }
+
+    static String generate(int services, int edgesPerNode) {
+        Random random = new Random(42L * services + edgesPerNode);
+        StringBuilder yaml = new StringBuilder(services * 160);
+        yaml.append("version: '3.8'\nservices:\n");
+        for (int i = 0; i < services; i++) {
+            yaml.append("  svc-").append(i).append(":\n");
+            yaml.append("    image: ").append(IMAGES[random.nextInt(IMAGES.length)]).append('\n');
+            yaml.append("    environment:\n");
+            yaml.append("      - LOG_LEVEL=info\n");
+            yaml.append("      - INSTANCE=").append(i).append('\n');
+            int edges = Math.min(edgesPerNode, services - 1);
+            if (edges > 0) {
+                yaml.append("    depends_on:\n");
+                for (int e = 0; e < edges; e++) {
+                    int target = random.nextInt(services);
+                    if (target == i) target = (target + 1) % services;
+                    yaml.append("      - svc-").append(target).append('\n');
+                }
+            }
+        }
+        return yaml.toString();
+    }
+}
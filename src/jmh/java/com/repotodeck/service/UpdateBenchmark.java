@@ -0,0 +1,59 @@
+package com.repotodeck.service;
+
+import com.repotodeck.model.ServiceNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A one-line change (one service's image tag) to an already rendered deck: patching the previous
+ * deck with {@link DeckUpdateService} versus rendering the new revision from scratch with
+ * {@link PptGeneratorService#generateSlide(List, OutputStream)}. Parsing is the same for both
+ * and left out.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UpdateBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    int services;
+
+    @Param({"POI", "TEMPLATE"})
+    PptGeneratorService.Renderer renderer;
+
+    private PptGeneratorService generator;
+    private DeckUpdateService updater;
+    private byte[] previous;
+    private List<ServiceNode> nodes;
+
+    @Setup
+    public void setUp() throws IOException {
+        generator = new PptGeneratorService(ServiceClassifier.withDefaultRules(), PipelineMetrics.noop(),
+                PptGeneratorService.LayoutMode.LAYERED, 250, 20_000, renderer);
+        // Patching always stamps through the templates; the renderer only matters for regenerate()
+        updater = new DeckUpdateService(new PptGeneratorService(), PipelineMetrics.noop(), 64 << 20, 0.5);
+        String yaml = SyntheticCompose.generate(services, 1);
+        previous = new PptGeneratorService().generateSlide(new DockerParserService().parse(yaml));
+        nodes = new DockerParserService().parse(yaml);
+        nodes.get(services / 2).setImage("registry.example.com/changed:2.0");
+    }
+
+    @Benchmark
+    public long patch() throws IOException {
+        DeckUpdateService.Plan plan = updater.plan(previous, nodes, true);
+        if (!plan.patchable()) throw new IllegalStateException(plan.reason());
+        return updater.write(plan, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public long regenerate() throws IOException {
+        return generator.generateSlide(nodes, OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,78 @@
+package com.repotodeck.loadtest;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stop-the-world GC pauses of this JVM, in microseconds, while {@link #recording} is on.
+ * <p>
+ * Only meaningful when the application runs in the same JVM as the load generator (no
+ * {@code target}). Concurrent cycles (G1 Concurrent GC, ZGC Cycles) don't stop the application
+ * and are left out; their pauses are reported by the pause collectors.
+ */
+final class GcPauseRecorder implements NotificationListener, AutoCloseable {
+
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private volatile Histogram pauses = new ConcurrentHistogram(3);
+    private volatile boolean recording;
+
+    GcPauseRecorder() {
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (bean instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener(this, null, null);
+                emitters.add(emitter);
+            }
+        }
+    }
+
+    /**
+     * Starts a fresh histogram.
+     */
+    void start() {
+        pauses = new ConcurrentHistogram(3);
+        recording = true;
+    }
+
+    /**
+     * Stops recording and returns what was recorded since {@link #start}.
+     */
+    Histogram stop() {
+        recording = false;
+        return pauses;
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        if (!recording || !GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        String name = info.getGcName();
+        if (name.contains("Concurrent") || name.contains("Cycles")) {
+            return;
+        }
+        pauses.recordValue(Math.max(0, info.getGcInfo().getDuration()) * 1000);
+    }
+
+    @Override
+    public void close() {
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(this);
+            } catch (ListenerNotFoundException e) {
+                // Already gone
+            }
+        }
+    }
+}
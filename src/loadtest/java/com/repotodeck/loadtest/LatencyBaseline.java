@@ -0,0 +1,93 @@
+package com.repotodeck.loadtest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Stored p50/p99 latencies per stage and scenario, keyed {@code <rate>.<scenario>.p50-ms}.
+ * <p>
+ * A value regresses when it exceeds the baseline by more than {@code tolerance} and by more than
+ * {@code minDeltaMillis}; the absolute floor keeps a 2 ms render that took 3 ms from failing the
+ * gate. Stages and scenarios without a baseline are reported but never fail. Baselines are only
+ * comparable on the machine (and JVM flags) that recorded them.
+ */
+final class LatencyBaseline {
+
+    private static final double[] PERCENTILES = {50.0, 99.0};
+
+    private final Properties values;
+
+    private LatencyBaseline(Properties values) {
+        this.values = values;
+    }
+
+    static LatencyBaseline load(Path file) throws IOException {
+        Properties values = new Properties();
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file)) {
+                values.load(reader);
+            }
+        }
+        return new LatencyBaseline(values);
+    }
+
+    /**
+     * Regressions of {@code stages} against this baseline, one line each.
+     */
+    List<String> compare(List<OpenLoadGenerator.StageResult> stages, double tolerance, double minDeltaMillis) {
+        List<String> regressions = new ArrayList<>();
+        for (OpenLoadGenerator.StageResult stage : stages) {
+            for (OpenLoadGenerator.ScenarioResult scenario : stage.scenarios()) {
+                if (scenario.ok() == 0) continue;
+                for (double percentile : PERCENTILES) {
+                    String key = key(stage.rate(), scenario.name(), percentile);
+                    String stored = values.getProperty(key);
+                    if (stored == null) continue;
+                    double baseline = Double.parseDouble(stored);
+                    double current = millis(scenario, percentile);
+                    if (current > baseline * (1 + tolerance) && current - baseline > minDeltaMillis) {
+                        regressions.add(String.format(Locale.ROOT, "%s: %.1f ms, baseline %.1f ms (+%.0f%%)",
+                                key, current, baseline, (current / baseline - 1) * 100));
+                    }
+                }
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * Writes the latencies of {@code stages} as the new baseline, replacing the file.
+     */
+    static void write(Path file, List<OpenLoadGenerator.StageResult> stages, String comment) throws IOException {
+        Properties values = new Properties();
+        for (OpenLoadGenerator.StageResult stage : stages) {
+            for (OpenLoadGenerator.ScenarioResult scenario : stage.scenarios()) {
+                if (scenario.ok() == 0) continue;
+                for (double percentile : PERCENTILES) {
+                    values.setProperty(key(stage.rate(), scenario.name(), percentile),
+                            String.format(Locale.ROOT, "%.1f", millis(scenario, percentile)));
+                }
+            }
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            values.store(writer, comment);
+        }
+    }
+
+    private static String key(int rate, String scenario, double percentile) {
+        return rate + "." + scenario + ".p" + (int) percentile + "-ms";
+    }
+
+    private static double millis(OpenLoadGenerator.ScenarioResult scenario, double percentile) {
+        return scenario.latencyMicros().getValueAtPercentile(percentile) / 1000.0;
+    }
+}
@@ -0,0 +1,168 @@
+package com.repotodeck.loadtest;
+
+import com.repotodeck.RepoToDeckApplication;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * End-to-end load test of {@code /api/generate-slide} with a latency regression gate.
+ * <p>
+ * Boots the application in this JVM on a random port (or targets a running instance), then
+ * runs one stage per arrival rate: {@code warmup-s} unrecorded, {@code duration-s} recorded,
+ * with the payload mix of {@link PayloadMix}. Per stage and scenario it reports throughput,
+ * p50/p99/p99.9/max latency and errors by status, plus GC pauses per stage, and writes every
+ * latency histogram as an HdrHistogram percentile distribution (.hgrm, milliseconds) to
+ * {@code output}. The p50/p99 latencies are then checked against {@code baseline}; the process
+ * exits with 1 when one regressed or a stage's error rate exceeds {@code max-error-rate}.
+ * <p>
+ * Run: {@code mvn -Ploadtest test-compile exec:exec -Dloadtest.args="rates=20,40 duration-s=60"}
+ * (see the loadtest profile in pom.xml); add {@code update-baseline=true} to record a new baseline.
+ */
+public final class LoadTest {
+
+    private static final List<String> DEFAULT_APP_ARGS = List.of(
+            "--server.port=0",
+            // One INFO line per rendered deck would cost more than some renders
+            "--logging.level.com.repotodeck=WARN",
+            "--repotodeck.warmup.enabled=false");
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config;
+        try {
+            config = LoadTestConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid load-test arguments: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        System.exit(run(config));
+    }
+
+    static int run(LoadTestConfig config) throws IOException {
+        ConfigurableApplicationContext application = null;
+        String baseUrl = config.target();
+        if (baseUrl == null) {
+            List<String> appArgs = new ArrayList<>(DEFAULT_APP_ARGS);
+            appArgs.addAll(config.appArgs());
+            application = SpringApplication.run(RepoToDeckApplication.class, appArgs.toArray(String[]::new));
+            int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+            baseUrl = "http://localhost:" + port;
+        }
+
+        List<OpenLoadGenerator.StageResult> stages = new ArrayList<>();
+        try (GcPauseRecorder gcPauses = new GcPauseRecorder();
+             HttpClient client = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .connectTimeout(Duration.ofSeconds(5))
+                     .build()) {
+            OpenLoadGenerator generator = new OpenLoadGenerator(client, baseUrl, config, gcPauses);
+            for (int rate : config.rates()) {
+                System.out.printf(Locale.ROOT, "Stage %d req/s: %ds warm-up, %ds measured against %s%n",
+                        rate, config.warmup().toSeconds(), config.duration().toSeconds(), baseUrl);
+                stages.add(generator.run(rate));
+            }
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+        }
+
+        String report = report(stages, config.target() == null);
+        System.out.print(report);
+        writeHistograms(config.output(), stages);
+        Files.writeString(config.output().resolve("report.txt"), report);
+
+        if (config.updateBaseline()) {
+            LatencyBaseline.write(config.baseline(), stages,
+                    "Load-test baseline, recorded " + Instant.now() + " on " + Runtime.getRuntime().availableProcessors()
+                            + " CPUs, Java " + Runtime.version());
+            System.out.println("Baseline written to " + config.baseline());
+            return 0;
+        }
+
+        List<String> failures = new ArrayList<>();
+        for (OpenLoadGenerator.StageResult stage : stages) {
+            if (stage.errorRate() > config.maxErrorRate()) {
+                failures.add(String.format(Locale.ROOT, "%d req/s: error rate %.2f%% exceeds %.2f%%",
+                        stage.rate(), stage.errorRate() * 100, config.maxErrorRate() * 100));
+            }
+        }
+        failures.addAll(LatencyBaseline.load(config.baseline())
+                .compare(stages, config.tolerance(), config.minDeltaMillis()));
+        if (!failures.isEmpty()) {
+            System.out.println("LOAD TEST FAILED");
+            failures.forEach(failure -> System.out.println("  " + failure));
+            return 1;
+        }
+        System.out.println("Load test passed against " + config.baseline());
+        return 0;
+    }
+
+    static String report(List<OpenLoadGenerator.StageResult> stages, boolean gcMeasured) {
+        StringWriter text = new StringWriter();
+        PrintWriter out = new PrintWriter(text);
+        out.printf(Locale.ROOT, "%n%-8s %-10s %8s %9s %9s %9s %9s %9s  %s%n",
+                "req/s", "scenario", "requests", "ok/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors");
+        for (OpenLoadGenerator.StageResult stage : stages) {
+            double seconds = stage.duration().toNanos() / 1e9;
+            for (OpenLoadGenerator.ScenarioResult scenario : stage.scenarios()) {
+                Histogram latency = scenario.latencyMicros();
+                out.printf(Locale.ROOT, "%-8d %-10s %8d %9.1f %9.1f %9.1f %9.1f %9.1f  %s%n",
+                        stage.rate(), scenario.name(), scenario.requests(), scenario.ok() / seconds,
+                        latency.getValueAtPercentile(50.0) / 1000.0,
+                        latency.getValueAtPercentile(99.0) / 1000.0,
+                        latency.getValueAtPercentile(99.9) / 1000.0,
+                        latency.getMaxValue() / 1000.0,
+                        scenario.errors().isEmpty() ? "-" : scenario.errors());
+            }
+            out.printf(Locale.ROOT, "%-8d %-10s %8d %9.1f  error rate %.2f%%", stage.rate(), "all",
+                    stage.requests(), stage.throughput(), stage.errorRate() * 100);
+            if (gcMeasured) {
+                Histogram gc = stage.gcPauseMicros();
+                out.printf(Locale.ROOT, ", GC: %d pauses, %.1f ms total, p99 %.1f ms, max %.1f ms",
+                        gc.getTotalCount(), gc.getMean() * gc.getTotalCount() / 1000.0,
+                        gc.getValueAtPercentile(99.0) / 1000.0, gc.getMaxValue() / 1000.0);
+            }
+            out.println();
+        }
+        out.flush();
+        return text.toString();
+    }
+
+    private static void writeHistograms(Path directory, List<OpenLoadGenerator.StageResult> stages) throws IOException {
+        Files.createDirectories(directory);
+        for (OpenLoadGenerator.StageResult stage : stages) {
+            for (OpenLoadGenerator.ScenarioResult scenario : stage.scenarios()) {
+                writeHistogram(directory.resolve(stage.rate() + "rps-" + scenario.name() + ".hgrm"), scenario.latencyMicros());
+            }
+            writeHistogram(directory.resolve(stage.rate() + "rps-gc-pauses.hgrm"), stage.gcPauseMicros());
+        }
+    }
+
+    private static void writeHistogram(Path file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, "UTF-8")) {
+            if (histogram.getTotalCount() > 0) {
+                // Recorded in microseconds, written in milliseconds
+                histogram.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.repotodeck.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Load-test settings, given as {@code key=value} arguments. Arguments starting with {@code --}
+ * are handed to the application instead (e.g. {@code --repotodeck.render.max-concurrent=4}).
+ *
+ * @param rates          arrival rates in requests per second, one stage each, in order
+ * @param warmup         per stage, sent but not recorded
+ * @param duration       per stage, recorded
+ * @param mix            the payloads, see {@link PayloadMix}
+ * @param accept         Accept header of every request (the deck by default)
+ * @param target         base URL of a running instance; null boots the application in this JVM
+ * @param maxInFlight    requests outstanding at once; arrivals beyond it count as errors
+ * @param timeout        per request
+ * @param baseline       stored results the run is compared against
+ * @param tolerance      allowed latency growth over the baseline, 0.2 = 20%
+ * @param minDeltaMillis latency growth that never counts as a regression, however large relatively
+ * @param maxErrorRate   share of failed requests that fails the run regardless of the baseline
+ * @param updateBaseline write this run's results to {@code baseline} instead of comparing
+ * @param output         directory for the report and the .hgrm percentile distributions
+ * @param appArgs        arguments for the booted application
+ */
+record LoadTestConfig(List<Integer> rates,
+                      Duration warmup,
+                      Duration duration,
+                      PayloadMix mix,
+                      String accept,
+                      String target,
+                      int maxInFlight,
+                      Duration timeout,
+                      Path baseline,
+                      double tolerance,
+                      double minDeltaMillis,
+                      double maxErrorRate,
+                      boolean updateBaseline,
+                      Path output,
+                      List<String> appArgs) {
+
+    static LoadTestConfig parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        List<String> appArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.isBlank()) continue;
+            if (arg.startsWith("--")) {
+                appArgs.add(arg);
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 1) {
+                throw new IllegalArgumentException("Expected key=value, got '" + arg + "'");
+            }
+            values.put(arg.substring(0, eq).trim(), arg.substring(eq + 1).trim());
+        }
+
+        List<Integer> rates = Arrays.stream(values.getOrDefault("rates", "10,20,40").split(","))
+                .map(String::trim)
+                .map(Integer::parseInt)
+                .toList();
+        if (rates.isEmpty() || rates.stream().anyMatch(rate -> rate < 1)) {
+            throw new IllegalArgumentException("rates must be positive requests per second");
+        }
+        String target = values.get("target");
+        return new LoadTestConfig(
+                rates,
+                Duration.ofSeconds(Long.parseLong(values.getOrDefault("warmup-s", "10"))),
+                Duration.ofSeconds(Long.parseLong(values.getOrDefault("duration-s", "30"))),
+                PayloadMix.parse(values.getOrDefault("mix", "small:10x1:60,medium:100x2:30,large:1000x2:10")),
+                values.getOrDefault("accept", "application/vnd.openxmlformats-officedocument.presentationml.presentation"),
+                target == null || target.isBlank() ? null : target.replaceAll("/+$", ""),
+                Integer.parseInt(values.getOrDefault("max-in-flight", "1000")),
+                Duration.ofSeconds(Long.parseLong(values.getOrDefault("timeout-s", "60"))),
+                Path.of(values.getOrDefault("baseline", "src/loadtest/baseline.properties")),
+                Double.parseDouble(values.getOrDefault("tolerance", "0.2")),
+                Double.parseDouble(values.getOrDefault("min-delta-ms", "5")),
+                Double.parseDouble(values.getOrDefault("max-error-rate", "0.01")),
+                Boolean.parseBoolean(values.getOrDefault("update-baseline", "false")),
+                Path.of(values.getOrDefault("output", "target/loadtest")),
+                List.copyOf(appArgs));
+    }
+}
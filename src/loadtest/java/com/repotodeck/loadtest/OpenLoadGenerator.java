@@ -0,0 +1,181 @@
+package com.repotodeck.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends requests at a fixed arrival rate, whatever the server does (an open model).
+ * <p>
+ * Request {@code i} of a stage is due at {@code start + i / rate}, and its latency is measured
+ * from that due time, not from when it actually went out. A closed loop that waits for each
+ * response before sending the next one stops sending exactly while the server stalls, so the
+ * stall shows up as one slow request instead of all the requests that would have queued behind
+ * it (coordinated omission). Here the sender never waits for responses: each request runs on its
+ * own virtual thread, and if the sender itself falls behind, the lateness is still charged to the
+ * request. Only when {@code maxInFlight} requests are outstanding are further arrivals dropped,
+ * and they count as errors.
+ */
+final class OpenLoadGenerator {
+
+    private static final long START_DELAY_NANOS = 10_000_000;
+
+    record ScenarioResult(String name, Histogram latencyMicros, long ok, Map<String, Long> errors) {
+
+        long errorCount() {
+            return errors.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        long requests() {
+            return ok + errorCount();
+        }
+    }
+
+    record StageResult(int rate, Duration duration, List<ScenarioResult> scenarios, Histogram gcPauseMicros) {
+
+        long requests() {
+            return scenarios.stream().mapToLong(ScenarioResult::requests).sum();
+        }
+
+        long errors() {
+            return scenarios.stream().mapToLong(ScenarioResult::errorCount).sum();
+        }
+
+        double errorRate() {
+            long requests = requests();
+            return requests == 0 ? 0 : (double) errors() / requests;
+        }
+
+        /**
+         * Successful responses per second.
+         */
+        double throughput() {
+            return (requests() - errors()) / (duration.toNanos() / 1e9);
+        }
+    }
+
+    private final HttpClient client;
+    private final URI uri;
+    private final LoadTestConfig config;
+    private final GcPauseRecorder gcPauses;
+    private final AtomicLong sequence = new AtomicLong();
+
+    OpenLoadGenerator(HttpClient client, String baseUrl, LoadTestConfig config, GcPauseRecorder gcPauses) {
+        this.client = client;
+        this.uri = URI.create(baseUrl + "/api/generate-slide");
+        this.config = config;
+        this.gcPauses = gcPauses;
+    }
+
+    StageResult run(int rate) {
+        Map<String, Tally> tallies = new LinkedHashMap<>();
+        for (PayloadMix.Scenario scenario : config.mix().scenarios()) {
+            tallies.put(scenario.name(), new Tally());
+        }
+        Random random = new Random(rate);
+        Semaphore inFlight = new Semaphore(config.maxInFlight());
+
+        long interval = 1_000_000_000L / rate;
+        long start = System.nanoTime() + START_DELAY_NANOS;
+        long measureFrom = start + config.warmup().toNanos();
+        long end = measureFrom + config.duration().toNanos();
+        boolean measuring = false;
+
+        try (ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; ; i++) {
+                long due = start + i * interval;
+                if (due >= end) break;
+                for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+                if (!measuring && due >= measureFrom) {
+                    gcPauses.start();
+                    measuring = true;
+                }
+
+                PayloadMix.Scenario scenario = config.mix().pick(random);
+                Tally tally = measuring ? tallies.get(scenario.name()) : null;
+                if (!inFlight.tryAcquire()) {
+                    if (tally != null) tally.error("dropped");
+                    continue;
+                }
+                String body = scenario.body(sequence.getAndIncrement());
+                senders.execute(() -> {
+                    try {
+                        send(body, due, tally);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        Histogram gc = gcPauses.stop();
+
+        List<ScenarioResult> scenarios = tallies.entrySet().stream()
+                .map(entry -> entry.getValue().result(entry.getKey()))
+                .toList();
+        return new StageResult(rate, config.duration(), scenarios, gc);
+    }
+
+    private void send(String body, long due, Tally tally) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(config.timeout())
+                .header("Content-Type", "application/json")
+                .header("Accept", config.accept())
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        try {
+            // Discarding still reads the whole body, so latency is time to the last byte
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            if (tally == null) return;
+            if (response.statusCode() == 200) {
+                tally.ok((System.nanoTime() - due) / 1000);
+            } else {
+                tally.error(String.valueOf(response.statusCode()));
+            }
+        } catch (IOException e) {
+            if (tally != null) tally.error(e.getClass().getSimpleName());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Tally {
+        private final Histogram latency = new ConcurrentHistogram(3);
+        private final LongAdder ok = new LongAdder();
+        private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        void ok(long micros) {
+            latency.recordValue(Math.max(0, micros));
+            ok.increment();
+        }
+
+        void error(String cause) {
+            errors.computeIfAbsent(cause, c -> new LongAdder()).increment();
+        }
+
+        ScenarioResult result(String name) {
+            Map<String, Long> counts = new TreeMap<>();
+            errors.forEach((cause, count) -> counts.put(cause, count.sum()));
+            return new ScenarioResult(name, latency, ok.sum(), counts);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.repotodeck.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The weighted mix of synthetic compose documents a load test sends.
+ * <p>
+ * Written as {@code name:services x edges:weight} entries separated by commas, e.g.
+ * {@code small:10x1:60,medium:100x2:30,large:1000x2:10}. Every request gets its own comment line,
+ * so no two bodies hash alike and the render cache never answers for the renderer.
+ */
+final class PayloadMix {
+
+    private static final String[] IMAGES = {
+            "nginx:1.25", "node:20-alpine", "eclipse-temurin:21", "python:3.12",
+            "golang:1.22", "postgres:16", "redis:7", "mongo:7", "kafka:3.7", "busybox"
+    };
+
+    record Scenario(String name, int services, int edgesPerNode, int weight, String escapedYaml) {
+
+        /**
+         * The JSON body of request {@code sequence}: the scenario's document behind a comment
+         * naming the request.
+         */
+        String body(long sequence) {
+            return "{\"yaml\": \"# load-test request " + sequence + "\\n" + escapedYaml + "\"}";
+        }
+    }
+
+    private final List<Scenario> scenarios;
+    private final int totalWeight;
+
+    private PayloadMix(List<Scenario> scenarios) {
+        this.scenarios = List.copyOf(scenarios);
+        this.totalWeight = scenarios.stream().mapToInt(Scenario::weight).sum();
+    }
+
+    static PayloadMix parse(String spec) {
+        List<Scenario> scenarios = new ArrayList<>();
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split(":");
+            String[] size = parts.length == 3 ? parts[1].split("x") : new String[0];
+            if (size.length != 2) {
+                throw new IllegalArgumentException("Mix entry '" + entry + "' is not name:<services>x<edges>:<weight>");
+            }
+            int services = Integer.parseInt(size[0].trim());
+            int edges = Integer.parseInt(size[1].trim());
+            int weight = Integer.parseInt(parts[2].trim());
+            if (services < 1 || edges < 0 || weight < 1) {
+                throw new IllegalArgumentException("Mix entry '" + entry + "' needs services >= 1, edges >= 0, weight >= 1");
+            }
+            String yaml = generate(services, edges);
+            scenarios.add(new Scenario(parts[0].trim(), services, edges, weight,
+                    yaml.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")));
+        }
+        return new PayloadMix(scenarios);
+    }
+
+    List<Scenario> scenarios() {
+        return scenarios;
+    }
+
+    /**
+     * A scenario drawn by weight.
+     */
+    Scenario pick(Random random) {
+        int ticket = random.nextInt(totalWeight);
+        for (Scenario scenario : scenarios) {
+            ticket -= scenario.weight();
+            if (ticket < 0) return scenario;
+        }
+        return scenarios.get(scenarios.size() - 1);
+    }
+
+    /**
+     * Same shape as the JMH benchmarks' documents: every tier populated, an env block the parser
+     * has to skip and {@code edgesPerNode} random dependencies per service.
+     */
+    static String generate(int services, int edgesPerNode) {
+        Random random = new Random(42L * services + edgesPerNode);
+        StringBuilder yaml = new StringBuilder(services * 160);
+        yaml.append("services:\n");
+        for (int i = 0; i < services; i++) {
+            yaml.append("  svc-").append(i).append(":\n");
+            yaml.append("    image: ").append(IMAGES[random.nextInt(IMAGES.length)]).append('\n');
+            yaml.append("    environment:\n");
+            yaml.append("      - LOG_LEVEL=info\n");
+            yaml.append("      - INSTANCE=").append(i).append('\n');
+            int edges = Math.min(edgesPerNode, services - 1);
+            if (edges > 0) {
+                yaml.append("    depends_on:\n");
+                for (int e = 0; e < edges; e++) {
+                    int target = random.nextInt(services);
+                    if (target == i) target = (target + 1) % services;
+                    yaml.append("      - svc-").append(target).append('\n');
+                }
+            }
+        }
+        return yaml.toString();
+    }
+}
@@ -0,0 +1,32 @@
+package com.repotodeck.config;
+
+import org.slf4j.MDC;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Streaming response bodies are written on Spring MVC's async executor, not the request thread.
+ * Spring Boot applies this decorator to that executor, so the submitting thread's MDC (the
+ * request id) is visible to the render that runs there.
+ */
+@Component
+public class MdcTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        return () -> {
+            Map<String, String> previous = MDC.getCopyOfContextMap();
+            if (context != null) MDC.setContextMap(context);
+            else MDC.clear();
+            try {
+                runnable.run();
+            } finally {
+                if (previous != null) MDC.setContextMap(previous);
+                else MDC.clear();
+            }
+        };
+    }
+}
@@ -0,0 +1,233 @@
+package com.repotodeck.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.repotodeck.model.RenderJob;
+import com.repotodeck.service.DeckStore;
+import com.repotodeck.service.RenderJobService;
+import com.repotodeck.service.RenderRejectedException;
+import com.repotodeck.service.RenderTooLargeException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import static com.repotodeck.controller.PptController.errorResponse;
+import static com.repotodeck.controller.PptController.matchesEtag;
+import static com.repotodeck.controller.PptController.pptxResponse;
+import static com.repotodeck.controller.PptController.rejectedResponse;
+import static com.repotodeck.controller.PptController.tooLargeResponse;
+
+/**
+ * Asynchronous variant of /api/generate-slide for decks that take longer than a gateway timeout:
+ * submit, poll, download. Finished decks are served from the {@link DeckStore} file with range
+ * support and never loaded onto the heap.
+ */
+@RestController
+@RequestMapping("/api/jobs")
+public class JobController {
+
+    private static final Logger log = LoggerFactory.getLogger(JobController.class);
+
+    // Tomcat's sendfile hook: with these request attributes set, the connector sends the file
+    // range itself (zero-copy) after the handler returns, instead of the body being written
+    static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final RenderJobService renderJobService;
+    private final ObjectMapper objectMapper;
+    private final long pollAfterSeconds;
+
+    public JobController(RenderJobService renderJobService,
+                         ObjectMapper objectMapper,
+                         @Value("${repotodeck.jobs.poll-after-seconds:2}") long pollAfterSeconds) {
+        this.renderJobService = renderJobService;
+        this.objectMapper = objectMapper;
+        this.pollAfterSeconds = pollAfterSeconds;
+    }
+
+    /**
+     * Queue a render. Expects JSON payload: { "yaml": "version: '3.8'..." }
+     * <p>
+     * Invalid documents are still rejected here with a 400 and ones over the admission limits
+     * with a 413; otherwise the answer is a 202 with the job (see {@link RenderJob}) and its URL
+     * in Location. Documents over the full-detail limits are only parsed by the worker, so an
+     * invalid one of those ends as a FAILED job instead.
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> submit(@RequestBody Map<String, String> payload) {
+        try {
+            RenderJob job = renderJobService.submit(payload.get("yaml"));
+            return jobResponse(HttpStatus.ACCEPTED, job)
+                    .location(URI.create("/api/jobs/" + job.id()))
+                    .body(json(job));
+
+        } catch (RenderRejectedException e) {
+            return rejectedResponse(e);
+        } catch (RenderTooLargeException e) {
+            return tooLargeResponse(e);
+        } catch (UncheckedIOException e) {
+            log.error("Could not store deck job", e);
+            return errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Could not store job: " + e.getMessage());
+        } catch (Exception e) {
+            log.warn("Rejected compose document: {}", e.getMessage());
+            log.debug("Rejected compose document", e);
+            return errorResponse(HttpStatus.BAD_REQUEST, "Error processing YAML: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Poll a job. Unfinished jobs carry a Retry-After hint; DONE ones link their deck in Location.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<StreamingResponseBody> status(@PathVariable String id) {
+        RenderJob job = renderJobService.get(id);
+        if (job == null) {
+            return errorResponse(HttpStatus.NOT_FOUND, "No such job (finished jobs expire)");
+        }
+        ResponseEntity.BodyBuilder response = jobResponse(HttpStatus.OK, job);
+        if (job.state() == RenderJob.State.DONE) {
+            response.location(URI.create("/api/jobs/" + id + "/deck"));
+        }
+        return response.body(json(job));
+    }
+
+    /**
+     * Download a finished deck. Honors a single byte range ("Range: bytes=...") with a 206 so
+     * interrupted downloads can resume; several ranges get the whole deck. The ETag is the render
+     * cache key, as for /generate-slide.
+     */
+    @GetMapping("/{id}/deck")
+    public ResponseEntity<StreamingResponseBody> deck(@PathVariable String id,
+                                                      @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                                                      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                      HttpServletRequest request) {
+        RenderJob job = renderJobService.get(id);
+        if (job == null) {
+            return errorResponse(HttpStatus.NOT_FOUND, "No such job (finished jobs expire)");
+        }
+        if (job.state() == RenderJob.State.FAILED) {
+            return errorResponse(HttpStatus.CONFLICT, "Job failed: " + job.error());
+        }
+        Path deck = renderJobService.deck(id);
+        if (deck == null) {
+            byte[] body = "Deck is not ready yet".getBytes(StandardCharsets.UTF_8);
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(pollAfterSeconds))
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(out -> out.write(body));
+        }
+
+        String etag = "\"" + job.cacheKey() + "\"";
+        if (matchesEtag(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        // Opened up front: the deck may expire meanwhile, but an open channel keeps reading it
+        FileChannel channel;
+        long length;
+        try {
+            channel = FileChannel.open(deck, StandardOpenOption.READ);
+            length = channel.size();
+        } catch (NoSuchFileException e) {
+            return errorResponse(HttpStatus.NOT_FOUND, "No such job (finished jobs expire)");
+        } catch (IOException e) {
+            log.error("Could not open deck", e);
+            return errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Could not read deck");
+        }
+
+        long start = 0;
+        long end = length;
+        HttpStatus status = HttpStatus.OK;
+        if (range != null) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(range);
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(length);
+                    end = ranges.get(0).getRangeEnd(length) + 1;
+                    if (start >= length || start >= end) throw new IllegalArgumentException("Range outside the deck");
+                    status = HttpStatus.PARTIAL_CONTENT;
+                }
+            } catch (IllegalArgumentException e) {
+                closeQuietly(channel);
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                        .build();
+            }
+        }
+
+        ResponseEntity.BodyBuilder response = pptxResponse(status, etag)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .contentLength(end - start);
+        if (status == HttpStatus.PARTIAL_CONTENT) {
+            response.header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + length);
+        }
+
+        boolean sendfile = Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED));
+        log.atDebug().setMessage("Deck download")
+                .addKeyValue(RenderJobService.MDC_KEY, id)
+                .addKeyValue("bytes", end - start)
+                .addKeyValue("sendfile", sendfile)
+                .log();
+        if (sendfile) {
+            closeQuietly(channel);
+            request.setAttribute(SENDFILE_FILENAME, deck.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return response.build();
+        }
+        long position = start;
+        long count = end - start;
+        return response.body(out -> {
+            try (channel) {
+                DeckStore.transfer(channel, position, count, Channels.newChannel(out));
+            }
+        });
+    }
+
+    private ResponseEntity.BodyBuilder jobResponse(HttpStatus status, RenderJob job) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON);
+        if (!job.finished()) {
+            response.header(HttpHeaders.RETRY_AFTER, String.valueOf(pollAfterSeconds));
+        }
+        return response;
+    }
+
+    private StreamingResponseBody json(RenderJob job) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(job);
+            return out -> out.write(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize job", e);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Read-only channel; nothing to lose
+        }
+    }
+}
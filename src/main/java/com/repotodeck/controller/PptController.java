@@ -1,67 +1,717 @@
 package com.repotodeck.controller;
 
-import com.repotodeck.model.ServiceNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.repotodeck.model.BatchRequest;
+import com.repotodeck.model.ComposeSource;
+import com.repotodeck.model.ProjectRequest;
+import com.repotodeck.model.RenderJob;
+import com.repotodeck.model.UpdateRequest;
+import com.repotodeck.service.BatchRenderService;
+import com.repotodeck.service.ComposeProjectService;
+import com.repotodeck.service.DeckUpdateService;
+import com.repotodeck.service.DiagramExportService;
+import com.repotodeck.service.DiagramFormat;
 import com.repotodeck.service.DockerParserService;
+import com.repotodeck.service.PaginatedDeckService;
 import com.repotodeck.service.PptGeneratorService;
+import com.repotodeck.service.RenderAdmissionService;
+import com.repotodeck.service.RenderCacheService;
+import com.repotodeck.service.RenderCost;
+import com.repotodeck.service.RenderFarmService;
+import com.repotodeck.service.RenderJobService;
+import com.repotodeck.service.RenderRejectedException;
+import com.repotodeck.service.RenderScheduler;
+import com.repotodeck.service.RenderTooLargeException;
+import com.repotodeck.service.ServiceGraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api")
 public class PptController {
 
+    private static final Logger log = LoggerFactory.getLogger(PptController.class);
+
+    private static final MediaType PPTX_MEDIA_TYPE = DiagramFormat.PPTX.mediaType();
+
+    private static final MediaType ZIP_MEDIA_TYPE = MediaType.parseMediaType("application/zip");
+
+    // How /update-slide produced the deck ("patched" or "regenerated") and what changed
+    static final String UPDATE_HEADER = "X-Deck-Update";
+    static final String DIFF_HEADER = "X-Deck-Diff";
+
+    // Set to "reduced" when an oversized document was drawn with the cheap layout, "paged" when
+    // the deck was split into an overview and a slide per cluster, or both
+    static final String DETAIL_HEADER = "X-Deck-Detail";
+
+    private static final String PERMIT_INTERCEPTOR = PptController.class.getName() + ".permit";
+
     private final DockerParserService dockerParserService;
     private final PptGeneratorService pptGeneratorService;
+    private final DiagramExportService diagramExportService;
+    private final RenderCacheService renderCacheService;
+    private final BatchRenderService batchRenderService;
+    private final RenderScheduler renderScheduler;
+    private final DeckUpdateService deckUpdateService;
+    private final ComposeProjectService composeProjectService;
+    private final RenderFarmService renderFarmService;
+    private final RenderAdmissionService renderAdmissionService;
+    private final RenderJobService renderJobService;
+    private final PaginatedDeckService paginatedDeckService;
+    private final ObjectMapper objectMapper;
+    private final int maxBatchFiles;
+    private final long pollAfterSeconds;
 
-    public PptController(DockerParserService dockerParserService, PptGeneratorService pptGeneratorService) {
+    public PptController(DockerParserService dockerParserService,
+                         PptGeneratorService pptGeneratorService,
+                         DiagramExportService diagramExportService,
+                         RenderCacheService renderCacheService,
+                         BatchRenderService batchRenderService,
+                         RenderScheduler renderScheduler,
+                         DeckUpdateService deckUpdateService,
+                         ComposeProjectService composeProjectService,
+                         RenderFarmService renderFarmService,
+                         RenderAdmissionService renderAdmissionService,
+                         RenderJobService renderJobService,
+                         PaginatedDeckService paginatedDeckService,
+                         ObjectMapper objectMapper,
+                         @Value("${repotodeck.batch.max-files:500}") int maxBatchFiles,
+                         @Value("${repotodeck.jobs.poll-after-seconds:2}") long pollAfterSeconds) {
         this.dockerParserService = dockerParserService;
         this.pptGeneratorService = pptGeneratorService;
+        this.diagramExportService = diagramExportService;
+        this.renderCacheService = renderCacheService;
+        this.batchRenderService = batchRenderService;
+        this.renderScheduler = renderScheduler;
+        this.deckUpdateService = deckUpdateService;
+        this.composeProjectService = composeProjectService;
+        this.renderFarmService = renderFarmService;
+        this.renderAdmissionService = renderAdmissionService;
+        this.renderJobService = renderJobService;
+        this.paginatedDeckService = paginatedDeckService;
+        this.objectMapper = objectMapper;
+        this.maxBatchFiles = maxBatchFiles;
+        this.pollAfterSeconds = pollAfterSeconds;
     }
 
     /**
      * Generate a PowerPoint presentation from Docker Compose YAML.
      * Expects JSON payload: { "yaml": "version: '3.8'..." }
+     * <p>
+     * The Accept header picks the format: the deck by default, or the same diagram as SVG
+     * (image/svg+xml), PNG (image/png) or PDF (application/pdf).
+     * Responses carry a content-addressed ETag; sending it back in If-None-Match yields a 304.
+     * If-None-Match: * yields a 412, since every valid document has a deck.
+     * Cache misses are streamed straight from the renderer into the response instead of being buffered.
+     * <p>
+     * Oversized documents (see {@link RenderAdmissionService}) are drawn with a cheaper layout
+     * (X-Deck-Detail: reduced), queued as a job (202 with the job in Location, as for POST
+     * /api/jobs) or rejected with a 413, all before they are parsed.
+     * <p>
+     * With "paginate": true, and by default for documents over the configured size (see
+     * {@link PaginatedDeckService}), the deck starts with an overview slide of the graph's clusters
+     * linking to one slide per cluster (X-Deck-Detail: paged); "paginate": false keeps one slide.
+     * Pages of an oversized document still get the cheaper layout (X-Deck-Detail: reduced, paged).
+     * Other formats always show the whole graph.
      */
     @PostMapping(value = "/generate-slide", consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<byte[]> generateSlide(@RequestBody Map<String, String> payload) {
+    public ResponseEntity<StreamingResponseBody> generateSlide(@RequestBody Map<String, String> payload,
+                                                               @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                               @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        DiagramFormat format = negotiate(accept);
         try {
             // 1. Extract YAML string from JSON wrapper
             String yamlContent = payload.get("yaml");
-            
+
             if (yamlContent == null || yamlContent.trim().isEmpty()) {
                 throw new IllegalArgumentException("YAML content cannot be empty");
             }
 
-            // 2. Parse YAML to ServiceNode list
-            List<ServiceNode> nodes = dockerParserService.parse(yamlContent);
-            
-            if (nodes.isEmpty()) {
+            RenderAdmissionService.Admission admission =
+                    renderAdmissionService.admit(RenderAdmissionService.estimate(yamlContent));
+            if (admission.decision() == RenderAdmissionService.Decision.ASYNC) {
+                if (format != DiagramFormat.PPTX) {
+                    throw new RenderTooLargeException("Compose document is too large to render as " + format
+                            + " (" + admission.cost() + "); submit it to /api/jobs for a deck", admission.cost());
+                }
+                return jobAccepted(renderJobService.submit(yamlContent, admission));
+            }
+
+            String paginate = payload.get("paginate");
+            boolean paged = format == DiagramFormat.PPTX
+                    && paginatedDeckService.paginates(paginate == null ? null : Boolean.valueOf(paginate), admission.cost());
+
+            String cacheKey = renderCacheService.keyForDetail(renderCacheService.keyFor(yamlContent), admission.detail());
+            if (paged) {
+                cacheKey = renderCacheService.keyForDetail(cacheKey, PptGeneratorService.Detail.PAGED);
+            }
+            return render(renderCacheService.keyForFormat(cacheKey, format), format, admission, paged,
+                    ifNoneMatch, () -> dockerParserService.parseGraph(yamlContent));
+
+        } catch (RenderRejectedException e) {
+            return rejectedResponse(e);
+        } catch (RenderTooLargeException e) {
+            return tooLargeResponse(e);
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Render failed", e);
+            return errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Error rendering deck: " + e.getMessage());
+        } catch (Exception e) {
+            log.warn("Rejected compose document: {}", e.getMessage());
+            log.debug("Rejected compose document", e);
+            return errorResponse(HttpStatus.BAD_REQUEST, "Error processing YAML: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Generate a PowerPoint presentation from a compose project split across several files.
+     * Expects JSON payload: { "files": [ { "name": "compose.yaml", "yaml": "..." }, ... ],
+     * "composeFiles": [ "compose.yaml", "compose.prod.yaml" ], "profiles": [ "debug" ] }
+     * <p>
+     * Override files, include, extends and profiles are resolved as docker compose does; without
+     * composeFiles the standard compose file and its override file are used. Formats, ETags and
+     * caching work as for /generate-slide.
+     */
+    @PostMapping(value = "/generate-project", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> generateProject(@RequestBody ProjectRequest request,
+                                                                 @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return project(request.files(), request.composeFiles(), request.profiles(), accept, ifNoneMatch);
+    }
+
+    /**
+     * Same as {@link #generateProject}, with the project uploaded as a ZIP in multipart part
+     * "project" (only its YAML and .env files are read) and compose files and profiles as repeated
+     * "file" and "profile" parameters.
+     */
+    @PostMapping(value = "/generate-project", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> generateUploadedProject(@RequestPart("project") MultipartFile project,
+                                                                         @RequestParam(value = "file", required = false) List<String> composeFiles,
+                                                                         @RequestParam(value = "profile", required = false) List<String> profiles,
+                                                                         @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        List<ComposeSource> files;
+        try (InputStream in = project.getInputStream()) {
+            files = composeProjectService.readZip(in);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Rejected project upload: {}", e.getMessage());
+            return errorResponse(HttpStatus.BAD_REQUEST, "Error processing project: " + e.getMessage());
+        }
+        return project(files, composeFiles, profiles, accept, ifNoneMatch);
+    }
+
+    private ResponseEntity<StreamingResponseBody> project(List<ComposeSource> files, List<String> composeFiles,
+                                                          List<String> profiles, String accept, String ifNoneMatch) {
+        DiagramFormat format = negotiate(accept);
+        try {
+            if (files == null || files.isEmpty()) {
+                throw new IllegalArgumentException("Project must contain at least one file");
+            }
+            // Every file counts, loaded or not: an unused 50 MB override still has to be hashed
+            RenderCost cost = RenderCost.ZERO;
+            for (ComposeSource file : files) {
+                cost = cost.plus(RenderAdmissionService.estimate(file.yaml()));
+            }
+            RenderAdmissionService.Admission admission = renderAdmissionService.admitSync(cost);
+
+            String cacheKey = renderCacheService.keyForDetail(
+                    renderCacheService.keyForProject(files, composeFiles, profiles), admission.detail());
+            return render(renderCacheService.keyForFormat(cacheKey, format), format, admission, false,
+                    ifNoneMatch,
+                    () -> pptGeneratorService.graph(composeProjectService.load(files, composeFiles, profiles)));
+
+        } catch (RenderRejectedException e) {
+            return rejectedResponse(e);
+        } catch (RenderTooLargeException e) {
+            return tooLargeResponse(e);
+        } catch (IOException e) {
+            log.error("Render failed", e);
+            return errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Error rendering deck: " + e.getMessage());
+        } catch (Exception e) {
+            log.warn("Rejected project: {}", e.getMessage());
+            log.debug("Rejected project", e);
+            return errorResponse(HttpStatus.BAD_REQUEST, "Error processing project: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Serves the diagram for {@code cacheKey} in {@code format} from the client (304) or the
+     * cache, or else parses and renders it. Parse errors are thrown before anything is streamed.
+     * In cluster mode the render goes through {@link RenderFarmService}, so replicas share it.
+     * The render takes the render slots and detail of its {@code admission}, checked again against
+     * the parsed graph (see {@link RenderAdmissionService#recheck}); decks are paginated if {@code paged}.
+     */
+    private ResponseEntity<StreamingResponseBody> render(String cacheKey, DiagramFormat format,
+                                                         RenderAdmissionService.Admission admission, boolean paged,
+                                                         String ifNoneMatch, Supplier<ServiceGraph> parser) throws IOException {
+        // 2. Content-addressed lookup: the client may already hold this exact deck
+        String etag = "\"" + cacheKey + "\"";
+        if (matchesAny(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).eTag(etag).varyBy(HttpHeaders.ACCEPT).build();
+        }
+        if (matchesEtag(ifNoneMatch, etag)) {
+            log.atDebug().setMessage("Deck not modified").addKeyValue("cacheKey", cacheKey).log();
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(HttpHeaders.ACCEPT).build();
+        }
+
+        byte[] cached = renderCacheService.getIfPresent(cacheKey);
+        if (cached != null) {
+            log.atInfo().setMessage("Deck served from cache")
+                    .addKeyValue("cacheKey", cacheKey).addKeyValue("format", format).addKeyValue("bytes", cached.length).log();
+            return diagramResponse(format, etag, admission.detail(), paged).contentLength(cached.length).body(out -> out.write(cached));
+        }
+        if (renderFarmService.isEnabled()) {
+            return renderShared(cacheKey, format, admission, paged, etag, parser);
+        }
+
+        // 3. Wait for a render slot (several for oversized documents), released by the body or when the request ends
+        RenderScheduler.Permit permit = renderScheduler.acquire(admission.weight());
+        try {
+            // 4. Parse to a ServiceGraph (before streaming, so bad input is still a 400)
+            ServiceGraph graph = parser.get();
+
+            if (graph.isEmpty()) {
                 throw new IllegalArgumentException("No services found in YAML. Check formatting.");
             }
+            // The estimate may have undercounted the graph: weigh and draw it as what it is
+            RenderAdmissionService.Admission parsed = renderAdmissionService.recheck(admission, graph);
+            permit.growTo(parsed.weight());
+            PptGeneratorService.Detail detail = parsed.detail();
 
-            // 3. Generate PowerPoint slide
-            byte[] pptxBytes = pptGeneratorService.generateSlide(nodes);
+            // 5. Render straight into the response, keeping a copy for the cache if it is small enough
+            releaseOnCompletion(permit);
+            return diagramResponse(format, etag, detail, paged).body(out -> {
+                try (permit) {
+                    RenderCacheService.CachingOutputStream cachingOut = renderCacheService.cachingStream(cacheKey, out);
+                    long bytes = diagramExportService.write(graph, format, detail, paged, cachingOut);
+                    cachingOut.commit();
+                    log.atInfo().setMessage("Deck rendered")
+                            .addKeyValue("cacheKey", cacheKey)
+                            .addKeyValue("format", format)
+                            .addKeyValue("detail", detail)
+                            .addKeyValue("paged", paged)
+                            .addKeyValue("services", graph.size())
+                            .addKeyValue("bytes", bytes)
+                            .log();
+                }
+            });
+        } catch (RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+    }
 
-            // 4. Set headers for file download
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=architecture.pptx")
-                    .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.presentationml.presentation"))
-                    .body(pptxBytes);
+    /**
+     * Cluster mode: the deck is rendered by one replica (this one, if it gets there first) and
+     * buffered, since it is shared anyway. Only the render itself holds a render slot, not the
+     * wait for another replica.
+     */
+    private ResponseEntity<StreamingResponseBody> renderShared(String cacheKey, DiagramFormat format,
+                                                               RenderAdmissionService.Admission admission, boolean paged,
+                                                               String etag, Supplier<ServiceGraph> parser) throws IOException {
+        AtomicReference<PptGeneratorService.Detail> drawn = new AtomicReference<>(admission.detail());
+        byte[] deck = renderFarmService.render(cacheKey, () -> {
+            try (RenderScheduler.Permit permit = renderScheduler.acquire(admission.weight())) {
+                ServiceGraph graph = parser.get();
+                if (graph.isEmpty()) {
+                    throw new IllegalArgumentException("No services found in YAML. Check formatting.");
+                }
+                RenderAdmissionService.Admission parsed = renderAdmissionService.recheck(admission, graph);
+                permit.growTo(parsed.weight());
+                PptGeneratorService.Detail detail = parsed.detail();
+                drawn.set(detail);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                diagramExportService.write(graph, format, detail, paged, out);
+                log.atInfo().setMessage("Deck rendered")
+                        .addKeyValue("cacheKey", cacheKey)
+                        .addKeyValue("format", format)
+                        .addKeyValue("detail", detail)
+                        .addKeyValue("paged", paged)
+                        .addKeyValue("services", graph.size())
+                        .addKeyValue("bytes", out.size())
+                        .log();
+                return out.toByteArray();
+            }
+        });
+        renderCacheService.put(cacheKey, deck);
+        return diagramResponse(format, etag, drawn.get(), paged).contentLength(deck.length).body(out -> out.write(deck));
+    }
 
+    /**
+     * Update a deck generated earlier to a new revision of its compose file.
+     * Expects JSON payload: { "yaml": "...", "previous": "<ETag of the earlier deck>", "highlight": true }
+     * <p>
+     * Only the shapes of services and links that changed are redrawn, everything else stays where
+     * it was; added and removed services are ringed unless "highlight" is false. Decks that can't
+     * be patched are rendered from scratch. X-Deck-Update says which happened ("patched" or
+     * "regenerated"), X-Deck-Diff what changed. The response ETag can be the next "previous".
+     * Oversized documents are regenerated with the cheaper layout (X-Deck-Detail: reduced).
+     */
+    @PostMapping(value = "/update-slide", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> updateSlide(@RequestBody UpdateRequest request,
+                                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String previousKey = etagValue(request.previous());
+        if (previousKey == null) {
+            return errorResponse(HttpStatus.BAD_REQUEST, "Error processing update: previous deck ETag is required");
+        }
+        byte[] previous = renderCacheService.getIfPresent(previousKey);
+        if (previous == null) {
+            return errorResponse(HttpStatus.NOT_FOUND,
+                    "Previous deck is no longer cached; upload it as multipart part 'deck' instead");
+        }
+        return update(previous, previousKey, request.yaml(), request.highlightChanges(), ifNoneMatch);
+    }
+
+    /**
+     * Same as {@link #updateSlide}, with the earlier deck uploaded as multipart part "deck" and
+     * the compose document as part "yaml".
+     */
+    @PostMapping(value = "/update-slide", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> updateUploadedSlide(@RequestPart("deck") MultipartFile deck,
+                                                                     @RequestPart("yaml") String yaml,
+                                                                     @RequestParam(value = "highlight", defaultValue = "true") boolean highlight,
+                                                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            byte[] previous = deck.getBytes();
+            return update(previous, renderCacheService.keyForDeck(previous), yaml, highlight, ifNoneMatch);
         } catch (IOException e) {
-            e.printStackTrace();
-            return ResponseEntity.internalServerError()
-                    .body(("Error generating PowerPoint: " + e.getMessage()).getBytes());
+            return errorResponse(HttpStatus.BAD_REQUEST, "Error processing update: " + e.getMessage());
+        }
+    }
+
+    private ResponseEntity<StreamingResponseBody> update(byte[] previous, String previousKey, String yamlContent,
+                                                         boolean highlight, String ifNoneMatch) {
+        try {
+            if (yamlContent == null || yamlContent.trim().isEmpty()) {
+                throw new IllegalArgumentException("YAML content cannot be empty");
+            }
+            // Patched decks keep the previous layout and only use the slot weight; regenerated ones
+            // are drawn at the admitted detail, as by /generate-slide
+            RenderAdmissionService.Admission admission =
+                    renderAdmissionService.admitSync(RenderAdmissionService.estimate(yamlContent));
+
+            // The result only depends on the previous deck and the new document, so it has a stable ETag too
+            String cacheKey = renderCacheService.keyForUpdate(previousKey, renderCacheService.keyFor(yamlContent), highlight);
+            String etag = "\"" + cacheKey + "\"";
+            if (matchesAny(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).eTag(etag).build();
+            }
+            if (matchesEtag(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+
+            RenderScheduler.Permit permit = renderScheduler.acquire(admission.weight());
+            try {
+                ServiceGraph graph = dockerParserService.parseGraph(yamlContent);
+                if (graph.isEmpty()) {
+                    throw new IllegalArgumentException("No services found in YAML. Check formatting.");
+                }
+                RenderAdmissionService.Admission parsed = renderAdmissionService.recheck(admission, graph);
+                permit.growTo(parsed.weight());
+                PptGeneratorService.Detail detail = parsed.detail();
+
+                DeckUpdateService.Plan plan = deckUpdateService.plan(previous, graph, highlight);
+                ResponseEntity.BodyBuilder response = pptxResponse(etag)
+                        .header(UPDATE_HEADER, plan.patchable() ? "patched" : "regenerated");
+                if (plan.diff() != null) {
+                    response.header(DIFF_HEADER, plan.diff().summary());
+                }
+                if (!plan.patchable() && detail != PptGeneratorService.Detail.FULL) {
+                    response.header(DETAIL_HEADER, detail.name().toLowerCase(Locale.ROOT));
+                }
+                releaseOnCompletion(permit);
+                return response.body(out -> {
+                    try (permit) {
+                        RenderCacheService.CachingOutputStream cachingOut = renderCacheService.cachingStream(cacheKey, out);
+                        long bytes = plan.patchable()
+                                ? deckUpdateService.write(plan, cachingOut)
+                                : pptGeneratorService.generateSlide(graph, detail, cachingOut);
+                        cachingOut.commit();
+                        log.atInfo().setMessage(plan.patchable() ? "Deck patched" : "Deck regenerated for update")
+                                .addKeyValue("cacheKey", cacheKey)
+                                .addKeyValue("services", graph.size())
+                                .addKeyValue("detail", plan.patchable() ? null : detail)
+                                .addKeyValue("diff", plan.diff() != null ? plan.diff().summary() : null)
+                                .addKeyValue("reason", plan.reason())
+                                .addKeyValue("bytes", bytes)
+                                .log();
+                    }
+                });
+            } catch (RuntimeException | IOException e) {
+                permit.close();
+                throw e;
+            }
+
+        } catch (RenderRejectedException e) {
+            return rejectedResponse(e);
+        } catch (RenderTooLargeException e) {
+            return tooLargeResponse(e);
+        } catch (Exception e) {
+            log.warn("Rejected update: {}", e.getMessage());
+            log.debug("Rejected update", e);
+            return errorResponse(HttpStatus.BAD_REQUEST, "Error processing update: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Render many compose files at once.
+     * Expects JSON payload: { "files": [ { "name": "repo-a", "yaml": "..." }, ... ], "output": "deck" | "zip" }
+     * "deck" returns one presentation with a slide per file; "zip" returns one presentation per file.
+     * Oversized files are drawn with the cheaper layout, as by /generate-slide (X-Deck-Detail: reduced),
+     * and the batch takes the render slots of all its files.
+     */
+    @PostMapping(value = "/generate-batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> generateBatch(@RequestBody BatchRequest request) {
+        try {
+            List<ComposeSource> files = request.files();
+            if (files == null || files.isEmpty()) {
+                throw new IllegalArgumentException("Batch must contain at least one file");
+            }
+            if (files.size() > maxBatchFiles) {
+                throw new IllegalArgumentException("Batch exceeds the limit of " + maxBatchFiles + " files");
+            }
+            // Each file is drawn at the detail it is admitted with, as it would be on its own
+            List<RenderAdmissionService.Admission> admissions = new ArrayList<>(files.size());
+            List<PptGeneratorService.Detail> details = new ArrayList<>(files.size());
+            long weight = 0;
+            for (ComposeSource file : files) {
+                RenderAdmissionService.Admission admission =
+                        renderAdmissionService.admitSync(RenderAdmissionService.estimate(file.yaml()));
+                admissions.add(admission);
+                details.add(admission.detail());
+                weight += admission.weight();
+            }
+
+            // A batch renders several decks at once, so it weighs the slots of all its files (capped)
+            RenderScheduler.Permit permit = renderScheduler.acquire((int) Math.min(Integer.MAX_VALUE, weight));
+            try {
+                // Parse everything up front so one broken file is a 400, not a truncated download
+                List<BatchRenderService.ParsedSource> parsed = new ArrayList<>(batchRenderService.parseAll(files, details));
+                // ... and check each file again against its parsed graph, which the estimate may undercount
+                weight = 0;
+                for (int i = 0; i < parsed.size(); i++) {
+                    BatchRenderService.ParsedSource source = parsed.get(i);
+                    RenderAdmissionService.Admission admission = renderAdmissionService.recheck(admissions.get(i), source.graph());
+                    if (admission.detail() != source.detail()) {
+                        parsed.set(i, new BatchRenderService.ParsedSource(source.name(), source.graph(), admission.detail()));
+                        details.set(i, admission.detail());
+                    }
+                    weight += admission.weight();
+                }
+                permit.growTo((int) Math.min(Integer.MAX_VALUE, weight));
+                String[] flags = details.contains(PptGeneratorService.Detail.REDUCED)
+                        ? new String[]{PptGeneratorService.Detail.REDUCED.name().toLowerCase(Locale.ROOT)}
+                        : new String[0];
+
+                releaseOnCompletion(permit);
+                if (request.zipOutput()) {
+                    return ResponseEntity.ok()
+                            .header(DETAIL_HEADER, flags)
+                            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=architectures.zip")
+                            .contentType(ZIP_MEDIA_TYPE)
+                            .body(out -> {
+                                try (permit) {
+                                    batchRenderService.renderZip(parsed, out);
+                                }
+                            });
+                }
+                return ResponseEntity.ok()
+                        .header(DETAIL_HEADER, flags)
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=architectures.pptx")
+                        .contentType(PPTX_MEDIA_TYPE)
+                        .body(out -> {
+                            try (permit) {
+                                batchRenderService.renderDeck(parsed, out);
+                            }
+                        });
+            } catch (RuntimeException e) {
+                permit.close();
+                throw e;
+            }
+
+        } catch (RenderRejectedException e) {
+            return rejectedResponse(e);
+        } catch (RenderTooLargeException e) {
+            return tooLargeResponse(e);
         } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.badRequest()
-                    .body(("Error processing YAML: " + e.getMessage()).getBytes());
+            log.warn("Rejected batch: {}", e.getMessage());
+            log.debug("Rejected batch", e);
+            return errorResponse(HttpStatus.BAD_REQUEST, "Error processing batch: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ties {@code permit} to the async request that streams the response body: the body releases
+     * it when it is done, and this releases it when the request completes for any reason, so a
+     * body that is never run (rejected by the executor, timed out before it started, client gone)
+     * doesn't keep its slots. Releasing twice is harmless.
+     */
+    private static void releaseOnCompletion(RenderScheduler.Permit permit) {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) return;
+        WebAsyncUtils.getAsyncManager(attributes.getRequest()).registerCallableInterceptor(PERMIT_INTERCEPTOR,
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+                        permit.close();
+                    }
+                });
+    }
+
+    static ResponseEntity.BodyBuilder pptxResponse(String etag) {
+        return pptxResponse(HttpStatus.OK, etag);
+    }
+
+    static ResponseEntity.BodyBuilder pptxResponse(HttpStatus status, String etag) {
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=architecture.pptx")
+                .eTag(etag)
+                .contentType(PPTX_MEDIA_TYPE);
+    }
+
+    /**
+     * Like {@link #pptxResponse(String)} for any format; the body depends on Accept, so caches are told so.
+     */
+    static ResponseEntity.BodyBuilder diagramResponse(DiagramFormat format, String etag) {
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=architecture." + format.extension())
+                .varyBy(HttpHeaders.ACCEPT)
+                .eTag(etag)
+                .contentType(format.mediaType());
+    }
+
+    /**
+     * Same as {@link #diagramResponse(DiagramFormat, String)}, flagging reduced-detail and paged renders.
+     */
+    static ResponseEntity.BodyBuilder diagramResponse(DiagramFormat format, String etag,
+                                                      PptGeneratorService.Detail detail, boolean paged) {
+        ResponseEntity.BodyBuilder response = diagramResponse(format, etag);
+        List<String> flags = new ArrayList<>(2);
+        if (detail != PptGeneratorService.Detail.FULL) {
+            flags.add(detail.name().toLowerCase(Locale.ROOT));
+        }
+        if (paged) {
+            flags.add(PptGeneratorService.Detail.PAGED.name().toLowerCase(Locale.ROOT));
+        }
+        if (!flags.isEmpty()) {
+            response.header(DETAIL_HEADER, String.join(", ", flags));
+        }
+        return response;
+    }
+
+    /**
+     * 202 for a document handed to the job queue; poll the job at Location.
+     */
+    private ResponseEntity<StreamingResponseBody> jobAccepted(RenderJob job) throws IOException {
+        byte[] body = objectMapper.writeValueAsBytes(job);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(URI.create("/api/jobs/" + job.id()))
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(pollAfterSeconds))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> out.write(body));
+    }
+
+    /**
+     * The format asked for by {@code accept}. Headers that accept none of them or can't be
+     * parsed get the deck, which is what every client got before there was a choice.
+     */
+    static DiagramFormat negotiate(String accept) {
+        try {
+            DiagramFormat format = DiagramFormat.forAccept(accept);
+            return format != null ? format : DiagramFormat.PPTX;
+        } catch (InvalidMediaTypeException e) {
+            return DiagramFormat.PPTX;
+        }
+    }
+
+    static ResponseEntity<StreamingResponseBody> errorResponse(HttpStatus status, String message) {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        return ResponseEntity.status(status)
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(out -> out.write(body));
+    }
+
+    /**
+     * 429 when the queue is full (back off), 503 when the wait for a slot timed out (busy pod).
+     */
+    static ResponseEntity<StreamingResponseBody> rejectedResponse(RenderRejectedException e) {
+        log.atWarn().setMessage("Render rejected").addKeyValue("reason", e.getReason()).log();
+        HttpStatus status = e.getReason() == RenderRejectedException.Reason.QUEUE_FULL
+                ? HttpStatus.TOO_MANY_REQUESTS
+                : HttpStatus.SERVICE_UNAVAILABLE;
+        byte[] body = e.getMessage().getBytes(StandardCharsets.UTF_8);
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(out -> out.write(body));
+    }
+
+    /**
+     * 413 for documents over the admission limits; retrying the same input won't help.
+     */
+    static ResponseEntity<StreamingResponseBody> tooLargeResponse(RenderTooLargeException e) {
+        return errorResponse(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage());
+    }
+
+    /**
+     * The opaque part of an ETag ("abc", W/"abc" or a bare abc), or null if there is none.
+     */
+    static String etagValue(String etag) {
+        if (etag == null) return null;
+        String tag = etag.trim();
+        if (tag.startsWith("W/")) tag = tag.substring(2);
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) tag = tag.substring(1, tag.length() - 1);
+        return tag.isEmpty() ? null : tag;
+    }
+
+    /**
+     * If-None-Match may be "*", a single tag or a comma-separated list, each optionally weak (W/).
+     */
+    static boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Whether If-None-Match is "*". On a GET that is a match like any other; on the POSTs here,
+     * which always produce a deck, it is a precondition that can't hold (RFC 9110, 13.1.2: 412).
+     */
+    static boolean matchesAny(String ifNoneMatch) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            if (candidate.trim().equals("*")) return true;
         }
+        return false;
     }
-}
\ No newline at end of file
+}
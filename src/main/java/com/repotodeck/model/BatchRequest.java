@@ -0,0 +1,16 @@
+package com.repotodeck.model;
+
+import java.util.List;
+
+/**
+ * Payload of /api/generate-batch.
+ *
+ * @param files  compose documents to render, in output order
+ * @param output "deck" (default) for one multi-slide deck, or "zip" for one deck per file
+ */
+public record BatchRequest(List<ComposeSource> files, String output) {
+
+    public boolean zipOutput() {
+        return "zip".equalsIgnoreCase(output);
+    }
+}
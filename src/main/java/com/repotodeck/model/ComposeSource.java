@@ -0,0 +1,10 @@
+package com.repotodeck.model;
+
+/**
+ * One named compose document, e.g. one repository in a batch request.
+ *
+ * @param name display name; used as slide title or ZIP entry name
+ * @param yaml the raw docker-compose YAML
+ */
+public record ComposeSource(String name, String yaml) {
+}
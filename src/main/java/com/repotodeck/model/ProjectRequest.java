@@ -0,0 +1,14 @@
+package com.repotodeck.model;
+
+import java.util.List;
+
+/**
+ * Payload of /api/generate-project: a compose project split across several files.
+ *
+ * @param files        every file of the project, named by path relative to the project root
+ * @param composeFiles files to load, like {@code docker compose -f}; default is the standard
+ *                     compose file plus its override file
+ * @param profiles     active profiles ("*" for all)
+ */
+public record ProjectRequest(List<ComposeSource> files, List<String> composeFiles, List<String> profiles) {
+}
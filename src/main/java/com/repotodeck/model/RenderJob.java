@@ -0,0 +1,45 @@
+package com.repotodeck.model;
+
+import java.time.Instant;
+
+/**
+ * An asynchronous render submitted to /api/jobs, as reported to pollers and persisted next to
+ * its deck. Instances are immutable; every state change is a new one.
+ *
+ * @param id         random job id, also the name of its files in the deck store
+ * @param state      where the job is; only DONE jobs have a deck to download
+ * @param cacheKey   render cache key of the document, served as the deck's ETag (so a finished
+ *                   deck can be the "previous" of /api/update-slide while it is still cached)
+ * @param services   number of services in the diagram
+ * @param createdAt  when the job was submitted
+ * @param finishedAt when it reached DONE or FAILED (null before); the TTL counts from here
+ * @param bytes      size of the finished deck
+ * @param error      why the job failed (null unless FAILED)
+ */
+public record RenderJob(String id, State state, String cacheKey, int services, Instant createdAt,
+                        Instant finishedAt, long bytes, String error) {
+
+    public enum State {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    public static RenderJob queued(String id, String cacheKey, int services) {
+        return new RenderJob(id, State.QUEUED, cacheKey, services, Instant.now(), null, 0, null);
+    }
+
+    public RenderJob running() {
+        return new RenderJob(id, State.RUNNING, cacheKey, services, createdAt, null, 0, null);
+    }
+
+    public RenderJob done(long deckBytes) {
+        return new RenderJob(id, State.DONE, cacheKey, services, createdAt, Instant.now(), deckBytes, null);
+    }
+
+    public RenderJob failed(String reason) {
+        return new RenderJob(id, State.FAILED, cacheKey, services, createdAt, Instant.now(), 0, reason);
+    }
+
+    public boolean finished() {
+        return state == State.DONE || state == State.FAILED;
+    }
+}
@@ -3,7 +3,9 @@ package com.repotodeck.model;
 import lombok.Data;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Data
 public class ServiceNode {
@@ -20,7 +22,7 @@ public class ServiceNode {
 
     /**
      * The node type. Defaults to "SERVICE", but can be set to "DATABASE"
-     * based on heuristics in the parser.
+     * by the parser when the service classifier puts it in the database tier.
      */
     private String type = "SERVICE";
 
@@ -28,5 +30,11 @@ public class ServiceNode {
      * List of services this node connects to, derived from "depends_on" or "links".
      */
     private List<String> links = new ArrayList<>();
+
+    /**
+     * Container labels from docker-compose ("labels" as a map or a list of "key=value").
+     * Classification rules can match on them, e.g. "repotodeck.tier=database".
+     */
+    private Map<String, String> labels = new LinkedHashMap<>();
 }
 
@@ -0,0 +1,21 @@
+package com.repotodeck.model;
+
+/**
+ * Diagram tier of a service. The layer index is the row band it is drawn in,
+ * top to bottom: frontends, then application services, then data stores.
+ */
+public enum ServiceTier {
+    FRONTEND(0),
+    SERVICE(1),
+    DATABASE(2);
+
+    private final int layerIndex;
+
+    ServiceTier(int layerIndex) {
+        this.layerIndex = layerIndex;
+    }
+
+    public int layerIndex() {
+        return layerIndex;
+    }
+}
@@ -0,0 +1,15 @@
+package com.repotodeck.model;
+
+/**
+ * Payload of /api/update-slide when the previous deck is still in the render cache.
+ *
+ * @param yaml      the new revision of the compose document
+ * @param previous  ETag (cache key) of the deck to update
+ * @param highlight ring added and removed services (default true)
+ */
+public record UpdateRequest(String yaml, String previous, Boolean highlight) {
+
+    public boolean highlightChanges() {
+        return highlight == null || highlight;
+    }
+}
@@ -0,0 +1,148 @@
+package com.repotodeck.service;
+
+import com.repotodeck.model.ComposeSource;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Renders many compose files in one call.
+ * <p>
+ * Parsing and layout are CPU-bound and independent per file, so they run in parallel.
+ * POI decks are not thread-safe, so slides are assembled into a single deck sequentially,
+ * in request order. In ZIP mode every deck is independent and rendered fully in parallel,
+ * a window at a time so that only a handful of finished decks wait in memory for their turn.
+ */
+@Service
+public class BatchRenderService {
+
+    private static final int ZIP_WINDOW = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+
+    private final DockerParserService dockerParserService;
+    private final PptGeneratorService pptGeneratorService;
+
+    public BatchRenderService(DockerParserService dockerParserService, PptGeneratorService pptGeneratorService) {
+        this.dockerParserService = dockerParserService;
+        this.pptGeneratorService = pptGeneratorService;
+    }
+
+    /**
+     * A compose file that has already been parsed and validated, and the detail it is drawn at.
+     */
+    public record ParsedSource(String name, ServiceGraph graph, PptGeneratorService.Detail detail) {
+
+        public ParsedSource(String name, ServiceGraph graph) {
+            this(name, graph, PptGeneratorService.Detail.FULL);
+        }
+    }
+
+    /**
+     * Parses all sources in parallel. Fails fast with the name of the first invalid file,
+     * so callers can reject the batch before any output is written.
+     */
+    public List<ParsedSource> parseAll(List<ComposeSource> sources) {
+        return parseAll(sources, null);
+    }
+
+    /**
+     * Same as {@link #parseAll(List)}, drawing source {@code i} at {@code details.get(i)}
+     * (as admitted, see {@link RenderAdmissionService}); null draws every source at full detail.
+     */
+    public List<ParsedSource> parseAll(List<ComposeSource> sources, List<PptGeneratorService.Detail> details) {
+        List<String> names = uniqueNames(sources);
+        return IntStream.range(0, sources.size())
+                .parallel()
+                .mapToObj(i -> {
+                    try {
+                        return new ParsedSource(names.get(i), dockerParserService.parseGraph(sources.get(i).yaml()),
+                                details != null ? details.get(i) : PptGeneratorService.Detail.FULL);
+                    } catch (RuntimeException e) {
+                        throw new IllegalArgumentException("'" + names.get(i) + "': " + e.getMessage(), e);
+                    }
+                })
+                .toList();
+    }
+
+    /**
+     * One deck, one slide per compose file (titled with its name), in request order.
+     */
+    public void renderDeck(List<ParsedSource> sources, OutputStream out) throws IOException {
+        List<SlideLayout> layouts = sources.parallelStream()
+                .map(source -> pptGeneratorService.layout(source.graph(), source.detail()))
+                .toList();
+
+        try (XMLSlideShow pptx = pptGeneratorService.createDeck(layouts)) {
+            for (int i = 0; i < sources.size(); i++) {
+                pptGeneratorService.drawSlide(pptx, layouts.get(i), sources.get(i).name());
+            }
+            pptGeneratorService.writeDeck(pptx, out);
+            out.flush();
+        }
+    }
+
+    /**
+     * A ZIP with one single-slide deck per compose file, entries in request order.
+     */
+    public void renderZip(List<ParsedSource> sources, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        for (int start = 0; start < sources.size(); start += ZIP_WINDOW) {
+            List<ParsedSource> window = sources.subList(start, Math.min(start + ZIP_WINDOW, sources.size()));
+            List<byte[]> decks;
+            try {
+                decks = window.parallelStream()
+                        .map(this::renderSingle)
+                        .toList();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            for (int i = 0; i < window.size(); i++) {
+                zip.putNextEntry(new ZipEntry(window.get(i).name() + ".pptx"));
+                zip.write(decks.get(i));
+                zip.closeEntry();
+            }
+        }
+        zip.finish();
+        out.flush();
+    }
+
+    private byte[] renderSingle(ParsedSource source) {
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            pptGeneratorService.generateSlide(source.graph(), source.detail(), out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Names double as ZIP entry names, so they are sanitized and made unique.
+     */
+    private static List<String> uniqueNames(List<ComposeSource> sources) {
+        List<String> names = new ArrayList<>(sources.size());
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < sources.size(); i++) {
+            String raw = sources.get(i).name();
+            String base = (raw == null || raw.isBlank())
+                    ? "compose-" + (i + 1)
+                    : raw.trim().replaceAll("[^A-Za-z0-9._-]+", "_");
+            String name = base;
+            for (int n = 2; !seen.add(name); n++) {
+                name = base + "-" + n;
+            }
+            names.add(name);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,283 @@
+package com.repotodeck.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Splits a {@link ServiceGraph} into pages for {@link PaginatedDeckService}.
+ * <p>
+ * Services are first grouped into clusters (connected components, ignoring link direction, or
+ * name prefixes). A cluster of at least {@code minClusterSize} services gets a page of its own,
+ * named after it; smaller ones share "Other services" pages. A page never holds more than
+ * {@code maxShapes} shapes, counted as two per service (box and shadow) and one per link between
+ * two of its services: a cluster over that is cut into parts in breadth-first order, so linked
+ * services tend to stay on the same part.
+ */
+final class ClusterPartitioner {
+
+    static final String OTHER = "Other services";
+
+    /**
+     * @param members services on the page, in input order
+     */
+    record Page(String name, int[] members) {
+    }
+
+    /**
+     * @param pageOf page index of every service
+     */
+    record Partition(List<Page> pages, int[] pageOf) {
+    }
+
+    private final ServiceGraph graph;
+    private final int[] inOffsets;
+    private final int[] inSources;
+    private final boolean[] walked; // breadth-first walks; clusters are disjoint, so never reset
+    private final int[] partOf;     // part index while a cluster is cut, -1 otherwise
+
+    private ClusterPartitioner(ServiceGraph graph) {
+        this.graph = graph;
+        // Reverse CSR, so clusters can be walked without regard to link direction
+        int n = graph.size();
+        int[] offsets = graph.linkOffsets();
+        int[] targets = graph.linkTargets();
+        inOffsets = new int[n + 1];
+        for (int v : targets) inOffsets[v + 1]++;
+        for (int v = 0; v < n; v++) inOffsets[v + 1] += inOffsets[v];
+        inSources = new int[targets.length];
+        int[] next = Arrays.copyOf(inOffsets, n);
+        for (int u = 0; u < n; u++) {
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) inSources[next[targets[k]]++] = u;
+        }
+        walked = new boolean[n];
+        partOf = new int[n];
+        Arrays.fill(partOf, -1);
+    }
+
+    static Partition partition(ServiceGraph graph, PaginatedDeckService.Clustering clustering,
+                               int maxShapes, int minClusterSize) {
+        if (maxShapes < 2) {
+            throw new IllegalArgumentException("A page must have room for at least one service");
+        }
+        return new ClusterPartitioner(graph).split(clustering, maxShapes, Math.max(1, minClusterSize));
+    }
+
+    private Partition split(PaginatedDeckService.Clustering clustering, int maxShapes, int minClusterSize) {
+        int n = graph.size();
+        int[] clusterOf = new int[n];
+        List<String> names = new ArrayList<>();
+        if (clustering == PaginatedDeckService.Clustering.PREFIX) {
+            groupByPrefix(clusterOf, names);
+        } else {
+            groupByComponent(clusterOf, names);
+        }
+        int[][] clusters = members(clusterOf, names.size());
+
+        int[] pageOf = new int[n];
+        List<Page> pages = new ArrayList<>();
+        List<Integer> others = new ArrayList<>();
+        for (int c = 0; c < clusters.length; c++) {
+            if (clusters[c].length < minClusterSize) {
+                for (int u : clusters[c]) others.add(u);
+                continue;
+            }
+            List<int[]> parts = cut(breadthFirst(clusters[c], clusterOf), maxShapes);
+            for (int p = 0; p < parts.size(); p++) {
+                String name = parts.size() == 1 ? names.get(c) : names.get(c) + " (" + (p + 1) + "/" + parts.size() + ")";
+                addPage(pages, pageOf, name, parts.get(p));
+            }
+        }
+        if (!others.isEmpty()) {
+            // Input order, so services of one small cluster stay together
+            int[] rest = others.stream().mapToInt(Integer::intValue).sorted().toArray();
+            List<int[]> parts = cut(rest, maxShapes);
+            for (int p = 0; p < parts.size(); p++) {
+                addPage(pages, pageOf, parts.size() == 1 ? OTHER : OTHER + " (" + (p + 1) + "/" + parts.size() + ")",
+                        parts.get(p));
+            }
+        }
+        return new Partition(uniquelyNamed(pages), pageOf);
+    }
+
+    private static void addPage(List<Page> pages, int[] pageOf, String name, int[] members) {
+        Arrays.sort(members);
+        for (int u : members) pageOf[u] = pages.size();
+        pages.add(new Page(name, members));
+    }
+
+    /**
+     * Connected components, ignoring link direction, numbered by their first service and named
+     * after their most linked one.
+     */
+    private void groupByComponent(int[] clusterOf, List<String> names) {
+        int n = graph.size();
+        Arrays.fill(clusterOf, -1);
+        int[] queue = new int[n];
+        for (int start = 0; start < n; start++) {
+            if (clusterOf[start] >= 0) continue;
+            int cluster = names.size();
+            int hub = start;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+            clusterOf[start] = cluster;
+            while (head < tail) {
+                int u = queue[head++];
+                if (degree(u) > degree(hub)) hub = u;
+                tail = visit(u, cluster, clusterOf, queue, tail);
+            }
+            names.add(graph.id(hub));
+        }
+    }
+
+    private int visit(int u, int cluster, int[] clusterOf, int[] queue, int tail) {
+        int[] offsets = graph.linkOffsets();
+        int[] targets = graph.linkTargets();
+        for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+            int v = targets[k];
+            if (clusterOf[v] < 0) {
+                clusterOf[v] = cluster;
+                queue[tail++] = v;
+            }
+        }
+        for (int k = inOffsets[u]; k < inOffsets[u + 1]; k++) {
+            int v = inSources[k];
+            if (clusterOf[v] < 0) {
+                clusterOf[v] = cluster;
+                queue[tail++] = v;
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Services sharing the part of their id before the first '-', '_' or '.' ("billing-api",
+     * "billing_db" → "billing"); an id without one is its own prefix.
+     */
+    private void groupByPrefix(int[] clusterOf, List<String> names) {
+        Map<String, Integer> index = new HashMap<>();
+        for (int u = 0; u < graph.size(); u++) {
+            String prefix = prefix(graph.id(u));
+            Integer cluster = index.putIfAbsent(prefix, names.size());
+            if (cluster == null) {
+                cluster = names.size();
+                names.add(prefix);
+            }
+            clusterOf[u] = cluster;
+        }
+    }
+
+    static String prefix(String id) {
+        for (int i = 1; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c == '-' || c == '_' || c == '.') return id.substring(0, i);
+        }
+        return id;
+    }
+
+    private static int[][] members(int[] clusterOf, int clusters) {
+        int[] start = new int[clusters + 1];
+        for (int c : clusterOf) start[c + 1]++;
+        for (int c = 0; c < clusters; c++) start[c + 1] += start[c];
+        int[][] members = new int[clusters][];
+        for (int c = 0; c < clusters; c++) members[c] = new int[start[c + 1] - start[c]];
+        int[] next = new int[clusters];
+        for (int u = 0; u < clusterOf.length; u++) members[clusterOf[u]][next[clusterOf[u]]++] = u;
+        return members;
+    }
+
+    /**
+     * {@code members} in breadth-first order over links inside the cluster (a name-prefix
+     * cluster need not be connected; each unvisited service starts a new walk).
+     */
+    private int[] breadthFirst(int[] members, int[] clusterOf) {
+        if (members.length == 1) return members;
+        int cluster = clusterOf[members[0]];
+        int[] order = new int[members.length];
+        int[] offsets = graph.linkOffsets();
+        int[] targets = graph.linkTargets();
+        int tail = 0;
+        for (int start : members) {
+            if (walked[start]) continue;
+            walked[start] = true;
+            int head = tail;
+            order[tail++] = start;
+            while (head < tail) {
+                int u = order[head++];
+                for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                    int v = targets[k];
+                    if (clusterOf[v] == cluster && !walked[v]) {
+                        walked[v] = true;
+                        order[tail++] = v;
+                    }
+                }
+                for (int k = inOffsets[u]; k < inOffsets[u + 1]; k++) {
+                    int v = inSources[k];
+                    if (clusterOf[v] == cluster && !walked[v]) {
+                        walked[v] = true;
+                        order[tail++] = v;
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Cuts {@code order} into consecutive runs of at most {@code maxShapes} shapes. Links are
+     * counted once per direction, which overcounts two-way links and so stays under the cap.
+     */
+    private List<int[]> cut(int[] order, int maxShapes) {
+        List<int[]> parts = new ArrayList<>();
+        int[] offsets = graph.linkOffsets();
+        int[] targets = graph.linkTargets();
+        int from = 0;
+        int shapes = 0;
+        for (int i = 0; i < order.length; i++) {
+            int u = order[i];
+            int cost = 2;
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                if (partOf[targets[k]] == parts.size()) cost++;
+            }
+            for (int k = inOffsets[u]; k < inOffsets[u + 1]; k++) {
+                if (partOf[inSources[k]] == parts.size()) cost++;
+            }
+            if (i > from && shapes + cost > maxShapes) {
+                parts.add(Arrays.copyOfRange(order, from, i));
+                from = i;
+                shapes = 2;
+            } else {
+                shapes += cost;
+            }
+            partOf[u] = parts.size();
+        }
+        parts.add(Arrays.copyOfRange(order, from, order.length));
+        for (int u : order) partOf[u] = -1;
+        return parts;
+    }
+
+    private int degree(int u) {
+        return graph.linkOffsets()[u + 1] - graph.linkOffsets()[u] + inOffsets[u + 1] - inOffsets[u];
+    }
+
+    /**
+     * Page names become the ids of the overview's boxes, so they must differ.
+     */
+    private static List<Page> uniquelyNamed(List<Page> pages) {
+        Set<String> seen = new HashSet<>();
+        List<Page> named = new ArrayList<>(pages.size());
+        for (Page page : pages) {
+            String name = page.name();
+            for (int n = 2; !seen.add(name); n++) {
+                name = page.name() + " " + n;
+            }
+            named.add(name.equals(page.name()) ? page : new Page(name, page.members()));
+        }
+        return named;
+    }
+}
@@ -0,0 +1,87 @@
+package com.repotodeck.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One file of a multi-file compose project, as read by {@link DockerParserService#parseFile}:
+ * the service fields the diagram needs plus the references that pull in other files.
+ * <p>
+ * A field is null when the file doesn't set it, which is what lets an override file change only
+ * what it mentions (see {@link ComposeProjectService}). Instances are immutable, so one parse of
+ * a shared base file can serve every project that uses it.
+ */
+record ComposeFile(List<Include> includes, Map<String, Service> services) {
+
+    /**
+     * One {@code include:} entry. Several paths form one project, merged like override files.
+     * ({@code project_directory} only moves paths the diagram doesn't use, so it isn't kept.)
+     */
+    record Include(List<String> paths) {
+    }
+
+    /**
+     * {@code extends:} - the service to start from, in {@code file} or (when null) the same file.
+     */
+    record Extends(String service, String file) {
+    }
+
+    record Service(String image, List<String> dependsOn, List<String> links, Map<String, String> labels,
+                   List<String> profiles, Extends extendsFrom) {
+    }
+
+    ComposeFile {
+        includes = List.copyOf(includes);
+        services = Collections.unmodifiableMap(new LinkedHashMap<>(services));
+    }
+
+    /**
+     * Reads the value of a top-level {@code include:}: a list of paths or of {@code {path: ...}}
+     * mappings, where path may itself be a list.
+     */
+    static List<Include> includes(Object value) {
+        if (value == null) return List.of();
+        if (!(value instanceof List<?> items)) throw new IllegalArgumentException("include must be a list");
+        List<Include> includes = new ArrayList<>();
+        for (Object item : items) {
+            if (item instanceof String path) {
+                includes.add(new Include(List.of(path)));
+            } else if (item instanceof Map<?, ?> map && map.get("path") != null) {
+                includes.add(new Include(strings(map.get("path"), "include path")));
+            } else {
+                throw new IllegalArgumentException("include entries need a path");
+            }
+        }
+        return includes;
+    }
+
+    /**
+     * {@code extends: base} or {@code extends: {service: base, file: other.yml}}.
+     */
+    static Extends extendsFrom(Object value) {
+        if (value instanceof String service) return new Extends(service, null);
+        if (value instanceof Map<?, ?> map && map.get("service") instanceof String service) {
+            return new Extends(service, map.get("file") instanceof String file ? file : null);
+        }
+        throw new IllegalArgumentException("extends needs a service name");
+    }
+
+    /**
+     * A scalar or a list of scalars.
+     */
+    static List<String> strings(Object value, String what) {
+        if (value instanceof String s) return List.of(s);
+        if (value instanceof List<?> list) {
+            List<String> strings = new ArrayList<>(list.size());
+            for (Object item : list) {
+                if (!(item instanceof String s)) throw new IllegalArgumentException(what + " must be a string or a list of strings");
+                strings.add(s);
+            }
+            return List.copyOf(strings);
+        }
+        throw new IllegalArgumentException(what + " must be a string or a list of strings");
+    }
+}
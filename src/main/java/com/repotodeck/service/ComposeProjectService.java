@@ -0,0 +1,540 @@
+package com.repotodeck.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.repotodeck.model.ComposeSource;
+import com.repotodeck.model.ServiceNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Turns a multi-file compose project (base file, override files, {@code include:},
+ * {@code extends:}, profiles) into the one service graph {@code docker compose config} would show.
+ * <p>
+ * Files are parsed in waves: the compose files first, then whatever they include or extend, each
+ * wave in parallel. Parses are memoized by content hash across requests, so a base file shared
+ * by many repositories is read once. Resolution then follows Compose's rules for the fields the
+ * diagram uses:
+ * <ul>
+ *     <li>override files and {@code extends} merge field by field: image is replaced, labels are
+ *     merged by key, {@code depends_on}, {@code links} and profiles are merged as sets;</li>
+ *     <li>{@code extends} is resolved within its file, recursively, before files are merged;</li>
+ *     <li>an included project is loaded on its own, and the including file may not redefine
+ *     its services;</li>
+ *     <li>services with profiles only take part when one of them is active ({@code *} activates
+ *     all); links to services that are not in the result are dropped;</li>
+ *     <li>variables in images ({@code $VAR}, {@code ${VAR:-default}}, ...) are substituted from the
+ *     {@code .env} file next to the first compose file. The server's own environment is never
+ *     used, so a variable without a value or default is drawn as written.</li>
+ * </ul>
+ * Relative paths are resolved against the directory of the file that mentions them.
+ */
+@Service
+public class ComposeProjectService {
+
+    static final List<String> DEFAULT_FILES =
+            List.of("compose.yaml", "compose.yml", "docker-compose.yaml", "docker-compose.yml");
+    static final List<String> DEFAULT_OVERRIDES = List.of("compose.override.yaml", "compose.override.yml",
+            "docker-compose.override.yaml", "docker-compose.override.yml");
+    static final String ENV_FILE = ".env";
+    private static final int MAX_DEPTH = 32;
+
+    private final DockerParserService dockerParserService;
+    private final int maxFiles;
+    private final long maxBytes;
+    private final Cache<String, ComposeFile> parsed;
+
+    public ComposeProjectService(DockerParserService dockerParserService,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${repotodeck.project.max-files:1000}") int maxFiles,
+                                 @Value("${repotodeck.project.max-bytes:33554432}") long maxBytes,
+                                 @Value("${repotodeck.project.memo-max-services:200000}") long memoMaxServices) {
+        this.dockerParserService = dockerParserService;
+        this.maxFiles = maxFiles;
+        this.maxBytes = maxBytes;
+        this.parsed = Caffeine.newBuilder()
+                .maximumWeight(memoMaxServices)
+                .<String, ComposeFile>weigher((key, file) -> 1 + file.services().size())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, parsed, "compose-files");
+    }
+
+    /**
+     * Reads the YAML and {@code .env} files of a ZIP upload (other entries are skipped) as sources
+     * named by path.
+     *
+     * @throws IllegalArgumentException beyond the file count or total size limit
+     */
+    public List<ComposeSource> readZip(InputStream in) throws IOException {
+        List<ComposeSource> sources = new ArrayList<>();
+        long total = 0;
+        try (ZipInputStream zip = new ZipInputStream(in)) {
+            for (ZipEntry entry; (entry = zip.getNextEntry()) != null; ) {
+                String name = entry.getName().replace('\\', '/');
+                String lower = name.toLowerCase(Locale.ROOT);
+                if (entry.isDirectory() || name.startsWith("__MACOSX/") || name.contains("/._") || name.startsWith("._")
+                        || !(lower.endsWith(".yml") || lower.endsWith(".yaml")
+                        || lower.equals(ENV_FILE) || lower.endsWith("/" + ENV_FILE))) {
+                    continue;
+                }
+                if (sources.size() >= maxFiles) {
+                    throw new IllegalArgumentException("Project exceeds the limit of " + maxFiles + " YAML files");
+                }
+                // Read at most one byte past the limit, so a zip bomb is never inflated in full
+                byte[] bytes = zip.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, maxBytes - total + 1));
+                total += bytes.length;
+                if (total > maxBytes) {
+                    throw new IllegalArgumentException("Project exceeds the limit of " + maxBytes + " bytes of YAML");
+                }
+                sources.add(new ComposeSource(name, new String(bytes, StandardCharsets.UTF_8)));
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Resolves the project and returns its classified services.
+     *
+     * @param sources      the project's files, named by path relative to the project root
+     * @param composeFiles the files to load, like {@code docker compose -f}; when empty, the
+     *                     standard compose file plus its override file if there is one
+     * @param profiles     active profiles
+     * @throws IllegalArgumentException for missing or cyclic references, conflicting includes or
+     *                                  invalid YAML (the message names the file)
+     */
+    public List<ServiceNode> load(List<ComposeSource> sources, List<String> composeFiles, Collection<String> profiles) {
+        if (sources == null || sources.isEmpty()) throw new IllegalArgumentException("Project contains no files");
+        if (sources.size() > maxFiles) {
+            throw new IllegalArgumentException("Project exceeds the limit of " + maxFiles + " files");
+        }
+        Map<String, String> files = new HashMap<>();
+        for (ComposeSource source : sources) {
+            if (source.name() == null || source.yaml() == null) throw new IllegalArgumentException("Every file needs a name and content");
+            if (files.put(normalize("", source.name()), source.yaml()) != null) {
+                throw new IllegalArgumentException("Duplicate file " + source.name());
+            }
+        }
+        List<String> entryFiles = new ArrayList<>();
+        if (composeFiles == null || composeFiles.isEmpty()) {
+            files = stripTopDirectory(files);
+            entryFiles.addAll(defaultFiles(files));
+        } else {
+            for (String file : composeFiles) entryFiles.add(normalize("", file));
+        }
+        for (String file : entryFiles) {
+            if (!files.containsKey(file)) throw new IllegalArgumentException("Compose file " + file + " is not in the project");
+        }
+
+        Resolver resolver = new Resolver(files);
+        resolver.parseReachable(entryFiles);
+        Map<String, ComposeFile.Service> services = resolver.project(entryFiles, new ArrayDeque<>());
+        Map<String, String> env = environment(files.get(normalize(directory(entryFiles.get(0)), ENV_FILE)));
+        return dockerParserService.classify(toNodes(services, profiles == null ? Set.of() : Set.copyOf(profiles), env));
+    }
+
+    // --- RESOLUTION ---
+
+    /**
+     * State of one {@link #load}: the project's files, their parses and resolved extends chains.
+     */
+    private final class Resolver {
+
+        private final Map<String, String> files;
+        private final Map<String, ComposeFile> parses = new ConcurrentHashMap<>();
+        private final Map<String, ComposeFile.Service> extended = new HashMap<>();
+
+        Resolver(Map<String, String> files) {
+            this.files = files;
+        }
+
+        /**
+         * Parses {@code roots} and everything they reference, one wave of new files at a time.
+         */
+        void parseReachable(List<String> roots) {
+            Set<String> wave = new LinkedHashSet<>(roots);
+            while (!wave.isEmpty()) {
+                wave.parallelStream().forEach(path -> parses.put(path, parse(path)));
+                Set<String> next = new LinkedHashSet<>();
+                for (String path : wave) {
+                    for (String reference : references(path)) {
+                        if (!parses.containsKey(reference)) next.add(reference);
+                    }
+                }
+                wave = next;
+            }
+        }
+
+        private ComposeFile parse(String path) {
+            String yaml = files.get(path);
+            try {
+                return parsed.get(sha256(yaml), key -> dockerParserService.parseFile(yaml));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("'" + path + "': " + e.getMessage(), e);
+            }
+        }
+
+        private List<String> references(String path) {
+            ComposeFile file = parses.get(path);
+            List<String> references = new ArrayList<>();
+            for (ComposeFile.Include include : file.includes()) {
+                for (String included : include.paths()) references.add(file(path, included, "includes"));
+            }
+            for (Map.Entry<String, ComposeFile.Service> service : file.services().entrySet()) {
+                ComposeFile.Extends base = service.getValue().extendsFrom();
+                if (base != null && base.file() != null) references.add(file(path, base.file(), "extends"));
+            }
+            return references;
+        }
+
+        private String file(String from, String reference, String how) {
+            String path = normalize(directory(from), reference);
+            if (!files.containsKey(path)) {
+                throw new IllegalArgumentException("'" + from + "' " + how + " " + reference + ", which is not in the project");
+            }
+            return path;
+        }
+
+        /**
+         * {@code paths} merged like {@code docker compose -f a -f b}.
+         */
+        Map<String, ComposeFile.Service> project(List<String> paths, Deque<String> including) {
+            Map<String, ComposeFile.Service> services = new LinkedHashMap<>();
+            for (String path : paths) {
+                for (Map.Entry<String, ComposeFile.Service> service : loadFile(path, including).entrySet()) {
+                    services.merge(service.getKey(), service.getValue(), ComposeProjectService::merge);
+                }
+            }
+            return services;
+        }
+
+        /**
+         * One file with its includes and extends applied.
+         */
+        private Map<String, ComposeFile.Service> loadFile(String path, Deque<String> including) {
+            if (including.contains(path)) throw new IllegalArgumentException("Include cycle: " + String.join(" -> ", including) + " -> " + path);
+            if (including.size() >= MAX_DEPTH) throw new IllegalArgumentException("Includes nested too deeply at " + path);
+            ComposeFile file = parses.get(path);
+
+            Map<String, ComposeFile.Service> services = new LinkedHashMap<>();
+            Map<String, String> origin = new HashMap<>();
+            including.addLast(path);
+            for (ComposeFile.Include include : file.includes()) {
+                List<String> paths = new ArrayList<>();
+                for (String included : include.paths()) paths.add(file(path, included, "includes"));
+                for (Map.Entry<String, ComposeFile.Service> service : project(paths, including).entrySet()) {
+                    String previous = origin.putIfAbsent(service.getKey(), paths.get(0));
+                    if (previous != null) {
+                        throw new IllegalArgumentException("Service " + service.getKey() + " is included from both "
+                                + previous + " and " + paths.get(0));
+                    }
+                    services.put(service.getKey(), service.getValue());
+                }
+            }
+            including.removeLast();
+
+            for (String name : file.services().keySet()) {
+                if (origin.containsKey(name)) {
+                    throw new IllegalArgumentException("'" + path + "' redefines service " + name
+                            + ", which is included from " + origin.get(name));
+                }
+                services.put(name, extended(path, name, new ArrayList<>()));
+            }
+            return services;
+        }
+
+        /**
+         * Service {@code name} of {@code path} with its extends chain merged in.
+         */
+        private ComposeFile.Service extended(String path, String name, List<String> chain) {
+            String key = path + "#" + name;
+            ComposeFile.Service done = extended.get(key);
+            if (done != null) return done;
+            if (chain.contains(key)) throw new IllegalArgumentException("Extends cycle: " + String.join(" -> ", chain) + " -> " + key);
+            if (chain.size() >= MAX_DEPTH) throw new IllegalArgumentException("Extends nested too deeply at " + key);
+
+            ComposeFile.Service service = parses.get(path).services().get(name);
+            if (service == null) {
+                String from = chain.isEmpty() ? path : chain.get(chain.size() - 1);
+                throw new IllegalArgumentException("'" + from + "' extends " + name + ", which " + path + " does not define");
+            }
+            ComposeFile.Extends base = service.extendsFrom();
+            if (base != null) {
+                String basePath = base.file() == null ? path : file(path, base.file(), "extends");
+                chain.add(key);
+                service = merge(extended(basePath, base.service(), chain), service);
+            }
+            extended.put(key, service);
+            return service;
+        }
+    }
+
+    /**
+     * {@code override} on top of {@code base}, as for override files and extends.
+     */
+    static ComposeFile.Service merge(ComposeFile.Service base, ComposeFile.Service override) {
+        Map<String, String> labels = null;
+        if (base.labels() != null || override.labels() != null) {
+            labels = new LinkedHashMap<>();
+            if (base.labels() != null) labels.putAll(base.labels());
+            if (override.labels() != null) labels.putAll(override.labels());
+        }
+        return new ComposeFile.Service(
+                override.image() != null ? override.image() : base.image(),
+                union(base.dependsOn(), override.dependsOn()),
+                union(base.links(), override.links()),
+                labels,
+                union(base.profiles(), override.profiles()),
+                null);
+    }
+
+    private static List<String> union(List<String> base, List<String> override) {
+        if (base == null) return override;
+        if (override == null) return base;
+        Set<String> union = new LinkedHashSet<>(base);
+        union.addAll(override);
+        return List.copyOf(union);
+    }
+
+    private static List<ServiceNode> toNodes(Map<String, ComposeFile.Service> services, Set<String> profiles,
+                                             Map<String, String> env) {
+        Set<String> active = new LinkedHashSet<>();
+        for (Map.Entry<String, ComposeFile.Service> service : services.entrySet()) {
+            List<String> own = service.getValue().profiles();
+            if (own == null || own.isEmpty() || profiles.contains("*") || own.stream().anyMatch(profiles::contains)) {
+                active.add(service.getKey());
+            }
+        }
+        List<ServiceNode> nodes = new ArrayList<>(active.size());
+        for (String id : active) {
+            ComposeFile.Service service = services.get(id);
+            ServiceNode node = new ServiceNode();
+            node.setId(id);
+            String image = service.image() != null ? interpolate(service.image(), env) : "";
+            node.setImage(image.isBlank() ? "unknown" : image);
+            if (service.labels() != null) node.setLabels(new LinkedHashMap<>(service.labels()));
+            Set<String> links = new TreeSet<>();
+            if (service.dependsOn() != null) links.addAll(service.dependsOn());
+            if (service.links() != null) {
+                // "service:alias" links to service
+                for (String link : service.links()) {
+                    int colon = link.indexOf(':');
+                    links.add(colon < 0 ? link : link.substring(0, colon));
+                }
+            }
+            links.retainAll(active);
+            node.setLinks(new ArrayList<>(links));
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    // --- VARIABLES ---
+
+    /**
+     * Variables of a {@code .env} file: {@code NAME=value} lines, optionally prefixed with
+     * {@code export}, with quotes around the value removed. No file means no variables.
+     */
+    static Map<String, String> environment(String envFile) {
+        Map<String, String> env = new HashMap<>();
+        if (envFile == null) return env;
+        for (String line : envFile.split("\\R")) {
+            String entry = line.strip();
+            if (entry.startsWith("export ")) entry = entry.substring("export ".length()).strip();
+            int equals = entry.indexOf('=');
+            if (entry.startsWith("#") || equals <= 0) continue;
+            String value = entry.substring(equals + 1).strip();
+            if (value.length() >= 2 && (value.charAt(0) == '"' || value.charAt(0) == '\'')
+                    && value.charAt(value.length() - 1) == value.charAt(0)) {
+                value = value.substring(1, value.length() - 1);
+            } else {
+                int comment = value.indexOf(" #");
+                if (comment >= 0) value = value.substring(0, comment).strip();
+            }
+            env.put(entry.substring(0, equals).strip(), value);
+        }
+        return env;
+    }
+
+    /**
+     * {@code value} with its variables substituted as docker compose does: {@code $VAR},
+     * {@code ${VAR}}, {@code ${VAR:-default}} / {@code ${VAR-default}} (default if unset or empty
+     * / unset), {@code ${VAR:+other}} / {@code ${VAR+other}} (the reverse), {@code ${VAR:?error}}
+     * / {@code ${VAR?error}}, and {@code $$} for a literal {@code $}. Defaults may hold variables
+     * themselves. A variable that has no value and no default is kept as written, and so is the
+     * rest of a malformed reference.
+     */
+    static String interpolate(String value, Map<String, String> env) {
+        if (value.indexOf('$') < 0) return value;
+        StringBuilder out = new StringBuilder(value.length());
+        int i = 0;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            if (c != '$' || i + 1 == value.length()) {
+                out.append(c);
+                i++;
+            } else if (value.charAt(i + 1) == '$') {
+                out.append('$');
+                i += 2;
+            } else if (value.charAt(i + 1) == '{') {
+                int close = closingBrace(value, i + 2);
+                if (close < 0) {
+                    out.append(value, i, value.length());
+                    break;
+                }
+                out.append(substitute(value, i, close, env));
+                i = close + 1;
+            } else {
+                int end = nameEnd(value, i + 1);
+                String name = value.substring(i + 1, end);
+                String set = name.isEmpty() ? null : env.get(name);
+                out.append(set != null ? set : value.substring(i, end));
+                i = Math.max(end, i + 1);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * The substitution for the reference {@code ${...}} from {@code start} to the brace at {@code close}.
+     */
+    private static String substitute(String value, int start, int close, Map<String, String> env) {
+        String reference = value.substring(start, close + 1);
+        int nameEnd = nameEnd(value, start + 2);
+        if (nameEnd == start + 2) return reference;
+        String set = env.get(value.substring(start + 2, nameEnd));
+        if (nameEnd == close) return set != null ? set : reference;
+
+        boolean colon = value.charAt(nameEnd) == ':';
+        int operator = colon ? nameEnd + 1 : nameEnd;
+        if (operator >= close) return reference;
+        String argument = value.substring(operator + 1, close);
+        boolean present = set != null && !(colon && set.isEmpty());
+        return switch (value.charAt(operator)) {
+            case '-' -> present ? set : interpolate(argument, env);
+            case '+' -> present ? interpolate(argument, env) : "";
+            case '?' -> present ? set : reference;
+            default -> reference;
+        };
+    }
+
+    private static int nameEnd(String value, int from) {
+        int i = from;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            if (!(c == '_' || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (i > from && c >= '0' && c <= '9'))) break;
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Index of the '}' closing a reference whose body starts at {@code from}, or -1.
+     */
+    private static int closingBrace(String value, int from) {
+        int depth = 1;
+        for (int i = from; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '{') depth++;
+            if (c == '}' && --depth == 0) return i;
+        }
+        return -1;
+    }
+
+    // --- FILES ---
+
+    /**
+     * The standard compose file and, if present, its override file.
+     */
+    private static List<String> defaultFiles(Map<String, String> files) {
+        List<String> found = new ArrayList<>();
+        DEFAULT_FILES.stream().filter(files::containsKey).findFirst().ifPresent(found::add);
+        if (found.isEmpty()) {
+            throw new IllegalArgumentException("No compose file found; expected one of " + DEFAULT_FILES
+                    + " at the top level, or name the files explicitly");
+        }
+        DEFAULT_OVERRIDES.stream().filter(files::containsKey).findFirst().ifPresent(found::add);
+        return found;
+    }
+
+    /**
+     * Archives of a repository usually wrap it in one directory ("repo-main/"); look inside it
+     * when there is no compose file at the top.
+     */
+    private static Map<String, String> stripTopDirectory(Map<String, String> files) {
+        if (DEFAULT_FILES.stream().anyMatch(files::containsKey)) return files;
+        String top = null;
+        for (String path : files.keySet()) {
+            int slash = path.indexOf('/');
+            if (slash < 0) return files;
+            String dir = path.substring(0, slash + 1);
+            if (top == null) top = dir;
+            else if (!top.equals(dir)) return files;
+        }
+        Map<String, String> stripped = new HashMap<>();
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            stripped.put(file.getKey().substring(top.length()), file.getValue());
+        }
+        return stripped;
+    }
+
+    private static String directory(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+
+    /**
+     * {@code path} relative to directory {@code base} of the project, as a normalized relative path.
+     */
+    static String normalize(String base, String path) {
+        String p = path.replace('\\', '/').trim();
+        if (p.startsWith("/") || (p.length() > 1 && p.charAt(1) == ':')) {
+            throw new IllegalArgumentException("Path " + path + " must be relative to the project");
+        }
+        Deque<String> segments = new ArrayDeque<>();
+        for (String segment : (base.isEmpty() ? p : base + "/" + p).split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) continue;
+            if (segment.equals("..")) {
+                if (segments.isEmpty()) throw new IllegalArgumentException("Path " + path + " leaves the project");
+                segments.removeLast();
+            } else {
+                segments.addLast(segment);
+            }
+        }
+        if (segments.isEmpty()) throw new IllegalArgumentException("Path " + path + " names no file");
+        return String.join("/", segments);
+    }
+
+    private static String sha256(String content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
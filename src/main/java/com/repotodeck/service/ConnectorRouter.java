@@ -0,0 +1,269 @@
+package com.repotodeck.service;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Orthogonal routes for connectors that go around service boxes instead of through them.
+ * <p>
+ * Every layout we draw (tier grid, layered engine, rows appended by {@link DeckUpdateService})
+ * puts boxes in horizontal rows, so the spatial index is a list of bands rather than a general
+ * R-tree: boxes are swept by their top edge into bands of vertically overlapping boxes, and each
+ * band keeps the sorted, merged x-intervals its boxes block (widened by {@code clearance}). The
+ * space between two bands is a free horizontal channel. Finding whether a vertical segment can
+ * cross a band, and the nearest gap if not, is a binary search in that band.
+ * <p>
+ * A route leaves the bottom of the upper box and enters the top of the lower one. Where a band
+ * on the way is blocked, it jogs sideways in the channel above that band to the gap closest to
+ * its way to the target; the last jog, in the channel above the target, lines it up with the
+ * target's center. Links within one band go straight across when nothing is in between and
+ * otherwise loop through the channel below. Because links from one box share its port and stem,
+ * and links into one box share the last leg, parallel links overlap into a trunk rather than
+ * fanning out across the slide. {@link #links} already merged the two directions of a pair.
+ * <p>
+ * A route costs O(bands crossed x log boxes per band); callers check their time budget between
+ * routes and draw the rest with {@link #straight}.
+ */
+final class ConnectorRouter {
+
+    /**
+     * One connector to draw between the services numbered {@code from} -> {@code to} in their
+     * {@link ServiceGraph}, with an arrowhead at both ends when {@code twoWay} (both services
+     * link each other).
+     */
+    record Link(int from, int to, boolean twoWay) {
+    }
+
+    private final double clearance;
+    private final double[] top;
+    private final double[] bottom;
+    private final double[][] blockedFrom;
+    private final double[][] blockedTo;
+
+    ConnectorRouter(Collection<Rectangle2D.Double> boxes, double clearance) {
+        this.clearance = clearance;
+        Rectangle2D.Double[] sorted = boxes.toArray(new Rectangle2D.Double[0]);
+        Arrays.sort(sorted, Comparator.comparingDouble(Rectangle2D.Double::getMinY));
+
+        List<double[]> bands = new ArrayList<>();
+        List<double[][]> intervals = new ArrayList<>();
+        for (int start = 0, end; start < sorted.length; start = end) {
+            double bandBottom = sorted[start].getMaxY();
+            end = start + 1;
+            while (end < sorted.length && sorted[end].getMinY() < bandBottom) {
+                bandBottom = Math.max(bandBottom, sorted[end].getMaxY());
+                end++;
+            }
+            bands.add(new double[]{sorted[start].getMinY(), bandBottom});
+            intervals.add(mergedIntervals(sorted, start, end, clearance));
+        }
+        int n = bands.size();
+        top = new double[n];
+        bottom = new double[n];
+        blockedFrom = new double[n][];
+        blockedTo = new double[n][];
+        for (int i = 0; i < n; i++) {
+            top[i] = bands.get(i)[0];
+            bottom[i] = bands.get(i)[1];
+            blockedFrom[i] = intervals.get(i)[0];
+            blockedTo[i] = intervals.get(i)[1];
+        }
+    }
+
+    /**
+     * The connectors for the links of {@code graph}, in input order. The graph already dropped
+     * self links and repeated links; a link whose reverse is also there becomes one two-way
+     * connector, at the place of the first of the two.
+     */
+    static List<Link> links(ServiceGraph graph) {
+        int[] offsets = graph.linkOffsets();
+        int[] targets = graph.linkTargets();
+        int[] sorted = targets.clone();
+        for (int u = 0; u < graph.size(); u++) Arrays.sort(sorted, offsets[u], offsets[u + 1]);
+
+        List<Link> links = new ArrayList<>(targets.length);
+        for (int u = 0; u < graph.size(); u++) {
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                int v = targets[k];
+                boolean reverse = Arrays.binarySearch(sorted, offsets[v], offsets[v + 1], u) >= 0;
+                if (reverse && v < u) continue; // already drawn as the two-way link v <-> u
+                links.add(new Link(u, v, reverse));
+            }
+        }
+        return links;
+    }
+
+    /**
+     * The route from {@code from} to {@code to} as x0, y0, x1, y1, ...: it starts on the border
+     * of {@code from}, ends on the border of {@code to}, and every segment is horizontal or vertical.
+     */
+    double[] route(Rectangle2D.Double from, Rectangle2D.Double to) {
+        int a = band(from);
+        int b = band(to);
+        if (a < b) return down(from, to, a, b);
+        if (a > b) return reverse(down(to, from, b, a));
+        return across(from, to, a);
+    }
+
+    /**
+     * The unrouted connector between the facing edges of two boxes (bottom to top, top to
+     * bottom, or center to center side by side).
+     */
+    static double[] straight(Rectangle2D.Double from, Rectangle2D.Double to) {
+        double startX = from.getCenterX();
+        double endX = to.getCenterX();
+        if (to.getMinY() >= from.getMaxY()) { // Target Below
+            return new double[]{startX, from.getMaxY(), endX, to.getMinY()};
+        }
+        if (to.getMaxY() <= from.getMinY()) { // Target Above
+            return new double[]{startX, from.getMinY(), endX, to.getMaxY()};
+        }
+        return new double[]{startX, from.getCenterY(), endX, to.getCenterY()}; // Side-by-Side
+    }
+
+    // --- ROUTES ---
+
+    /**
+     * {@code to} is in a lower band than {@code from}.
+     */
+    private double[] down(Rectangle2D.Double from, Rectangle2D.Double to, int fromBand, int toBand) {
+        Points points = new Points();
+        double x = from.getCenterX();
+        double targetX = to.getCenterX();
+        points.add(x, from.getMaxY());
+        for (int band = fromBand + 1; band < toBand; band++) {
+            int blocked = blockedAt(band, x);
+            if (blocked < 0) continue;
+            double y = channelAbove(band);
+            double free = detour(band, blocked, x, targetX);
+            points.add(x, y);
+            points.add(free, y);
+            x = free;
+        }
+        if (x != targetX) {
+            double y = channelAbove(toBand);
+            points.add(x, y);
+            points.add(targetX, y);
+        }
+        points.add(targetX, to.getMinY());
+        return points.toArray();
+    }
+
+    /**
+     * Both boxes are in one band: straight across if they overlap vertically and nothing sits
+     * between them, else a loop through the channel below the band.
+     */
+    private double[] across(Rectangle2D.Double from, Rectangle2D.Double to, int band) {
+        boolean rightwards = to.getCenterX() >= from.getCenterX();
+        Rectangle2D.Double left = rightwards ? from : to;
+        Rectangle2D.Double right = rightwards ? to : from;
+        double overlapTop = Math.max(from.getMinY(), to.getMinY());
+        double overlapBottom = Math.min(from.getMaxY(), to.getMaxY());
+        if (overlapTop < overlapBottom && left.getMaxX() <= right.getMinX()
+                && blockedAt(band, right.getCenterX()) - blockedAt(band, left.getCenterX()) <= 1) {
+            double y = (overlapTop + overlapBottom) / 2;
+            return rightwards
+                    ? new double[]{from.getMaxX(), y, to.getMinX(), y}
+                    : new double[]{from.getMinX(), y, to.getMaxX(), y};
+        }
+        double y = band + 1 < top.length ? channelAbove(band + 1) : bottom[band] + 2 * clearance;
+        Points points = new Points();
+        points.add(from.getCenterX(), from.getMaxY());
+        points.add(from.getCenterX(), y);
+        points.add(to.getCenterX(), y);
+        points.add(to.getCenterX(), to.getMaxY());
+        return points.toArray();
+    }
+
+    /**
+     * Where a route at {@code x} crosses {@code band} instead: the middle of the gap left or
+     * right of blocked interval {@code i} (or just past the outermost box), whichever makes the
+     * shorter way to {@code targetX}.
+     */
+    private double detour(int band, int i, double x, double targetX) {
+        double[] from = blockedFrom[band];
+        double[] to = blockedTo[band];
+        double left = i > 0 ? (to[i - 1] + from[i]) / 2 : from[i] - clearance;
+        double right = i + 1 < from.length ? (to[i] + from[i + 1]) / 2 : to[i] + clearance;
+        double viaLeft = Math.abs(x - left) + Math.abs(left - targetX);
+        double viaRight = Math.abs(x - right) + Math.abs(right - targetX);
+        return viaLeft <= viaRight ? left : right;
+    }
+
+    // --- INDEX ---
+
+    private static double[][] mergedIntervals(Rectangle2D.Double[] boxes, int start, int end, double clearance) {
+        Rectangle2D.Double[] band = Arrays.copyOfRange(boxes, start, end);
+        Arrays.sort(band, Comparator.comparingDouble(Rectangle2D.Double::getMinX));
+        double[] from = new double[band.length];
+        double[] to = new double[band.length];
+        int n = 0;
+        for (Rectangle2D.Double box : band) {
+            double lo = box.getMinX() - clearance;
+            double hi = box.getMaxX() + clearance;
+            if (n > 0 && lo <= to[n - 1]) {
+                to[n - 1] = Math.max(to[n - 1], hi);
+            } else {
+                from[n] = lo;
+                to[n] = hi;
+                n++;
+            }
+        }
+        return new double[][]{Arrays.copyOf(from, n), Arrays.copyOf(to, n)};
+    }
+
+    /**
+     * The band whose top is the last at or above the top of {@code box}.
+     */
+    private int band(Rectangle2D.Double box) {
+        int i = Arrays.binarySearch(top, box.getMinY());
+        if (i < 0) i = -i - 2;
+        return Math.max(0, i);
+    }
+
+    /**
+     * Index of the blocked interval of {@code band} that contains {@code x}, or -1 if x is free.
+     */
+    private int blockedAt(int band, double x) {
+        double[] from = blockedFrom[band];
+        int i = Arrays.binarySearch(from, x);
+        if (i < 0) i = -i - 2;
+        return i >= 0 && x < blockedTo[band][i] ? i : -1;
+    }
+
+    private double channelAbove(int band) {
+        return (bottom[band - 1] + top[band]) / 2;
+    }
+
+    private static double[] reverse(double[] points) {
+        double[] reversed = new double[points.length];
+        for (int i = 0; i < points.length; i += 2) {
+            reversed[points.length - 2 - i] = points[i];
+            reversed[points.length - 1 - i] = points[i + 1];
+        }
+        return reversed;
+    }
+
+    /**
+     * Growing x, y list that skips repeated points.
+     */
+    private static final class Points {
+        private double[] xy = new double[8];
+        private int size;
+
+        void add(double x, double y) {
+            if (size > 0 && xy[size - 2] == x && xy[size - 1] == y) return;
+            if (size == xy.length) xy = Arrays.copyOf(xy, size * 2);
+            xy[size++] = x;
+            xy[size++] = y;
+        }
+
+        double[] toArray() {
+            return Arrays.copyOf(xy, size);
+        }
+    }
+}
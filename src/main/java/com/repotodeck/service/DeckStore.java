@@ -0,0 +1,219 @@
+package com.repotodeck.service;
+
+import com.repotodeck.model.RenderJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * File-backed store for {@link RenderJobService}: per job a {@code .job} file with its state, the
+ * {@code .yaml} input until the render is done, and the finished {@code .pptx}.
+ * <p>
+ * Every file is written to a temporary name and moved into place, so a crash leaves either the
+ * old or the new version and the store can be reloaded as-is after a restart. Decks are never
+ * read onto the heap; {@link #transfer} hands file ranges to the target channel.
+ */
+@Service
+public class DeckStore {
+
+    private static final Logger log = LoggerFactory.getLogger(DeckStore.class);
+
+    private static final String JOB = ".job";
+    private static final String INPUT = ".yaml";
+    private static final String DECK = ".pptx";
+    private static final String TEMP = ".tmp";
+
+    // Ids become file names; anything but the UUIDs we hand out never reaches the file system
+    private static final Pattern VALID_ID =
+            Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+    @FunctionalInterface
+    public interface DeckWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private final Path directory;
+
+    public DeckStore(@Value("${repotodeck.jobs.directory:${java.io.tmpdir}/repotodeck-jobs}") String directory) throws IOException {
+        this.directory = Files.createDirectories(Path.of(directory));
+    }
+
+    public static String newId() {
+        return UUID.randomUUID().toString();
+    }
+
+    public static boolean isValidId(String id) {
+        return id != null && VALID_ID.matcher(id).matches();
+    }
+
+    public void saveInput(String id, String yamlContent) throws IOException {
+        writeAtomically(file(id, INPUT), out -> out.write(yamlContent.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public String readInput(String id) throws IOException {
+        return Files.readString(file(id, INPUT), StandardCharsets.UTF_8);
+    }
+
+    public void deleteInput(String id) throws IOException {
+        Files.deleteIfExists(file(id, INPUT));
+    }
+
+    public void save(RenderJob job) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("id", job.id());
+        properties.setProperty("state", job.state().name());
+        properties.setProperty("cacheKey", job.cacheKey());
+        properties.setProperty("services", String.valueOf(job.services()));
+        properties.setProperty("createdAt", job.createdAt().toString());
+        if (job.finishedAt() != null) properties.setProperty("finishedAt", job.finishedAt().toString());
+        properties.setProperty("bytes", String.valueOf(job.bytes()));
+        if (job.error() != null) properties.setProperty("error", job.error());
+
+        StringWriter text = new StringWriter();
+        properties.store(text, null);
+        writeAtomically(file(job.id(), JOB), out -> out.write(text.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Every job in the store. Leftover temporary files of an interrupted write are removed, and
+     * so are jobs whose state file can't be read.
+     */
+    public List<RenderJob> loadAll() throws IOException {
+        List<RenderJob> jobs = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path path : files) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(TEMP) && isValidId(name.substring(0, Math.max(0, name.indexOf('.'))))) {
+                    Files.deleteIfExists(path);
+                } else if (name.endsWith(JOB)) {
+                    String id = name.substring(0, name.length() - JOB.length());
+                    if (!isValidId(id)) continue;
+                    try {
+                        jobs.add(load(path));
+                    } catch (IOException | RuntimeException e) {
+                        log.atWarn().setMessage("Dropping unreadable job").addKeyValue("jobId", id)
+                                .addKeyValue("error", e.getMessage()).log();
+                        delete(id);
+                    }
+                }
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Writes the deck of job {@code id}; it only becomes visible once {@code writer} returned.
+     *
+     * @return size of the deck
+     */
+    public long writeDeck(String id, DeckWriter writer) throws IOException {
+        Path deck = file(id, DECK);
+        writeAtomically(deck, writer);
+        return Files.size(deck);
+    }
+
+    public Path deckPath(String id) {
+        return file(id, DECK);
+    }
+
+    /**
+     * Removes every file of job {@code id}. An open channel on the deck keeps working until closed.
+     */
+    public void delete(String id) {
+        for (String suffix : List.of(JOB, INPUT, DECK)) {
+            try {
+                Files.deleteIfExists(file(id, suffix));
+                Files.deleteIfExists(file(id, suffix + TEMP));
+            } catch (IOException e) {
+                log.atWarn().setMessage("Could not delete job file").addKeyValue("jobId", id)
+                        .addKeyValue("file", id + suffix).addKeyValue("error", e.getMessage()).log();
+            }
+        }
+    }
+
+    /**
+     * Copies {@code length} bytes from {@code position} of {@code deck} with
+     * {@link FileChannel#transferTo}, which lets the kernel move the data when the target is a
+     * file or socket, and at worst goes through a small transfer buffer instead of the whole deck.
+     */
+    public static void transfer(FileChannel deck, long position, long length, WritableByteChannel target) throws IOException {
+        while (length > 0) {
+            long sent = deck.transferTo(position, length, target);
+            if (sent <= 0) {
+                throw new EOFException("Deck ended at " + position + " with " + length + " bytes left");
+            }
+            position += sent;
+            length -= sent;
+        }
+    }
+
+    private Path file(String id, String suffix) {
+        if (!isValidId(id)) {
+            throw new IllegalArgumentException("Invalid job id");
+        }
+        return directory.resolve(id + suffix);
+    }
+
+    private static void writeAtomically(Path target, DeckWriter writer) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + TEMP);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024)) {
+                writer.write(out);
+                out.flush();
+                channel.force(false);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private static RenderJob load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        String finishedAt = properties.getProperty("finishedAt");
+        return new RenderJob(
+                required(properties, "id"),
+                RenderJob.State.valueOf(required(properties, "state")),
+                required(properties, "cacheKey"),
+                Integer.parseInt(required(properties, "services")),
+                Instant.parse(required(properties, "createdAt")),
+                finishedAt != null ? Instant.parse(finishedAt) : null,
+                Long.parseLong(properties.getProperty("bytes", "0")),
+                properties.getProperty("error"));
+    }
+
+    private static String required(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null) throw new IllegalArgumentException("Missing " + key);
+        return value;
+    }
+}
@@ -0,0 +1,653 @@
+package com.repotodeck.service;
+
+import com.repotodeck.model.ServiceNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Re-renders a deck for a new revision of its compose file by patching the previous deck
+ * instead of laying it out and drawing it again.
+ * <p>
+ * The previous slide is read back through its shape names (see {@link ShapeNames}): node ids,
+ * image lines, styles and boxes, plus the link behind every connector. That graph is diffed
+ * against the new one and only what changed is touched:
+ * <ul>
+ *     <li>shapes of unchanged nodes and links are copied verbatim, so positions (and any manual
+ *     touch-ups) stay exactly where they were;</li>
+ *     <li>changed nodes (image line or tier) are re-stamped in place through the template renderer;</li>
+ *     <li>new nodes go into rows under the existing drawing; new links are routed around every
+ *     box (see {@link ConnectorRouter}) and drawn under the nodes;</li>
+ *     <li>connectors of links that are gone are dropped.</li>
+ * </ul>
+ * With highlighting on, added nodes get a solid green ring and removed ones stay on the slide as
+ * ghosts inside a dashed red ring. Both are relative to the previous revision, so the next
+ * update drops them again.
+ * <p>
+ * Nothing else is recompressed: the other package parts are copied as compressed bytes, and so
+ * are the chunks of {@code slide1.xml} that lie inside a run of kept shapes (see {@link DeckZip}).
+ * Only the chunks around a change are deflated again; a slide that wasn't written in chunks (POI
+ * renderer, older versions) is deflated in full.
+ * <p>
+ * {@link #plan} reports a deck as not patchable when the result would not be faithful: no named
+ * shapes (drawn by an older version or by hand), unrouted connectors of an older version, several
+ * slides, templates disabled, text the templates can't represent, too much of the graph changed,
+ * or no room left for the additions. Callers render those from scratch.
+ */
+@Service
+public class DeckUpdateService {
+
+    private static final Pattern SLIDE = Pattern.compile("ppt/slides/slide\\d+\\.xml");
+    private static final Pattern PAGE = Pattern.compile("<p:sldSz cx=\"(\\d+)\" cy=\"(\\d+)\"");
+    private static final String SHAPE_START = "<p:sp>";
+    private static final String SHAPE_END = "</p:sp>";
+    private static final String CONNECTOR_START = "<p:cxnSp>";
+    private static final String CONNECTOR_END = "</p:cxnSp>";
+    private static final String CNVPR = "<p:cNvPr ";
+    private static final String FILL = "<a:solidFill><a:srgbClr val=\"";
+    private static final String TEXT_START = "<a:t>";
+    private static final String TEXT_END = "</a:t>";
+    private static final double EMU_PER_POINT = 12700.0;
+    private static final int MAX_PARTS = 1000;
+
+    private final PptGeneratorService pptGeneratorService;
+    private final PipelineMetrics metrics;
+    private final long maxDeckBytes;
+    private final double maxChangeRatio;
+
+    public DeckUpdateService(PptGeneratorService pptGeneratorService,
+                             PipelineMetrics metrics,
+                             @Value("${repotodeck.update.max-deck-bytes:67108864}") long maxDeckBytes,
+                             @Value("${repotodeck.update.max-change-ratio:0.5}") double maxChangeRatio) {
+        this.pptGeneratorService = pptGeneratorService;
+        this.metrics = metrics;
+        this.maxDeckBytes = maxDeckBytes;
+        this.maxChangeRatio = maxChangeRatio;
+    }
+
+    /**
+     * What changed between the previous deck and the new revision. Links are counted, nodes
+     * listed by id in the order of the new (added, changed) or old (removed) graph.
+     */
+    public record Diff(List<String> added, List<String> removed, List<String> changed,
+                       int linksAdded, int linksRemoved) {
+
+        public boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty() && changed.isEmpty() && linksAdded == 0 && linksRemoved == 0;
+        }
+
+        /**
+         * One-line form for a response header.
+         */
+        public String summary() {
+            return "added=" + added.size() + "; removed=" + removed.size() + "; changed=" + changed.size()
+                    + "; links-added=" + linksAdded + "; links-removed=" + linksRemoved;
+        }
+    }
+
+    /**
+     * The result of reading and diffing a previous deck. When {@link #patchable()} is false,
+     * {@link #reason()} says why and the deck has to be rendered from scratch.
+     */
+    public static final class Plan {
+
+        private final String reason;
+        private Diff diff;
+        private List<DeckZip.Entry> parts;
+        private DeckZip.Inflated slide;
+        private List<Shape> shapes;
+        private List<SlideLayout.Connector> newConnectors;
+        private List<SlideLayout.RenderNode> newNodes;
+        private List<SlideLayout.Highlight> highlights;
+        private double scale;
+        private int nextShapeId;
+        private byte[] presentation; // null when the page size is unchanged
+
+        private Plan(String reason) {
+            this.reason = reason;
+        }
+
+        public boolean patchable() {
+            return reason == null;
+        }
+
+        public String reason() {
+            return reason;
+        }
+
+        /**
+         * Null when the deck could not be read as one of ours.
+         */
+        public Diff diff() {
+            return diff;
+        }
+    }
+
+    private enum Kind { NODE, SHADOW, EDGE, HIGHLIGHT, OTHER }
+
+    private enum Action { KEEP, DROP, RESTAMP }
+
+    /**
+     * One {@code <p:sp>} or {@code <p:cxnSp>} of the previous slide, as the byte range [start, end).
+     */
+    private static final class Shape {
+        final int start;
+        final int end;
+        final Kind kind;
+        final String key; // node id, or "from→to" / "from↔to" for edges
+        Action action = Action.KEEP;
+        SlideLayout.RenderNode replacement;
+
+        Shape(int start, int end, Kind kind, String key) {
+            this.start = start;
+            this.end = end;
+            this.kind = kind;
+            this.key = key;
+        }
+    }
+
+    /**
+     * A node as drawn on the previous slide. {@code style} is null when its fill isn't one of ours.
+     */
+    private record OldNode(String text, String subtitle, NodeStyle style, Rectangle2D.Double box) {
+    }
+
+    /**
+     * Reads {@code previousDeck} and works out how to bring it to {@code nodes}.
+     *
+     * @param highlight ring added nodes and keep removed ones as ghosts
+     * @throws IllegalArgumentException if the bytes are not a presentation or exceed the size limit
+     */
+    public Plan plan(byte[] previousDeck, List<ServiceNode> nodes, boolean highlight) throws IOException {
+        return plan(previousDeck, pptGeneratorService.graph(nodes), highlight);
+    }
+
+    /**
+     * Same as {@link #plan(byte[], List, boolean)} for a graph the parser built directly.
+     */
+    public Plan plan(byte[] previousDeck, ServiceGraph graph, boolean highlight) throws IOException {
+        TemplateSlideRenderer templates = pptGeneratorService.templates();
+        if (templates == null) return new Plan("template renderer disabled");
+
+        List<DeckZip.Entry> parts = DeckZip.read(previousDeck);
+        if (parts.size() > MAX_PARTS) throw new IllegalArgumentException("Previous deck has too many parts");
+        DeckZip.Entry slidePart = null;
+        DeckZip.Entry presentationPart = null;
+        long total = 0;
+        for (DeckZip.Entry part : parts) {
+            total += part.size();
+            if (part.name().equals(TemplateSlideRenderer.SLIDE_PART)) {
+                slidePart = part;
+            } else if (part.name().equals(TemplateSlideRenderer.PRESENTATION_PART)) {
+                presentationPart = part;
+            } else if (SLIDE.matcher(part.name()).matches()) {
+                return new Plan("deck has more than one slide");
+            }
+        }
+        if (total > maxDeckBytes) throw new IllegalArgumentException("Previous deck is too large");
+        if (slidePart == null || presentationPart == null) {
+            throw new IllegalArgumentException("Previous deck is not a presentation");
+        }
+        DeckZip.Inflated slideBytes = DeckZip.inflate(slidePart, maxDeckBytes);
+        String presentation = new String(DeckZip.inflate(presentationPart, maxDeckBytes).data(), StandardCharsets.UTF_8);
+        // One char per byte, so offsets are byte offsets; only markup is matched, text decoded as UTF-8 from the bytes
+        String slide = new String(slideBytes.data(), StandardCharsets.ISO_8859_1);
+        Matcher page = PAGE.matcher(presentation);
+        if (!page.find()) throw new IllegalArgumentException("Previous deck has no page size");
+        double pageWidth = Long.parseLong(page.group(1)) / EMU_PER_POINT;
+        double pageHeight = Long.parseLong(page.group(2)) / EMU_PER_POINT;
+
+        // --- READ THE PREVIOUS SLIDE ---
+        List<Shape> shapes = new ArrayList<>();
+        Map<String, OldNode> oldNodes = new LinkedHashMap<>();
+        Set<String> ghosts = new HashSet<>();
+        Map<String, Integer> oldEdges = new HashMap<>(); // edge key -> links it stands for
+        for (int from = 0, start; (start = nextShape(slide, from)) >= 0; ) {
+            boolean isConnector = slide.startsWith(CONNECTOR_START, start);
+            String endTag = isConnector ? CONNECTOR_END : SHAPE_END;
+            int end = slide.indexOf(endTag, start);
+            if (end < 0) throw new IllegalArgumentException("Previous deck has a malformed slide");
+            end += endTag.length();
+            int name = attribute(slide, CNVPR, "name", start, end);
+            String shapeName = name < 0 ? "" : text(slideBytes, name, slide.indexOf('"', name));
+            Shape shape = classify(start, end, shapeName);
+            shapes.add(shape);
+            switch (shape.kind) {
+                case NODE -> oldNodes.put(shape.key, readNode(slide, slideBytes, start, end));
+                case EDGE -> {
+                    // Rotated rectangles can't be kept next to routed connectors; redraw the deck
+                    if (!isConnector) return new Plan("connectors drawn by an older version");
+                    oldEdges.put(shape.key, shape.key.indexOf(ShapeNames.TWO_WAY_SEPARATOR) >= 0 ? 2 : 1);
+                }
+                case HIGHLIGHT -> {
+                    if (shapeName.startsWith(ShapeNames.REMOVED)) ghosts.add(shape.key);
+                }
+                default -> { }
+            }
+            from = end;
+        }
+        oldNodes.keySet().removeAll(ghosts);
+        if (oldNodes.isEmpty()) return new Plan("deck has no named service shapes");
+
+        // --- DIFF ---
+        List<ConnectorRouter.Link> newLinks = ConnectorRouter.links(graph);
+
+        double scale = oldNodes.values().iterator().next().box().width / PptGeneratorService.NODE_WIDTH;
+        List<String> added = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        Map<String, SlideLayout.RenderNode> restamped = new HashMap<>();
+        for (int i = 0; i < graph.size(); i++) {
+            String id = graph.id(i);
+            OldNode old = oldNodes.get(id);
+            if (old == null) {
+                added.add(id);
+                continue;
+            }
+            SlideLayout.RenderNode now = PptGeneratorService.renderNode(graph, i, old.box(), scale);
+            if (!Objects.equals(old.text(), now.id()) || !Objects.equals(old.subtitle(), now.subtitle())
+                    || old.style() != now.style()) {
+                changed.add(id);
+                restamped.put(id, now);
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        for (String id : oldNodes.keySet()) {
+            if (graph.indexOf(id) < 0) removed.add(id);
+        }
+
+        // A connector is kept when it still stands for the same link(s) and both ends stay put
+        Set<String> addedIds = new HashSet<>(added);
+        Set<String> keptEdges = new HashSet<>();
+        List<ConnectorRouter.Link> unrouted = new ArrayList<>();
+        Map<String, Integer> unmatched = new HashMap<>(oldEdges);
+        int linksAdded = 0;
+        for (ConnectorRouter.Link link : newLinks) {
+            String from = graph.id(link.from());
+            String to = graph.id(link.to());
+            String key = edgeKey(from, to, link.twoWay());
+            if (link.twoWay() && !oldEdges.containsKey(key)) key = edgeKey(to, from, true);
+            if (oldEdges.containsKey(key) && !addedIds.contains(from) && !addedIds.contains(to)) {
+                keptEdges.add(key);
+            } else {
+                unrouted.add(link);
+            }
+            linksAdded += matchOldLink(unmatched, from, to) ? 0 : 1;
+            if (link.twoWay()) linksAdded += matchOldLink(unmatched, to, from) ? 0 : 1;
+        }
+        int linksRemoved = 0;
+        for (int left : unmatched.values()) linksRemoved += left;
+        Diff diff = new Diff(List.copyOf(added), List.copyOf(removed), List.copyOf(changed),
+                linksAdded, linksRemoved);
+
+        int touched = added.size() + removed.size() + changed.size();
+        if (touched > maxChangeRatio * Math.max(oldNodes.size(), graph.size())) {
+            return notPatchable("too many services changed", diff);
+        }
+
+        // --- PLACE ADDED NODES ---
+        Map<String, Rectangle2D.Double> boxes = new HashMap<>();
+        double contentBottom = Double.NEGATIVE_INFINITY;
+        for (Map.Entry<String, OldNode> e : oldNodes.entrySet()) {
+            Rectangle2D.Double box = e.getValue().box();
+            boxes.put(e.getKey(), box);
+            if (graph.indexOf(e.getKey()) >= 0 || highlight) contentBottom = Math.max(contentBottom, box.getMaxY());
+        }
+        if (contentBottom == Double.NEGATIVE_INFINITY) contentBottom = 0; // nothing left to stay clear of
+        added.sort(Comparator.comparingInt(id -> graph.tier(graph.indexOf(id)))); // stable, so input order within a tier
+        List<SlideLayout.RenderNode> newNodes = new ArrayList<>(added.size());
+        double newPageHeight = pageHeight;
+        if (!added.isEmpty()) {
+            double width = PptGeneratorService.NODE_WIDTH * scale;
+            double height = PptGeneratorService.NODE_HEIGHT * scale;
+            double pitchX = (PptGeneratorService.NODE_WIDTH + PptGeneratorService.NODE_SPACING_X) * scale;
+            double usable = pageWidth - 2 * PptGeneratorService.MARGIN_X * scale + PptGeneratorService.NODE_SPACING_X * scale;
+            int perRow = Math.max(1, (int) (usable / pitchX));
+            double y = contentBottom + PptGeneratorService.TIER_SPACING_Y * scale;
+            for (int i = 0; i < added.size(); i += perRow) {
+                int inRow = Math.min(perRow, added.size() - i);
+                double x = (pageWidth - (inRow * pitchX - PptGeneratorService.NODE_SPACING_X * scale)) / 2;
+                for (int j = 0; j < inRow; j++) {
+                    String id = added.get(i + j);
+                    Rectangle2D.Double box = new Rectangle2D.Double(x + j * pitchX, y, width, height);
+                    boxes.put(id, box);
+                    newNodes.add(PptGeneratorService.renderNode(graph, graph.indexOf(id), box, scale));
+                }
+                newPageHeight = Math.max(newPageHeight,
+                        Math.ceil(y + height + PptGeneratorService.MARGIN_BOTTOM * scale));
+                y += PptGeneratorService.ROW_SPACING_Y * scale;
+            }
+            if (newPageHeight > PptGeneratorService.MAX_SLIDE_SIZE) {
+                return notPatchable("no room for the added services", diff);
+            }
+        }
+        for (SlideLayout.RenderNode node : newNodes) {
+            if (!templates.supports(node)) return notPatchable("service text needs the POI renderer", diff);
+        }
+        for (SlideLayout.RenderNode node : restamped.values()) {
+            if (!templates.supports(node)) return notPatchable("service text needs the POI renderer", diff);
+        }
+
+        // --- DECIDE PER SHAPE ---
+        Set<String> removedIds = new HashSet<>(removed);
+        Set<String> seenEdges = new HashSet<>();
+        for (Shape shape : shapes) {
+            switch (shape.kind) {
+                case NODE, SHADOW -> {
+                    if (ghosts.contains(shape.key) || (removedIds.contains(shape.key) && !highlight)) {
+                        shape.action = Action.DROP;
+                    } else if (restamped.containsKey(shape.key)) {
+                        shape.action = Action.RESTAMP;
+                        shape.replacement = restamped.get(shape.key);
+                    }
+                }
+                case EDGE -> {
+                    if (!keptEdges.contains(shape.key) || !seenEdges.add(shape.key)) shape.action = Action.DROP;
+                }
+                case HIGHLIGHT -> shape.action = Action.DROP;
+                default -> { }
+            }
+        }
+        List<Rectangle2D.Double> obstacles = new ArrayList<>(boxes.size());
+        for (Map.Entry<String, Rectangle2D.Double> e : boxes.entrySet()) {
+            if (graph.indexOf(e.getKey()) >= 0 || highlight) obstacles.add(e.getValue());
+        }
+        Rectangle2D.Double[] nodeBoxes = new Rectangle2D.Double[graph.size()];
+        for (int i = 0; i < graph.size(); i++) nodeBoxes[i] = boxes.get(graph.id(i));
+        List<SlideLayout.Connector> newConnectors =
+                pptGeneratorService.routeConnectors(graph, unrouted, nodeBoxes, obstacles, scale);
+        List<SlideLayout.Highlight> highlights = new ArrayList<>();
+        if (highlight) {
+            for (SlideLayout.RenderNode node : newNodes) {
+                highlights.add(new SlideLayout.Highlight(node.id(), SlideLayout.Highlight.Change.ADDED,
+                        PptGeneratorService.highlightBox(node.box(), scale)));
+            }
+            for (String id : removed) {
+                highlights.add(new SlideLayout.Highlight(id, SlideLayout.Highlight.Change.REMOVED,
+                        PptGeneratorService.highlightBox(boxes.get(id), scale)));
+            }
+        }
+
+        int maxShapeId = 1;
+        for (int from = 0, at; (at = slide.indexOf(CNVPR, from)) >= 0; from = at + 1) {
+            int id = attribute(slide, CNVPR, "id", at, at + 1);
+            if (id >= 0) maxShapeId = (int) Math.max(maxShapeId, Math.min(number(slide, id), Integer.MAX_VALUE / 2));
+        }
+
+        Plan plan = new Plan(null);
+        plan.diff = diff;
+        plan.parts = parts;
+        plan.slide = slideBytes;
+        plan.shapes = shapes;
+        plan.newConnectors = newConnectors;
+        plan.newNodes = newNodes;
+        plan.highlights = highlights;
+        plan.scale = scale;
+        plan.nextShapeId = maxShapeId + 1;
+        if (newPageHeight != pageHeight) {
+            plan.presentation = (presentation.substring(0, page.start())
+                    + "<p:sldSz cx=\"" + page.group(1) + "\" cy=\"" + TemplateSlideRenderer.emu(newPageHeight) + "\""
+                    + presentation.substring(page.end())).getBytes(StandardCharsets.UTF_8);
+        }
+        return plan;
+    }
+
+    /**
+     * Writes the patched deck for a patchable {@code plan} into {@code out}, which is flushed
+     * but not closed.
+     *
+     * @return bytes written
+     */
+    public long write(Plan plan, OutputStream out) throws IOException {
+        if (!plan.patchable()) throw new IllegalStateException("Deck is not patchable: " + plan.reason());
+        PipelineMetrics.CountingOutputStream counting = new PipelineMetrics.CountingOutputStream(out);
+        metrics.timeIo(PipelineMetrics.Stage.SERIALIZE, () -> {
+            writeDeck(plan, counting);
+            return null;
+        });
+        metrics.recordOutput(counting.getCount());
+        out.flush();
+        return counting.getCount();
+    }
+
+    private void writeDeck(Plan plan, OutputStream out) throws IOException {
+        DeckZip.Writer zip = new DeckZip.Writer(out);
+        for (DeckZip.Entry part : plan.parts) {
+            if (part.name().equals(TemplateSlideRenderer.SLIDE_PART)) {
+                try (DeckZip.ChunkedOutputStream slide = zip.putChunked(part.name())) {
+                    writeSlide(plan, slide);
+                }
+            } else if (part.name().equals(TemplateSlideRenderer.PRESENTATION_PART) && plan.presentation != null) {
+                zip.put(part.name(), plan.presentation);
+            } else {
+                zip.copy(part);
+            }
+        }
+        zip.finish();
+    }
+
+    private void writeSlide(Plan plan, DeckZip.ChunkedOutputStream out) throws IOException {
+        DeckZip.Inflated slide = plan.slide;
+        Writer writer = TemplateSlideRenderer.xmlWriter(out);
+        TemplateSlideRenderer.ShapeWriter stamps =
+                pptGeneratorService.templates().shapeWriter(writer, plan.scale, plan.nextShapeId);
+        List<Shape> shapes = plan.shapes;
+        int first = shapes.get(0).start;
+        out.copy(slide, 0, first);
+
+        // New links go under everything else, like connectors of a fresh render
+        for (SlideLayout.Connector c : plan.newConnectors) stamps.connector(c);
+        writer.flush();
+
+        // Runs of kept shapes (and whatever sits between them) are copied in one piece
+        int copied = first;
+        for (Shape shape : shapes) {
+            if (shape.action == Action.KEEP) continue;
+            out.copy(slide, copied, shape.start);
+            if (shape.action == Action.RESTAMP) {
+                if (shape.kind == Kind.SHADOW) stamps.shadow(shape.replacement);
+                else stamps.box(shape.replacement);
+                writer.flush();
+            }
+            copied = shape.end;
+        }
+        int last = shapes.get(shapes.size() - 1).end;
+        out.copy(slide, copied, last);
+        for (SlideLayout.RenderNode node : plan.newNodes) {
+            stamps.shadow(node);
+            stamps.box(node);
+        }
+        for (SlideLayout.Highlight h : plan.highlights) stamps.highlight(h);
+        writer.flush();
+        out.copy(slide, last, slide.data().length);
+    }
+
+    // --- READING ---
+
+    private static int nextShape(String slide, int from) {
+        int shape = slide.indexOf(SHAPE_START, from);
+        int connector = slide.indexOf(CONNECTOR_START, from);
+        return shape < 0 ? connector : connector < 0 ? shape : Math.min(shape, connector);
+    }
+
+    private static Shape classify(int start, int end, String name) {
+        if (name.startsWith(ShapeNames.NODE)) {
+            return new Shape(start, end, Kind.NODE, name.substring(ShapeNames.NODE.length()));
+        }
+        if (name.startsWith(ShapeNames.SHADOW)) {
+            return new Shape(start, end, Kind.SHADOW, name.substring(ShapeNames.SHADOW.length()));
+        }
+        if (name.startsWith(ShapeNames.EDGE)) {
+            return new Shape(start, end, Kind.EDGE, name.substring(ShapeNames.EDGE.length()));
+        }
+        if (name.startsWith(ShapeNames.ADDED)) {
+            return new Shape(start, end, Kind.HIGHLIGHT, name.substring(ShapeNames.ADDED.length()));
+        }
+        if (name.startsWith(ShapeNames.REMOVED)) {
+            return new Shape(start, end, Kind.HIGHLIGHT, name.substring(ShapeNames.REMOVED.length()));
+        }
+        return new Shape(start, end, Kind.OTHER, name);
+    }
+
+    private static OldNode readNode(String slide, DeckZip.Inflated bytes, int start, int end) {
+        int x = attribute(slide, "<a:off ", "x", start, end);
+        int y = attribute(slide, "<a:off ", "y", start, end);
+        int cx = attribute(slide, "<a:ext ", "cx", start, end);
+        int cy = attribute(slide, "<a:ext ", "cy", start, end);
+        if (x < 0 || y < 0 || cx < 0 || cy < 0) {
+            throw new IllegalArgumentException("Previous deck has a service without a position");
+        }
+        Rectangle2D.Double box = new Rectangle2D.Double(
+                number(slide, x) / EMU_PER_POINT, number(slide, y) / EMU_PER_POINT,
+                number(slide, cx) / EMU_PER_POINT, number(slide, cy) / EMU_PER_POINT);
+
+        NodeStyle style = null;
+        int fill = slide.indexOf(FILL, start);
+        if (fill >= 0 && fill < end) {
+            fill += FILL.length();
+            int rgb = hex(slide, fill, fill + 6);
+            for (NodeStyle candidate : NodeStyle.values()) {
+                if ((candidate.fill().getRGB() & 0xFFFFFF) == rgb) style = candidate;
+            }
+        }
+        String id = null;
+        String subtitle = null;
+        int text = slide.indexOf(TEXT_START, start);
+        if (text >= 0 && text < end) {
+            int textEnd = slide.indexOf(TEXT_END, text);
+            id = text(bytes, text + TEXT_START.length(), textEnd);
+            text = slide.indexOf(TEXT_START, textEnd);
+            if (text >= 0 && text < end) {
+                subtitle = text(bytes, text + TEXT_START.length(), slide.indexOf(TEXT_END, text));
+            }
+        }
+        return new OldNode(id, subtitle, style, box);
+    }
+
+    // --- SCANNING (the slide as Latin-1, so char offsets are byte offsets) ---
+
+    /**
+     * Where the value of {@code attribute} starts in the first {@code tag} beginning in [from, to), or -1.
+     */
+    private static int attribute(String slide, String tag, String attribute, int from, int to) {
+        int at = slide.indexOf(tag, from);
+        if (at < 0 || at >= to) return -1;
+        int close = slide.indexOf('>', at);
+        for (int i = at + tag.length() - 1; (i = slide.indexOf(attribute, i)) >= 0 && i < close; i += attribute.length()) {
+            int value = i + attribute.length();
+            if (slide.charAt(i - 1) == ' ' && slide.startsWith("=\"", value)) return value + 2;
+        }
+        return -1;
+    }
+
+    private static long number(String slide, int from) {
+        int end = from;
+        if (end < slide.length() && slide.charAt(end) == '-') end++;
+        while (end < slide.length() && Character.isDigit(slide.charAt(end))) end++;
+        try {
+            return Long.parseLong(slide, from, end, 10);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Previous deck has a malformed number", e);
+        }
+    }
+
+    private static int hex(String slide, int from, int to) {
+        try {
+            return Integer.parseInt(slide, from, Math.min(to, slide.length()), 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Slide bytes [from, to), decoded as the UTF-8 they really are and unescaped.
+     */
+    private static String text(DeckZip.Inflated slide, int from, int to) {
+        if (to < from) throw new IllegalArgumentException("Previous deck has a malformed slide");
+        return unescape(new String(slide.data(), from, to - from, StandardCharsets.UTF_8));
+    }
+
+    private static String edgeKey(String from, String to, boolean twoWay) {
+        return ShapeNames.edge(from, to, twoWay).substring(ShapeNames.EDGE.length());
+    }
+
+    /**
+     * Whether the previous slide had the link {@code from} -> {@code to}, one way or as part of
+     * a two-way connector; a match is taken off {@code unmatched}, so what's left there at the
+     * end are the links that are gone.
+     */
+    private static boolean matchOldLink(Map<String, Integer> unmatched, String from, String to) {
+        for (String key : new String[]{edgeKey(from, to, false), edgeKey(from, to, true), edgeKey(to, from, true)}) {
+            Integer left = unmatched.get(key);
+            if (left != null && left > 0) {
+                unmatched.put(key, left - 1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Plan notPatchable(String reason, Diff diff) {
+        Plan plan = new Plan(reason);
+        plan.diff = diff;
+        return plan;
+    }
+
+    /**
+     * Undoes XML escaping in attribute values and text: the five named entities and character references.
+     */
+    static String unescape(String text) {
+        int amp = text.indexOf('&');
+        if (amp < 0) return text;
+        StringBuilder sb = new StringBuilder(text.length());
+        int from = 0;
+        while (amp >= 0) {
+            int semi = text.indexOf(';', amp);
+            if (semi < 0) break;
+            String entity = text.substring(amp + 1, semi);
+            String replacement = switch (entity) {
+                case "amp" -> "&";
+                case "lt" -> "<";
+                case "gt" -> ">";
+                case "quot" -> "\"";
+                case "apos" -> "'";
+                default -> characterReference(entity);
+            };
+            if (replacement != null) {
+                sb.append(text, from, amp).append(replacement);
+                from = semi + 1;
+            }
+            amp = text.indexOf('&', replacement != null ? semi + 1 : amp + 1);
+        }
+        return sb.append(text, from, text.length()).toString();
+    }
+
+    private static String characterReference(String entity) {
+        try {
+            if (entity.startsWith("#x") || entity.startsWith("#X")) {
+                return Character.toString(Integer.parseInt(entity.substring(2), 16));
+            }
+            if (entity.startsWith("#")) {
+                return Character.toString(Integer.parseInt(entity.substring(1)));
+            }
+        } catch (IllegalArgumentException e) {
+            // not a valid code point; leave it as written
+        }
+        return null;
+    }
+}
@@ -0,0 +1,425 @@
+package com.repotodeck.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Just enough zip for decks, covering what {@code java.util.zip} can't do:
+ * <ul>
+ *     <li>copy an entry's compressed bytes from one deck into another without inflating them;</li>
+ *     <li>compress slide XML as a chain of independently decodable chunks (every chunk ends in a
+ *     full flush, which resets the compressor's history) and note where they start in the entry
+ *     comment, so a later patch can copy the chunks it didn't touch (see {@link DeckUpdateService}).</li>
+ * </ul>
+ * Entries are written with CRC and sizes in the local header (no data descriptors), a fixed
+ * timestamp and no zip64, which every OOXML reader accepts; decks are far below 4 GB.
+ * Anything unexpected while reading is an {@link IllegalArgumentException}.
+ */
+final class DeckZip {
+
+    static final int STORED = 0;
+    static final int DEFLATED = 8;
+
+    private static final int CHUNK_SIZE = 32 * 1024; // uncompressed bytes per chunk, one deflate window
+    private static final String CHUNKS = "chunks";   // entry comment: "chunks c0:u0 c1:u1 ... cN:uN"
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL = 0x06054b50;
+    private static final int DOS_DATE_1980 = (1 << 5) | 1; // 1980-01-01, so equal decks are equal bytes
+
+    private DeckZip() {
+    }
+
+    /**
+     * One entry of a zip being read. The compressed bytes are {@code source[offset, offset + compressedSize)}.
+     */
+    record Entry(String name, int method, int crc, long size, byte[] source, int offset, int compressedSize,
+                 String comment) {
+    }
+
+    /**
+     * The content of an entry. {@code compressedOffsets[i]} / {@code offsets[i]} are where chunk i
+     * starts in the compressed and the inflated bytes (the last pair marks the end); both are
+     * null when the entry wasn't written in chunks.
+     */
+    record Inflated(Entry entry, byte[] data, int[] compressedOffsets, int[] offsets) {
+
+        boolean chunked() {
+            return offsets != null;
+        }
+    }
+
+    // --- READING ---
+
+    static List<Entry> read(byte[] zip) {
+        int end = -1;
+        for (int i = zip.length - 22; i >= Math.max(0, zip.length - 22 - 0xFFFF); i--) {
+            if (int32(zip, i) == END_OF_CENTRAL) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) throw new IllegalArgumentException("Not a zip file");
+        int count = int16(zip, end + 10);
+        int position = checkedOffset(zip, int32(zip, end + 16), 0);
+
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            checkedOffset(zip, position, 46);
+            if (int32(zip, position) != CENTRAL_HEADER) throw new IllegalArgumentException("Malformed zip directory");
+            int flags = int16(zip, position + 8);
+            int method = int16(zip, position + 10);
+            int crc = int32(zip, position + 16);
+            long compressedSize = int32(zip, position + 20) & 0xFFFFFFFFL;
+            long size = int32(zip, position + 24) & 0xFFFFFFFFL;
+            int nameLength = int16(zip, position + 28);
+            int extraLength = int16(zip, position + 30);
+            int commentLength = int16(zip, position + 32);
+            long localOffset = int32(zip, position + 42) & 0xFFFFFFFFL;
+            checkedOffset(zip, position + 46, nameLength + extraLength + commentLength);
+            if ((flags & 1) != 0) throw new IllegalArgumentException("Encrypted zip entries are not supported");
+            if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || localOffset == 0xFFFFFFFFL) {
+                throw new IllegalArgumentException("Zip64 is not supported");
+            }
+            if (method != STORED && method != DEFLATED) {
+                throw new IllegalArgumentException("Unsupported zip compression method " + method);
+            }
+            String name = new String(zip, position + 46, nameLength, StandardCharsets.UTF_8);
+            String comment = new String(zip, position + 46 + nameLength + extraLength, commentLength, StandardCharsets.UTF_8);
+
+            int local = checkedOffset(zip, (int) Math.min(localOffset, Integer.MAX_VALUE), 30);
+            if (int32(zip, local) != LOCAL_HEADER) throw new IllegalArgumentException("Malformed zip entry " + name);
+            int data = local + 30 + int16(zip, local + 26) + int16(zip, local + 28);
+            checkedOffset(zip, data, (int) Math.min(compressedSize, Integer.MAX_VALUE));
+            entries.add(new Entry(name, method, crc, size, zip, data, (int) compressedSize, comment));
+            position += 46 + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    /**
+     * Inflates {@code entry}, checking its size and CRC. Chunk offsets from the comment are only
+     * kept if every chunk really decodes on its own to exactly its range.
+     */
+    static Inflated inflate(Entry entry, long maxBytes) {
+        if (entry.size() > Math.min(maxBytes, Integer.MAX_VALUE - 8)) {
+            throw new IllegalArgumentException("Zip entry " + entry.name() + " is too large");
+        }
+        byte[] data = new byte[(int) entry.size()];
+        Inflated result;
+        if (entry.method() == STORED) {
+            if (entry.compressedSize() != data.length) throw new IllegalArgumentException("Malformed zip entry " + entry.name());
+            System.arraycopy(entry.source(), entry.offset(), data, 0, data.length);
+            result = new Inflated(entry, data, null, null);
+        } else {
+            result = inflateChunks(entry, data);
+            if (result == null) {
+                inflateRange(entry, 0, entry.compressedSize(), data, 0, data.length, true);
+                result = new Inflated(entry, data, null, null);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        if ((int) crc.getValue() != entry.crc()) throw new IllegalArgumentException("Zip entry " + entry.name() + " is corrupt");
+        return result;
+    }
+
+    private static Inflated inflateChunks(Entry entry, byte[] data) {
+        String comment = entry.comment();
+        if (!comment.startsWith(CHUNKS + " ")) return null;
+        String[] pairs = comment.substring(CHUNKS.length() + 1).split(" ");
+        int[] compressedOffsets = new int[pairs.length];
+        int[] offsets = new int[pairs.length];
+        try {
+            for (int i = 0; i < pairs.length; i++) {
+                int colon = pairs[i].indexOf(':');
+                compressedOffsets[i] = Integer.parseInt(pairs[i], 0, colon, 10);
+                offsets[i] = Integer.parseInt(pairs[i], colon + 1, pairs[i].length(), 10);
+            }
+        } catch (RuntimeException e) {
+            return null;
+        }
+        int last = pairs.length - 1;
+        if (compressedOffsets[0] != 0 || offsets[0] != 0 || offsets[last] != data.length
+                || compressedOffsets[last] > entry.compressedSize()) {
+            return null;
+        }
+        for (int i = 0; i < last; i++) {
+            if (compressedOffsets[i + 1] < compressedOffsets[i] || offsets[i + 1] < offsets[i]) return null;
+        }
+        try {
+            for (int i = 0; i < last; i++) {
+                inflateRange(entry, compressedOffsets[i], compressedOffsets[i + 1] - compressedOffsets[i],
+                        data, offsets[i], offsets[i + 1] - offsets[i], false);
+            }
+            // What follows the last chunk is only the final (empty) block
+            inflateRange(entry, compressedOffsets[last], entry.compressedSize() - compressedOffsets[last], data, 0, 0, true);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return new Inflated(entry, data, compressedOffsets, offsets);
+    }
+
+    /**
+     * Inflates {@code entry}'s compressed bytes [from, from + length) with a fresh inflater, which
+     * must yield exactly {@code size} bytes and end the stream only if {@code last}.
+     */
+    private static void inflateRange(Entry entry, int from, int length, byte[] out, int outOffset, int size,
+                                     boolean last) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(entry.source(), entry.offset() + from, length);
+            int n = 0;
+            while (n < size) {
+                int k = inflater.inflate(out, outOffset + n, size - n);
+                if (k == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) break;
+                n += k;
+            }
+            if (last && !inflater.finished()) {
+                // The final block may still be pending once all bytes are out
+                inflater.inflate(new byte[1]);
+            }
+            if (n != size || inflater.finished() != last || inflater.getRemaining() != 0) {
+                throw new IllegalArgumentException("Malformed zip entry " + entry.name());
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Malformed zip entry " + entry.name(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // --- WRITING ---
+
+    /**
+     * Writes a zip into a stream that is flushed but never closed. Entries are buffered
+     * compressed, so their CRC and sizes can go into the local header.
+     */
+    static final class Writer {
+
+        private final OutputStream out;
+        private final ByteArrayOutputStream central = new ByteArrayOutputStream();
+        private long position;
+        private int count;
+
+        Writer(OutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * Copies an entry of another zip as it is.
+         */
+        void copy(Entry entry) throws IOException {
+            write(entry.name(), entry.method(), entry.crc(), entry.size(),
+                    entry.source(), entry.offset(), entry.compressedSize(), entry.comment());
+        }
+
+        void put(String name, byte[] data) throws IOException {
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            try {
+                deflater.setInput(data);
+                deflater.finish();
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+                CRC32 crc = new CRC32();
+                crc.update(data);
+                write(name, DEFLATED, (int) crc.getValue(), data.length, compressed.toByteArray(), 0, compressed.size(), "");
+            } finally {
+                deflater.end();
+            }
+        }
+
+        /**
+         * Starts a chunked entry; it is written when the returned stream is closed.
+         */
+        ChunkedOutputStream putChunked(String name) {
+            return new ChunkedOutputStream(this, name);
+        }
+
+        /**
+         * Writes the central directory. The target is flushed, not closed.
+         */
+        void finish() throws IOException {
+            byte[] directory = central.toByteArray();
+            byte[] end = new byte[22];
+            putInt32(end, 0, END_OF_CENTRAL);
+            putInt16(end, 8, count);
+            putInt16(end, 10, count);
+            putInt32(end, 12, directory.length);
+            putInt32(end, 16, (int) position);
+            out.write(directory);
+            out.write(end);
+            out.flush();
+        }
+
+        private void write(String name, int method, int crc, long size, byte[] data, int offset, int length,
+                           String comment) throws IOException {
+            if (count == 0xFFFF || position + length > 0xFFFFFFFFL - 0xFFFF) {
+                throw new IOException("Deck too large for a zip without zip64");
+            }
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            byte[] commentBytes = comment.getBytes(StandardCharsets.UTF_8);
+            int flags = name.chars().allMatch(c -> c < 0x80) ? 0 : 0x800; // UTF-8 names
+
+            byte[] local = new byte[30];
+            putInt32(local, 0, LOCAL_HEADER);
+            putInt16(local, 4, 20);
+            putInt16(local, 6, flags);
+            putInt16(local, 8, method);
+            putInt16(local, 12, DOS_DATE_1980);
+            putInt32(local, 14, crc);
+            putInt32(local, 18, length);
+            putInt32(local, 22, (int) size);
+            putInt16(local, 26, nameBytes.length);
+
+            byte[] record = new byte[46];
+            putInt32(record, 0, CENTRAL_HEADER);
+            putInt16(record, 4, 20);
+            putInt16(record, 6, 20);
+            System.arraycopy(local, 6, record, 8, 22); // flags .. name length are the same
+            putInt16(record, 32, commentBytes.length);
+            putInt32(record, 42, (int) position);
+            central.write(record);
+            central.write(nameBytes);
+            central.write(commentBytes);
+
+            out.write(local);
+            out.write(nameBytes);
+            out.write(data, offset, length);
+            position += local.length + nameBytes.length + length;
+            count++;
+        }
+    }
+
+    /**
+     * Deflates what is written into chunks of about {@link #CHUNK_SIZE} bytes, and can splice in
+     * chunks of another entry without decompressing them.
+     */
+    static final class ChunkedOutputStream extends OutputStream {
+
+        private final Writer zip;
+        private final String name;
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final CRC32 crc = new CRC32();
+        private final ByteArrayOutputStream compressed = new ByteArrayOutputStream(1 << 16);
+        private final StringBuilder chunks = new StringBuilder(CHUNKS).append(" 0:0");
+        private final byte[] buffer = new byte[8192];
+        private int size;
+        private int chunkStart;
+
+        private ChunkedOutputStream(Writer zip, String name) {
+            this.zip = zip;
+            this.name = name;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            crc.update(b, off, len);
+            while (len > 0) {
+                int n = Math.min(len, CHUNK_SIZE - (size - chunkStart));
+                deflater.setInput(b, off, n);
+                while (!deflater.needsInput()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer, 0, buffer.length, Deflater.NO_FLUSH));
+                }
+                size += n;
+                off += n;
+                len -= n;
+                if (size - chunkStart == CHUNK_SIZE) endChunk();
+            }
+        }
+
+        /**
+         * Appends {@code source.data()[from, to)}: the chunks of {@code source} that lie inside
+         * the range are copied compressed, the rest is deflated again.
+         */
+        void copy(Inflated source, int from, int to) {
+            if (!source.chunked()) {
+                write(source.data(), from, to - from);
+                return;
+            }
+            int[] offsets = source.offsets();
+            int i = 0;
+            while (i < offsets.length && offsets[i] < from) i++;
+            if (i == offsets.length || offsets[i] >= to) {
+                write(source.data(), from, to - from);
+                return;
+            }
+            write(source.data(), from, offsets[i] - from);
+            if (size > chunkStart) endChunk();
+            Entry entry = source.entry();
+            for (; i + 1 < offsets.length && offsets[i + 1] <= to; i++) {
+                int start = source.compressedOffsets()[i];
+                int length = source.compressedOffsets()[i + 1] - start;
+                compressed.write(entry.source(), entry.offset() + start, length);
+                crc.update(source.data(), offsets[i], offsets[i + 1] - offsets[i]);
+                size += offsets[i + 1] - offsets[i];
+                chunkStart = size;
+                chunks.append(' ').append(compressed.size()).append(':').append(size);
+            }
+            write(source.data(), offsets[i], to - offsets[i]);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (size > chunkStart) endChunk();
+            deflater.finish();
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+            deflater.end();
+            zip.write(name, DEFLATED, (int) crc.getValue(), size,
+                    compressed.toByteArray(), 0, compressed.size(), chunks.toString());
+        }
+
+        private void endChunk() {
+            int n;
+            do {
+                n = deflater.deflate(buffer, 0, buffer.length, Deflater.FULL_FLUSH);
+                compressed.write(buffer, 0, n);
+            } while (n == buffer.length);
+            chunkStart = size;
+            chunks.append(' ').append(compressed.size()).append(':').append(size);
+        }
+    }
+
+    // --- LITTLE ENDIAN ---
+
+    private static int checkedOffset(byte[] zip, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > zip.length - length) throw new IllegalArgumentException("Malformed zip file");
+        return offset;
+    }
+
+    private static int int16(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8;
+    }
+
+    private static int int32(byte[] b, int i) {
+        return int16(b, i) | int16(b, i + 2) << 16;
+    }
+
+    private static void putInt16(byte[] b, int i, int v) {
+        b[i] = (byte) v;
+        b[i + 1] = (byte) (v >>> 8);
+    }
+
+    private static void putInt32(byte[] b, int i, int v) {
+        putInt16(b, i, v);
+        putInt16(b, i + 2, v >>> 16);
+    }
+}
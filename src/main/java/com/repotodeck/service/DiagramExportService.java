@@ -0,0 +1,109 @@
+package com.repotodeck.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Renders a {@link ServiceGraph} in any {@link DiagramFormat}. The graph is laid out once by
+ * {@link PptGeneratorService}; PPTX goes through its deck renderer, every other format through
+ * the matching {@link DiagramWriter}, so all formats show the same positions and styling.
+ */
+@Service
+public class DiagramExportService {
+
+    private final PptGeneratorService pptGeneratorService;
+    private final PaginatedDeckService paginatedDeckService;
+    private final PipelineMetrics metrics;
+    private final Map<DiagramFormat, DiagramWriter> writers = new EnumMap<>(DiagramFormat.class);
+
+    public DiagramExportService(PptGeneratorService pptGeneratorService) {
+        this(pptGeneratorService, new PaginatedDeckService(pptGeneratorService), PipelineMetrics.noop(),
+                1.0, 16_777_216);
+    }
+
+    @Autowired
+    public DiagramExportService(PptGeneratorService pptGeneratorService,
+                                PaginatedDeckService paginatedDeckService,
+                                PipelineMetrics metrics,
+                                @Value("${repotodeck.export.png.pixels-per-point:1.0}") double pngPixelsPerPoint,
+                                @Value("${repotodeck.export.png.max-pixels:16777216}") long pngMaxPixels) {
+        this.pptGeneratorService = pptGeneratorService;
+        this.paginatedDeckService = paginatedDeckService;
+        this.metrics = metrics;
+        register(new SvgDiagramWriter());
+        register(new PngDiagramWriter(pngPixelsPerPoint, pngMaxPixels));
+        register(new PdfDiagramWriter());
+    }
+
+    private void register(DiagramWriter writer) {
+        writers.put(writer.format(), writer);
+    }
+
+    /**
+     * Lays out {@code graph} and writes it as {@code format} into {@code out}, which is flushed
+     * but not closed.
+     *
+     * @return bytes written
+     */
+    public long write(ServiceGraph graph, DiagramFormat format, OutputStream out) throws IOException {
+        return write(graph, format, PptGeneratorService.Detail.FULL, out);
+    }
+
+    /**
+     * Same as {@link #write(ServiceGraph, DiagramFormat, OutputStream)} at the given level of detail.
+     * Only decks have pages; other formats draw a PAGED graph whole.
+     *
+     * @return bytes written
+     */
+    public long write(ServiceGraph graph, DiagramFormat format, PptGeneratorService.Detail detail,
+                      OutputStream out) throws IOException {
+        if (detail == PptGeneratorService.Detail.PAGED) {
+            return write(graph, format, PptGeneratorService.Detail.FULL, true, out);
+        }
+        return write(graph, format, detail, false, out);
+    }
+
+    /**
+     * Same as {@link #write(ServiceGraph, DiagramFormat, PptGeneratorService.Detail, OutputStream)},
+     * paginating decks if {@code paged}, with every slide laid out at {@code detail}.
+     *
+     * @return bytes written
+     */
+    public long write(ServiceGraph graph, DiagramFormat format, PptGeneratorService.Detail detail,
+                      boolean paged, OutputStream out) throws IOException {
+        if (format == DiagramFormat.PPTX) {
+            if (paged) {
+                return paginatedDeckService.write(graph, detail, out);
+            }
+            return pptGeneratorService.generateSlide(graph, detail, out);
+        }
+        return write(pptGeneratorService.layout(graph, detail), format, out);
+    }
+
+    /**
+     * Writes a finished layout as any format but PPTX (decks are built from a graph, see above).
+     *
+     * @return bytes written
+     */
+    public long write(SlideLayout layout, DiagramFormat format, OutputStream out) throws IOException {
+        DiagramWriter writer = writers.get(format);
+        if (writer == null) {
+            throw new IllegalArgumentException("No diagram writer for " + format);
+        }
+        // Drawing and serializing are one step here; it is recorded as serialize
+        PipelineMetrics.CountingOutputStream counting = new PipelineMetrics.CountingOutputStream(out);
+        metrics.timeIo(PipelineMetrics.Stage.SERIALIZE, () -> {
+            writer.write(layout, counting);
+            return null;
+        });
+        metrics.recordOutput(counting.getCount());
+        out.flush();
+        return counting.getCount();
+    }
+}
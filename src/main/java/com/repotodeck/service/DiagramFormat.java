@@ -0,0 +1,69 @@
+package com.repotodeck.service;
+
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+/**
+ * Output formats of a single-slide diagram, all drawn from the same {@link SlideLayout}.
+ * PPTX is the editable deck; SVG, PNG and PDF are for embedding the diagram where a deck is
+ * overkill (wikis, READMEs, docs).
+ */
+public enum DiagramFormat {
+    PPTX("application/vnd.openxmlformats-officedocument.presentationml.presentation", "pptx"),
+    SVG("image/svg+xml", "svg"),
+    PNG("image/png", "png"),
+    PDF("application/pdf", "pdf");
+
+    private final MediaType mediaType;
+    private final String extension;
+
+    DiagramFormat(String mediaType, String extension) {
+        this.mediaType = MediaType.parseMediaType(mediaType);
+        this.extension = extension;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    /**
+     * The format an {@code Accept} header asks for: the one with the highest quality, where each
+     * format takes the quality of the most specific range that matches it, and ties go to the
+     * earlier constant (so a missing header or {@code *}{@code /*} means PPTX). Null when the header
+     * accepts none of them.
+     *
+     * @throws org.springframework.http.InvalidMediaTypeException if the header can't be parsed
+     */
+    public static DiagramFormat forAccept(String accept) {
+        if (accept == null || accept.isBlank()) return PPTX;
+        List<MediaType> ranges = MediaType.parseMediaTypes(accept);
+        DiagramFormat best = null;
+        double bestQuality = 0;
+        for (DiagramFormat format : values()) {
+            double quality = quality(ranges, format.mediaType);
+            if (quality > bestQuality) {
+                best = format;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    private static double quality(List<MediaType> ranges, MediaType type) {
+        MediaType match = null;
+        for (MediaType range : ranges) {
+            if (range.includes(type) && (match == null || specificity(range) > specificity(match))) match = range;
+        }
+        return match != null ? match.getQualityValue() : 0;
+    }
+
+    private static int specificity(MediaType range) {
+        if (range.isWildcardType()) return 0;
+        return range.isWildcardSubtype() ? 1 : 2;
+    }
+}
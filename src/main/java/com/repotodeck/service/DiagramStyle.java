@@ -0,0 +1,152 @@
+package com.repotodeck.service;
+
+import java.awt.*;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+
+/**
+ * Palette, fonts and shape geometry shared by every {@link DiagramWriter}, so a diagram looks
+ * the same whichever format it is written in. The geometry follows PowerPoint's presets for
+ * the shapes the PPTX writer uses, in points with y pointing down.
+ */
+final class DiagramStyle {
+
+    // --- PALETTE ---
+    static final Color COLOR_BG = new Color(248, 249, 250);
+    // Tier fills live in NodeStyle
+    static final Color COLOR_LINE = new Color(156, 163, 175);
+    static final Color COLOR_SHADOW = new Color(200, 200, 200);
+    static final Color COLOR_TITLE = new Color(55, 65, 81);
+    static final Color COLOR_NODE_BORDER = new Color(255, 255, 255, 100);
+    static final Color COLOR_NODE_SUBTITLE = new Color(240, 240, 240);
+    static final Color COLOR_ADDED = new Color(22, 163, 74);
+    static final Color COLOR_REMOVED = new Color(220, 38, 38);
+    static final Color COLOR_TEXT = Color.BLACK;
+
+    // --- STROKES AND TEXT ---
+    static final double NODE_BORDER_WIDTH = 1.0;
+    static final double SHADOW_BORDER_WIDTH = 0.75; // PowerPoint's default line
+    static final double HIGHLIGHT_WIDTH = 3.0;
+    static final double HIGHLIGHT_DASH = 4.0; // Dash and gap of removed rings, in line widths
+    static final double ARROW_SIZE = 3.0; // Medium arrowhead, in line widths
+    static final double ID_FONT_SIZE = 16.0;
+    static final double SUBTITLE_FONT_SIZE = 11.0;
+    static final double EMPTY_STATE_FONT_SIZE = 18.0;
+    static final String EMPTY_STATE = "No services found";
+    static final double EMPTY_STATE_X = 100;
+    static final double EMPTY_STATE_Y = 100;
+    static final double TEXT_INSET_Y = 3.6; // Top inset of a shape's text body
+    static final double LINE_HEIGHT = 1.2; // Line height in font sizes
+    static final double ASCENT = 0.9; // Baseline below the top of a line, in font sizes
+
+    private static final double ROUND_RECT_RADIUS = 1.0 / 6; // Of the shorter side (preset adj 16667)
+    private static final double DISK_RIM = 1.0 / 3; // Height of the disk's top ellipse
+
+    private DiagramStyle() {
+    }
+
+    static double idFontSize(double scale) {
+        return Math.max(PptGeneratorService.MIN_FONT_SIZE, ID_FONT_SIZE * scale);
+    }
+
+    static double subtitleFontSize(double scale) {
+        return Math.max(PptGeneratorService.MIN_FONT_SIZE, SUBTITLE_FONT_SIZE * scale);
+    }
+
+    /**
+     * Baseline of the id line of a node at {@code box}; the image line sits one id line below.
+     */
+    static double idBaseline(Rectangle2D box, double scale) {
+        return box.getY() + TEXT_INSET_Y + ASCENT * idFontSize(scale);
+    }
+
+    static double subtitleBaseline(Rectangle2D box, double scale) {
+        return box.getY() + TEXT_INSET_Y + LINE_HEIGHT * idFontSize(scale) + ASCENT * subtitleFontSize(scale);
+    }
+
+    /**
+     * The image line of {@code node} without its leading line break, or null.
+     */
+    static String subtitle(SlideLayout.RenderNode node) {
+        return node.subtitle() != null ? node.subtitle().strip() : null;
+    }
+
+    static double cornerRadius(Rectangle2D box) {
+        return Math.min(box.getWidth(), box.getHeight()) * ROUND_RECT_RADIUS;
+    }
+
+    // --- GEOMETRY ---
+
+    /**
+     * Filled outline of a node (or its shadow) of {@code style} at {@code box}.
+     */
+    static Shape outline(NodeStyle style, Rectangle2D box) {
+        if (style != NodeStyle.DATABASE) return roundRect(box);
+        double x = box.getX(), y = box.getY(), w = box.getWidth(), h = box.getHeight();
+        double rim = h * DISK_RIM;
+        Path2D.Double disk = new Path2D.Double();
+        disk.append(new Arc2D.Double(x, y, w, rim, 180, -180, Arc2D.OPEN), false);
+        disk.append(new Arc2D.Double(x, y + h - rim, w, rim, 0, -180, Arc2D.OPEN), true);
+        disk.closePath();
+        return disk;
+    }
+
+    /**
+     * Line drawn inside the outline (the front of a disk's top), or null for plain boxes.
+     */
+    static Shape rim(NodeStyle style, Rectangle2D box) {
+        if (style != NodeStyle.DATABASE) return null;
+        return new Arc2D.Double(box.getX(), box.getY(), box.getWidth(), box.getHeight() * DISK_RIM, 180, 180, Arc2D.OPEN);
+    }
+
+    static Shape roundRect(Rectangle2D box) {
+        double arc = 2 * cornerRadius(box);
+        return new RoundRectangle2D.Double(box.getX(), box.getY(), box.getWidth(), box.getHeight(), arc, arc);
+    }
+
+    /**
+     * The polyline of a connector (x0, y0, x1, y1, ...).
+     */
+    static Path2D.Double polyline(double[] path) {
+        Path2D.Double line = new Path2D.Double(Path2D.WIND_NON_ZERO, path.length / 2);
+        line.moveTo(path[0], path[1]);
+        for (int i = 2; i < path.length; i += 2) line.lineTo(path[i], path[i + 1]);
+        return line;
+    }
+
+    /**
+     * Arrowhead at the last point of {@code path}, or at its first point when {@code start}.
+     */
+    static Shape arrowhead(double[] path, boolean start, double thickness) {
+        int n = path.length;
+        double tipX = start ? path[0] : path[n - 2];
+        double tipY = start ? path[1] : path[n - 1];
+        double fromX = start ? path[2] : path[n - 4];
+        double fromY = start ? path[3] : path[n - 3];
+        double dx = tipX - fromX, dy = tipY - fromY;
+        double length = Math.hypot(dx, dy);
+        if (length == 0) {
+            dx = 1;
+            length = 1;
+        }
+        double size = ARROW_SIZE * thickness;
+        double ux = dx / length * size, uy = dy / length * size;
+        Path2D.Double head = new Path2D.Double();
+        head.moveTo(tipX, tipY);
+        head.lineTo(tipX - ux - uy / 2, tipY - uy + ux / 2);
+        head.lineTo(tipX - ux + uy / 2, tipY - uy - ux / 2);
+        head.closePath();
+        return head;
+    }
+
+    /**
+     * {@code value} rounded to two decimals, without a trailing ".0" for whole numbers.
+     */
+    static String decimal(double value) {
+        long hundredths = Math.round(value * 100);
+        if (hundredths % 100 == 0) return Long.toString(hundredths / 100);
+        return Double.toString(hundredths / 100.0);
+    }
+}
@@ -0,0 +1,19 @@
+package com.repotodeck.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Turns a finished {@link SlideLayout} into one {@link DiagramFormat}. Writers only read the
+ * layout, so one layout can be written in several formats, and they share their look through
+ * {@link DiagramStyle}. PPTX is written by {@link PptGeneratorService} itself.
+ */
+interface DiagramWriter {
+
+    DiagramFormat format();
+
+    /**
+     * Writes the diagram into {@code out}, flushed but not closed.
+     */
+    void write(SlideLayout layout, OutputStream out) throws IOException;
+}
@@ -1,71 +1,262 @@
 package com.repotodeck.service;
 
 import com.repotodeck.model.ServiceNode;
+import com.repotodeck.model.ServiceTier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.yaml.snakeyaml.LoaderOptions;
 import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
 
 import java.util.*;
 
 @Service
 public class DockerParserService {
 
-    @SuppressWarnings("unchecked")
+    private static final Logger log = LoggerFactory.getLogger(DockerParserService.class);
+
+    /**
+     * STREAMING walks SnakeYAML events and skips everything but image/depends_on/links/labels;
+     * TREE loads the whole document into maps (the original behaviour, kept as a fallback).
+     */
+    public enum Mode { STREAMING, TREE }
+
+    private final ServiceClassifier serviceClassifier;
+    private final PipelineMetrics metrics;
+    private final Mode mode;
+    private final int maxDocumentChars;
+
+    // Shared, never mutated after construction: safe to use from any request thread
+    private final LoaderOptions loaderOptions;
+    private final StreamingComposeParser streamingParser;
+
+    public DockerParserService() {
+        this(ServiceClassifier.withDefaultRules(), PipelineMetrics.noop(), Mode.STREAMING, 10 * 1024 * 1024, 50, 100_000);
+    }
+
+    @Autowired
+    public DockerParserService(ServiceClassifier serviceClassifier,
+                               PipelineMetrics metrics,
+                               @Value("${repotodeck.parser.mode:STREAMING}") Mode mode,
+                               @Value("${repotodeck.parser.max-document-chars:10485760}") int maxDocumentChars,
+                               @Value("${repotodeck.parser.max-aliases-for-collections:50}") int maxAliasesForCollections,
+                               @Value("${repotodeck.parser.max-alias-expansions:100000}") int maxAliasExpansions) {
+        this.serviceClassifier = serviceClassifier;
+        this.metrics = metrics;
+        this.mode = mode;
+        this.maxDocumentChars = maxDocumentChars;
+
+        LoaderOptions options = new LoaderOptions();
+        options.setCodePointLimit(maxDocumentChars);
+        options.setMaxAliasesForCollections(maxAliasesForCollections);
+        options.setAllowRecursiveKeys(false);
+        this.loaderOptions = options;
+        this.streamingParser = new StreamingComposeParser(options, maxAliasExpansions);
+    }
+
     public List<ServiceNode> parse(String yamlContent) {
         if (yamlContent == null || yamlContent.isBlank()) {
             return Collections.emptyList();
         }
+        if (yamlContent.length() > maxDocumentChars) {
+            throw new IllegalArgumentException("YAML document exceeds the limit of " + maxDocumentChars + " characters");
+        }
 
-        try {
-            Yaml yaml = new Yaml();
-            Object rootObject = yaml.load(yamlContent);
-            if (!(rootObject instanceof Map<?, ?> rootMap)) return Collections.emptyList();
-
-            Object servicesObj = rootMap.get("services");
-            if (!(servicesObj instanceof Map<?, ?> servicesMapRaw)) return Collections.emptyList();
-
-            Map<String, Object> servicesMap = (Map<String, Object>) servicesMapRaw;
-            List<ServiceNode> result = new ArrayList<>();
-
-            for (Map.Entry<String, Object> entry : servicesMap.entrySet()) {
-                try {
-                    String serviceName = entry.getKey();
-                    Object value = entry.getValue();
-
-                    if (!(value instanceof Map<?, ?> serviceDefRaw)) continue;
-                    Map<String, Object> serviceDef = (Map<String, Object>) serviceDefRaw;
-
-                    ServiceNode node = new ServiceNode();
-                    node.setId(serviceName);
-
-                    String image = serviceDef.getOrDefault("image", "unknown").toString();
-                    node.setImage(image);
-
-                    // Database Heuristics
-                    String lowerImg = image.toLowerCase();
-                    if (lowerImg.contains("postgres") || lowerImg.contains("mysql") || 
-                        lowerImg.contains("mongo") || lowerImg.contains("redis") || 
-                        lowerImg.contains("mariadb")) {
-                        node.setType("DATABASE");
-                    }
-
-                    // Links
-                    Set<String> links = new TreeSet<>();
-                    extractLinksFromField(serviceDef.get("depends_on"), links);
-                    extractLinksFromField(serviceDef.get("links"), links);
-
-                    node.setLinks(new ArrayList<>(links));
-                    result.add(node);
-                } catch (Exception e) {
-                    System.err.println("Skipping malformed service: " + entry.getKey());
-                }
+        metrics.recordInput(yamlContent.length());
+        return metrics.time(PipelineMetrics.Stage.PARSE, () -> parseAndClassify(yamlContent));
+    }
+
+    /**
+     * Same as {@link #parse}, as the compact {@link ServiceGraph} the layout works on. In
+     * STREAMING mode no {@link ServiceNode} is built at all.
+     */
+    public ServiceGraph parseGraph(String yamlContent) {
+        if (yamlContent == null || yamlContent.isBlank()) {
+            return ServiceGraph.EMPTY;
+        }
+        if (yamlContent.length() > maxDocumentChars) {
+            throw new IllegalArgumentException("YAML document exceeds the limit of " + maxDocumentChars + " characters");
+        }
+
+        metrics.recordInput(yamlContent.length());
+        return metrics.time(PipelineMetrics.Stage.PARSE, () -> {
+            try {
+                return mode == Mode.STREAMING
+                        ? streamingParser.parseGraph(yamlContent, this::skippedService, serviceClassifier)
+                        : ServiceGraph.of(parseTree(yamlContent), serviceClassifier);
+            } catch (Exception e) {
+                log.debug("Compose document could not be parsed", e);
+                throw new RuntimeException("Invalid YAML format: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Reads one file of a multi-file project (see {@link ComposeProjectService}), keeping
+     * include/extends/profiles and which fields are set. Services are classified only once the
+     * files are merged, through {@link #classify}.
+     */
+    ComposeFile parseFile(String yamlContent) {
+        if (yamlContent == null || yamlContent.isBlank()) {
+            return new ComposeFile(List.of(), Map.of());
+        }
+        if (yamlContent.length() > maxDocumentChars) {
+            throw new IllegalArgumentException("YAML document exceeds the limit of " + maxDocumentChars + " characters");
+        }
+
+        metrics.recordInput(yamlContent.length());
+        return metrics.time(PipelineMetrics.Stage.PARSE, () -> {
+            try {
+                return mode == Mode.STREAMING
+                        ? streamingParser.parseFile(yamlContent, this::skippedService)
+                        : parseFileTree(yamlContent);
+            } catch (Exception e) {
+                log.debug("Compose document could not be parsed", e);
+                throw new RuntimeException("Invalid YAML format: " + e.getMessage());
             }
-            return result;
+        });
+    }
+
+    /**
+     * Database Heuristics: same rules the layout uses to pick the tier.
+     */
+    List<ServiceNode> classify(List<ServiceNode> nodes) {
+        for (ServiceNode node : nodes) {
+            if (serviceClassifier.classify(node) == ServiceTier.DATABASE) {
+                node.setType("DATABASE");
+            }
+        }
+        return nodes;
+    }
+
+    private List<ServiceNode> parseAndClassify(String yamlContent) {
+        try {
+            List<ServiceNode> nodes = mode == Mode.STREAMING
+                    ? streamingParser.parse(yamlContent, this::skippedService)
+                    : parseTree(yamlContent);
+            return classify(nodes);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.debug("Compose document could not be parsed", e);
             throw new RuntimeException("Invalid YAML format: " + e.getMessage());
         }
     }
 
+    private void skippedService(String serviceName) {
+        metrics.malformedService();
+        log.atInfo().setMessage("Skipping malformed service").addKeyValue("service", serviceName).log();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ServiceNode> parseTree(String yamlContent) {
+        // Yaml instances are not thread-safe, but building one around the shared options is cheap
+        Yaml yaml = new Yaml(new SafeConstructor(loaderOptions));
+        Object rootObject = yaml.load(yamlContent);
+        if (!(rootObject instanceof Map<?, ?> rootMap)) return Collections.emptyList();
+
+        Object servicesObj = rootMap.get("services");
+        if (!(servicesObj instanceof Map<?, ?> servicesMapRaw)) return Collections.emptyList();
+
+        Map<String, Object> servicesMap = (Map<String, Object>) servicesMapRaw;
+        List<ServiceNode> result = new ArrayList<>();
+
+        for (Map.Entry<String, Object> entry : servicesMap.entrySet()) {
+            try {
+                String serviceName = entry.getKey();
+                Object value = entry.getValue();
+
+                if (!(value instanceof Map<?, ?> serviceDefRaw)) {
+                    skippedService(serviceName);
+                    continue;
+                }
+                Map<String, Object> serviceDef = (Map<String, Object>) serviceDefRaw;
+
+                ServiceNode node = new ServiceNode();
+                node.setId(serviceName);
+
+                Object image = serviceDef.getOrDefault("image", "unknown");
+                if (!isScalar(image) || !scalarLabels(serviceDef.get("labels"))) {
+                    skippedService(serviceName);
+                    continue;
+                }
+                node.setImage(image.toString());
+                node.setLabels(toLabels(serviceDef.get("labels")));
+
+                // Links
+                Set<String> links = new TreeSet<>();
+                extractLinksFromField(serviceDef.get("depends_on"), links);
+                extractLinksFromField(serviceDef.get("links"), links);
+
+                node.setLinks(new ArrayList<>(links));
+                result.add(node);
+            } catch (Exception e) {
+                skippedService(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    private ComposeFile parseFileTree(String yamlContent) {
+        Yaml yaml = new Yaml(new SafeConstructor(loaderOptions));
+        Object rootObject = yaml.load(yamlContent);
+        if (!(rootObject instanceof Map<?, ?> rootMap)) return new ComposeFile(List.of(), Map.of());
+
+        Map<String, ComposeFile.Service> services = new LinkedHashMap<>();
+        if (rootMap.get("services") instanceof Map<?, ?> servicesMap) {
+            for (Map.Entry<?, ?> entry : servicesMap.entrySet()) {
+                String serviceName = String.valueOf(entry.getKey());
+                ComposeFile.Service service = entry.getValue() instanceof Map<?, ?> serviceDef
+                        ? StreamingComposeParser.ServiceFields.fromMap(serviceDef, 0).toService()
+                        : null;
+                if (service == null) {
+                    skippedService(serviceName);
+                } else {
+                    services.put(serviceName, service);
+                }
+            }
+        }
+        return new ComposeFile(ComposeFile.includes(rootMap.get("include")), services);
+    }
+
+    /**
+     * Compose allows labels as a map or as a list of "key=value" strings. Values must be
+     * scalars (see {@link #scalarLabels}); a collection is never stringified, since an aliased
+     * one may expand far beyond the document.
+     */
+    static Map<String, String> toLabels(Object field) {
+        Map<String, String> labels = new LinkedHashMap<>();
+        if (field instanceof Map<?, ?> map) {
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                Object value = entry.getValue();
+                if (value != null && !isScalar(value)) {
+                    throw new IllegalArgumentException("Label " + entry.getKey() + " is not a scalar");
+                }
+                labels.put(String.valueOf(entry.getKey()), value == null ? "" : value.toString());
+            }
+        } else if (field instanceof List<?> list) {
+            for (Object item : list) {
+                if (!(item instanceof String str)) continue;
+                int eq = str.indexOf('=');
+                labels.put(eq < 0 ? str : str.substring(0, eq), eq < 0 ? "" : str.substring(eq + 1));
+            }
+        }
+        return labels;
+    }
+
+    static boolean scalarLabels(Object field) {
+        if (!(field instanceof Map<?, ?> map)) return true;
+        for (Object value : map.values()) {
+            if (value != null && !isScalar(value)) return false;
+        }
+        return true;
+    }
+
+    static boolean isScalar(Object value) {
+        return value != null && !(value instanceof Map) && !(value instanceof List);
+    }
+
     private void extractLinksFromField(Object field, Set<String> links) {
         if (field == null) return;
 
@@ -77,4 +268,4 @@ public class DockerParserService {
             links.add(str);
         }
     }
-}
\ No newline at end of file
+}
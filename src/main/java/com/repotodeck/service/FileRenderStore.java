@@ -0,0 +1,169 @@
+package com.repotodeck.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * {@link SharedRenderStore} in a directory every replica mounts (a shared volume): per key a
+ * {@code .pptx} with the deck and, while it renders, a {@code .lock} holding the owner.
+ * <p>
+ * Each file's modification time is set to when it expires, so expiry needs no extra metadata.
+ * Decks are written to a temporary name and moved into place. A temporary file already carries
+ * the expiry of what it becomes, so its own age comes from its name, which includes when it was
+ * created. A lock is created as a hard link
+ * to a finished temporary file, which either succeeds or fails as a whole on local disks and NFS
+ * alike. An expired lock is deleted before it is taken over; two replicas racing for the same
+ * expired lock may then both render, which costs time but never changes the result.
+ */
+final class FileRenderStore implements SharedRenderStore {
+
+    private static final String DECK = ".pptx";
+    private static final String LOCK = ".lock";
+    private static final String TEMP = ".tmp";
+    private static final Duration STALE_TEMP = Duration.ofMinutes(1);
+
+    // Keys become file names; anything but a SHA-256 hex digest never reaches the file system
+    private static final Pattern VALID_KEY = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path directory;
+
+    FileRenderStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    @Override
+    public byte[] get(String key) throws IOException {
+        Path deck = file(key, DECK);
+        try {
+            if (expired(deck)) {
+                Files.deleteIfExists(deck);
+                return null;
+            }
+            return Files.readAllBytes(deck);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, byte[] deck, Duration ttl) throws IOException {
+        Path temp = temp(key, deck, ttl);
+        try {
+            Files.move(temp, file(key, DECK), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public boolean tryLock(String key, String owner, Duration lease) throws IOException {
+        Path lock = file(key, LOCK);
+        Path temp = temp(key, owner.getBytes(StandardCharsets.UTF_8), lease);
+        try {
+            for (int attempt = 0; attempt < 2; attempt++) {
+                try {
+                    Files.createLink(lock, temp);
+                    return true;
+                } catch (FileAlreadyExistsException e) {
+                    if (!expired(lock)) return false;
+                    Files.deleteIfExists(lock);
+                } catch (NoSuchFileException e) {
+                    // Unlocked between the two calls; try again
+                }
+            }
+            return false;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void unlock(String key, String owner) throws IOException {
+        Path lock = file(key, LOCK);
+        try {
+            if (Files.readString(lock, StandardCharsets.UTF_8).equals(owner)) Files.deleteIfExists(lock);
+        } catch (NoSuchFileException e) {
+            // Already gone, nothing to release
+        }
+    }
+
+    /**
+     * Removes expired decks and locks, and temporary files older than a minute.
+     */
+    @Override
+    public void purgeExpired() throws IOException {
+        long staleTemp = Instant.now().minus(STALE_TEMP).toEpochMilli();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path path : files) {
+                String name = path.getFileName().toString();
+                try {
+                    if (name.endsWith(TEMP)) {
+                        if (createdMillis(path, name) < staleTemp) Files.deleteIfExists(path);
+                    } else if ((name.endsWith(DECK) || name.endsWith(LOCK)) && expired(path)) {
+                        Files.deleteIfExists(path);
+                    }
+                } catch (NoSuchFileException e) {
+                    // Removed by another replica meanwhile
+                }
+            }
+        }
+    }
+
+    private Path temp(String key, byte[] content, Duration ttl) throws IOException {
+        Path temp = directory.resolve(tempName(key, System.currentTimeMillis()));
+        try {
+            Files.write(temp, content);
+            Files.setLastModifiedTime(temp, FileTime.from(Instant.now().plus(ttl)));
+            return temp;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * {@code <key>.<created epoch millis>-<random>.tmp}
+     */
+    static String tempName(String key, long createdMillis) {
+        return key + "." + createdMillis + "-" + UUID.randomUUID() + TEMP;
+    }
+
+    /**
+     * When a temporary file was created, from its name; files named by older versions fall back
+     * to their modification time.
+     */
+    private static long createdMillis(Path path, String name) throws IOException {
+        int start = name.indexOf('.') + 1;
+        int end = name.indexOf('-', start);
+        if (start > 0 && end > start) {
+            try {
+                return Long.parseLong(name, start, end, 10);
+            } catch (NumberFormatException e) {
+                // Not one of ours
+            }
+        }
+        return Files.getLastModifiedTime(path).toMillis();
+    }
+
+    private static boolean expired(Path path) throws IOException {
+        return Files.getLastModifiedTime(path).toInstant().isBefore(Instant.now());
+    }
+
+    private Path file(String key, String suffix) {
+        if (key == null || !VALID_KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid render key");
+        }
+        return directory.resolve(key + suffix);
+    }
+}
@@ -0,0 +1,135 @@
+package com.repotodeck.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick substring matcher compiled into a dense ASCII DFA.
+ * <p>
+ * Every keyword carries a category bit; {@link #match} scans the input once, case-insensitively,
+ * and returns the OR of the categories of every keyword occurring anywhere in it. This replaces
+ * a {@code String.contains} per keyword (one scan per keyword) with a single scan per string,
+ * and allocates nothing while matching. Characters outside ASCII can't be part of any keyword,
+ * so they simply reset the automaton.
+ * <p>
+ * Immutable once built; safe to share between threads.
+ */
+final class KeywordMatcher {
+
+    private static final int ALPHABET = 128;
+
+    private final int[][] transitions;
+    private final int[] outputs;
+
+    private KeywordMatcher(int[][] transitions, int[] outputs) {
+        this.transitions = transitions;
+        this.outputs = outputs;
+    }
+
+    /**
+     * @param keywords keyword to category bitmask (bits 0..31); keywords are lower-cased
+     */
+    static KeywordMatcher compile(Map<String, Integer> keywords) {
+        // 1. Trie
+        List<Map<Character, Integer>> gotoFn = new ArrayList<>();
+        List<Integer> out = new ArrayList<>();
+        gotoFn.add(new HashMap<>());
+        out.add(0);
+        for (Map.Entry<String, Integer> entry : keywords.entrySet()) {
+            String keyword = entry.getKey().toLowerCase();
+            if (keyword.isEmpty()) continue;
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                if (c >= ALPHABET) {
+                    throw new IllegalArgumentException("Keyword must be ASCII: " + keyword);
+                }
+                Integer nextState = gotoFn.get(state).get(c);
+                if (nextState == null) {
+                    nextState = gotoFn.size();
+                    gotoFn.get(state).put(c, nextState);
+                    gotoFn.add(new HashMap<>());
+                    out.add(0);
+                }
+                state = nextState;
+            }
+            out.set(state, out.get(state) | entry.getValue());
+        }
+
+        // 2. Failure links (BFS), folded straight into a full transition table
+        int stateCount = gotoFn.size();
+        int[][] transitions = new int[stateCount][ALPHABET];
+        int[] outputs = new int[stateCount];
+        int[] fail = new int[stateCount];
+        for (int s = 0; s < stateCount; s++) outputs[s] = out.get(s);
+
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            Integer child = gotoFn.get(0).get((char) c);
+            if (child != null) {
+                transitions[0][c] = child;
+                fail[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] |= outputs[fail[state]];
+            for (int c = 0; c < ALPHABET; c++) {
+                Integer child = gotoFn.get(state).get((char) c);
+                if (child != null) {
+                    transitions[state][c] = child;
+                    fail[child] = transitions[fail[state]][c];
+                    queue.add(child);
+                } else {
+                    transitions[state][c] = transitions[fail[state]][c];
+                }
+            }
+        }
+        return new KeywordMatcher(transitions, outputs);
+    }
+
+    int match(String text) {
+        if (text == null) return 0;
+        int state = 0;
+        int found = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = next(state, text.charAt(i));
+            found |= outputs[state];
+        }
+        return found;
+    }
+
+    /**
+     * Same as {@code match(first + separator + second)} (a null part counts as empty), without
+     * building that string: the automaton simply runs on from one part into the next.
+     */
+    int match(String first, char separator, String second) {
+        int state = 0;
+        int found = 0;
+        if (first != null) {
+            for (int i = 0; i < first.length(); i++) {
+                state = next(state, first.charAt(i));
+                found |= outputs[state];
+            }
+        }
+        state = next(state, separator);
+        found |= outputs[state];
+        if (second != null) {
+            for (int i = 0; i < second.length(); i++) {
+                state = next(state, second.charAt(i));
+                found |= outputs[state];
+            }
+        }
+        return found;
+    }
+
+    private int next(int state, char c) {
+        if (c >= 'A' && c <= 'Z') c = (char) (c + ('a' - 'A'));
+        return c < ALPHABET ? transitions[state][c] : 0;
+    }
+}
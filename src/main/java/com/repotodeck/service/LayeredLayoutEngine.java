@@ -0,0 +1,295 @@
+package com.repotodeck.service;
+
+import java.util.Arrays;
+
+/**
+ * Layered (Sugiyama-style) layout driven by the dependency graph.
+ * <p>
+ * The three tiers stay as horizontal bands (frontends, services, data stores, top to bottom),
+ * and inside each band services are layered by their {@code depends_on}/{@code links} edges:
+ * <ol>
+ *     <li>cycle breaking - DFS back edges inside a band are reversed;</li>
+ *     <li>layering - longest path over the resulting DAG, so a service sits above what it depends on;</li>
+ *     <li>crossing reduction - alternating barycenter sweeps over all edges, including cross-band ones;</li>
+ *     <li>coordinate assignment - each row is pulled towards the barycenter of its neighbours above,
+ *     then wide layers are wrapped so the diagram keeps a roughly 16:9 shape.</li>
+ * </ol>
+ * Everything except the sorts in step 3 is linear in nodes + edges. Steps 3 and 4 are optional
+ * refinements: when the time budget runs out they stop early and the layout is still valid.
+ * If the budget is gone before layering finishes, {@link #layout} returns false and the caller
+ * falls back to the plain tier grid.
+ */
+final class LayeredLayoutEngine {
+
+    private static final int MAX_SWEEPS = 8;
+    private static final double TARGET_ASPECT = 16.0 / 9.0;
+
+    private final double nodeWidth;
+    private final double cellWidth;
+    private final double rowPitch;
+    private final double layerGap;
+    private final double bandGap;
+    private final int minNodesPerRow;
+
+    LayeredLayoutEngine(double nodeWidth, double gapX, double rowPitch,
+                        double layerGap, double bandGap, int minNodesPerRow) {
+        this.nodeWidth = nodeWidth;
+        this.cellWidth = nodeWidth + gapX;
+        this.rowPitch = rowPitch;
+        this.layerGap = layerGap;
+        this.bandGap = bandGap;
+        this.minNodesPerRow = minNodesPerRow;
+    }
+
+    /**
+     * Places every service of {@code graph}, banded by its tier, as the top-left corner of its
+     * box in unscaled content coordinates.
+     *
+     * @param deadlineNanos {@link System#nanoTime()} value after which refinement stops
+     * @return false if over budget, in which case {@code x} and {@code y} are incomplete
+     */
+    boolean layout(ServiceGraph graph, long deadlineNanos, double[] x, double[] y) {
+        // --- GRAPH (already ints in CSR form; bands from the tiers) ---
+        int n = graph.size();
+        int[] bandOf = new int[n];
+        for (int v = 0; v < n; v++) bandOf[v] = graph.tier(v);
+        int[] outStart = graph.linkOffsets();
+        int[] out = graph.linkTargets();
+        int[] neighbourStart = new int[n + 1];
+        int[] neighbours = undirectedAdjacency(n, outStart, out, neighbourStart);
+
+        // --- 1 + 2: CYCLE BREAKING AND LONGEST-PATH LAYERING, PER BAND ---
+        int[] layerInBand = layerWithinBands(n, outStart, out, bandOf);
+        if (System.nanoTime() > deadlineNanos) return false;
+
+        int[] bandLayers = new int[3];
+        for (int v = 0; v < n; v++) bandLayers[bandOf[v]] = Math.max(bandLayers[bandOf[v]], layerInBand[v] + 1);
+        int[] bandOffset = {0, bandLayers[0], bandLayers[0] + bandLayers[1]};
+        int layerCount = bandOffset[2] + bandLayers[2];
+
+        int[] layerOf = new int[n];
+        int[] layerSize = new int[layerCount];
+        for (int v = 0; v < n; v++) {
+            layerOf[v] = bandOffset[bandOf[v]] + layerInBand[v];
+            layerSize[layerOf[v]]++;
+        }
+        int[][] layers = new int[layerCount][];
+        int[] fill = new int[layerCount];
+        for (int l = 0; l < layerCount; l++) layers[l] = new int[layerSize[l]];
+        for (int v = 0; v < n; v++) layers[layerOf[v]][fill[layerOf[v]]++] = v;
+
+        // --- 3: CROSSING REDUCTION ---
+        double[] rank = new double[n];
+        for (int[] layer : layers) normalizeRanks(layer, rank);
+        for (int sweep = 0; sweep < MAX_SWEEPS && System.nanoTime() < deadlineNanos; sweep++) {
+            boolean down = sweep % 2 == 0;
+            for (int step = 1; step < layerCount; step++) {
+                int l = down ? step : layerCount - 1 - step;
+                reorderByBarycenter(layers[l], l, down, layerOf, rank, neighbours, neighbourStart);
+                if (System.nanoTime() > deadlineNanos) break;
+            }
+        }
+
+        // --- 4: COORDINATES ---
+        int perRow = Math.max(minNodesPerRow,
+                (int) Math.ceil(Math.sqrt(n * (rowPitch / cellWidth) * TARGET_ASPECT)));
+        double currentY = 0;
+        int previousBand = -1;
+        for (int l = 0; l < layerCount; l++) {
+            int[] layer = layers[l];
+            if (layer.length == 0) continue;
+            int band = bandOf[layer[0]];
+            if (previousBand >= 0) currentY += band != previousBand ? bandGap : layerGap;
+            previousBand = band;
+
+            for (int start = 0; start < layer.length; start += perRow) {
+                int end = Math.min(start + perRow, layer.length);
+                placeRow(layer, start, end, currentY, x, y, layerOf, neighbours, neighbourStart,
+                        System.nanoTime() < deadlineNanos);
+                currentY += rowPitch;
+            }
+        }
+        return true;
+    }
+
+    private static int[] undirectedAdjacency(int n, int[] outStart, int[] out, int[] start) {
+        for (int u = 0; u < n; u++) {
+            start[u + 1] += outStart[u + 1] - outStart[u];
+            for (int s = outStart[u]; s < outStart[u + 1]; s++) start[out[s] + 1]++;
+        }
+        for (int i = 0; i < n; i++) start[i + 1] += start[i];
+        int[] adjacency = new int[start[n]];
+        int[] cursor = Arrays.copyOf(start, n);
+        for (int u = 0; u < n; u++) {
+            for (int s = outStart[u]; s < outStart[u + 1]; s++) {
+                adjacency[cursor[u]++] = out[s];
+                adjacency[cursor[out[s]]++] = u;
+            }
+        }
+        return adjacency;
+    }
+
+    /**
+     * Iterative DFS marks back edges (reversed to break cycles), then Kahn's algorithm assigns
+     * every node one layer below its deepest predecessor. Only edges inside a band count.
+     */
+    private static int[] layerWithinBands(int n, int[] linkStart, int[] links, int[] bandOf) {
+        int[] outStart = new int[n + 1];
+        for (int u = 0; u < n; u++) {
+            for (int s = linkStart[u]; s < linkStart[u + 1]; s++) {
+                if (bandOf[u] == bandOf[links[s]]) outStart[u + 1]++;
+            }
+        }
+        for (int i = 0; i < n; i++) outStart[i + 1] += outStart[i];
+        int[] out = new int[outStart[n]];
+        int[] cursor = Arrays.copyOf(outStart, n);
+        for (int u = 0; u < n; u++) {
+            for (int s = linkStart[u]; s < linkStart[u + 1]; s++) {
+                if (bandOf[u] == bandOf[links[s]]) out[cursor[u]++] = links[s];
+            }
+        }
+
+        // DFS: 0 = unvisited, 1 = on stack, 2 = done. Back edges are stored as -1 - target.
+        byte[] state = new byte[n];
+        int[] stack = new int[n];
+        int[] next = new int[n];
+        for (int root = 0; root < n; root++) {
+            if (state[root] != 0) continue;
+            int top = 0;
+            stack[0] = root;
+            next[root] = outStart[root];
+            state[root] = 1;
+            while (top >= 0) {
+                int u = stack[top];
+                if (next[u] < outStart[u + 1]) {
+                    int slot = next[u]++;
+                    int v = out[slot];
+                    if (state[v] == 0) {
+                        state[v] = 1;
+                        next[v] = outStart[v];
+                        stack[++top] = v;
+                    } else if (state[v] == 1) {
+                        out[slot] = -1 - v; // back edge
+                    }
+                } else {
+                    state[u] = 2;
+                    top--;
+                }
+            }
+        }
+
+        // Kahn over the DAG (forward edges as-is, back edges reversed)
+        int[] inDegree = new int[n];
+        int[] revStart = new int[n + 1];
+        for (int u = 0; u < n; u++) {
+            for (int s = outStart[u]; s < outStart[u + 1]; s++) {
+                int v = out[s];
+                if (v >= 0) inDegree[v]++;
+                else { inDegree[u]++; revStart[-1 - v + 1]++; }
+            }
+        }
+        for (int i = 0; i < n; i++) revStart[i + 1] += revStart[i];
+        int[] rev = new int[revStart[n]];
+        int[] revCursor = Arrays.copyOf(revStart, n);
+        for (int u = 0; u < n; u++) {
+            for (int s = outStart[u]; s < outStart[u + 1]; s++) {
+                if (out[s] < 0) rev[revCursor[-1 - out[s]]++] = u;
+            }
+        }
+
+        int[] layer = new int[n];
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int v = 0; v < n; v++) if (inDegree[v] == 0) queue[tail++] = v;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int s = outStart[u]; s < outStart[u + 1]; s++) {
+                if (out[s] >= 0) tail = relax(u, out[s], layer, inDegree, queue, tail);
+            }
+            for (int s = revStart[u]; s < revStart[u + 1]; s++) {
+                tail = relax(u, rev[s], layer, inDegree, queue, tail);
+            }
+        }
+        return layer;
+    }
+
+    private static int relax(int u, int v, int[] layer, int[] inDegree, int[] queue, int tail) {
+        layer[v] = Math.max(layer[v], layer[u] + 1);
+        if (--inDegree[v] == 0) queue[tail++] = v;
+        return tail;
+    }
+
+    /**
+     * Sorts one layer by the mean rank of its neighbours in the layers already swept.
+     * Nodes without such neighbours keep their current rank.
+     */
+    private static void reorderByBarycenter(int[] layer, int l, boolean fromAbove, int[] layerOf,
+                                            double[] rank, int[] neighbours, int[] start) {
+        if (layer.length < 2) return;
+        double[] key = new double[layer.length];
+        Integer[] order = new Integer[layer.length];
+        for (int i = 0; i < layer.length; i++) {
+            int v = layer[i];
+            double sum = 0;
+            int count = 0;
+            for (int s = start[v]; s < start[v + 1]; s++) {
+                int w = neighbours[s];
+                if (fromAbove ? layerOf[w] < l : layerOf[w] > l) {
+                    sum += rank[w];
+                    count++;
+                }
+            }
+            key[i] = count > 0 ? sum / count : rank[v];
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(key[a], key[b]));
+        int[] sorted = new int[layer.length];
+        for (int i = 0; i < layer.length; i++) sorted[i] = layer[order[i]];
+        System.arraycopy(sorted, 0, layer, 0, layer.length);
+        normalizeRanks(layer, rank);
+    }
+
+    private static void normalizeRanks(int[] layer, double[] rank) {
+        for (int i = 0; i < layer.length; i++) rank[layer[i]] = (i + 0.5) / layer.length;
+    }
+
+    /**
+     * Places {@code layer[start..end)} on one row. Each node wants to sit under the mean x of its
+     * already placed neighbours; a left-to-right pass keeps order and spacing, then the row is
+     * shifted so that on average it sits where it wanted to be.
+     */
+    private void placeRow(int[] layer, int start, int end, double rowY, double[] x, double[] y,
+                          int[] layerOf, int[] neighbours, int[] neighbourStart, boolean align) {
+        int count = end - start;
+        double rowWidth = count * cellWidth - (cellWidth - nodeWidth);
+        double left = -rowWidth / 2;
+        double desiredSum = 0;
+        double placedSum = 0;
+        double previous = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            int v = layer[start + i];
+            double desired = left + i * cellWidth;
+            if (align) {
+                double sum = 0;
+                int placed = 0;
+                for (int s = neighbourStart[v]; s < neighbourStart[v + 1]; s++) {
+                    int w = neighbours[s];
+                    if (layerOf[w] < layerOf[v]) {
+                        sum += x[w];
+                        placed++;
+                    }
+                }
+                if (placed > 0) desired = sum / placed;
+            }
+            double actual = Math.max(desired, previous + cellWidth);
+            x[v] = actual;
+            y[v] = rowY;
+            previous = actual;
+            desiredSum += desired;
+            placedSum += actual;
+        }
+        double shift = (desiredSum - placedSum) / count;
+        for (int i = start; i < end; i++) x[layer[i]] += shift;
+    }
+}
@@ -0,0 +1,72 @@
+package com.repotodeck.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link SharedRenderStore} inside this JVM: shared only by {@link RenderFarmService}s of one
+ * process, which makes it the single-replica setting and the one tests use. Decks are bounded
+ * by total bytes like the local render cache and expire after their ttl.
+ */
+final class MemoryRenderStore implements SharedRenderStore {
+
+    private record Lease(String owner, long expiresAt) {
+    }
+
+    private record Deck(byte[] bytes, long ttlNanos) {
+    }
+
+    private final Cache<String, Deck> decks;
+    private final ConcurrentMap<String, Lease> locks = new ConcurrentHashMap<>();
+
+    MemoryRenderStore(long maxBytes) {
+        this.decks = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, Deck deck) -> deck.bytes().length)
+                .expireAfter(new Expiry<String, Deck>() {
+                    @Override
+                    public long expireAfterCreate(String key, Deck deck, long currentTime) {
+                        return deck.ttlNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Deck deck, long currentTime, long currentDuration) {
+                        return deck.ttlNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Deck deck, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public byte[] get(String key) {
+        Deck deck = decks.getIfPresent(key);
+        return deck != null ? deck.bytes() : null;
+    }
+
+    @Override
+    public void put(String key, byte[] deck, Duration ttl) {
+        decks.put(key, new Deck(deck, ttl.toNanos()));
+    }
+
+    @Override
+    public boolean tryLock(String key, String owner, Duration lease) {
+        long now = System.nanoTime();
+        Lease mine = new Lease(owner, now + lease.toNanos());
+        return locks.compute(key, (k, held) -> held == null || held.expiresAt() - now <= 0 ? mine : held) == mine;
+    }
+
+    @Override
+    public void unlock(String key, String owner) {
+        locks.computeIfPresent(key, (k, held) -> held.owner().equals(owner) ? null : held);
+    }
+}
@@ -0,0 +1,40 @@
+package com.repotodeck.service;
+
+import org.apache.poi.sl.usermodel.ShapeType;
+
+import java.awt.*;
+
+/**
+ * How a node box is drawn: one constant per tier, with its shape and fill resolved at layout
+ * time so the draw pass never has to look up a node's tier again.
+ */
+public enum NodeStyle {
+    FRONTEND(ShapeType.ROUND_RECT, new Color(13, 148, 136)),
+    SERVICE(ShapeType.ROUND_RECT, new Color(37, 99, 235)),
+    DATABASE(ShapeType.FLOW_CHART_MAGNETIC_DISK, new Color(234, 88, 12));
+
+    private final ShapeType shapeType;
+    private final Color fill;
+
+    NodeStyle(ShapeType shapeType, Color fill) {
+        this.shapeType = shapeType;
+        this.fill = fill;
+    }
+
+    public ShapeType shapeType() {
+        return shapeType;
+    }
+
+    public Color fill() {
+        return fill;
+    }
+
+    /**
+     * Same rule the grid drawing always used: an explicit DATABASE type or the database tier
+     * wins, then the frontend tier, everything else is a plain service.
+     */
+    static NodeStyle of(String type, int layerIndex) {
+        if ("DATABASE".equals(type) || layerIndex == 2) return DATABASE;
+        return layerIndex == 0 ? FRONTEND : SERVICE;
+    }
+}
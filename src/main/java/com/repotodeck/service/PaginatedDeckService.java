@@ -0,0 +1,255 @@
+package com.repotodeck.service;
+
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xslf.usermodel.XSLFShape;
+import org.apache.poi.xslf.usermodel.XSLFSimpleShape;
+import org.apache.poi.xslf.usermodel.XSLFSlide;
+import org.apache.poi.xslf.usermodel.XSLFTextBox;
+import org.apache.poi.xslf.usermodel.XSLFTextParagraph;
+import org.apache.poi.xslf.usermodel.XSLFTextRun;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Renders a large graph as several slides ({@link PptGeneratorService.Detail#PAGED}): an
+ * overview with one box per cluster, then one slide per cluster (see {@link ClusterPartitioner}).
+ * Overview boxes link to their cluster's slide; every cluster slide links back to the overview
+ * and to the clusters its services link to or are linked from.
+ * <p>
+ * Page graphs are built, laid out and routed in parallel, each at the detail the document was
+ * admitted with; POI decks are not thread-safe, so slides are drawn into the deck sequentially,
+ * as for batch decks. No cluster
+ * slide holds more than {@code max-shapes-per-slide} shapes; the overview drops links to stay
+ * under it, so only more clusters than half the cap take it over.
+ */
+@Service
+public class PaginatedDeckService {
+
+    public enum Clustering { COMPONENTS, PREFIX }
+
+    static final String OVERVIEW_TITLE = "Overview";
+
+    // Title and navigation text boxes on every cluster slide
+    private static final int NAVIGATION_SHAPES = 2;
+
+    private final PptGeneratorService pptGeneratorService;
+    private final Clustering clustering;
+    private final int maxShapesPerSlide;
+    private final int minClusterSize;
+    private final int autoMinServices;
+
+    public PaginatedDeckService(PptGeneratorService pptGeneratorService) {
+        this(pptGeneratorService, Clustering.COMPONENTS, 400, 3, 0);
+    }
+
+    @Autowired
+    public PaginatedDeckService(PptGeneratorService pptGeneratorService,
+                                @Value("${repotodeck.pagination.clustering:COMPONENTS}") Clustering clustering,
+                                @Value("${repotodeck.pagination.max-shapes-per-slide:400}") int maxShapesPerSlide,
+                                @Value("${repotodeck.pagination.min-cluster-size:3}") int minClusterSize,
+                                @Value("${repotodeck.pagination.auto-min-services:300}") int autoMinServices) {
+        if (maxShapesPerSlide < NAVIGATION_SHAPES + 2) {
+            throw new IllegalArgumentException("repotodeck.pagination.max-shapes-per-slide must be at least "
+                    + (NAVIGATION_SHAPES + 2));
+        }
+        this.pptGeneratorService = pptGeneratorService;
+        this.clustering = clustering;
+        this.maxShapesPerSlide = maxShapesPerSlide;
+        this.minClusterSize = minClusterSize;
+        this.autoMinServices = autoMinServices;
+    }
+
+    /**
+     * Whether a deck should be paginated: as {@code requested} if given, otherwise when the
+     * document has at least {@code auto-min-services} services (0 never paginates by itself).
+     */
+    public boolean paginates(Boolean requested, RenderCost cost) {
+        if (requested != null) return requested;
+        return autoMinServices > 0 && cost.services() >= autoMinServices;
+    }
+
+    /**
+     * Writes {@code graph} as a paginated deck into {@code out}, which is flushed but not closed.
+     * A graph that fits on one slide gets the usual single-slide deck.
+     *
+     * @return bytes written
+     */
+    public long write(ServiceGraph graph, OutputStream out) throws IOException {
+        return write(graph, PptGeneratorService.Detail.FULL, out);
+    }
+
+    /**
+     * Same as {@link #write(ServiceGraph, OutputStream)}, laying out every slide at {@code detail}
+     * (FULL or REDUCED).
+     *
+     * @return bytes written
+     */
+    public long write(ServiceGraph graph, PptGeneratorService.Detail detail, OutputStream out) throws IOException {
+        ClusterPartitioner.Partition partition = ClusterPartitioner.partition(
+                graph, clustering, maxShapesPerSlide - NAVIGATION_SHAPES, minClusterSize);
+        List<ClusterPartitioner.Page> pages = partition.pages();
+        if (pages.size() <= 1) {
+            return pptGeneratorService.generateSlide(graph, detail, out);
+        }
+        List<BitSet> linked = linkedPages(graph, partition);
+
+        // Index 0 is the overview, page i is index i + 1
+        List<SlideLayout> layouts = IntStream.rangeClosed(0, pages.size())
+                .parallel()
+                .mapToObj(i -> pptGeneratorService.layout(i == 0
+                        ? overview(graph, partition)
+                        : pageGraph(graph, partition, i - 1), detail))
+                .toList();
+
+        try (XMLSlideShow pptx = pptGeneratorService.createDeck(layouts)) {
+            XSLFSlide overview = pptGeneratorService.drawSlide(pptx, layouts.get(0),
+                    OVERVIEW_TITLE + ": " + graph.size() + " services in " + pages.size() + " parts");
+            List<XSLFSlide> slides = new ArrayList<>(pages.size());
+            for (int p = 0; p < pages.size(); p++) {
+                slides.add(pptGeneratorService.drawSlide(pptx, layouts.get(p + 1), pages.get(p).name()));
+            }
+
+            // Hyperlinks need their target slide, so they go in once every slide exists
+            Map<String, XSLFSlide> byBox = new HashMap<>();
+            for (int p = 0; p < pages.size(); p++) {
+                byBox.put(ShapeNames.node(pages.get(p).name()), slides.get(p));
+            }
+            for (XSLFShape shape : overview.getShapes()) {
+                XSLFSlide target = byBox.get(shape.getShapeName());
+                if (target != null && shape instanceof XSLFSimpleShape box) {
+                    box.createHyperlink().linkToSlide(target);
+                }
+            }
+            for (int p = 0; p < pages.size(); p++) {
+                addNavigation(slides.get(p), layouts.get(p + 1).width(), overview, pages, slides, linked.get(p));
+            }
+
+            long written = pptGeneratorService.writeDeck(pptx, out);
+            out.flush();
+            return written;
+        }
+    }
+
+    /**
+     * Pages each page's services link to or are linked from.
+     */
+    private static List<BitSet> linkedPages(ServiceGraph graph, ClusterPartitioner.Partition partition) {
+        int[] pageOf = partition.pageOf();
+        int[] offsets = graph.linkOffsets();
+        int[] targets = graph.linkTargets();
+        List<BitSet> linked = new ArrayList<>(partition.pages().size());
+        for (int p = 0; p < partition.pages().size(); p++) linked.add(new BitSet());
+        for (int u = 0; u < graph.size(); u++) {
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                int from = pageOf[u];
+                int to = pageOf[targets[k]];
+                if (from != to) {
+                    linked.get(from).set(to);
+                    linked.get(to).set(from);
+                }
+            }
+        }
+        return linked;
+    }
+
+    /**
+     * One box per page, subtitled with its service count and styled by its most common tier,
+     * and a link wherever a service links into another page. Links that would take the slide
+     * over the shape cap are left out; the cluster slides still list them.
+     */
+    private ServiceGraph overview(ServiceGraph graph, ClusterPartitioner.Partition partition) {
+        List<ClusterPartitioner.Page> pages = partition.pages();
+        int[] pageOf = partition.pageOf();
+        int[] offsets = graph.linkOffsets();
+        int[] targets = graph.linkTargets();
+
+        int budget = maxShapesPerSlide - 1 - 2 * pages.size(); // title, box and shadow per page
+        ServiceGraph.Builder builder = new ServiceGraph.Builder();
+        for (int p = 0; p < pages.size(); p++) {
+            ClusterPartitioner.Page page = pages.get(p);
+            BitSet to = new BitSet();
+            for (int u : page.members()) {
+                for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                    if (pageOf[targets[k]] != p) to.set(pageOf[targets[k]]);
+                }
+            }
+            List<String> links = new ArrayList<>();
+            for (int q = to.nextSetBit(0); q >= 0 && budget > 0; q = to.nextSetBit(q + 1), budget--) {
+                links.add(pages.get(q).name());
+            }
+            int tier = commonTier(graph, page.members());
+            builder.add(page.name(), page.members().length + " services", tier, NodeStyle.of(null, tier), links);
+        }
+        return builder.build();
+    }
+
+    private static int commonTier(ServiceGraph graph, int[] members) {
+        int[] counts = new int[3];
+        for (int u : members) counts[graph.tier(u)]++;
+        int tier = 1;
+        for (int t = 0; t < counts.length; t++) {
+            if (counts[t] > counts[tier]) tier = t;
+        }
+        return tier;
+    }
+
+    /**
+     * The services of page {@code p} with their links to each other.
+     */
+    private static ServiceGraph pageGraph(ServiceGraph graph, ClusterPartitioner.Partition partition, int p) {
+        int[] pageOf = partition.pageOf();
+        int[] offsets = graph.linkOffsets();
+        int[] targets = graph.linkTargets();
+        ServiceGraph.Builder builder = new ServiceGraph.Builder();
+        for (int u : partition.pages().get(p).members()) {
+            List<String> links = new ArrayList<>(offsets[u + 1] - offsets[u]);
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                if (pageOf[targets[k]] == p) links.add(graph.id(targets[k]));
+            }
+            builder.add(graph.id(u), graph.image(u), graph.tier(u), graph.style(u), links);
+        }
+        return builder.build();
+    }
+
+    /**
+     * A line under the title: a link back to the overview, then one to every linked page.
+     */
+    private static void addNavigation(XSLFSlide slide, double slideWidth, XSLFSlide overview,
+                                      List<ClusterPartitioner.Page> pages, List<XSLFSlide> slides, BitSet linked) {
+        XSLFTextBox tb = slide.createTextBox();
+        tb.setAnchor(new Rectangle2D.Double(40, 70, slideWidth - 80, 30));
+        XSLFTextParagraph paragraph = tb.addNewTextParagraph();
+        link(paragraph.addNewTextRun(), "\u25C0 " + OVERVIEW_TITLE, overview); // ◀
+        if (linked.isEmpty()) return;
+
+        text(paragraph.addNewTextRun(), "    Linked with: ");
+        for (int q = linked.nextSetBit(0); q >= 0; q = linked.nextSetBit(q + 1)) {
+            link(paragraph.addNewTextRun(), pages.get(q).name(), slides.get(q));
+            if (linked.nextSetBit(q + 1) >= 0) text(paragraph.addNewTextRun(), ", ");
+        }
+    }
+
+    private static void link(XSLFTextRun run, String text, XSLFSlide target) {
+        text(run, text);
+        run.setFontColor(NodeStyle.SERVICE.fill());
+        run.setUnderlined(true);
+        run.createHyperlink().linkToSlide(target);
+    }
+
+    private static void text(XSLFTextRun run, String text) {
+        run.setText(text);
+        run.setFontSize(14.0);
+        run.setFontColor(DiagramStyle.COLOR_TITLE);
+    }
+}
@@ -0,0 +1,293 @@
+package com.repotodeck.service;
+
+import java.awt.*;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes the diagram as a one-page vector PDF. The file is assembled by hand (there is no PDF
+ * library on the classpath, and a diagram needs only paths, fills and a few text runs) and
+ * streamed: the page content is deflated straight into the output and its length is written
+ * after it as an indirect object.
+ * <p>
+ * Text uses the standard Helvetica fonts every PDF reader has, so nothing is embedded;
+ * characters outside WinAnsi (Windows-1252) become "?". Centering uses the standard font
+ * metrics below.
+ */
+final class PdfDiagramWriter implements DiagramWriter {
+
+    // Object numbers
+    private static final int CATALOG = 1, PAGES = 2, PAGE = 3, CONTENT = 4;
+    private static final int FONT_BOLD = 5, FONT_ITALIC = 6, FONT_REGULAR = 7, BORDER_ALPHA = 8, CONTENT_LENGTH = 9;
+    private static final int OBJECTS = 10;
+
+    private static final Charset WIN_ANSI = Charset.forName("windows-1252");
+
+    // Advance widths of ' ' to '~' in 1/1000 em, from the standard Helvetica AFM files
+    private static final short[] HELVETICA = {
+            278, 278, 355, 556, 556, 889, 667, 191, 333, 333, 389, 584, 278, 333, 278, 278,
+            556, 556, 556, 556, 556, 556, 556, 556, 556, 556, 278, 278, 584, 584, 584, 556,
+            1015, 667, 667, 722, 722, 667, 611, 778, 722, 278, 500, 667, 556, 833, 722, 778,
+            667, 778, 722, 667, 611, 722, 667, 944, 667, 667, 611, 278, 278, 278, 469, 556,
+            333, 556, 556, 500, 556, 556, 278, 556, 556, 222, 222, 500, 222, 833, 556, 556,
+            556, 556, 333, 500, 278, 556, 500, 722, 500, 500, 500, 334, 260, 334, 584};
+    private static final short[] HELVETICA_BOLD = {
+            278, 333, 474, 556, 556, 889, 722, 238, 333, 333, 389, 584, 278, 333, 278, 278,
+            556, 556, 556, 556, 556, 556, 556, 556, 556, 556, 333, 333, 584, 584, 584, 611,
+            975, 722, 722, 722, 722, 667, 611, 778, 722, 278, 556, 722, 611, 833, 722, 778,
+            667, 778, 722, 667, 611, 722, 667, 944, 667, 667, 611, 333, 278, 333, 584, 556,
+            333, 556, 611, 556, 611, 556, 333, 611, 611, 278, 278, 556, 278, 889, 611, 611,
+            611, 611, 389, 556, 333, 611, 556, 778, 556, 556, 500, 389, 280, 389, 584};
+    private static final int DEFAULT_WIDTH = 556;
+
+    @Override
+    public DiagramFormat format() {
+        return DiagramFormat.PDF;
+    }
+
+    @Override
+    public void write(SlideLayout layout, OutputStream out) throws IOException {
+        PipelineMetrics.CountingOutputStream pdf = new PipelineMetrics.CountingOutputStream(new BufferedOutputStream(out, 16 * 1024));
+        long[] offsets = new long[OBJECTS];
+
+        ascii(pdf, "%PDF-1.4\n%âãÏÓ\n");
+        object(pdf, offsets, CATALOG, "<< /Type /Catalog /Pages " + PAGES + " 0 R >>");
+        object(pdf, offsets, PAGES, "<< /Type /Pages /Kids [" + PAGE + " 0 R] /Count 1 >>");
+        object(pdf, offsets, PAGE, "<< /Type /Page /Parent " + PAGES + " 0 R /MediaBox [0 0 "
+                + DiagramStyle.decimal(layout.width()) + " " + DiagramStyle.decimal(layout.height()) + "]"
+                + " /Resources << /Font << /F1 " + FONT_BOLD + " 0 R /F2 " + FONT_ITALIC + " 0 R /F3 " + FONT_REGULAR + " 0 R >>"
+                + " /ExtGState << /GS1 " + BORDER_ALPHA + " 0 R >> >> /Contents " + CONTENT + " 0 R >>");
+
+        offsets[CONTENT] = pdf.getCount();
+        ascii(pdf, CONTENT + " 0 obj\n<< /Length " + CONTENT_LENGTH + " 0 R /Filter /FlateDecode >>\nstream\n");
+        long start = pdf.getCount();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            DeflaterOutputStream deflated = new DeflaterOutputStream(pdf, deflater, 8 * 1024);
+            Content content = new Content(deflated);
+            writeContent(content, layout);
+            content.flush();
+            deflated.finish();
+        } finally {
+            deflater.end();
+        }
+        long length = pdf.getCount() - start;
+        ascii(pdf, "\nendstream\nendobj\n");
+
+        object(pdf, offsets, FONT_BOLD, font("Helvetica-Bold"));
+        object(pdf, offsets, FONT_ITALIC, font("Helvetica-Oblique"));
+        object(pdf, offsets, FONT_REGULAR, font("Helvetica"));
+        object(pdf, offsets, BORDER_ALPHA, "<< /Type /ExtGState /CA " + Content.component(DiagramStyle.COLOR_NODE_BORDER.getAlpha()) + " >>");
+        object(pdf, offsets, CONTENT_LENGTH, Long.toString(length));
+
+        long xref = pdf.getCount();
+        StringBuilder table = new StringBuilder("xref\n0 ").append(OBJECTS).append("\n0000000000 65535 f \n");
+        for (int i = 1; i < OBJECTS; i++) table.append(String.format("%010d 00000 n \n", offsets[i]));
+        table.append("trailer\n<< /Size ").append(OBJECTS).append(" /Root ").append(CATALOG).append(" 0 R >>\nstartxref\n")
+                .append(xref).append("\n%%EOF\n");
+        ascii(pdf, table.toString());
+        pdf.flush();
+    }
+
+    // --- PAGE CONTENT ---
+
+    private static void writeContent(Content c, SlideLayout layout) throws IOException {
+        // Flip the page so content uses the layout's coordinates (origin top left, y down)
+        c.op("1 0 0 -1 0 ").num(layout.height()).op(" cm\n");
+        c.fill(DiagramStyle.COLOR_BG).rect(0, 0, layout.width(), layout.height()).op("f\n");
+
+        if (layout.isEmpty()) {
+            c.fill(DiagramStyle.COLOR_TEXT);
+            c.text("/F3", HELVETICA, DiagramStyle.EMPTY_STATE, DiagramStyle.EMPTY_STATE_FONT_SIZE, DiagramStyle.EMPTY_STATE_X,
+                    DiagramStyle.EMPTY_STATE_Y + DiagramStyle.TEXT_INSET_Y + DiagramStyle.ASCENT * DiagramStyle.EMPTY_STATE_FONT_SIZE, false);
+            return;
+        }
+
+        c.stroke(DiagramStyle.COLOR_LINE).fill(DiagramStyle.COLOR_LINE);
+        for (SlideLayout.Connector connector : layout.connectors()) {
+            c.num(connector.thickness()).op(" w\n").path(DiagramStyle.polyline(connector.path())).op("S\n");
+            c.path(DiagramStyle.arrowhead(connector.path(), false, connector.thickness())).op("f\n");
+            if (connector.twoWay()) c.path(DiagramStyle.arrowhead(connector.path(), true, connector.thickness())).op("f\n");
+        }
+
+        double idSize = DiagramStyle.idFontSize(layout.scale());
+        double subtitleSize = DiagramStyle.subtitleFontSize(layout.scale());
+        for (SlideLayout.RenderNode node : layout.renderNodes()) {
+            NodeStyle style = node.style();
+            c.fill(DiagramStyle.COLOR_SHADOW).stroke(DiagramStyle.COLOR_SHADOW).num(DiagramStyle.SHADOW_BORDER_WIDTH).op(" w\n");
+            c.path(DiagramStyle.outline(style, node.shadow())).op("B\n");
+            Shape rim = DiagramStyle.rim(style, node.shadow());
+            if (rim != null) c.path(rim).op("S\n");
+
+            c.fill(style.fill()).path(DiagramStyle.outline(style, node.box())).op("f\n");
+            c.op("q /GS1 gs ").stroke(DiagramStyle.COLOR_NODE_BORDER).num(DiagramStyle.NODE_BORDER_WIDTH).op(" w\n");
+            c.path(DiagramStyle.outline(style, node.box())).op("S\n");
+            rim = DiagramStyle.rim(style, node.box());
+            if (rim != null) c.path(rim).op("S\n");
+            c.op("Q\n");
+
+            Rectangle2D.Double box = node.box();
+            double centerX = box.x + box.width / 2;
+            c.fill(Color.WHITE).text("/F1", HELVETICA_BOLD, node.id(), idSize, centerX, DiagramStyle.idBaseline(box, layout.scale()), true);
+            String subtitle = DiagramStyle.subtitle(node);
+            if (subtitle != null) {
+                c.fill(DiagramStyle.COLOR_NODE_SUBTITLE)
+                        .text("/F2", HELVETICA, subtitle, subtitleSize, centerX, DiagramStyle.subtitleBaseline(box, layout.scale()), true);
+            }
+        }
+
+        for (SlideLayout.Highlight h : layout.highlights()) {
+            boolean added = h.change() == SlideLayout.Highlight.Change.ADDED;
+            c.op("q ").stroke(added ? DiagramStyle.COLOR_ADDED : DiagramStyle.COLOR_REMOVED).num(DiagramStyle.HIGHLIGHT_WIDTH).op(" w\n");
+            if (!added) c.op("[").num(DiagramStyle.HIGHLIGHT_DASH * DiagramStyle.HIGHLIGHT_WIDTH).op("] 0 d\n");
+            c.path(DiagramStyle.roundRect(h.box())).op("S Q\n");
+        }
+    }
+
+    // --- FILE STRUCTURE ---
+
+    private static void object(PipelineMetrics.CountingOutputStream pdf, long[] offsets, int number, String body) throws IOException {
+        offsets[number] = pdf.getCount();
+        ascii(pdf, number + " 0 obj\n" + body + "\nendobj\n");
+    }
+
+    private static String font(String name) {
+        return "<< /Type /Font /Subtype /Type1 /BaseFont /" + name + " /Encoding /WinAnsiEncoding >>";
+    }
+
+    /**
+     * Writes {@code text} one byte per char; the header's binary marker is the only non-ASCII.
+     */
+    private static void ascii(OutputStream out, String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Content stream operators, written into the deflater through a small buffer.
+     */
+    private static final class Content {
+
+        private final OutputStream out;
+        private final StringBuilder buffer = new StringBuilder(8 * 1024);
+        private final CharsetEncoder encoder = WIN_ANSI.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .replaceWith(new byte[]{'?'});
+
+        Content(OutputStream out) {
+            this.out = out;
+        }
+
+        Content op(String operator) throws IOException {
+            buffer.append(operator);
+            if (buffer.length() >= 8 * 1024) flush();
+            return this;
+        }
+
+        Content num(double value) {
+            buffer.append(DiagramStyle.decimal(value));
+            return this;
+        }
+
+        Content fill(Color color) throws IOException {
+            return rgb(color).op(" rg\n");
+        }
+
+        Content stroke(Color color) throws IOException {
+            return rgb(color).op(" RG\n");
+        }
+
+        Content rect(double x, double y, double width, double height) throws IOException {
+            return num(x).op(" ").num(y).op(" ").num(width).op(" ").num(height).op(" re\n");
+        }
+
+        Content path(Shape shape) throws IOException {
+            double[] c = new double[6];
+            double lastX = 0, lastY = 0;
+            for (PathIterator it = shape.getPathIterator(null); !it.isDone(); it.next()) {
+                int segment = it.currentSegment(c);
+                switch (segment) {
+                    case PathIterator.SEG_MOVETO, PathIterator.SEG_LINETO -> {
+                        point(c[0], c[1]).op(segment == PathIterator.SEG_MOVETO ? " m\n" : " l\n");
+                        lastX = c[0];
+                        lastY = c[1];
+                    }
+                    case PathIterator.SEG_QUADTO -> {
+                        // PDF has cubic curves only: raise the degree
+                        point(lastX + 2.0 / 3 * (c[0] - lastX), lastY + 2.0 / 3 * (c[1] - lastY)).op(" ")
+                                .point(c[2] + 2.0 / 3 * (c[0] - c[2]), c[3] + 2.0 / 3 * (c[1] - c[3])).op(" ")
+                                .point(c[2], c[3]).op(" c\n");
+                        lastX = c[2];
+                        lastY = c[3];
+                    }
+                    case PathIterator.SEG_CUBICTO -> {
+                        point(c[0], c[1]).op(" ").point(c[2], c[3]).op(" ").point(c[4], c[5]).op(" c\n");
+                        lastX = c[4];
+                        lastY = c[5];
+                    }
+                    default -> op("h\n");
+                }
+            }
+            return this;
+        }
+
+        /**
+         * A text run with its baseline at {@code y}, starting at {@code x} or centered on it.
+         * The text matrix flips y back so glyphs stand upright on the flipped page.
+         */
+        Content text(String font, short[] widths, String text, double size, double x, double y, boolean centered)
+                throws IOException {
+            ByteBuffer bytes = encoder.reset().encode(CharBuffer.wrap(text));
+            byte[] encoded = new byte[bytes.remaining()];
+            bytes.get(encoded);
+            if (centered) x -= width(widths, encoded) * size / 2000;
+            op("BT ").op(font).op(" ").num(size).op(" Tf 1 0 0 -1 ").num(x).op(" ").num(y).op(" Tm (");
+            for (byte b : encoded) {
+                int ch = b & 0xFF;
+                if (ch == '(' || ch == ')' || ch == '\\') buffer.append('\\');
+                if (ch >= 0x20) buffer.append((char) ch);
+            }
+            return op(") Tj ET\n");
+        }
+
+        void flush() throws IOException {
+            out.write(buffer.toString().getBytes(StandardCharsets.ISO_8859_1));
+            buffer.setLength(0);
+        }
+
+        private Content point(double x, double y) throws IOException {
+            return num(x).op(" ").num(y);
+        }
+
+        private Content rgb(Color color) throws IOException {
+            return op(component(color.getRed())).op(" ").op(component(color.getGreen())).op(" ").op(component(color.getBlue()));
+        }
+
+        private static int width(short[] widths, byte[] encoded) {
+            int width = 0;
+            for (byte b : encoded) {
+                int ch = b & 0xFF;
+                width += ch >= ' ' && ch <= '~' ? widths[ch - ' '] : DEFAULT_WIDTH;
+            }
+            return width;
+        }
+
+        /**
+         * A 0-255 color or alpha component as a PDF number in [0, 1].
+         */
+        static String component(int value) {
+            return Double.toString(Math.round(value * 1000 / 255.0) / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.repotodeck.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Meters for the render pipeline, shared by the parser, the generator and the batch renderer.
+ * <ul>
+ *     <li>{@code repotodeck.pipeline.stage{stage}} - time per stage (parse, layout, draw, serialize),
+ *     published as a percentile histogram so p99 can be alerted on across instances;</li>
+ *     <li>{@code repotodeck.pipeline.input} / {@code .nodes} / {@code .edges} / {@code .output} -
+ *     size distributions of what went through, to spot heavy inputs;</li>
+ *     <li>{@code repotodeck.parser.malformed} - services skipped because their definition was unusable.</li>
+ * </ul>
+ */
+@Service
+public class PipelineMetrics {
+
+    public enum Stage { PARSE, LAYOUT, DRAW, SERIALIZE }
+
+    @FunctionalInterface
+    public interface IoSupplier<T> {
+        T get() throws IOException;
+    }
+
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final DistributionSummary inputChars;
+    private final DistributionSummary nodes;
+    private final DistributionSummary edges;
+    private final DistributionSummary outputBytes;
+    private final Counter malformedServices;
+
+    public PipelineMetrics(MeterRegistry meterRegistry) {
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("repotodeck.pipeline.stage")
+                    .description("Time spent in one render pipeline stage")
+                    .tag("stage", stage.name().toLowerCase())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+        this.inputChars = DistributionSummary.builder("repotodeck.pipeline.input")
+                .description("Size of parsed compose documents")
+                .baseUnit("chars")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.nodes = DistributionSummary.builder("repotodeck.pipeline.nodes")
+                .description("Services per laid out slide")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.edges = DistributionSummary.builder("repotodeck.pipeline.edges")
+                .description("Drawn dependency edges per laid out slide")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.outputBytes = DistributionSummary.builder("repotodeck.pipeline.output")
+                .description("Size of serialized decks")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.malformedServices = Counter.builder("repotodeck.parser.malformed")
+                .description("Services skipped because their definition could not be used")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Meters that record into nothing, for services built outside Spring (tests, benchmarks).
+     */
+    public static PipelineMetrics noop() {
+        return new PipelineMetrics(new CompositeMeterRegistry());
+    }
+
+    public <T> T time(Stage stage, Supplier<T> work) {
+        return stageTimers.get(stage).record(work);
+    }
+
+    public <T> T timeIo(Stage stage, IoSupplier<T> work) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            stageTimers.get(stage).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void recordInput(int chars) {
+        inputChars.record(chars);
+    }
+
+    public void recordGraph(int nodeCount, int edgeCount) {
+        nodes.record(nodeCount);
+        edges.record(edgeCount);
+    }
+
+    public void recordOutput(long bytes) {
+        outputBytes.record(bytes);
+    }
+
+    public void malformedService() {
+        malformedServices.increment();
+    }
+
+    /**
+     * Counts bytes on their way to {@code target}; bulk writes are passed straight through.
+     */
+    static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream target) {
+            super(target);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.repotodeck.service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Writes the diagram as PNG, drawn with headless Java2D. Text uses DejaVu Sans, which the
+ * container image installs, and falls back to the JDK's logical sans-serif font elsewhere.
+ * <p>
+ * One point becomes {@code pixelsPerPoint} pixels, reduced for pages that would exceed
+ * {@code maxPixels} so a huge diagram can't claim an unbounded image buffer.
+ */
+final class PngDiagramWriter implements DiagramWriter {
+
+    private static final String FONT_FAMILY = "DejaVu Sans";
+
+    private final double pixelsPerPoint;
+    private final long maxPixels;
+    private final String fontFamily;
+
+    PngDiagramWriter(double pixelsPerPoint, long maxPixels) {
+        if (pixelsPerPoint <= 0) throw new IllegalArgumentException("PNG scale must be positive");
+        this.pixelsPerPoint = pixelsPerPoint;
+        this.maxPixels = Math.max(1, maxPixels);
+        String[] families = GraphicsEnvironment.getLocalGraphicsEnvironment().getAvailableFontFamilyNames();
+        this.fontFamily = Arrays.asList(families).contains(FONT_FAMILY) ? FONT_FAMILY : Font.SANS_SERIF;
+    }
+
+    @Override
+    public DiagramFormat format() {
+        return DiagramFormat.PNG;
+    }
+
+    @Override
+    public void write(SlideLayout layout, OutputStream out) throws IOException {
+        double pixels = layout.width() * layout.height() * pixelsPerPoint * pixelsPerPoint;
+        double scale = pixels > maxPixels ? pixelsPerPoint * Math.sqrt(maxPixels / pixels) : pixelsPerPoint;
+        int width = Math.max(1, (int) Math.floor(layout.width() * scale));
+        int height = Math.max(1, (int) Math.floor(layout.height() * scale));
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            g.scale(scale, scale);
+            g.setColor(DiagramStyle.COLOR_BG);
+            g.fill(new Rectangle2D.Double(0, 0, layout.width(), layout.height()));
+
+            if (layout.isEmpty()) {
+                g.setColor(DiagramStyle.COLOR_TEXT);
+                g.setFont(font(Font.PLAIN, DiagramStyle.EMPTY_STATE_FONT_SIZE));
+                g.drawString(DiagramStyle.EMPTY_STATE, (float) DiagramStyle.EMPTY_STATE_X, (float) (DiagramStyle.EMPTY_STATE_Y
+                        + DiagramStyle.TEXT_INSET_Y + DiagramStyle.ASCENT * DiagramStyle.EMPTY_STATE_FONT_SIZE));
+            } else {
+                drawConnectors(g, layout);
+                drawNodes(g, layout);
+                drawHighlights(g, layout);
+            }
+        } finally {
+            g.dispose();
+        }
+        encode(image, out);
+    }
+
+    // --- DRAWING ---
+
+    private static void drawConnectors(Graphics2D g, SlideLayout layout) {
+        g.setColor(DiagramStyle.COLOR_LINE);
+        for (SlideLayout.Connector c : layout.connectors()) {
+            g.setStroke(new BasicStroke((float) c.thickness(), BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER));
+            g.draw(DiagramStyle.polyline(c.path()));
+            g.fill(DiagramStyle.arrowhead(c.path(), false, c.thickness()));
+            if (c.twoWay()) g.fill(DiagramStyle.arrowhead(c.path(), true, c.thickness()));
+        }
+    }
+
+    private void drawNodes(Graphics2D g, SlideLayout layout) {
+        Stroke shadowStroke = new BasicStroke((float) DiagramStyle.SHADOW_BORDER_WIDTH);
+        Stroke borderStroke = new BasicStroke((float) DiagramStyle.NODE_BORDER_WIDTH);
+        Font idFont = font(Font.BOLD, DiagramStyle.idFontSize(layout.scale()));
+        Font subtitleFont = font(Font.ITALIC, DiagramStyle.subtitleFontSize(layout.scale()));
+        for (SlideLayout.RenderNode node : layout.renderNodes()) {
+            NodeStyle style = node.style();
+            g.setStroke(shadowStroke);
+            paint(g, style, node.shadow(), DiagramStyle.COLOR_SHADOW);
+
+            g.setStroke(borderStroke);
+            paint(g, style, node.box(), style.fill());
+
+            Rectangle2D.Double box = node.box();
+            double centerX = box.x + box.width / 2;
+            g.setColor(Color.WHITE);
+            centered(g, idFont, node.id(), centerX, DiagramStyle.idBaseline(box, layout.scale()));
+            String subtitle = DiagramStyle.subtitle(node);
+            if (subtitle != null) {
+                g.setColor(DiagramStyle.COLOR_NODE_SUBTITLE);
+                centered(g, subtitleFont, subtitle, centerX, DiagramStyle.subtitleBaseline(box, layout.scale()));
+            }
+        }
+    }
+
+    /**
+     * Fills the outline of {@code style} at {@code box} and strokes it (and its rim) with the
+     * border color, or with {@code fill} itself for shadows.
+     */
+    private static void paint(Graphics2D g, NodeStyle style, Rectangle2D.Double box, Color fill) {
+        Shape outline = DiagramStyle.outline(style, box);
+        g.setColor(fill);
+        g.fill(outline);
+        g.setColor(fill == DiagramStyle.COLOR_SHADOW ? fill : DiagramStyle.COLOR_NODE_BORDER);
+        g.draw(outline);
+        Shape rim = DiagramStyle.rim(style, box);
+        if (rim != null) g.draw(rim);
+    }
+
+    private static void drawHighlights(Graphics2D g, SlideLayout layout) {
+        float width = (float) DiagramStyle.HIGHLIGHT_WIDTH;
+        Stroke solid = new BasicStroke(width);
+        Stroke dashed = new BasicStroke(width, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10f,
+                new float[]{(float) (DiagramStyle.HIGHLIGHT_DASH * width)}, 0f);
+        for (SlideLayout.Highlight h : layout.highlights()) {
+            boolean added = h.change() == SlideLayout.Highlight.Change.ADDED;
+            g.setColor(added ? DiagramStyle.COLOR_ADDED : DiagramStyle.COLOR_REMOVED);
+            g.setStroke(added ? solid : dashed);
+            g.draw(DiagramStyle.roundRect(h.box()));
+        }
+    }
+
+    private static void centered(Graphics2D g, Font font, String text, double centerX, double baseline) {
+        g.setFont(font);
+        double width = font.getStringBounds(text, g.getFontRenderContext()).getWidth();
+        g.drawString(text, (float) (centerX - width / 2), (float) baseline);
+    }
+
+    private Font font(int style, double size) {
+        return new Font(fontFamily, style, 1).deriveFont((float) size);
+    }
+
+    private static void encode(BufferedImage image, OutputStream out) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        // Memory cache: ImageIO's default may spool to a temp file first
+        try (ImageOutputStream stream = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(stream);
+            writer.write(new IIOImage(image, null, null));
+        } finally {
+            writer.dispose();
+        }
+        out.flush();
+    }
+}
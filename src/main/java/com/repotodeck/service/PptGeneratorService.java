@@ -1,102 +1,394 @@
 package com.repotodeck.service;
 
 import com.repotodeck.model.ServiceNode;
+import org.apache.poi.sl.usermodel.LineDecoration;
 import org.apache.poi.sl.usermodel.ShapeType;
+import org.apache.poi.sl.usermodel.StrokeStyle;
 import org.apache.poi.sl.usermodel.TextParagraph;
 import org.apache.poi.xslf.usermodel.*;
+import org.openxmlformats.schemas.drawingml.x2006.main.CTAdjPoint2D;
+import org.openxmlformats.schemas.drawingml.x2006.main.CTCustomGeometry2D;
+import org.openxmlformats.schemas.drawingml.x2006.main.CTGeomRect;
+import org.openxmlformats.schemas.drawingml.x2006.main.CTPath2D;
+import org.openxmlformats.schemas.drawingml.x2006.main.CTShapeProperties;
+import org.openxmlformats.schemas.presentationml.x2006.main.CTConnector;
+import org.openxmlformats.schemas.presentationml.x2006.main.CTShape;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 @Service
 public class PptGeneratorService {
 
+    private static final Logger log = LoggerFactory.getLogger(PptGeneratorService.class);
+
+    /**
+     * Part of every render cache key. Bump it whenever layout or styling changes
+     * so decks rendered by an older build are never served again.
+     */
+    public static final String LAYOUT_VERSION = "5";
+
+    /**
+     * LAYERED places services by their dependency edges inside each tier band; TIERED is the
+     * original fixed three-tier grid, also used whenever LAYERED is over its budget.
+     */
+    public enum LayoutMode { LAYERED, TIERED }
+
+    /**
+     * TEMPLATE stamps single-slide decks from XML captured at startup (see
+     * {@link TemplateSlideRenderer}); POI builds every shape through the usermodel.
+     * Both produce the same slide XML; batch decks always use POI.
+     */
+    public enum Renderer { TEMPLATE, POI }
+
+    /**
+     * FULL lays out and routes as configured; REDUCED is for inputs over the admission
+     * thresholds (see {@link RenderAdmissionService}): the TIERED grid and straight connectors,
+     * both linear in the size of the graph. PAGED decks are split into an overview and a slide per
+     * cluster by {@link PaginatedDeckService}; a single PAGED layout is the same as FULL.
+     */
+    public enum Detail { FULL, REDUCED, PAGED }
+
+    private final ServiceClassifier serviceClassifier;
+    private final PipelineMetrics metrics;
+    private final LayoutMode layoutMode;
+    private final long layoutBudgetNanos;
+    private final int maxLayeredNodes;
+    private final long routingBudgetNanos;
+    private final LayeredLayoutEngine layeredEngine = new LayeredLayoutEngine(
+            NODE_WIDTH, NODE_SPACING_X, ROW_SPACING_Y, LAYER_SPACING_Y, TIER_SPACING_Y, MAX_NODES_PER_ROW);
+    private final TemplateSlideRenderer templateRenderer;
+
+    public PptGeneratorService() {
+        this(ServiceClassifier.withDefaultRules(), PipelineMetrics.noop(), LayoutMode.LAYERED, 250, 20_000, Renderer.TEMPLATE);
+    }
+
+    public PptGeneratorService(ServiceClassifier serviceClassifier, PipelineMetrics metrics, LayoutMode layoutMode,
+                               long layoutBudgetMs, int maxLayeredNodes, Renderer renderer) {
+        this(serviceClassifier, metrics, layoutMode, layoutBudgetMs, maxLayeredNodes, 100, renderer);
+    }
+
+    @Autowired
+    public PptGeneratorService(ServiceClassifier serviceClassifier,
+                               PipelineMetrics metrics,
+                               @Value("${repotodeck.layout.engine:LAYERED}") LayoutMode layoutMode,
+                               @Value("${repotodeck.layout.time-budget-ms:250}") long layoutBudgetMs,
+                               @Value("${repotodeck.layout.max-layered-nodes:20000}") int maxLayeredNodes,
+                               @Value("${repotodeck.layout.routing-budget-ms:100}") long routingBudgetMs,
+                               @Value("${repotodeck.generator.renderer:TEMPLATE}") Renderer renderer) {
+        this.serviceClassifier = serviceClassifier;
+        this.metrics = metrics;
+        this.layoutMode = layoutMode;
+        this.layoutBudgetNanos = layoutBudgetMs * 1_000_000L;
+        this.maxLayeredNodes = maxLayeredNodes;
+        this.routingBudgetNanos = routingBudgetMs * 1_000_000L;
+        this.templateRenderer = renderer == Renderer.TEMPLATE ? compileTemplates() : null;
+    }
+
     // --- CONFIGURATION ---
-    private static final int SLIDE_WIDTH = 1920;
-    // We increase Height to 2000 to accommodate "Wrapping" rows. 
-    // PPT scales this automatically, so it's safe.
-    private static final int SLIDE_HEIGHT = 2000; 
-    
-    private static final int NODE_WIDTH = 220;
-    private static final int NODE_HEIGHT = 100;
-    private static final int NODE_SPACING_X = 60; // Horizontal gap
-    private static final int ROW_SPACING_Y = 150; // Vertical gap WITHIN a tier (wrapping)
-    private static final int TIER_SPACING_Y = 100; // Gap BETWEEN tiers
+    // The page grows with the content (never below 16:9 HD). PowerPoint rejects pages over
+    // 56 inches, so beyond that the whole drawing is scaled down uniformly instead.
+    static final int MIN_SLIDE_WIDTH = 1920;
+    static final int MIN_SLIDE_HEIGHT = 1080;
+    static final int MAX_SLIDE_SIZE = 4032;
+    static final int MARGIN_X = 100;
+    static final int MARGIN_BOTTOM = 100;
+
+    static final int NODE_WIDTH = 220;
+    static final int NODE_HEIGHT = 100;
+    static final int NODE_SPACING_X = 60; // Horizontal gap
+    static final int ROW_SPACING_Y = 150; // Vertical gap WITHIN a tier (wrapping)
+    static final int TIER_SPACING_Y = 100; // Gap BETWEEN tiers
+    private static final int LAYER_SPACING_Y = 40; // Extra gap between dependency layers of one tier
     private static final int START_Y = 100;
     private static final int MAX_NODES_PER_ROW = 5; // Force wrapping after 5 boxes
+    private static final int SHADOW_OFFSET = 6;
+    private static final int HIGHLIGHT_MARGIN = 8; // Ring distance around a highlighted box
+    private static final int CONNECTOR_CLEARANCE = 10; // Space routed connectors keep from boxes and shadows
+    private static final int ROUTING_CHECK_INTERVAL = 64; // Routes between two looks at the clock
+    static final double MIN_FONT_SIZE = 1.0; // POI rejects anything smaller
 
     // --- PALETTE ---
-    private static final Color COLOR_BG = new Color(248, 249, 250); 
-    private static final Color COLOR_FRONTEND = new Color(13, 148, 136); 
-    private static final Color COLOR_SERVICE = new Color(37, 99, 235);   
-    private static final Color COLOR_DB = new Color(234, 88, 12);        
-    private static final Color COLOR_LINE = new Color(156, 163, 175); 
-    private static final Color COLOR_SHADOW = new Color(200, 200, 200); 
+    // Colors, fonts and strokes live in DiagramStyle, shared with the SVG, PNG and PDF writers
 
     public byte[] generateSlide(List<ServiceNode> nodes) throws IOException {
-        try (XMLSlideShow pptx = new XMLSlideShow()) {
-            pptx.setPageSize(new java.awt.Dimension(SLIDE_WIDTH, SLIDE_HEIGHT));
-            XSLFSlide slide = pptx.createSlide();
-            slide.getBackground().setFillColor(COLOR_BG);
-
-            if (nodes == null || nodes.isEmpty()) {
-                createEmptyState(slide);
-                return writeToByteArray(pptx);
-            }
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            generateSlide(nodes, out);
+            return out.toByteArray();
+        }
+    }
 
-            Map<Integer, List<ServiceNode>> layers = organizeIntoLayers(nodes);
-            
-            // 1. DYNAMIC LAYOUT CALCULATION (The Grid Fix)
-            Map<String, Rectangle2D.Double> nodePositions = calculateGridPositions(layers);
+    public long generateSlide(List<ServiceNode> nodes, OutputStream out) throws IOException {
+        return writeSlide(layout(nodes), out);
+    }
 
-            drawConnectors(slide, nodes, nodePositions);
-            drawShadows(slide, layers, nodePositions);
-            drawNodes(slide, layers, nodePositions);
+    /**
+     * Streaming variant: serializes the deck straight into {@code out} (e.g. the servlet
+     * response) so no intermediate byte[] copies of the deck are held on the heap.
+     * The stream is flushed but not closed.
+     *
+     * @return bytes written
+     */
+    public long generateSlide(ServiceGraph graph, OutputStream out) throws IOException {
+        return writeSlide(layout(graph), out);
+    }
+
+    /**
+     * Same as {@link #generateSlide(ServiceGraph, OutputStream)} at the given level of detail.
+     */
+    public long generateSlide(ServiceGraph graph, Detail detail, OutputStream out) throws IOException {
+        return writeSlide(layout(graph, detail), out);
+    }
 
-            return writeToByteArray(pptx);
+    private long writeSlide(SlideLayout layout, OutputStream out) throws IOException {
+        if (templateRenderer != null && templateRenderer.supports(layout)) {
+            // Drawing and serializing are one step here; it is recorded as serialize
+            Dimension page = pageSize(List.of(layout));
+            PipelineMetrics.CountingOutputStream counting = new PipelineMetrics.CountingOutputStream(out);
+            metrics.timeIo(PipelineMetrics.Stage.SERIALIZE, () -> {
+                templateRenderer.write(layout, page.width, page.height, counting);
+                return null;
+            });
+            metrics.recordOutput(counting.getCount());
+            out.flush();
+            return counting.getCount();
+        }
+        try (XMLSlideShow pptx = buildSlideShow(layout)) {
+            long written = writeDeck(pptx, out);
+            out.flush();
+            return written;
         }
     }
 
+    /**
+     * Serializes {@code pptx} into {@code out}, recording the serialize stage and output size.
+     *
+     * @return bytes written
+     */
+    public long writeDeck(XMLSlideShow pptx, OutputStream out) throws IOException {
+        PipelineMetrics.CountingOutputStream counting = new PipelineMetrics.CountingOutputStream(out);
+        metrics.timeIo(PipelineMetrics.Stage.SERIALIZE, () -> {
+            pptx.write(counting);
+            return null;
+        });
+        metrics.recordOutput(counting.getCount());
+        return counting.getCount();
+    }
+
+    /**
+     * Pure layout step (tiering + positions + page size). Touches no POI state, so it is safe to
+     * run for many compose files in parallel; the result is drawn later with {@link #drawSlide}.
+     */
+    public SlideLayout layout(List<ServiceNode> nodes) {
+        if (nodes == null || nodes.isEmpty()) {
+            return SlideLayout.EMPTY;
+        }
+        return recorded(metrics.time(PipelineMetrics.Stage.LAYOUT, () -> computeLayout(graph(nodes), Detail.FULL)));
+    }
+
+    /**
+     * Same as {@link #layout(List)} for a graph the parser built directly.
+     */
+    public SlideLayout layout(ServiceGraph graph) {
+        return layout(graph, Detail.FULL);
+    }
+
+    /**
+     * Same as {@link #layout(ServiceGraph)} at the given level of detail.
+     */
+    public SlideLayout layout(ServiceGraph graph, Detail detail) {
+        if (graph.isEmpty()) {
+            return SlideLayout.EMPTY;
+        }
+        return recorded(metrics.time(PipelineMetrics.Stage.LAYOUT, () -> computeLayout(graph, detail)));
+    }
+
+    /**
+     * {@code nodes} as a {@link ServiceGraph}, tiered with the same rules as the parser.
+     */
+    public ServiceGraph graph(List<ServiceNode> nodes) {
+        return ServiceGraph.of(nodes, serviceClassifier);
+    }
+
+    private SlideLayout recorded(SlideLayout layout) {
+        metrics.recordGraph(layout.renderNodes().size(), layout.connectors().size());
+        return layout;
+    }
+
+    private SlideLayout computeLayout(ServiceGraph graph, Detail detail) {
+        double[] x = new double[graph.size()];
+        double[] y = new double[graph.size()];
+        if (detail == Detail.REDUCED || layoutMode != LayoutMode.LAYERED || graph.size() > maxLayeredNodes
+                || !layeredEngine.layout(graph, System.nanoTime() + layoutBudgetNanos, x, y)) {
+            calculateGridPositions(graph, x, y);
+        }
+        return fitToPage(graph, x, y, detail == Detail.REDUCED ? 0 : routingBudgetNanos);
+    }
+
+    /**
+     * Creates an empty deck with the minimum page size. POI decks are not thread-safe;
+     * slides must be added from one thread at a time.
+     */
+    public XMLSlideShow createDeck() {
+        return createDeck(List.of());
+    }
+
+    /**
+     * Creates an empty deck whose page is large enough for every one of {@code layouts}
+     * (a deck has a single page size, so batch decks use the largest).
+     */
+    public XMLSlideShow createDeck(Collection<SlideLayout> layouts) {
+        XMLSlideShow pptx = new XMLSlideShow();
+        pptx.setPageSize(pageSize(layouts));
+        return pptx;
+    }
+
+    private static Dimension pageSize(Collection<SlideLayout> layouts) {
+        double width = MIN_SLIDE_WIDTH;
+        double height = MIN_SLIDE_HEIGHT;
+        for (SlideLayout layout : layouts) {
+            width = Math.max(width, layout.width());
+            height = Math.max(height, layout.height());
+        }
+        return new Dimension((int) Math.ceil(width), (int) Math.ceil(height));
+    }
+
+    /**
+     * Appends one slide for {@code layout}. A non-null {@code title} is shown in the top-left
+     * corner, which is how batch decks tell their slides apart.
+     */
+    public XSLFSlide drawSlide(XMLSlideShow pptx, SlideLayout layout, String title) {
+        return metrics.time(PipelineMetrics.Stage.DRAW, () -> draw(pptx, layout, title));
+    }
+
+    private XSLFSlide draw(XMLSlideShow pptx, SlideLayout layout, String title) {
+        XSLFSlide slide = pptx.createSlide();
+        slide.getBackground().setFillColor(DiagramStyle.COLOR_BG);
+
+        if (title != null) {
+            createTitle(slide, title, layout.width());
+        }
+        if (layout.isEmpty()) {
+            createEmptyState(slide);
+            return slide;
+        }
+
+        drawConnectors(slide, layout.connectors());
+        drawNodes(slide, layout.renderNodes(), layout.scale());
+        drawHighlights(slide, layout.highlights());
+        return slide;
+    }
+
+    private XMLSlideShow buildSlideShow(SlideLayout layout) {
+        XMLSlideShow pptx = createDeck(List.of(layout));
+        drawSlide(pptx, layout, null);
+        return pptx;
+    }
+
+    /**
+     * The template renderer, or null when decks are built through POI only.
+     */
+    TemplateSlideRenderer templates() {
+        return templateRenderer;
+    }
+
+    /**
+     * Captures the shape XML POI produces for each style. If that fails (e.g. a POI upgrade
+     * changed the structure) every deck is simply built through POI.
+     */
+    private TemplateSlideRenderer compileTemplates() {
+        try {
+            return new TemplateSlideRenderer(prototype -> {
+                try (XMLSlideShow pptx = createDeck(List.of(prototype));
+                     ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+                    draw(pptx, prototype, null);
+                    pptx.write(out);
+                    return out.toByteArray();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Template renderer disabled, falling back to POI: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Moves the content so it starts at START_Y and is centered horizontally, derives the page
+     * size from its bounding box and, if that exceeds MAX_SLIDE_SIZE, scales everything down.
+     * {@code x}/{@code y} are the top-left corners of the boxes, updated in place.
+     */
+    private SlideLayout fitToPage(ServiceGraph graph, double[] x, double[] y, long routingBudget) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < x.length; i++) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i] + NODE_WIDTH);
+            maxY = Math.max(maxY, y[i] + NODE_HEIGHT);
+        }
+        double contentWidth = maxX - minX;
+        double contentHeight = maxY - minY;
+        double width = Math.max(MIN_SLIDE_WIDTH, contentWidth + 2 * MARGIN_X);
+        double height = Math.max(MIN_SLIDE_HEIGHT, START_Y + contentHeight + MARGIN_BOTTOM);
+        double scale = Math.min(1.0, Math.min(MAX_SLIDE_SIZE / width, MAX_SLIDE_SIZE / height));
+
+        double offsetX = (width - contentWidth) / 2 - minX;
+        double offsetY = START_Y - minY;
+        for (int i = 0; i < x.length; i++) {
+            x[i] = (x[i] + offsetX) * scale;
+            y[i] = (y[i] + offsetY) * scale;
+        }
+        Rectangle2D.Double[] boxes = new Rectangle2D.Double[graph.size()];
+        List<SlideLayout.RenderNode> renderNodes = buildRenderNodes(graph, x, y, scale, boxes);
+        List<SlideLayout.Connector> connectors =
+                routeConnectors(graph, ConnectorRouter.links(graph), boxes, Arrays.asList(boxes), scale, routingBudget);
+        return new SlideLayout(graph, renderNodes, connectors, List.of(), width * scale, height * scale, scale);
+    }
+
     /**
      * THE NEW GRID ENGINE
-     * Handles wrapping so boxes never go off-screen.
+     * Handles wrapping so boxes never go off-screen. Rows are centered on the minimum page
+     * width; {@link #fitToPage} re-centers once the real page size is known.
      */
-    private Map<String, Rectangle2D.Double> calculateGridPositions(Map<Integer, List<ServiceNode>> layers) {
-        Map<String, Rectangle2D.Double> positions = new HashMap<>();
+    private void calculateGridPositions(ServiceGraph graph, double[] x, double[] y) {
+        int[] order = graph.tierOrder();
         double currentY = START_Y;
 
-        for (int layerIdx = 0; layerIdx <= 2; layerIdx++) {
-            List<ServiceNode> layerNodes = layers.getOrDefault(layerIdx, new ArrayList<>());
-            if (layerNodes.isEmpty()) continue;
-
-            // Calculate rows needed for this layer
-            int totalNodes = layerNodes.size();
-            int rowsNeeded = (int) Math.ceil((double) totalNodes / MAX_NODES_PER_ROW);
+        for (int start = 0, end; start < order.length; start = end) {
+            // Nodes of this tier
+            int tier = graph.tier(order[start]);
+            end = start;
+            while (end < order.length && graph.tier(order[end]) == tier) end++;
 
-            for (int r = 0; r < rowsNeeded; r++) {
+            for (int rowStart = start; rowStart < end; rowStart += MAX_NODES_PER_ROW) {
                 // Determine nodes in this specific row
-                int startIdx = r * MAX_NODES_PER_ROW;
-                int endIdx = Math.min(startIdx + MAX_NODES_PER_ROW, totalNodes);
-                int nodesInThisRow = endIdx - startIdx;
+                int nodesInThisRow = Math.min(MAX_NODES_PER_ROW, end - rowStart);
 
                 // Center this row horizontally
                 double rowWidth = nodesInThisRow * NODE_WIDTH + (nodesInThisRow - 1) * NODE_SPACING_X;
-                double startX = (SLIDE_WIDTH - rowWidth) / 2;
+                double startX = (MIN_SLIDE_WIDTH - rowWidth) / 2;
 
                 for (int i = 0; i < nodesInThisRow; i++) {
-                    ServiceNode node = layerNodes.get(startIdx + i);
-                    double x = startX + i * (NODE_WIDTH + NODE_SPACING_X);
-                    double y = currentY;
-                    positions.put(node.getId(), new Rectangle2D.Double(x, y, NODE_WIDTH, NODE_HEIGHT));
+                    int node = order[rowStart + i];
+                    x[node] = startX + i * (NODE_WIDTH + NODE_SPACING_X);
+                    y[node] = currentY;
                 }
-                
+
                 // Move Y down for the next row within the same tier
                 currentY += ROW_SPACING_Y;
             }
@@ -104,154 +396,220 @@ public class PptGeneratorService {
             // Add extra spacing before the NEXT tier begins
             currentY += TIER_SPACING_Y;
         }
-        return positions;
-    }
-
-    private Map<Integer, List<ServiceNode>> organizeIntoLayers(List<ServiceNode> nodes) {
-        Map<Integer, List<ServiceNode>> layers = new HashMap<>();
-        layers.put(0, new ArrayList<>());
-        layers.put(1, new ArrayList<>());
-        layers.put(2, new ArrayList<>());
-
-        for (ServiceNode node : nodes) {
-            String id = node.getId().toLowerCase();
-            String image = node.getImage() != null ? node.getImage().toLowerCase() : "";
-
-            // --- IMPROVED DETECTION HEURISTICS ---
-            // Added: cassandra, elastic, minio, bucket, mariadb, search, kafka, broker
-            boolean isDb = image.contains("redis") || image.contains("mysql") || image.contains("mongo") || 
-                           image.contains("postgres") || image.contains("cassandra") || image.contains("elastic") || 
-                           image.contains("mariadb") || image.contains("kafka") || image.contains("minio") || 
-                           id.contains("db") || id.contains("database") || id.contains("store") || 
-                           id.contains("bucket") || id.contains("broker");
-
-            boolean isFrontend = image.contains("nginx") || image.contains("react") || image.contains("web") || 
-                                 image.contains("gateway") || image.contains("balancer") || image.contains("zuul") || 
-                                 image.contains("frontend") || image.contains("ui");
-
-            if (isDb) {
-                layers.get(2).add(node);
-            } else if (isFrontend) {
-                layers.get(0).add(node);
+    }
+
+    // --- RENDER MODEL ---
+
+    /**
+     * Resolves every node to its style, boxes and label text once, in tier order. Shapes and
+     * fills come from {@link NodeStyle}, so nothing here compares {@link ServiceNode}s. The box
+     * of node {@code i} is also stored in {@code boxes[i]}.
+     */
+    private List<SlideLayout.RenderNode> buildRenderNodes(ServiceGraph graph, double[] x, double[] y,
+                                                          double scale, Rectangle2D.Double[] boxes) {
+        List<SlideLayout.RenderNode> renderNodes = new ArrayList<>(graph.size());
+        for (int node : graph.tierOrder()) {
+            boxes[node] = new Rectangle2D.Double(x[node], y[node], NODE_WIDTH * scale, NODE_HEIGHT * scale);
+            renderNodes.add(renderNode(graph, node, boxes[node], scale));
+        }
+        return renderNodes;
+    }
+
+    /**
+     * Style, shadow and label of node {@code node} drawn at {@code box}.
+     */
+    static SlideLayout.RenderNode renderNode(ServiceGraph graph, int node, Rectangle2D.Double box, double scale) {
+        double offset = SHADOW_OFFSET * scale;
+        String image = graph.image(node);
+        return new SlideLayout.RenderNode(
+                graph.id(node),
+                image != null ? "\n" + image : null,
+                graph.style(node),
+                box,
+                new Rectangle2D.Double(box.x + offset, box.y + offset, box.width, box.height));
+    }
+
+    /**
+     * The ring drawn around {@code box} when its node is highlighted.
+     */
+    static Rectangle2D.Double highlightBox(Rectangle2D.Double box, double scale) {
+        double margin = HIGHLIGHT_MARGIN * scale;
+        return new Rectangle2D.Double(box.x - margin, box.y - margin, box.width + 2 * margin, box.height + 2 * margin);
+    }
+
+    /**
+     * Routes {@code links} of {@code graph} between their {@code boxes} (by node) around {@code obstacles}
+     * (see {@link ConnectorRouter}). Once the routing budget is spent, the remaining links get
+     * straight connectors, so huge graphs still render in bounded time.
+     */
+    List<SlideLayout.Connector> routeConnectors(ServiceGraph graph,
+                                                List<ConnectorRouter.Link> links,
+                                                Rectangle2D.Double[] boxes,
+                                                Collection<Rectangle2D.Double> obstacles,
+                                                double scale) {
+        return routeConnectors(graph, links, boxes, obstacles, scale, routingBudgetNanos);
+    }
+
+    private List<SlideLayout.Connector> routeConnectors(ServiceGraph graph,
+                                                        List<ConnectorRouter.Link> links,
+                                                        Rectangle2D.Double[] boxes,
+                                                        Collection<Rectangle2D.Double> obstacles,
+                                                        double scale,
+                                                        long routingBudget) {
+        if (links.isEmpty()) return List.of();
+        long deadline = System.nanoTime() + routingBudget;
+        ConnectorRouter router = routingBudget > 0 ? new ConnectorRouter(obstacles, CONNECTOR_CLEARANCE * scale) : null;
+        double thickness = Math.max(0.5, 2 * scale);
+        List<SlideLayout.Connector> connectors = new ArrayList<>(links.size());
+        int straight = 0;
+        for (ConnectorRouter.Link link : links) {
+            if (router != null && connectors.size() % ROUTING_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                router = null;
+            }
+            Rectangle2D.Double from = boxes[link.from()];
+            Rectangle2D.Double to = boxes[link.to()];
+            double[] path;
+            if (router != null) {
+                path = router.route(from, to);
             } else {
-                layers.get(1).add(node);
+                path = ConnectorRouter.straight(from, to);
+                straight++;
             }
+            connectors.add(new SlideLayout.Connector(graph.id(link.from()), graph.id(link.to()), link.twoWay(),
+                    path, thickness));
         }
-        return layers;
-    }
-
-    // --- DRAWING (Unchanged but included for safety) ---
-    
-    private void drawNodes(XSLFSlide slide, Map<Integer, List<ServiceNode>> layers, Map<String, Rectangle2D.Double> positions) {
-        for (int layerIdx : layers.keySet()) {
-            List<ServiceNode> layerNodes = layers.get(layerIdx);
-            for (ServiceNode node : layerNodes) {
-                Rectangle2D.Double pos = positions.get(node.getId());
-                if (pos != null) {
-                    XSLFAutoShape shape = slide.createAutoShape();
-                    if ("DATABASE".equals(node.getType()) || layers.get(2).contains(node)) {
-                         shape.setShapeType(ShapeType.FLOW_CHART_MAGNETIC_DISK);
-                         shape.setFillColor(COLOR_DB);
-                    } else if (layerIdx == 0) {
-                        shape.setShapeType(ShapeType.ROUND_RECT);
-                        shape.setFillColor(COLOR_FRONTEND);
-                    } else {
-                        shape.setShapeType(ShapeType.ROUND_RECT);
-                        shape.setFillColor(COLOR_SERVICE);
-                    }
-                    shape.setAnchor(pos);
-                    shape.setLineColor(new Color(255, 255, 255, 100));
-                    shape.setLineWidth(1.0);
-
-                    XSLFTextParagraph p = shape.addNewTextParagraph();
-                    p.setTextAlign(TextParagraph.TextAlign.CENTER);
-                    XSLFTextRun r1 = p.addNewTextRun();
-                    r1.setText(node.getId());
-                    r1.setFontSize(16.0);
-                    r1.setBold(true);
-                    r1.setFontColor(Color.WHITE);
-                    
-                    if (node.getImage() != null && !node.getImage().isEmpty()) {
-                        XSLFTextRun r2 = p.addNewTextRun();
-                        r2.setText("\n" + node.getImage());
-                        r2.setFontSize(11.0);
-                        r2.setItalic(true);
-                        r2.setFontColor(new Color(240, 240, 240));
-                    }
-                }
-            }
+        if (straight > 0) {
+            log.atDebug().setMessage("Routing budget spent, drawing straight connectors")
+                    .addKeyValue("straight", straight)
+                    .addKeyValue("links", links.size())
+                    .log();
         }
+        return connectors;
     }
 
-    private void drawShadows(XSLFSlide slide, Map<Integer, List<ServiceNode>> layers, Map<String, Rectangle2D.Double> positions) {
-        for (int layerIdx : layers.keySet()) {
-            List<ServiceNode> layerNodes = layers.get(layerIdx);
-            for (ServiceNode node : layerNodes) {
-                Rectangle2D.Double pos = positions.get(node.getId());
-                if (pos != null) {
-                    XSLFAutoShape shadow = slide.createAutoShape();
-                    if (layers.get(2).contains(node)) { 
-                        shadow.setShapeType(ShapeType.FLOW_CHART_MAGNETIC_DISK);
-                    } else {
-                        shadow.setShapeType(ShapeType.ROUND_RECT);
-                    }
-                    shadow.setFillColor(COLOR_SHADOW);
-                    shadow.setLineColor(COLOR_SHADOW);
-                    shadow.setAnchor(new Rectangle2D.Double(pos.getX() + 6, pos.getY() + 6, NODE_WIDTH, NODE_HEIGHT));
-                }
+    // --- DRAWING ---
+    // One linear pass per shape kind. Everything was resolved in the render model, so the only
+    // per-shape allocations are POI's own; the anchor rectangle is reused.
+
+    private void drawNodes(XSLFSlide slide, List<SlideLayout.RenderNode> renderNodes, double scale) {
+        double idFontSize = DiagramStyle.idFontSize(scale);
+        double imageFontSize = DiagramStyle.subtitleFontSize(scale);
+        for (SlideLayout.RenderNode node : renderNodes) {
+            NodeStyle style = node.style();
+
+            XSLFAutoShape shadow = slide.createAutoShape();
+            name(shadow, ShapeNames.shadow(node.id()));
+            shadow.setShapeType(style.shapeType());
+            shadow.setFillColor(DiagramStyle.COLOR_SHADOW);
+            shadow.setLineColor(DiagramStyle.COLOR_SHADOW);
+            shadow.setAnchor(node.shadow());
+
+            XSLFAutoShape shape = slide.createAutoShape();
+            name(shape, ShapeNames.node(node.id()));
+            shape.setShapeType(style.shapeType());
+            shape.setFillColor(style.fill());
+            shape.setAnchor(node.box());
+            shape.setLineColor(DiagramStyle.COLOR_NODE_BORDER);
+            shape.setLineWidth(DiagramStyle.NODE_BORDER_WIDTH);
+
+            XSLFTextParagraph p = shape.addNewTextParagraph();
+            p.setTextAlign(TextParagraph.TextAlign.CENTER);
+            XSLFTextRun r1 = p.addNewTextRun();
+            r1.setText(node.id());
+            r1.setFontSize(idFontSize);
+            r1.setBold(true);
+            r1.setFontColor(Color.WHITE);
+
+            if (node.subtitle() != null) {
+                XSLFTextRun r2 = p.addNewTextRun();
+                r2.setText(node.subtitle());
+                r2.setFontSize(imageFontSize);
+                r2.setItalic(true);
+                r2.setFontColor(DiagramStyle.COLOR_NODE_SUBTITLE);
             }
         }
     }
 
-    private void drawConnectors(XSLFSlide slide, List<ServiceNode> nodes, Map<String, Rectangle2D.Double> positions) {
-        for (ServiceNode node : nodes) {
-            if (node.getLinks() == null) continue;
-            Rectangle2D.Double start = positions.get(node.getId());
-            if (start == null) continue;
-            for (String target : node.getLinks()) {
-                Rectangle2D.Double end = positions.get(target);
-                if (end == null) continue;
-                
-                double startX = start.getX() + start.getWidth() / 2;
-                double startY;
-                double endX = end.getX() + end.getWidth() / 2;
-                double endY;
-
-                if (end.getY() >= start.getY() + start.getHeight()) { // Target Below
-                    startY = start.getY() + start.getHeight();
-                    endY = end.getY();
-                } else if (end.getY() <= start.getY() - start.getHeight()) { // Target Above
-                    startY = start.getY();
-                    endY = end.getY() + end.getHeight();
-                } else { // Side-by-Side
-                    startY = start.getY() + start.getHeight() / 2;
-                    endY = end.getY() + end.getHeight() / 2;
-                }
+    private void drawConnectors(XSLFSlide slide, List<SlideLayout.Connector> connectors) {
+        for (SlideLayout.Connector c : connectors) {
+            XSLFConnectorShape line = slide.createConnector();
+            CTConnector xml = (CTConnector) line.getXmlObject();
+            xml.getNvCxnSpPr().getCNvPr().setName(ShapeNames.edge(c.from(), c.to(), c.twoWay()));
+            Rectangle2D.Double bounds = c.bounds();
+            line.setAnchor(bounds);
+            setPath(xml.getSpPr(), c.path(), bounds);
+            line.setLineColor(DiagramStyle.COLOR_LINE);
+            line.setLineWidth(c.thickness());
+            line.setLineTailDecoration(LineDecoration.DecorationShape.TRIANGLE);
+            if (c.twoWay()) line.setLineHeadDecoration(LineDecoration.DecorationShape.TRIANGLE);
+        }
+    }
 
-                double deltaX = endX - startX;
-                double deltaY = endY - startY;
-                double length = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
-                double angle = Math.toDegrees(Math.atan2(deltaY, deltaX));
-
-                XSLFAutoShape line = slide.createAutoShape();
-                line.setShapeType(ShapeType.RECT);
-                line.setFillColor(COLOR_LINE);
-                line.setLineColor(COLOR_LINE);
-                line.setAnchor(new Rectangle2D.Double((startX + endX) / 2 - length / 2, (startY + endY) / 2 - 1, length, 2));
-                line.setRotation(angle);
-            }
+    /**
+     * Replaces the connector's preset geometry with the routed polyline, in EMU relative to
+     * {@code bounds} (the shape's anchor), laid out like POI's own freeform geometry.
+     */
+    private static void setPath(CTShapeProperties spPr, double[] path, Rectangle2D.Double bounds) {
+        if (spPr.isSetPrstGeom()) spPr.unsetPrstGeom();
+        CTCustomGeometry2D geometry = spPr.addNewCustGeom();
+        geometry.addNewAvLst();
+        geometry.addNewGdLst();
+        geometry.addNewAhLst();
+        geometry.addNewCxnLst();
+        CTGeomRect rect = geometry.addNewRect();
+        rect.setL("l");
+        rect.setT("t");
+        rect.setR("r");
+        rect.setB("b");
+        CTPath2D polyline = geometry.addNewPathLst().addNewPath();
+        polyline.setW(Math.max(1, TemplateSlideRenderer.emu(bounds.width)));
+        polyline.setH(Math.max(1, TemplateSlideRenderer.emu(bounds.height)));
+        for (int i = 0; i < path.length; i += 2) {
+            CTAdjPoint2D point = i == 0 ? polyline.addNewMoveTo().addNewPt() : polyline.addNewLnTo().addNewPt();
+            point.setX((long) TemplateSlideRenderer.emu(path[i] - bounds.x));
+            point.setY((long) TemplateSlideRenderer.emu(path[i + 1] - bounds.y));
+        }
+    }
+
+    private void drawHighlights(XSLFSlide slide, List<SlideLayout.Highlight> highlights) {
+        for (SlideLayout.Highlight h : highlights) {
+            boolean added = h.change() == SlideLayout.Highlight.Change.ADDED;
+            XSLFAutoShape ring = slide.createAutoShape();
+            name(ring, ShapeNames.highlight(h.change(), h.id()));
+            ring.setShapeType(ShapeType.ROUND_RECT);
+            ring.setAnchor(h.box());
+            ring.setLineColor(added ? DiagramStyle.COLOR_ADDED : DiagramStyle.COLOR_REMOVED);
+            ring.setLineWidth(DiagramStyle.HIGHLIGHT_WIDTH);
+            if (!added) ring.setLineDash(StrokeStyle.LineDash.DASH);
         }
     }
 
+    /**
+     * POI names auto shapes "AutoShape n"; see {@link ShapeNames} for what we use instead.
+     */
+    private static void name(XSLFAutoShape shape, String name) {
+        ((CTShape) shape.getXmlObject()).getNvSpPr().getCNvPr().setName(name);
+    }
+
+    private void createTitle(XSLFSlide slide, String title, double slideWidth) {
+        XSLFTextBox tb = slide.createTextBox();
+        tb.setAnchor(new Rectangle2D.Double(40, 20, slideWidth - 80, 50));
+        XSLFTextRun run = tb.addNewTextParagraph().addNewTextRun();
+        run.setText(title);
+        run.setFontSize(24.0);
+        run.setBold(true);
+        run.setFontColor(DiagramStyle.COLOR_TITLE);
+    }
+
     private void createEmptyState(XSLFSlide slide) {
         XSLFTextBox tb = slide.createTextBox();
-        tb.setText("No services found");
-        tb.setAnchor(new Rectangle2D.Double(100, 100, 500, 50));
+        tb.setText(DiagramStyle.EMPTY_STATE);
+        tb.setAnchor(new Rectangle2D.Double(DiagramStyle.EMPTY_STATE_X, DiagramStyle.EMPTY_STATE_Y, 500, 50));
     }
 
-    private byte[] writeToByteArray(XMLSlideShow pptx) throws IOException {
+    byte[] writeToByteArray(XMLSlideShow pptx) throws IOException {
         try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            pptx.write(out);
+            writeDeck(pptx, out);
             return out.toByteArray();
         }
     }
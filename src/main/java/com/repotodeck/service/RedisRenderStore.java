@@ -0,0 +1,189 @@
+package com.repotodeck.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * {@link SharedRenderStore} on a Redis-compatible server (Redis, Valkey, KeyDB, ...), spoken to
+ * in RESP2 over plain sockets so cluster mode needs no client library.
+ * <p>
+ * Only four commands are used: {@code GET}, {@code SET ... PX} for decks, {@code SET ... NX PX}
+ * to take a lock and an {@code EVAL} that deletes a lock only if it still holds our owner id, so
+ * a replica whose lease ran out can't release the lock someone else took since. Connections are
+ * opened on demand and up to {@code poolSize} idle ones are kept; a connection that saw an error
+ * is closed rather than reused.
+ */
+final class RedisRenderStore implements SharedRenderStore {
+
+    private static final String DECK_PREFIX = "repotodeck:deck:";
+    private static final String LOCK_PREFIX = "repotodeck:lock:";
+    private static final String UNLOCK_SCRIPT =
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
+
+    private final String host;
+    private final int port;
+    private final String password;
+    private final int timeoutMs;
+    private final BlockingQueue<Connection> idle;
+
+    RedisRenderStore(String host, int port, String password, int timeoutMs, int poolSize) {
+        this.host = host;
+        this.port = port;
+        this.password = password == null || password.isEmpty() ? null : password;
+        this.timeoutMs = timeoutMs;
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+    }
+
+    @Override
+    public byte[] get(String key) throws IOException {
+        return (byte[]) call("GET", DECK_PREFIX + key);
+    }
+
+    @Override
+    public void put(String key, byte[] deck, Duration ttl) throws IOException {
+        call("SET".getBytes(StandardCharsets.US_ASCII), bytes(DECK_PREFIX + key), deck,
+                bytes("PX"), bytes(String.valueOf(Math.max(1, ttl.toMillis()))));
+    }
+
+    @Override
+    public boolean tryLock(String key, String owner, Duration lease) throws IOException {
+        return "OK".equals(call("SET", LOCK_PREFIX + key, owner, "NX", "PX", String.valueOf(Math.max(1, lease.toMillis()))));
+    }
+
+    @Override
+    public void unlock(String key, String owner) throws IOException {
+        call("EVAL", UNLOCK_SCRIPT, "1", LOCK_PREFIX + key, owner);
+    }
+
+    @Override
+    public void close() {
+        for (Connection connection; (connection = idle.poll()) != null; ) connection.close();
+    }
+
+    private Object call(String... command) throws IOException {
+        byte[][] args = new byte[command.length][];
+        for (int i = 0; i < command.length; i++) args[i] = bytes(command[i]);
+        return call(args);
+    }
+
+    /**
+     * Sends one command and reads its reply: a String for simple strings, Long for integers,
+     * byte[] for bulk strings, null for a null reply. Error replies are thrown.
+     */
+    private Object call(byte[]... command) throws IOException {
+        Connection connection = idle.poll();
+        if (connection == null) connection = connect();
+        Object reply;
+        try {
+            connection.write(command);
+            reply = connection.read();
+        } catch (IOException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+        // An error reply leaves the connection in sync, so it can still be reused
+        if (!idle.offer(connection)) connection.close();
+        if (reply instanceof RedisError error) throw new IOException("Redis error: " + error.message());
+        return reply;
+    }
+
+    private Connection connect() throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), timeoutMs);
+            socket.setSoTimeout(timeoutMs);
+            socket.setTcpNoDelay(true);
+            Connection connection = new Connection(socket);
+            if (password != null) {
+                connection.write(bytes("AUTH"), bytes(password));
+                if (connection.read() instanceof RedisError error) {
+                    throw new IOException("Redis authentication failed: " + error.message());
+                }
+            }
+            return connection;
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private record RedisError(String message) {
+    }
+
+    private static final class Connection {
+
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+            this.out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+        }
+
+        void write(byte[]... args) throws IOException {
+            out.write(('*' + String.valueOf(args.length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            for (byte[] arg : args) {
+                out.write(('$' + String.valueOf(arg.length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                out.write(arg);
+                out.write('\r');
+                out.write('\n');
+            }
+            out.flush();
+        }
+
+        Object read() throws IOException {
+            int type = in.read();
+            if (type < 0) throw new EOFException("Redis closed the connection");
+            String line = line();
+            return switch (type) {
+                case '+' -> line;
+                case '-' -> new RedisError(line);
+                case ':' -> Long.parseLong(line);
+                case '$' -> {
+                    int length = Integer.parseInt(line);
+                    if (length < 0) yield null;
+                    byte[] data = in.readNBytes(length);
+                    if (data.length < length || in.read() != '\r' || in.read() != '\n') {
+                        throw new EOFException("Redis reply ended early");
+                    }
+                    yield data;
+                }
+                default -> throw new IOException("Unexpected Redis reply type '" + (char) type + "'");
+            };
+        }
+
+        private String line() throws IOException {
+            StringBuilder line = new StringBuilder();
+            for (int c; (c = in.read()) != '\r'; ) {
+                if (c < 0) throw new EOFException("Redis closed the connection");
+                line.append((char) c);
+            }
+            if (in.read() != '\n') throw new IOException("Malformed Redis reply");
+            return line.toString();
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Nothing left to release
+            }
+        }
+    }
+}
@@ -0,0 +1,520 @@
+package com.repotodeck.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Cost-based admission for renders.
+ * <p>
+ * Before a document is parsed, a single pass over its text estimates its {@link RenderCost}
+ * (services, links, size) without building anything. The estimate is checked against three
+ * sets of limits:
+ * <ul>
+ *   <li>up to {@code full.*}: rendered as configured, in one render slot;</li>
+ *   <li>up to {@code sync.*}: rendered with {@link PptGeneratorService.Detail#REDUCED} detail
+ *       (grid layout, straight connectors) and weighed as many render slots as it is times the
+ *       {@code full.*} limits, so a few huge renders can't take the heap the slots stand for;</li>
+ *   <li>up to {@code max.*}: sent to the job queue ({@code oversized=ASYNC}) or rejected;</li>
+ *   <li>beyond: rejected with {@link RenderTooLargeException} (413).</li>
+ * </ul>
+ * A document is over a limit as soon as one of its counts is.
+ */
+@Service
+public class RenderAdmissionService {
+
+    private static final Logger log = LoggerFactory.getLogger(RenderAdmissionService.class);
+
+    public enum Decision { FULL, REDUCED, ASYNC }
+
+    /**
+     * What happens to documents over the {@code sync.*} limits.
+     */
+    public enum Oversized { ASYNC, REJECT }
+
+    /**
+     * @param weight render slots to take (see {@link RenderScheduler#acquire(int)})
+     */
+    public record Admission(Decision decision, RenderCost cost, int weight) {
+
+        public PptGeneratorService.Detail detail() {
+            return decision == Decision.FULL ? PptGeneratorService.Detail.FULL : PptGeneratorService.Detail.REDUCED;
+        }
+    }
+
+    record Limits(int services, int edges, long chars) {
+
+        boolean exceededBy(RenderCost cost) {
+            return cost.services() > services || cost.edges() > edges || cost.chars() > chars;
+        }
+
+        /**
+         * How many times these limits {@code cost} is, by its largest count.
+         */
+        double ratio(RenderCost cost) {
+            return Math.max((double) cost.services() / Math.max(1, services),
+                    Math.max((double) cost.edges() / Math.max(1, edges), (double) cost.chars() / Math.max(1, chars)));
+        }
+    }
+
+    private final boolean enabled;
+    private final Limits full;
+    private final Limits sync;
+    private final Limits max;
+    private final Oversized oversized;
+
+    private final Counter admittedFull;
+    private final Counter admittedReduced;
+    private final Counter admittedAsync;
+    private final Counter rejected;
+
+    /**
+     * Admits everything at full detail.
+     */
+    public RenderAdmissionService() {
+        this(false, new Limits(Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE),
+                new Limits(Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE),
+                new Limits(Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE),
+                Oversized.REJECT, new CompositeMeterRegistry());
+    }
+
+    @Autowired
+    public RenderAdmissionService(@Value("${repotodeck.admission.enabled:true}") boolean enabled,
+                                  @Value("${repotodeck.admission.full.max-services:1000}") int fullServices,
+                                  @Value("${repotodeck.admission.full.max-links:4000}") int fullEdges,
+                                  @Value("${repotodeck.admission.full.max-chars:1048576}") long fullChars,
+                                  @Value("${repotodeck.admission.sync.max-services:5000}") int syncServices,
+                                  @Value("${repotodeck.admission.sync.max-links:20000}") int syncEdges,
+                                  @Value("${repotodeck.admission.sync.max-chars:4194304}") long syncChars,
+                                  @Value("${repotodeck.admission.max.services:20000}") int maxServices,
+                                  @Value("${repotodeck.admission.max.links:100000}") int maxEdges,
+                                  @Value("${repotodeck.admission.max.chars:10485760}") long maxChars,
+                                  @Value("${repotodeck.admission.oversized:ASYNC}") Oversized oversized,
+                                  MeterRegistry meterRegistry) {
+        this(enabled, new Limits(fullServices, fullEdges, fullChars), new Limits(syncServices, syncEdges, syncChars),
+                new Limits(maxServices, maxEdges, maxChars), oversized, meterRegistry);
+    }
+
+    RenderAdmissionService(boolean enabled, Limits full, Limits sync, Limits max, Oversized oversized,
+                           MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.full = full;
+        this.sync = sync;
+        this.max = max;
+        this.oversized = oversized;
+        this.admittedFull = Counter.builder("repotodeck.admission.decisions").tag("decision", "full").register(meterRegistry);
+        this.admittedReduced = Counter.builder("repotodeck.admission.decisions").tag("decision", "reduced").register(meterRegistry);
+        this.admittedAsync = Counter.builder("repotodeck.admission.decisions").tag("decision", "async").register(meterRegistry);
+        this.rejected = Counter.builder("repotodeck.admission.decisions").tag("decision", "rejected").register(meterRegistry);
+    }
+
+    /**
+     * Admits a document for /api/generate-slide, which can hand it to the job queue.
+     *
+     * @throws RenderTooLargeException if it is over the limits
+     */
+    public Admission admit(RenderCost cost) {
+        return admit(cost, oversized == Oversized.ASYNC,
+                "Compose document is too large to render synchronously (" + cost + "); submit it to /api/jobs");
+    }
+
+    /**
+     * Admits a document for a path that must render synchronously: documents that would go to
+     * the job queue are rejected instead.
+     *
+     * @throws RenderTooLargeException if it is over the limits
+     */
+    public Admission admitSync(RenderCost cost) {
+        return admit(cost, false, "Compose document is too large to render synchronously (" + cost + ")");
+    }
+
+    /**
+     * Admits a background render: only the {@code max.*} limits apply. The decision still says
+     * which tier the document falls in, so jobs over {@code full.*} render with reduced detail.
+     *
+     * @throws RenderTooLargeException if it is over the limits
+     */
+    public Admission admitJob(RenderCost cost) {
+        if (!enabled) {
+            return new Admission(Decision.FULL, cost, 1);
+        }
+        checkMax(cost);
+        Decision decision = sync.exceededBy(cost) ? Decision.ASYNC
+                : full.exceededBy(cost) ? Decision.REDUCED : Decision.FULL;
+        return new Admission(decision, cost, weight(cost));
+    }
+
+    /**
+     * Admits a document parsed on a synchronous path again, now that its real counts are known.
+     * The estimate is a pre-scan that aliased services and links can get wrong, so a graph over
+     * the counts it was admitted with is weighed and drawn by what it is (never less than it was
+     * admitted as), or rejected if that is too large to render synchronously.
+     *
+     * @throws RenderTooLargeException if the graph is over the limits
+     */
+    public Admission recheck(Admission admission, ServiceGraph graph) {
+        return recheck(admission, graph, false);
+    }
+
+    /**
+     * Same as {@link #recheck} for a background render, where only the {@code max.*} limits apply.
+     *
+     * @throws RenderTooLargeException if the graph is over the limits
+     */
+    public Admission recheckJob(Admission admission, ServiceGraph graph) {
+        return recheck(admission, graph, true);
+    }
+
+    /**
+     * Render slots a document of this cost takes: one up to the {@code full.*} limits, and as
+     * many as it is times them beyond (capped at the total by the scheduler).
+     */
+    public int weight(RenderCost cost) {
+        if (!enabled) return 1;
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, Math.ceil(full.ratio(cost))));
+    }
+
+    private Admission admit(RenderCost cost, boolean asyncAllowed, String tooLargeForSync) {
+        if (!enabled) {
+            return new Admission(Decision.FULL, cost, 1);
+        }
+        checkMax(cost);
+        if (sync.exceededBy(cost)) {
+            if (!asyncAllowed) {
+                rejected.increment();
+                throw tooLarge(tooLargeForSync, cost);
+            }
+            admittedAsync.increment();
+            return logged(new Admission(Decision.ASYNC, cost, weight(cost)));
+        }
+        if (full.exceededBy(cost)) {
+            admittedReduced.increment();
+            return logged(new Admission(Decision.REDUCED, cost, weight(cost)));
+        }
+        admittedFull.increment();
+        return new Admission(Decision.FULL, cost, 1);
+    }
+
+    private Admission recheck(Admission admission, ServiceGraph graph, boolean job) {
+        RenderCost estimated = admission.cost();
+        if (!enabled || (graph.size() <= estimated.services() && graph.linkCount() <= estimated.edges())) {
+            return admission;
+        }
+        RenderCost cost = new RenderCost(Math.max(estimated.services(), graph.size()),
+                Math.max(estimated.edges(), graph.linkCount()), estimated.chars());
+        checkMax(cost);
+        if (!job && sync.exceededBy(cost)) {
+            rejected.increment();
+            throw tooLarge("Compose document is too large to render synchronously (" + cost + ")", cost);
+        }
+        Decision decision = sync.exceededBy(cost) ? Decision.ASYNC
+                : full.exceededBy(cost) ? Decision.REDUCED : Decision.FULL;
+        if (decision.compareTo(admission.decision()) < 0) decision = admission.decision();
+        return logged(new Admission(decision, cost, Math.max(admission.weight(), weight(cost))));
+    }
+
+    private void checkMax(RenderCost cost) {
+        if (enabled && max.exceededBy(cost)) {
+            rejected.increment();
+            throw tooLarge("Compose document is too large to render (" + cost + ")", cost);
+        }
+    }
+
+    private static Admission logged(Admission admission) {
+        log.atInfo().setMessage("Oversized compose document")
+                .addKeyValue("decision", admission.decision())
+                .addKeyValue("services", admission.cost().services())
+                .addKeyValue("links", admission.cost().edges())
+                .addKeyValue("chars", admission.cost().chars())
+                .addKeyValue("weight", admission.weight())
+                .log();
+        return admission;
+    }
+
+    private static RenderTooLargeException tooLarge(String message, RenderCost cost) {
+        log.atWarn().setMessage("Compose document rejected as too large")
+                .addKeyValue("services", cost.services())
+                .addKeyValue("links", cost.edges())
+                .addKeyValue("chars", cost.chars())
+                .log();
+        return new RenderTooLargeException(message, cost);
+    }
+
+    /**
+     * One pass over the lines of a block-style compose document, counting the keys directly
+     * under the top-level {@code services:} and the entries of their {@code depends_on} and
+     * {@code links} (list items, flow list items, or keys of the long syntax). Flow collections
+     * ({@code {...}} and {@code [...]}, and so JSON documents) are counted the same way by
+     * {@link #estimateFlow}, across lines. Nothing is allocated per line.
+     */
+    public static RenderCost estimate(String yaml) {
+        if (yaml == null) return RenderCost.ZERO;
+        int length = yaml.length();
+        int services = 0;
+        int edges = 0;
+        boolean inServices = false;
+        int serviceIndent = -1;    // indentation of the service keys
+        int linkIndent = -1;       // indentation of the depends_on/links key being read, -1 outside one
+        int linkChildIndent = -1;  // indentation of its entries
+
+        for (int lineStart = 0, lineEnd; lineStart < length; lineStart = lineEnd + 1) {
+            lineEnd = yaml.indexOf('\n', lineStart);
+            if (lineEnd < 0) lineEnd = length;
+            int pos = lineStart;
+            while (pos < lineEnd && yaml.charAt(pos) == ' ') pos++;
+            if (pos == lineEnd || yaml.charAt(pos) == '#' || yaml.charAt(pos) == '\r') continue;
+            int indent = pos - lineStart;
+
+            if (indent == 0) {
+                serviceIndent = -1;
+                linkIndent = -1;
+                inServices = false;
+                Flow flow = null;
+                if (yaml.charAt(pos) == '{') {
+                    flow = estimateFlow(yaml, pos, ROOT);
+                } else {
+                    int valueStart = blockKey(yaml, pos, lineEnd, "services");
+                    int value = valueStart < 0 ? -1 : flowStart(yaml, valueStart, lineEnd);
+                    inServices = valueStart >= 0 && value < 0;
+                    if (value >= 0) flow = estimateFlow(yaml, value, SERVICES);
+                }
+                if (flow != null) {
+                    services += flow.services();
+                    edges += flow.edges();
+                    lineEnd = endOfLine(yaml, flow.end());
+                }
+                continue;
+            }
+            if (!inServices) continue;
+            if (serviceIndent < 0) serviceIndent = indent;
+            if (indent <= serviceIndent) {
+                int colon = indent == serviceIndent && yaml.charAt(pos) != '-' ? keyEnd(yaml, pos, lineEnd) : -1;
+                if (colon >= 0) {
+                    services++;
+                    int value = flowStart(yaml, colon + 1, lineEnd);
+                    if (value >= 0) {
+                        Flow flow = estimateFlow(yaml, value, SERVICE);
+                        edges += flow.edges();
+                        lineEnd = endOfLine(yaml, flow.end());
+                    }
+                }
+                linkIndent = -1;
+                continue;
+            }
+
+            boolean listItem = yaml.charAt(pos) == '-';
+            if (linkIndent >= 0 && (indent > linkIndent || (indent == linkIndent && listItem))) {
+                // Entries of depends_on/links: "- db", or "db:" keys of the long syntax
+                if (linkChildIndent < 0) linkChildIndent = indent;
+                if (indent == linkChildIndent && (listItem || keyEnd(yaml, pos, lineEnd) >= 0)) edges++;
+                continue;
+            }
+            linkIndent = -1;
+
+            int valueStart = blockKey(yaml, pos, lineEnd, "depends_on");
+            if (valueStart < 0) valueStart = blockKey(yaml, pos, lineEnd, "links");
+            if (valueStart >= 0) {
+                int value = flowStart(yaml, valueStart, lineEnd);
+                if (value >= 0) {
+                    Flow flow = estimateFlow(yaml, value, LINKS);
+                    edges += flow.edges();
+                    lineEnd = endOfLine(yaml, flow.end());
+                } else {
+                    linkIndent = indent;
+                    linkChildIndent = -1;
+                    edges += hasValue(yaml, valueStart, lineEnd) ? 1 : 0;
+                }
+            }
+        }
+        return new RenderCost(services, edges, length);
+    }
+
+    /**
+     * Index of the ':' ending the mapping key the line starts with at {@code pos} ("name:"
+     * followed by a space or the end), or -1 if it doesn't start with one.
+     */
+    private static int keyEnd(String yaml, int pos, int lineEnd) {
+        for (int i = pos; i < lineEnd; i++) {
+            char c = yaml.charAt(i);
+            if (c == '#') return -1;
+            if (c == ':' && (i + 1 == lineEnd || yaml.charAt(i + 1) == ' ' || yaml.charAt(i + 1) == '\r')) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Index just after the ':' if the line at {@code pos} starts with the mapping key
+     * {@code word}, plain or quoted and with or without spaces before the ':' ("services:",
+     * "\"services\":", "services :"), or -1 if it doesn't.
+     */
+    private static int blockKey(String yaml, int pos, int lineEnd, String word) {
+        char quote = yaml.charAt(pos);
+        boolean quoted = quote == '"' || quote == '\'';
+        int i = quoted ? pos + 1 : pos;
+        if (!yaml.startsWith(word, i)) return -1;
+        i += word.length();
+        if (quoted) {
+            if (i >= lineEnd || yaml.charAt(i) != quote) return -1;
+            i++;
+        }
+        while (i < lineEnd && (yaml.charAt(i) == ' ' || yaml.charAt(i) == '\t')) i++;
+        if (i >= lineEnd || yaml.charAt(i) != ':') return -1;
+        i++;
+        // A plain key needs a space after its ':' ("services:x" is a scalar); a quoted one doesn't
+        if (!quoted && i < lineEnd && " \t\r".indexOf(yaml.charAt(i)) < 0) return -1;
+        return i;
+    }
+
+    /**
+     * Index of the '{' or '[' a value written on the key's own line starts with, or -1 if it is
+     * a plain scalar or missing.
+     */
+    private static int flowStart(String yaml, int from, int lineEnd) {
+        int pos = from;
+        while (pos < lineEnd && yaml.charAt(pos) == ' ') pos++;
+        return pos < lineEnd && (yaml.charAt(pos) == '{' || yaml.charAt(pos) == '[') ? pos : -1;
+    }
+
+    /**
+     * Whether a scalar is written on the key's own line (a depends_on of one service).
+     */
+    private static boolean hasValue(String yaml, int from, int lineEnd) {
+        int pos = from;
+        while (pos < lineEnd && yaml.charAt(pos) == ' ') pos++;
+        return pos < lineEnd && yaml.charAt(pos) != '#' && yaml.charAt(pos) != '\r';
+    }
+
+    private static int endOfLine(String yaml, int from) {
+        int end = yaml.indexOf('\n', from);
+        return end < 0 ? yaml.length() : end;
+    }
+
+    // What a flow collection holds, by the key it is the value of
+    private static final int ROOT = 0;      // the document: its "services" key holds the services
+    private static final int SERVICES = 1;  // keys are services
+    private static final int SERVICE = 2;   // "depends_on" and "links" keys hold links
+    private static final int LINKS = 3;     // items, or keys of the long syntax, are links
+    private static final int OTHER = 4;
+
+    // Only the outermost collections have roles; anything deeper is OTHER
+    private static final int MAX_ROLES = 8;
+
+    /**
+     * @param end index just after the collection (or the end of the document if it isn't closed)
+     */
+    private record Flow(int services, int edges, int end) {
+    }
+
+    /**
+     * Counts services and links in the flow collection at {@code from}, which holds {@code role}:
+     * a JSON document or a YAML {@code {...}} or {@code [...]}, over as many lines as it takes.
+     * Scalars are skipped over, never copied; quoted keys and values work as in JSON.
+     */
+    private static Flow estimateFlow(String yaml, int from, int role) {
+        int length = yaml.length();
+        int[] roles = new int[MAX_ROLES];
+        boolean[] mapping = new boolean[MAX_ROLES];
+        int depth = -1;          // innermost open collection
+        int valueRole = OTHER;   // role of a collection that is the value of the key just read
+        boolean afterKey = false;
+        int services = 0;
+        int edges = 0;
+
+        int i = from;
+        while (i < length) {
+            char c = yaml.charAt(i);
+            int current = depth >= 0 && depth < MAX_ROLES ? roles[depth] : OTHER;
+            boolean inList = depth >= 0 && depth < MAX_ROLES && !mapping[depth];
+            if (c == '{' || c == '[') {
+                int opened = depth < 0 ? role : afterKey ? valueRole : OTHER;
+                if (!afterKey && current == LINKS && inList) edges++;
+                afterKey = false;
+                depth++;
+                if (depth < MAX_ROLES) {
+                    roles[depth] = opened;
+                    mapping[depth] = c == '{';
+                }
+                i++;
+            } else if (c == '}' || c == ']') {
+                afterKey = false;
+                i++;
+                if (--depth < 0) return new Flow(services, edges, i);
+            } else if (c == ',') {
+                afterKey = false;
+                i++;
+            } else if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                i++;
+            } else if (c == '#' && (i == from || Character.isWhitespace(yaml.charAt(i - 1)))) {
+                i = endOfLine(yaml, i);
+            } else {
+                // A scalar, which is a key if a ':' follows it
+                int start = c == '"' || c == '\'' ? i + 1 : i;
+                int end = c == '"' || c == '\'' ? quotedEnd(yaml, i) : plainEnd(yaml, i);
+                i = end < length && (c == '"' || c == '\'') ? end + 1 : Math.max(end, i + 1);
+                int next = i;
+                while (next < length && (yaml.charAt(next) == ' ' || yaml.charAt(next) == '\t')) next++;
+                if (next < length && yaml.charAt(next) == ':') {
+                    if (current == SERVICES) services++;
+                    if (current == LINKS) edges++;
+                    valueRole = current == ROOT && is(yaml, start, end, "services") ? SERVICES
+                            : current == SERVICES ? SERVICE
+                            : current == SERVICE && (is(yaml, start, end, "depends_on") || is(yaml, start, end, "links")) ? LINKS
+                            : OTHER;
+                    afterKey = true;
+                    i = next + 1;
+                } else {
+                    if (afterKey ? valueRole == LINKS : current == LINKS && inList) edges++;
+                    afterKey = false;
+                }
+            }
+        }
+        return new Flow(services, edges, length);
+    }
+
+    /**
+     * Index of the quote closing the quoted scalar at {@code from} ("\"" escapes in double
+     * quotes, "''" in single quotes), or the end of the document.
+     */
+    private static int quotedEnd(String yaml, int from) {
+        char quote = yaml.charAt(from);
+        for (int i = from + 1; i < yaml.length(); i++) {
+            char c = yaml.charAt(i);
+            if (quote == '"' && c == '\\') {
+                i++;
+            } else if (c == quote) {
+                if (quote == '\'' && i + 1 < yaml.length() && yaml.charAt(i + 1) == '\'') {
+                    i++;
+                } else {
+                    return i;
+                }
+            }
+        }
+        return yaml.length();
+    }
+
+    /**
+     * End of the plain scalar at {@code from}: the next flow indicator, a ':' followed by a space,
+     * line break or flow indicator, or a " #" comment. Trailing spaces are left out.
+     */
+    private static int plainEnd(String yaml, int from) {
+        int length = yaml.length();
+        int end = from;
+        for (int i = from; i < length; i++) {
+            char c = yaml.charAt(i);
+            if (c == ',' || c == '[' || c == ']' || c == '{' || c == '}') break;
+            if (c == ':' && (i + 1 == length || " \t\r\n,[]{}".indexOf(yaml.charAt(i + 1)) >= 0)) break;
+            if (c == '#' && i > from && Character.isWhitespace(yaml.charAt(i - 1))) break;
+            if (!Character.isWhitespace(c)) end = i + 1;
+        }
+        return end;
+    }
+
+    private static boolean is(String yaml, int start, int end, String word) {
+        return end - start == word.length() && yaml.startsWith(word, start);
+    }
+}
@@ -0,0 +1,267 @@
+package com.repotodeck.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.repotodeck.model.ComposeSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Content-addressed cache of rendered decks.
+ * <p>
+ * The key is a SHA-256 of the normalized YAML plus {@link PptGeneratorService#LAYOUT_VERSION}
+ * and the classification rule fingerprint, so identical compose files posted by CI hit the
+ * cache while a layout change or a rules reload invalidates everything at once. The cache is bounded by total bytes and uses Caffeine's W-TinyLFU
+ * eviction, which keeps popular decks around even when a burst of one-off files passes through.
+ */
+@Service
+public class RenderCacheService {
+
+    @FunctionalInterface
+    public interface Renderer {
+        byte[] render() throws IOException;
+    }
+
+    private final Cache<String, byte[]> cache;
+    private final long maxEntryBytes;
+    private final ServiceClassifier serviceClassifier;
+
+    public RenderCacheService(@Value("${repotodeck.cache.max-bytes:67108864}") long maxBytes,
+                              @Value("${repotodeck.cache.max-entry-bytes:8388608}") long maxEntryBytes,
+                              MeterRegistry meterRegistry,
+                              ServiceClassifier serviceClassifier) {
+        this.maxEntryBytes = maxEntryBytes;
+        this.serviceClassifier = serviceClassifier;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, byte[] value) -> value.length)
+                .recordStats()
+                .build();
+
+        // Exposes cache.gets{result=hit|miss}, cache.evictions, cache.eviction.weight, ...
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "render");
+        Gauge.builder("repotodeck.cache.bytes", cache, c -> c.policy().eviction()
+                        .map(e -> e.weightedSize().orElse(0L))
+                        .orElse(0L))
+                .description("Total size of cached decks")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Builds the cache key (also used as the ETag) for a compose document.
+     */
+    public String keyFor(String yamlContent) {
+        return sha256(PptGeneratorService.LAYOUT_VERSION.getBytes(StandardCharsets.UTF_8),
+                serviceClassifier.getFingerprint().getBytes(StandardCharsets.UTF_8),
+                normalize(yamlContent).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Key (and ETag) of the diagram for {@code key} in {@code format}. PPTX keeps the plain key,
+     * so ETags of decks and the previous decks of /update-slide stay what they were.
+     */
+    public String keyForFormat(String key, DiagramFormat format) {
+        if (format == DiagramFormat.PPTX) return key;
+        return sha256("format".getBytes(StandardCharsets.UTF_8),
+                format.name().getBytes(StandardCharsets.UTF_8),
+                key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Key (and ETag) of the diagram for {@code key} at {@code detail}. FULL keeps the plain key,
+     * so a REDUCED render is never served for the same document once the thresholds change.
+     */
+    public String keyForDetail(String key, PptGeneratorService.Detail detail) {
+        if (detail == PptGeneratorService.Detail.FULL) return key;
+        return sha256("detail".getBytes(StandardCharsets.UTF_8),
+                detail.name().getBytes(StandardCharsets.UTF_8),
+                key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Key of an uploaded deck, standing in for its cache key in {@link #keyForUpdate}.
+     */
+    public String keyForDeck(byte[] deck) {
+        return sha256(deck);
+    }
+
+    /**
+     * Key (and ETag) of the deck produced by updating the deck {@code previousKey} to the compose
+     * document {@code yamlKey}, so an updated deck can itself be the previous one next time.
+     */
+    public String keyForUpdate(String previousKey, String yamlKey, boolean highlight) {
+        return sha256("update".getBytes(StandardCharsets.UTF_8),
+                previousKey.getBytes(StandardCharsets.UTF_8),
+                yamlKey.getBytes(StandardCharsets.UTF_8),
+                new byte[]{(byte) (highlight ? 1 : 0)});
+    }
+
+    /**
+     * Key (and ETag) of a multi-file project: every file by path and normalized content, the
+     * compose files to load and the active profiles (order doesn't matter for either files or profiles).
+     */
+    public String keyForProject(List<ComposeSource> files, List<String> composeFiles, Collection<String> profiles) {
+        List<byte[]> parts = new ArrayList<>();
+        parts.add("project".getBytes(StandardCharsets.UTF_8));
+        parts.add(PptGeneratorService.LAYOUT_VERSION.getBytes(StandardCharsets.UTF_8));
+        parts.add(serviceClassifier.getFingerprint().getBytes(StandardCharsets.UTF_8));
+        List<ComposeSource> sorted = new ArrayList<>(files);
+        sorted.sort(Comparator.comparing(ComposeSource::name, Comparator.nullsFirst(Comparator.naturalOrder())));
+        for (ComposeSource file : sorted) {
+            parts.add(String.valueOf(file.name()).getBytes(StandardCharsets.UTF_8));
+            parts.add(normalize(String.valueOf(file.yaml())).getBytes(StandardCharsets.UTF_8));
+        }
+        parts.add(String.join("\n", composeFiles == null ? List.of() : composeFiles).getBytes(StandardCharsets.UTF_8));
+        parts.add(String.join("\n", profiles == null ? List.of() : new TreeSet<>(profiles)).getBytes(StandardCharsets.UTF_8));
+        return sha256(parts.toArray(byte[][]::new));
+    }
+
+    private static String sha256(byte[]... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (int i = 0; i < parts.length; i++) {
+                if (i > 0) digest.update((byte) 0);
+                digest.update(parts[i]);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public byte[] getIfPresent(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Returns the cached deck for {@code key}, rendering it on a miss.
+     * Concurrent misses for the same key wait for a single render.
+     * Decks above the per-entry limit are returned but not kept.
+     */
+    public byte[] get(String key, Renderer renderer) throws IOException {
+        try {
+            byte[][] oversized = new byte[1][];
+            byte[] result = cache.get(key, k -> {
+                byte[] rendered = renderOrThrow(renderer);
+                if (rendered.length > maxEntryBytes) {
+                    oversized[0] = rendered;
+                    return null; // Caffeine does not store null results
+                }
+                return rendered;
+            });
+            return result != null ? result : oversized[0];
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public void put(String key, byte[] pptxBytes) {
+        if (pptxBytes.length <= maxEntryBytes) {
+            cache.put(key, pptxBytes);
+        }
+    }
+
+    /**
+     * Wraps a response stream so the deck is written through to the client while a copy is
+     * captured for the cache. The copy is dropped as soon as it exceeds the per-entry limit,
+     * so large decks stream with no extra heap. Call {@link CachingOutputStream#commit()} once
+     * the deck has been written completely; a failed render must never be cached.
+     */
+    public CachingOutputStream cachingStream(String key, OutputStream target) {
+        return new CachingOutputStream(key, target);
+    }
+
+    public final class CachingOutputStream extends FilterOutputStream {
+
+        private final String key;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        private CachingOutputStream(String key, OutputStream target) {
+            super(target);
+            this.key = key;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy == null) return;
+            if (copy.size() + 1 > maxEntryBytes) {
+                copy = null;
+            } else {
+                copy.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            capture(b, off, len);
+        }
+
+        public void commit() {
+            if (copy != null) {
+                put(key, copy.toByteArray());
+                copy = null;
+            }
+        }
+
+        private void capture(byte[] b, int off, int len) {
+            if (copy == null) return;
+            if (copy.size() + len > maxEntryBytes) {
+                copy = null;
+            } else {
+                copy.write(b, off, len);
+            }
+        }
+    }
+
+    /**
+     * Line endings, trailing whitespace, a leading BOM and trailing blank lines don't change
+     * the diagram, so they shouldn't change the key either.
+     */
+    static String normalize(String yamlContent) {
+        String text = yamlContent.startsWith("\uFEFF") ? yamlContent.substring(1) : yamlContent;
+        StringBuilder sb = new StringBuilder(text.length());
+        int lineStart = 0;
+        int length = text.length();
+        while (lineStart <= length) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0) lineEnd = length;
+            int end = lineEnd;
+            while (end > lineStart && Character.isWhitespace(text.charAt(end - 1))) end--;
+            sb.append(text, lineStart, end).append('\n');
+            lineStart = lineEnd + 1;
+        }
+        int end = sb.length();
+        while (end > 0 && sb.charAt(end - 1) == '\n') end--;
+        sb.setLength(end);
+        return sb.toString();
+    }
+
+    private static byte[] renderOrThrow(Renderer renderer) {
+        try {
+            return renderer.render();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
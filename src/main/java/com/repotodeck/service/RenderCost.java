@@ -0,0 +1,24 @@
+package com.repotodeck.service;
+
+/**
+ * What a render of one compose document is estimated to cost, from a pre-scan of its text
+ * (see {@link RenderAdmissionService#estimate}). Counts are estimates: anchors and merge keys
+ * can make the real graph larger or smaller.
+ *
+ * @param services service definitions under {@code services:}
+ * @param edges    {@code depends_on} and {@code links} entries
+ * @param chars    document length
+ */
+public record RenderCost(int services, int edges, long chars) {
+
+    public static final RenderCost ZERO = new RenderCost(0, 0, 0);
+
+    public RenderCost plus(RenderCost other) {
+        return new RenderCost(services + other.services, edges + other.edges, chars + other.chars);
+    }
+
+    @Override
+    public String toString() {
+        return services + " services, " + edges + " links, " + chars + " characters";
+    }
+}
@@ -0,0 +1,245 @@
+package com.repotodeck.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Cluster mode: replicas behind a load balancer share rendered decks through a
+ * {@link SharedRenderStore} and render each cache key only once between them.
+ * <p>
+ * A render goes through two single-flight gates. Inside a replica, concurrent calls for the same
+ * key join the one already running. Across replicas, the first to take the key's lock in the
+ * store renders and publishes the deck; the others poll the store until the deck shows up, the
+ * lock is released without one (the render failed, so they try for the lock themselves) or
+ * {@code wait} runs out. A store that is unreachable or too slow never fails a request: the
+ * replica then renders on its own, as it would without cluster mode.
+ * <p>
+ * {@code NONE} (the default) turns cluster mode off and {@link #isEnabled} tells callers to keep
+ * their single-replica path.
+ */
+@Service
+public class RenderFarmService {
+
+    private static final Logger log = LoggerFactory.getLogger(RenderFarmService.class);
+
+    /**
+     * MEMORY shares within one JVM only, FILE through a directory all replicas mount, REDIS
+     * through a Redis-compatible server.
+     */
+    public enum Store { NONE, MEMORY, FILE, REDIS }
+
+    private final SharedRenderStore store;
+    private final Duration ttl;
+    private final Duration lease;
+    private final long waitNanos;
+    private final long pollMillis;
+    private final long maxEntryBytes;
+    private final String owner = UUID.randomUUID().toString();
+    private final ConcurrentMap<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter sharedHits;
+    private final Counter rendered;
+    private final Counter joined;
+    private final Counter fallbacks;
+
+    @Autowired
+    public RenderFarmService(@Value("${repotodeck.cluster.store:NONE}") Store type,
+                             @Value("${repotodeck.cluster.file.directory:${java.io.tmpdir}/repotodeck-cluster}") String directory,
+                             @Value("${repotodeck.cluster.redis.host:localhost}") String redisHost,
+                             @Value("${repotodeck.cluster.redis.port:6379}") int redisPort,
+                             @Value("${repotodeck.cluster.redis.password:}") String redisPassword,
+                             @Value("${repotodeck.cluster.redis.timeout-ms:2000}") int redisTimeoutMs,
+                             @Value("${repotodeck.cluster.redis.pool-size:16}") int redisPoolSize,
+                             @Value("${repotodeck.cluster.ttl-seconds:86400}") long ttlSeconds,
+                             @Value("${repotodeck.cluster.lock-lease-ms:60000}") long leaseMs,
+                             @Value("${repotodeck.cluster.wait-ms:60000}") long waitMs,
+                             @Value("${repotodeck.cluster.poll-ms:100}") long pollMs,
+                             @Value("${repotodeck.cache.max-bytes:67108864}") long maxBytes,
+                             @Value("${repotodeck.cache.max-entry-bytes:8388608}") long maxEntryBytes,
+                             MeterRegistry meterRegistry) throws IOException {
+        this(switch (type) {
+            case NONE -> null;
+            case MEMORY -> new MemoryRenderStore(maxBytes);
+            case FILE -> new FileRenderStore(Path.of(directory));
+            case REDIS -> new RedisRenderStore(redisHost, redisPort, redisPassword, redisTimeoutMs, redisPoolSize);
+        }, Duration.ofSeconds(ttlSeconds), Duration.ofMillis(leaseMs), waitMs, pollMs, maxEntryBytes, meterRegistry);
+        if (store != null) {
+            log.atInfo().setMessage("Cluster mode enabled").addKeyValue("store", type).log();
+        }
+    }
+
+    /**
+     * @param store null to turn cluster mode off
+     */
+    RenderFarmService(SharedRenderStore store, Duration ttl, Duration lease, long waitMs, long pollMs,
+                      long maxEntryBytes, MeterRegistry meterRegistry) {
+        this.store = store;
+        this.ttl = ttl;
+        this.lease = lease;
+        this.waitNanos = Duration.ofMillis(waitMs).toNanos();
+        this.pollMillis = Math.max(1, pollMs);
+        this.maxEntryBytes = maxEntryBytes;
+
+        this.sharedHits = Counter.builder("repotodeck.cluster.renders").tag("result", "shared_hit").register(meterRegistry);
+        this.rendered = Counter.builder("repotodeck.cluster.renders").tag("result", "rendered").register(meterRegistry);
+        this.joined = Counter.builder("repotodeck.cluster.renders").tag("result", "joined").register(meterRegistry);
+        this.fallbacks = Counter.builder("repotodeck.cluster.renders").tag("result", "fallback").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return store != null;
+    }
+
+    /**
+     * The deck for {@code key}: from the shared store, from a render of the same key already
+     * running here or on another replica, or else rendered by {@code renderer} and shared.
+     * Exceptions of {@code renderer} reach every caller that joined its render.
+     */
+    public byte[] render(String key, RenderCacheService.Renderer renderer) throws IOException {
+        if (store == null) return renderer.render();
+        CompletableFuture<byte[]> mine = new CompletableFuture<>();
+        CompletableFuture<byte[]> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            joined.increment();
+            return join(running);
+        }
+        try {
+            byte[] deck = renderShared(key, renderer);
+            mine.complete(deck);
+            return deck;
+        } catch (IOException | RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${repotodeck.cluster.cleanup-interval-ms:300000}")
+    public void purgeExpired() {
+        if (store == null) return;
+        try {
+            store.purgeExpired();
+        } catch (IOException e) {
+            log.atWarn().setMessage("Could not purge the shared render store").addKeyValue("error", e.getMessage()).log();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (store != null) store.close();
+    }
+
+    private byte[] renderShared(String key, RenderCacheService.Renderer renderer) throws IOException {
+        long deadline = System.nanoTime() + waitNanos;
+        boolean waited = false;
+        try {
+            while (true) {
+                byte[] shared = store.get(key);
+                if (shared != null) {
+                    (waited ? joined : sharedHits).increment();
+                    return shared;
+                }
+                if (store.tryLock(key, owner, lease)) {
+                    return renderLocked(key, renderer);
+                }
+                if (System.nanoTime() - deadline >= 0) {
+                    log.atWarn().setMessage("Gave up waiting for another replica's render").addKeyValue("cacheKey", key).log();
+                    break;
+                }
+                waited = true;
+                Thread.sleep(pollMillis);
+            }
+        } catch (RenderFailure e) {
+            throw e.getCause(); // from the render itself, not from the store
+        } catch (IOException e) {
+            log.atWarn().setMessage("Shared render store unavailable, rendering locally")
+                    .addKeyValue("cacheKey", key).addKeyValue("error", e.getMessage()).log();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a shared render");
+        }
+        fallbacks.increment();
+        return renderer.render();
+    }
+
+    /**
+     * Renders while holding the lock of {@code key}. IOExceptions of the render are wrapped in
+     * {@link RenderFailure} so they are not mistaken for store failures.
+     */
+    private byte[] renderLocked(String key, RenderCacheService.Renderer renderer) throws IOException {
+        try {
+            // Another replica may have published the deck between our lookup and the lock
+            byte[] shared = store.get(key);
+            if (shared != null) {
+                sharedHits.increment();
+                return shared;
+            }
+            byte[] deck;
+            try {
+                deck = renderer.render();
+            } catch (IOException e) {
+                throw new RenderFailure(e);
+            }
+            rendered.increment();
+            if (deck.length <= maxEntryBytes) {
+                try {
+                    store.put(key, deck, ttl);
+                } catch (IOException e) {
+                    log.atWarn().setMessage("Could not share a rendered deck")
+                            .addKeyValue("cacheKey", key).addKeyValue("error", e.getMessage()).log();
+                }
+            }
+            return deck;
+        } finally {
+            try {
+                store.unlock(key, owner);
+            } catch (IOException e) {
+                log.atWarn().setMessage("Could not release a render lock; it expires with its lease")
+                        .addKeyValue("cacheKey", key).addKeyValue("error", e.getMessage()).log();
+            }
+        }
+    }
+
+    private static byte[] join(CompletableFuture<byte[]> running) throws IOException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a render");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            if (cause instanceof Error error) throw error;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Carries an IOException of the renderer past the store error handling.
+     */
+    private static final class RenderFailure extends UncheckedIOException {
+        RenderFailure(IOException cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.repotodeck.service;
+
+import com.repotodeck.model.RenderJob;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background renders for decks too large to stream within a gateway timeout.
+ * <p>
+ * A job is parsed on submit (so bad input is still a 400), persisted to the {@link DeckStore}
+ * together with its input and queued on a small bounded worker pool; a full queue is rejected like
+ * a full render queue. Workers still take {@link RenderScheduler} slots (as many as
+ * {@link RenderAdmissionService} weighs the document), so synchronous and background renders
+ * share one heap budget. Documents over the admission's {@code full.*} limits are not parsed on
+ * submit: only their input is stored, and the worker parses it once it holds its slots, then
+ * renders it with reduced detail. Jobs found in the store at startup are picked up
+ * again: finished ones stay downloadable, unfinished ones are re-rendered from their saved input.
+ * Finished jobs are deleted {@code ttl-ms} after they finish.
+ */
+@Service
+public class RenderJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(RenderJobService.class);
+
+    public static final String MDC_KEY = "jobId";
+
+    private final DockerParserService dockerParserService;
+    private final PptGeneratorService pptGeneratorService;
+    private final RenderCacheService renderCacheService;
+    private final RenderScheduler renderScheduler;
+    private final RenderAdmissionService renderAdmissionService;
+    private final DeckStore deckStore;
+    private final long ttlMillis;
+    private final long retryAfterSeconds;
+
+    private final Map<String, RenderJob> jobs = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor workers;
+    private final Counter succeeded;
+    private final Counter failed;
+    private final Counter rejected;
+
+    public RenderJobService(DockerParserService dockerParserService,
+                            PptGeneratorService pptGeneratorService,
+                            RenderCacheService renderCacheService,
+                            RenderScheduler renderScheduler,
+                            RenderAdmissionService renderAdmissionService,
+                            DeckStore deckStore,
+                            MeterRegistry meterRegistry,
+                            @Value("${repotodeck.jobs.workers:2}") int workers,
+                            @Value("${repotodeck.jobs.queue-capacity:100}") int queueCapacity,
+                            @Value("${repotodeck.jobs.ttl-ms:3600000}") long ttlMillis,
+                            @Value("${repotodeck.render.retry-after-seconds:2}") long retryAfterSeconds) throws IOException {
+        this.dockerParserService = dockerParserService;
+        this.pptGeneratorService = pptGeneratorService;
+        this.renderCacheService = renderCacheService;
+        this.renderScheduler = renderScheduler;
+        this.renderAdmissionService = renderAdmissionService;
+        this.deckStore = deckStore;
+        this.ttlMillis = ttlMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.workers = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                Thread.ofPlatform().name("deck-job-", 1).daemon(true).factory());
+        this.workers.allowCoreThreadTimeOut(true);
+
+        Gauge.builder("repotodeck.jobs.queued", this.workers, w -> w.getQueue().size())
+                .description("Background renders waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("repotodeck.jobs.running", this.workers, ThreadPoolExecutor::getActiveCount)
+                .description("Background renders in progress")
+                .register(meterRegistry);
+        this.succeeded = Counter.builder("repotodeck.jobs.completed").tag("result", "done").register(meterRegistry);
+        this.failed = Counter.builder("repotodeck.jobs.completed").tag("result", "failed").register(meterRegistry);
+        this.rejected = Counter.builder("repotodeck.jobs.rejected").register(meterRegistry);
+
+        recover();
+    }
+
+    /**
+     * Parses {@code yamlContent} and queues its render.
+     *
+     * @throws IllegalArgumentException if the document is empty or invalid
+     * @throws RenderTooLargeException  if it is over the admission limits
+     * @throws RenderRejectedException  if the job queue is full
+     * @throws UncheckedIOException     if the job can't be persisted
+     */
+    public RenderJob submit(String yamlContent) {
+        if (yamlContent == null || yamlContent.trim().isEmpty()) {
+            throw new IllegalArgumentException("YAML content cannot be empty");
+        }
+        return submit(yamlContent, renderAdmissionService.admitJob(RenderAdmissionService.estimate(yamlContent)));
+    }
+
+    /**
+     * Same as {@link #submit(String)} for a document that was already admitted. Oversized
+     * documents are only parsed by the worker, so invalid ones fail the job instead of this call,
+     * and the job reports their estimated service count.
+     */
+    public RenderJob submit(String yamlContent, RenderAdmissionService.Admission admitted) {
+        if (yamlContent == null || yamlContent.trim().isEmpty()) {
+            throw new IllegalArgumentException("YAML content cannot be empty");
+        }
+        RenderAdmissionService.Admission admission = admitted;
+        ServiceGraph graph = null;
+        int services = admission.cost().services();
+        if (admission.detail() == PptGeneratorService.Detail.FULL) {
+            graph = dockerParserService.parseGraph(yamlContent);
+            if (graph.isEmpty()) {
+                throw new IllegalArgumentException("No services found in YAML. Check formatting.");
+            }
+            admission = renderAdmissionService.recheckJob(admission, graph);
+            services = graph.size();
+        }
+        PptGeneratorService.Detail detail = admission.detail();
+
+        String cacheKey = renderCacheService.keyForDetail(renderCacheService.keyFor(yamlContent), detail);
+        RenderJob job = RenderJob.queued(DeckStore.newId(), cacheKey, services);
+        try {
+            deckStore.saveInput(job.id(), yamlContent);
+            deckStore.save(job);
+        } catch (IOException e) {
+            deckStore.delete(job.id());
+            throw new UncheckedIOException("Could not store job", e);
+        }
+        jobs.put(job.id(), job);
+        ServiceGraph parsed = graph;
+        RenderAdmissionService.Admission queued = admission;
+        try {
+            workers.execute(() -> run(job.id(), parsed, queued));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id());
+            deckStore.delete(job.id());
+            rejected.increment();
+            throw new RenderRejectedException(RenderRejectedException.Reason.QUEUE_FULL, retryAfterSeconds);
+        }
+        log.atInfo().setMessage("Deck job queued")
+                .addKeyValue(MDC_KEY, job.id())
+                .addKeyValue("services", services)
+                .addKeyValue("detail", detail)
+                .log();
+        return job;
+    }
+
+    /**
+     * The job with this id, or null if there is none (never was, or expired).
+     */
+    public RenderJob get(String id) {
+        return DeckStore.isValidId(id) ? jobs.get(id) : null;
+    }
+
+    /**
+     * The finished deck of job {@code id}, or null unless the job is DONE.
+     */
+    public Path deck(String id) {
+        RenderJob job = get(id);
+        return job != null && job.state() == RenderJob.State.DONE ? deckStore.deckPath(id) : null;
+    }
+
+    /**
+     * Deletes finished jobs older than the TTL, deck included.
+     */
+    @Scheduled(fixedDelayString = "${repotodeck.jobs.cleanup-interval-ms:60000}")
+    public void evictExpired() {
+        Instant cutoff = Instant.now().minusMillis(ttlMillis);
+        for (RenderJob job : jobs.values()) {
+            if (job.finished() && !job.finishedAt().isAfter(cutoff) && jobs.remove(job.id(), job)) {
+                deckStore.delete(job.id());
+                log.atDebug().setMessage("Deck job expired").addKeyValue(MDC_KEY, job.id()).log();
+            }
+        }
+    }
+
+    /**
+     * Stops the workers; jobs they didn't finish are still in the store and run after a restart.
+     */
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * @param parsed the graph if it was parsed on submit; otherwise the saved input is parsed here,
+     *               once the slots are held
+     * @param admission what the job was admitted as; null for a recovered job, which is weighed
+     *                  again from its input
+     */
+    private void run(String id, ServiceGraph parsed, RenderAdmissionService.Admission admission) {
+        MDC.put(MDC_KEY, id);
+        RenderJob job = jobs.get(id);
+        try {
+            if (job == null) return;
+            job = update(job.running());
+
+            long bytes;
+            byte[] cached = renderCacheService.getIfPresent(job.cacheKey());
+            if (cached != null) {
+                bytes = deckStore.writeDeck(id, out -> out.write(cached));
+            } else {
+                String input = parsed == null ? savedInput(id) : null;
+                RenderAdmissionService.Admission admitted = admission != null ? admission
+                        : renderAdmissionService.admitJob(RenderAdmissionService.estimate(input));
+                String cacheKey = job.cacheKey();
+                try (RenderScheduler.Permit permit = acquireSlots(admitted.weight())) {
+                    ServiceGraph graph = parsed != null ? parsed : dockerParserService.parseGraph(input);
+                    if (graph.isEmpty()) {
+                        throw new IllegalArgumentException("No services found in YAML. Check formatting.");
+                    }
+                    // Parsed here for the first time: the estimate may have undercounted it
+                    RenderAdmissionService.Admission rendered = parsed != null ? admitted
+                            : renderAdmissionService.recheckJob(admitted, graph);
+                    growSlots(permit, rendered.weight());
+                    PptGeneratorService.Detail level = rendered.detail();
+                    bytes = deckStore.writeDeck(id, out -> {
+                        RenderCacheService.CachingOutputStream cachingOut = renderCacheService.cachingStream(cacheKey, out);
+                        pptGeneratorService.generateSlide(graph, level, cachingOut);
+                        cachingOut.commit();
+                    });
+                }
+            }
+            deckStore.deleteInput(id);
+            job = update(job.done(bytes));
+            succeeded.increment();
+            log.atInfo().setMessage("Deck job done")
+                    .addKeyValue("services", job.services())
+                    .addKeyValue("bytes", bytes)
+                    .addKeyValue("cached", cached != null)
+                    .log();
+        } catch (InterruptedException e) {
+            // Shutting down: the job stays unfinished in the store and is rendered after the restart
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) return;
+            update(job.failed(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+            try {
+                deckStore.deleteInput(id);
+            } catch (IOException ignored) {
+                // Removed with the rest of the job when it expires
+            }
+            failed.increment();
+            log.atWarn().setMessage("Deck job failed").addKeyValue("error", e.getMessage()).log();
+            log.debug("Deck job failed", e);
+        } finally {
+            MDC.remove(MDC_KEY);
+        }
+    }
+
+    /**
+     * Background renders have no client waiting on a timeout, so they keep retrying for a slot
+     * instead of failing when the render queue is busy.
+     */
+    private RenderScheduler.Permit acquireSlots(int weight) throws InterruptedException {
+        while (true) {
+            try {
+                return renderScheduler.acquire(weight);
+            } catch (RenderRejectedException e) {
+                if (Thread.interrupted()) throw new InterruptedException();
+                TimeUnit.SECONDS.sleep(Math.max(1, e.getRetryAfterSeconds()));
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #acquireSlots}, for the slots a job turns out to need once it is parsed.
+     */
+    private void growSlots(RenderScheduler.Permit permit, int weight) throws InterruptedException {
+        while (true) {
+            try {
+                permit.growTo(weight);
+                return;
+            } catch (RenderRejectedException e) {
+                if (Thread.interrupted()) throw new InterruptedException();
+                TimeUnit.SECONDS.sleep(Math.max(1, e.getRetryAfterSeconds()));
+            }
+        }
+    }
+
+    private String savedInput(String id) {
+        try {
+            return deckStore.readInput(id);
+        } catch (IOException e) {
+            throw new IllegalStateException("Input of the job is no longer available", e);
+        }
+    }
+
+    /**
+     * Records the new state; the in-memory state stays authoritative if the store can't be written.
+     * It is persisted first, so a client that sees a finished job can't outrun the store.
+     */
+    private RenderJob update(RenderJob job) {
+        try {
+            deckStore.save(job);
+        } catch (IOException e) {
+            log.atWarn().setMessage("Could not persist job state")
+                    .addKeyValue(MDC_KEY, job.id()).addKeyValue("state", job.state()).addKeyValue("error", e.getMessage()).log();
+        }
+        jobs.put(job.id(), job);
+        return job;
+    }
+
+    private void recover() throws IOException {
+        int resumed = 0;
+        for (RenderJob stored : deckStore.loadAll()) {
+            if (stored.finished()) {
+                jobs.put(stored.id(), stored);
+                continue;
+            }
+            RenderJob job = new RenderJob(stored.id(), RenderJob.State.QUEUED, stored.cacheKey(), stored.services(),
+                    stored.createdAt(), null, 0, null);
+            jobs.put(job.id(), job);
+            try {
+                workers.execute(() -> run(job.id(), null, null));
+                resumed++;
+            } catch (RejectedExecutionException e) {
+                update(job.failed("Not resumed after a restart: job queue is full"));
+            }
+        }
+        if (!jobs.isEmpty()) {
+            log.atInfo().setMessage("Deck jobs recovered")
+                    .addKeyValue("jobs", jobs.size())
+                    .addKeyValue("resumed", resumed)
+                    .log();
+        }
+    }
+}
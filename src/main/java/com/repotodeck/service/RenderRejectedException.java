@@ -0,0 +1,29 @@
+package com.repotodeck.service;
+
+/**
+ * Thrown when the render scheduler cannot admit a request: either the wait queue is full
+ * (the client should back off, 429) or the request waited too long for a slot (503).
+ */
+public class RenderRejectedException extends RuntimeException {
+
+    public enum Reason { QUEUE_FULL, TIMEOUT }
+
+    private final Reason reason;
+    private final long retryAfterSeconds;
+
+    public RenderRejectedException(Reason reason, long retryAfterSeconds) {
+        super(reason == Reason.QUEUE_FULL
+                ? "Render queue is full, retry later"
+                : "Timed out waiting for a render slot, retry later");
+        this.reason = reason;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,163 @@
+package com.repotodeck.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control for POI renders.
+ * <p>
+ * Request threads are virtual and therefore cheap, but every render holds a full POI model on
+ * the heap. A fair semaphore caps concurrent renders (by default derived from the heap budget),
+ * at most {@code queue-capacity} callers may wait for a slot, and nobody waits longer than
+ * {@code queue-timeout}. Anything beyond that is rejected immediately so the client can retry
+ * elsewhere instead of the pod running out of memory.
+ */
+@Service
+public class RenderScheduler {
+
+    private final Semaphore slots;
+    private final int maxConcurrent;
+    private final int queueCapacity;
+    private final long queueTimeoutMillis;
+    private final long retryAfterSeconds;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Timer waitTimer;
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedTimeout;
+
+    public RenderScheduler(@Value("${repotodeck.render.max-concurrent:0}") int maxConcurrent,
+                           @Value("${repotodeck.render.heap-per-render-mb:64}") long heapPerRenderMb,
+                           @Value("${repotodeck.render.queue-capacity:32}") int queueCapacity,
+                           @Value("${repotodeck.render.queue-timeout-ms:10000}") long queueTimeoutMillis,
+                           @Value("${repotodeck.render.retry-after-seconds:2}") long retryAfterSeconds,
+                           MeterRegistry meterRegistry) {
+        this.maxConcurrent = maxConcurrent > 0 ? maxConcurrent : fromHeapBudget(heapPerRenderMb);
+        this.slots = new Semaphore(this.maxConcurrent, true);
+        this.queueCapacity = queueCapacity;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        Gauge.builder("repotodeck.render.queue.depth", waiting, AtomicInteger::get)
+                .description("Requests waiting for a render slot")
+                .register(meterRegistry);
+        Gauge.builder("repotodeck.render.active", this, s -> s.maxConcurrent - s.slots.availablePermits())
+                .description("Render slots currently in use")
+                .register(meterRegistry);
+        Gauge.builder("repotodeck.render.slots", this, s -> s.maxConcurrent)
+                .description("Maximum concurrent renders")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("repotodeck.render.wait")
+                .description("Time spent waiting for a render slot")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejectedQueueFull = Counter.builder("repotodeck.render.rejected").tag("reason", "queue_full").register(meterRegistry);
+        this.rejectedTimeout = Counter.builder("repotodeck.render.rejected").tag("reason", "timeout").register(meterRegistry);
+    }
+
+    /**
+     * A held render slot. Closing it more than once is harmless.
+     */
+    public final class Permit implements AutoCloseable {
+
+        private volatile int weight;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(int weight) {
+            this.weight = weight;
+        }
+
+        /**
+         * Raises this permit to {@code weight} slots (capped at the total), waiting for the
+         * difference as {@link #acquire(int)} would. It keeps the slots it had if that fails.
+         *
+         * @throws RenderRejectedException if the queue is full or the wait times out
+         */
+        public void growTo(int weight) {
+            int more = slotsFor(weight) - this.weight;
+            if (more > 0) {
+                take(more);
+                this.weight += more;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                slots.release(weight);
+            }
+        }
+    }
+
+    public Permit acquire() {
+        return acquire(1);
+    }
+
+    /**
+     * Acquires {@code weight} slots (capped at the total), waiting in the bounded queue if needed.
+     *
+     * @throws RenderRejectedException if the queue is full or the wait times out
+     */
+    public Permit acquire(int weight) {
+        int slotsNeeded = slotsFor(weight);
+        take(slotsNeeded);
+        return new Permit(slotsNeeded);
+    }
+
+    private int slotsFor(int weight) {
+        return Math.max(1, Math.min(weight, maxConcurrent));
+    }
+
+    private void take(int slotsNeeded) {
+        long start = System.nanoTime();
+        try {
+            // Zero-timeout tryAcquire respects fairness (the no-arg variant would barge the queue)
+            if (slots.tryAcquire(slotsNeeded, 0, TimeUnit.MILLISECONDS)) {
+                waitTimer.record(0, TimeUnit.NANOSECONDS);
+                return;
+            }
+
+            if (waiting.incrementAndGet() > queueCapacity) {
+                waiting.decrementAndGet();
+                rejectedQueueFull.increment();
+                throw new RenderRejectedException(RenderRejectedException.Reason.QUEUE_FULL, retryAfterSeconds);
+            }
+            try {
+                if (!slots.tryAcquire(slotsNeeded, queueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    rejectedTimeout.increment();
+                    throw new RenderRejectedException(RenderRejectedException.Reason.TIMEOUT, retryAfterSeconds);
+                }
+            } finally {
+                waiting.decrementAndGet();
+                waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RenderRejectedException(RenderRejectedException.Reason.TIMEOUT, retryAfterSeconds);
+        }
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * Leave ~40% of the heap for the cache, Spring and request buffers; split the rest
+     * into per-render budgets, but never run more renders than there are cores to run them.
+     */
+    private static int fromHeapBudget(long heapPerRenderMb) {
+        long renderHeap = (long) (Runtime.getRuntime().maxMemory() * 0.6);
+        long byHeap = renderHeap / (Math.max(1, heapPerRenderMb) * 1024 * 1024);
+        int byCpu = Runtime.getRuntime().availableProcessors() * 2;
+        return (int) Math.max(1, Math.min(byHeap, byCpu));
+    }
+}
@@ -0,0 +1,19 @@
+package com.repotodeck.service;
+
+/**
+ * Thrown when a compose document is estimated to cost more than the admission limits allow
+ * (413). Unlike {@link RenderRejectedException} retrying does not help; the input has to shrink.
+ */
+public class RenderTooLargeException extends IllegalArgumentException {
+
+    private final RenderCost cost;
+
+    public RenderTooLargeException(String message, RenderCost cost) {
+        super(message);
+        this.cost = cost;
+    }
+
+    public RenderCost getCost() {
+        return cost;
+    }
+}
@@ -0,0 +1,202 @@
+package com.repotodeck.service;
+
+import com.repotodeck.model.ServiceNode;
+import com.repotodeck.model.ServiceTier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Decides which tier a service belongs to, for both the parser (node type) and the layout (row band).
+ * <p>
+ * Rules come from a YAML file (see classification-rules.yml) and are compiled into a single
+ * {@link KeywordMatcher}, so classifying a node is one pass over each of its strings no matter
+ * how many keywords are configured. If the rules live in a file on disk they are re-read when
+ * the file changes; a broken edit is logged and the previous rules stay active.
+ */
+@Service
+public class ServiceClassifier {
+
+    private static final Logger log = LoggerFactory.getLogger(ServiceClassifier.class);
+
+    private static final String DEFAULT_RULES = "classpath:classification-rules.yml";
+
+    /**
+     * What a keyword is matched against.
+     */
+    enum Field { IMAGE, ID, REGISTRY, LABELS }
+
+    private static final int FIELD_COUNT = Field.values().length;
+    private static final int IMAGE_MASK = fieldMask(Field.IMAGE);
+    private static final int ID_MASK = fieldMask(Field.ID);
+    private static final int REGISTRY_MASK = fieldMask(Field.REGISTRY);
+    private static final int LABELS_MASK = fieldMask(Field.LABELS);
+
+    /**
+     * Compiled, immutable rule set; swapped atomically on reload.
+     */
+    private record CompiledRules(KeywordMatcher matcher, List<ServiceTier> precedence, String fingerprint) {
+    }
+
+    private final Resource rulesResource;
+    private volatile CompiledRules rules;
+    private volatile long loadedModified;
+
+    public ServiceClassifier(ResourceLoader resourceLoader,
+                             @Value("${repotodeck.classifier.rules-location:" + DEFAULT_RULES + "}") String rulesLocation) {
+        this.rulesResource = resourceLoader.getResource(rulesLocation);
+        reload();
+    }
+
+    /**
+     * Classifier with the bundled rules, for use outside the Spring context (tests, benchmarks).
+     */
+    public static ServiceClassifier withDefaultRules() {
+        return new ServiceClassifier(new DefaultResourceLoader(), DEFAULT_RULES);
+    }
+
+    public ServiceTier classify(ServiceNode node) {
+        return classify(node.getId(), node.getImage(), node.getLabels());
+    }
+
+    public ServiceTier classify(String id, String image, Map<String, String> labels) {
+        CompiledRules current = rules;
+        KeywordMatcher matcher = current.matcher();
+
+        // Explicit labels win over any keyword heuristic
+        if (labels != null && !labels.isEmpty()) {
+            int labelHits = 0;
+            for (Map.Entry<String, String> label : labels.entrySet()) {
+                labelHits |= matcher.match(label.getKey(), '=', label.getValue());
+            }
+            ServiceTier byLabel = firstTier(current, labelHits & LABELS_MASK);
+            if (byLabel != null) return byLabel;
+        }
+
+        int hits = (matcher.match(image) & IMAGE_MASK)
+                | (matcher.match(id) & ID_MASK)
+                | (matcher.match(registryOf(image)) & REGISTRY_MASK);
+        ServiceTier byKeyword = firstTier(current, hits);
+        return byKeyword != null ? byKeyword : ServiceTier.SERVICE;
+    }
+
+    /**
+     * Changes whenever the effective rules change; part of the render cache key.
+     */
+    public String getFingerprint() {
+        return rules.fingerprint();
+    }
+
+    @Scheduled(fixedDelayString = "${repotodeck.classifier.reload-interval-ms:5000}")
+    public void reloadIfChanged() {
+        if (!rulesResource.isFile()) return;
+        long modified = -1;
+        try {
+            modified = rulesResource.lastModified();
+            if (modified != loadedModified) {
+                reload();
+            }
+        } catch (IOException | RuntimeException e) {
+            // A broken version is not retried (nor reported again) until the file changes
+            if (modified >= 0) loadedModified = modified;
+            log.warn("Keeping previous classification rules, reload of {} failed: {}", rulesResource, e.getMessage());
+        }
+    }
+
+    public synchronized void reload() {
+        try (InputStream in = rulesResource.getInputStream()) {
+            long modified = rulesResource.isFile() ? rulesResource.lastModified() : 0L;
+            String text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            this.rules = compile(text);
+            this.loadedModified = modified;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read classification rules from " + rulesResource, e);
+        }
+    }
+
+    // --- COMPILATION ---
+
+    private static CompiledRules compile(String rulesYaml) {
+        Object root = new Yaml(new SafeConstructor(new LoaderOptions())).load(rulesYaml);
+        if (!(root instanceof Map<?, ?> rootMap) || !(rootMap.get("tiers") instanceof Map<?, ?> tiers)) {
+            throw new IllegalArgumentException("Classification rules need a 'tiers' mapping");
+        }
+
+        List<ServiceTier> precedence = new ArrayList<>();
+        if (rootMap.get("precedence") instanceof List<?> order) {
+            for (Object tier : order) precedence.add(ServiceTier.valueOf(tier.toString().toUpperCase()));
+        }
+        for (ServiceTier tier : ServiceTier.values()) {
+            if (!precedence.contains(tier)) precedence.add(tier);
+        }
+
+        Map<String, Integer> keywords = new TreeMap<>();
+        for (Map.Entry<?, ?> tierEntry : tiers.entrySet()) {
+            ServiceTier tier = ServiceTier.valueOf(tierEntry.getKey().toString().toUpperCase());
+            if (!(tierEntry.getValue() instanceof Map<?, ?> fields)) continue;
+            for (Map.Entry<?, ?> fieldEntry : fields.entrySet()) {
+                Field field = Field.valueOf(fieldEntry.getKey().toString().toUpperCase());
+                if (!(fieldEntry.getValue() instanceof List<?> words)) continue;
+                for (Object word : words) {
+                    keywords.merge(word.toString().toLowerCase(), bit(tier, field), (a, b) -> a | b);
+                }
+            }
+        }
+        return new CompiledRules(KeywordMatcher.compile(keywords), List.copyOf(precedence), fingerprint(precedence, keywords));
+    }
+
+    private static ServiceTier firstTier(CompiledRules rules, int hits) {
+        if (hits == 0) return null;
+        for (ServiceTier tier : rules.precedence()) {
+            int tierBits = ((1 << FIELD_COUNT) - 1) << (tier.ordinal() * FIELD_COUNT);
+            if ((hits & tierBits) != 0) return tier;
+        }
+        return null;
+    }
+
+    private static int bit(ServiceTier tier, Field field) {
+        return 1 << (tier.ordinal() * FIELD_COUNT + field.ordinal());
+    }
+
+    private static int fieldMask(Field field) {
+        int mask = 0;
+        for (ServiceTier tier : ServiceTier.values()) mask |= bit(tier, field);
+        return mask;
+    }
+
+    /**
+     * "ghcr.io/acme/api:1.2" -> "ghcr.io/acme", "bitnami/kafka" -> "bitnami", "nginx" -> "".
+     */
+    static String registryOf(String image) {
+        if (image == null) return "";
+        int slash = image.lastIndexOf('/');
+        return slash < 0 ? "" : image.substring(0, slash);
+    }
+
+    private static String fingerprint(List<ServiceTier> precedence, Map<String, Integer> keywords) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(precedence.toString().getBytes(StandardCharsets.UTF_8));
+            digest.update(keywords.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest(), 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
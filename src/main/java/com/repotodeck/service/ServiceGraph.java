@@ -0,0 +1,204 @@
+package com.repotodeck.service;
+
+import com.repotodeck.model.ServiceNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact form of a compose graph, handed from the parser to layout and drawing.
+ * <p>
+ * Services are numbered 0..n-1 in input order. Every id is kept once and links are resolved to
+ * those numbers when the graph is built, so a link is an int instead of another copy of the
+ * target's name. Per service there is one slot in each of a few parallel arrays: id, image,
+ * tier and {@link NodeStyle} as bytes, and the links in CSR form (the targets of service
+ * {@code i} are {@code linkTargets[linkOffsets[i] .. linkOffsets[i + 1])}). Ids are looked up
+ * through an open-addressing table of ints rather than a map of boxed indices.
+ * <p>
+ * Classification happens once, while building; labels are only needed for that and are not
+ * kept. Links to unknown services, self links and repeated links are dropped. {@link ServiceNode}
+ * stays the public model; {@link #of} converts a list of them.
+ */
+public final class ServiceGraph {
+
+    public static final ServiceGraph EMPTY = new Builder().build();
+
+    private static final NodeStyle[] STYLES = NodeStyle.values();
+
+    private final String[] ids;
+    private final String[] images;
+    private final byte[] tiers;
+    private final byte[] styles;
+    private final int[] linkOffsets;
+    private final int[] linkTargets;
+    private final int[] table; // index + 1 per slot, 0 = empty; size is a power of two
+
+    private ServiceGraph(String[] ids, String[] images, byte[] tiers, byte[] styles,
+                         int[] linkOffsets, int[] linkTargets, int[] table) {
+        this.ids = ids;
+        this.images = images;
+        this.tiers = tiers;
+        this.styles = styles;
+        this.linkOffsets = linkOffsets;
+        this.linkTargets = linkTargets;
+        this.table = table;
+    }
+
+    /**
+     * The graph of {@code nodes}, tiered by {@code classifier}, which is asked once per node; the
+     * DATABASE tier gets the DATABASE style whether or not the node's type says so already. A
+     * repeated id keeps its first service.
+     */
+    public static ServiceGraph of(List<ServiceNode> nodes, ServiceClassifier classifier) {
+        Builder builder = new Builder();
+        for (ServiceNode node : nodes) {
+            int tier = classifier.classify(node).layerIndex();
+            builder.add(node.getId(), node.getImage(), tier, NodeStyle.of(node.getType(), tier), node.getLinks());
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public boolean isEmpty() {
+        return ids.length == 0;
+    }
+
+    public int linkCount() {
+        return linkTargets.length;
+    }
+
+    public String id(int node) {
+        return ids[node];
+    }
+
+    /**
+     * Null when the service has no image.
+     */
+    public String image(int node) {
+        return images[node];
+    }
+
+    /**
+     * 0 = frontend, 1 = services, 2 = databases.
+     */
+    public int tier(int node) {
+        return tiers[node];
+    }
+
+    public NodeStyle style(int node) {
+        return STYLES[styles[node]];
+    }
+
+    /**
+     * Index of the service {@code id}, or -1.
+     */
+    public int indexOf(String id) {
+        if (id == null || table.length == 0) return -1;
+        int mask = table.length - 1;
+        for (int slot = hash(id) & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) return -1;
+            if (ids[entry - 1].equals(id)) return entry - 1;
+        }
+    }
+
+    /**
+     * CSR offsets, {@code size() + 1} long. Shared, not copied: callers must not modify it.
+     */
+    int[] linkOffsets() {
+        return linkOffsets;
+    }
+
+    /**
+     * CSR link targets. Shared, not copied: callers must not modify it.
+     */
+    int[] linkTargets() {
+        return linkTargets;
+    }
+
+    /**
+     * Services in tier order (frontends, services, databases), input order within a tier.
+     */
+    int[] tierOrder() {
+        int[] start = new int[4];
+        for (byte tier : tiers) start[tier + 1]++;
+        for (int t = 0; t < 3; t++) start[t + 1] += start[t];
+        int[] order = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) order[start[tiers[i]]++] = i;
+        return order;
+    }
+
+    private static int hash(String id) {
+        int h = id.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Collects services in input order. Link targets are kept as names until {@link #build}
+     * resolves them, since a link may name a service that comes later.
+     */
+    static final class Builder {
+
+        private final Map<String, Integer> index = new HashMap<>();
+        private final List<String> ids = new ArrayList<>();
+        private final List<String> images = new ArrayList<>();
+        private byte[] tiers = new byte[16];
+        private byte[] styles = new byte[16];
+        private final List<String> targets = new ArrayList<>();
+        private int[] targetEnd = new int[16];
+
+        /**
+         * Adds a service unless its id is already there (the first one wins).
+         */
+        Builder add(String id, String image, int tier, NodeStyle style, Collection<String> links) {
+            if (id == null || index.putIfAbsent(id, ids.size()) != null) return this;
+            int i = ids.size();
+            if (i == tiers.length) {
+                tiers = Arrays.copyOf(tiers, i * 2);
+                styles = Arrays.copyOf(styles, i * 2);
+                targetEnd = Arrays.copyOf(targetEnd, i * 2);
+            }
+            ids.add(id);
+            images.add(image != null && !image.isEmpty() ? image : null);
+            tiers[i] = (byte) tier;
+            styles[i] = (byte) style.ordinal();
+            if (links != null) targets.addAll(links);
+            targetEnd[i] = targets.size();
+            return this;
+        }
+
+        ServiceGraph build() {
+            int n = ids.size();
+            int[] offsets = new int[n + 1];
+            int[] resolved = new int[targets.size()];
+            int[] lastSource = new int[n]; // source + 1 of the row that last took each target
+            int count = 0;
+            for (int u = 0, k = 0; u < n; u++) {
+                for (; k < targetEnd[u]; k++) {
+                    Integer v = index.get(targets.get(k));
+                    if (v == null || v == u || lastSource[v] == u + 1) continue;
+                    lastSource[v] = u + 1;
+                    resolved[count++] = v;
+                }
+                offsets[u + 1] = count;
+            }
+
+            int[] table = new int[n == 0 ? 0 : Integer.highestOneBit(n * 2 - 1) << 1];
+            int mask = table.length - 1;
+            for (int i = 0; i < n; i++) {
+                int slot = hash(ids.get(i)) & mask;
+                while (table[slot] != 0) slot = (slot + 1) & mask;
+                table[slot] = i + 1;
+            }
+            return new ServiceGraph(ids.toArray(String[]::new), images.toArray(String[]::new),
+                    Arrays.copyOf(tiers, n), Arrays.copyOf(styles, n), offsets, Arrays.copyOf(resolved, count), table);
+        }
+    }
+}
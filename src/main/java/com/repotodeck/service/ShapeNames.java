@@ -0,0 +1,41 @@
+package com.repotodeck.service;
+
+/**
+ * Names given to the shapes of a slide, so a deck can be read back without its compose file
+ * (see {@link DeckUpdateService}). They also show up in PowerPoint's selection pane.
+ * <ul>
+ *     <li>{@code node:<id>} / {@code shadow:<id>} - a service box and its shadow;</li>
+ *     <li>{@code edge:<from>→<to>} - the connector of one link, {@code edge:<from>↔<to>} when
+ *     the two services link each other;</li>
+ *     <li>{@code added:<id>} / {@code removed:<id>} - change highlights.</li>
+ * </ul>
+ */
+final class ShapeNames {
+
+    static final String NODE = "node:";
+    static final String SHADOW = "shadow:";
+    static final String EDGE = "edge:";
+    static final String ADDED = "added:";
+    static final String REMOVED = "removed:";
+    static final char EDGE_SEPARATOR = '\u2192'; // →
+    static final char TWO_WAY_SEPARATOR = '\u2194'; // ↔
+
+    private ShapeNames() {
+    }
+
+    static String node(String id) {
+        return NODE + id;
+    }
+
+    static String shadow(String id) {
+        return SHADOW + id;
+    }
+
+    static String edge(String from, String to, boolean twoWay) {
+        return EDGE + from + (twoWay ? TWO_WAY_SEPARATOR : EDGE_SEPARATOR) + to;
+    }
+
+    static String highlight(SlideLayout.Highlight.Change change, String id) {
+        return (change == SlideLayout.Highlight.Change.ADDED ? ADDED : REMOVED) + id;
+    }
+}
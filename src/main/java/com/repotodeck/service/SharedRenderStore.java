@@ -0,0 +1,44 @@
+package com.repotodeck.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Decks and render locks shared by all replicas in cluster mode (see {@link RenderFarmService}),
+ * keyed by the content-addressed cache key.
+ * <p>
+ * A lock is a lease: it is held by {@code owner} until {@link #unlock} or until {@code lease}
+ * runs out, so a replica that dies mid-render can't block the key for longer than that. Every
+ * method may throw {@link IOException} when the backing store is unreachable; callers treat that
+ * as "no shared state" rather than as a failed render.
+ */
+public interface SharedRenderStore extends Closeable {
+
+    /**
+     * The deck stored under {@code key}, or null.
+     */
+    byte[] get(String key) throws IOException;
+
+    void put(String key, byte[] deck, Duration ttl) throws IOException;
+
+    /**
+     * Takes the render lock of {@code key} unless someone else holds it.
+     */
+    boolean tryLock(String key, String owner, Duration lease) throws IOException;
+
+    /**
+     * Releases the render lock of {@code key} if {@code owner} still holds it.
+     */
+    void unlock(String key, String owner) throws IOException;
+
+    /**
+     * Drops expired entries, for stores that don't expire them by themselves.
+     */
+    default void purgeExpired() throws IOException {
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,80 @@
+package com.repotodeck.service;
+
+import java.awt.geom.Rectangle2D;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of the layout step for one slide: the {@link ServiceGraph} it was laid out from
+ * (ids, tiers, links) and the drawing resolved from it. {@code width}/{@code height} is the page size the content needs; {@code scale} is the
+ * factor already applied to the positions when that size had to be capped (1 otherwise),
+ * so drawing code can scale fonts and strokes to match.
+ * <p>
+ * {@code renderNodes} and {@code connectors} are the same drawing resolved down to what the
+ * draw pass needs (style, boxes, label text, connector geometry), so drawing is a single
+ * linear walk with no tier or id lookups. {@code highlights} are change markers drawn on top,
+ * empty except on decks patched by {@link DeckUpdateService}.
+ */
+public record SlideLayout(ServiceGraph graph,
+                          List<RenderNode> renderNodes,
+                          List<Connector> connectors,
+                          List<Highlight> highlights,
+                          double width,
+                          double height,
+                          double scale) {
+
+    public static final SlideLayout EMPTY = new SlideLayout(ServiceGraph.EMPTY,
+            List.of(), List.of(), List.of(), PptGeneratorService.MIN_SLIDE_WIDTH, PptGeneratorService.MIN_SLIDE_HEIGHT, 1.0);
+
+    public boolean isEmpty() {
+        return renderNodes.isEmpty();
+    }
+
+    /**
+     * The box of every node id. Built on each call; the draw pass does not need it.
+     */
+    public Map<String, Rectangle2D.Double> positions() {
+        Map<String, Rectangle2D.Double> positions = new HashMap<>();
+        for (RenderNode node : renderNodes) positions.put(node.id(), node.box());
+        return positions;
+    }
+
+    /**
+     * One node box ready to draw. {@code subtitle} is the image line (with its leading
+     * line break) or null when the service has no image.
+     */
+    public record RenderNode(String id, String subtitle, NodeStyle style,
+                             Rectangle2D.Double box, Rectangle2D.Double shadow) {
+    }
+
+    /**
+     * The connector of the link {@code from} -> {@code to} (both ways when {@code twoWay}),
+     * routed by {@link ConnectorRouter} along {@code path} (x0, y0, x1, y1, ...) and drawn as a
+     * line of {@code thickness} points with an arrowhead at each target end.
+     */
+    public record Connector(String from, String to, boolean twoWay, double[] path, double thickness) {
+
+        /**
+         * Bounding box of the path, which is the anchor of the connector shape.
+         */
+        public Rectangle2D.Double bounds() {
+            double minX = path[0], minY = path[1], maxX = path[0], maxY = path[1];
+            for (int i = 2; i < path.length; i += 2) {
+                minX = Math.min(minX, path[i]);
+                maxX = Math.max(maxX, path[i]);
+                minY = Math.min(minY, path[i + 1]);
+                maxY = Math.max(maxY, path[i + 1]);
+            }
+            return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+        }
+    }
+
+    /**
+     * A ring around the node {@code id} marking it as added or removed since the previous revision.
+     */
+    public record Highlight(String id, Change change, Rectangle2D.Double box) {
+
+        public enum Change { ADDED, REMOVED }
+    }
+}
@@ -0,0 +1,471 @@
+package com.repotodeck.service;
+
+import com.repotodeck.model.ServiceNode;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.NodeEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.SequenceStartEvent;
+import org.yaml.snakeyaml.parser.Parser;
+import org.yaml.snakeyaml.parser.ParserImpl;
+import org.yaml.snakeyaml.reader.StreamReader;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * Event-based compose parser.
+ * <p>
+ * Walks SnakeYAML's event stream and only materializes what the diagram needs:
+ * {@code services.*.image}, {@code depends_on}, {@code links} and {@code labels}. Everything else
+ * (environment blocks, configs, volumes, ...) is skipped event by event without building
+ * objects. Anchored nodes are the exception: they are captured (aliases inside them become
+ * shared references, never copies) so that {@code <<: *defaults} merge keys and aliased values
+ * still resolve. Aliases are never expanded recursively, but every dereference is charged the
+ * full size its value would have if it were, against an expansion budget, so "billion laughs"
+ * documents are rejected after linear memory and bounded time. Images and label values must be
+ * scalars; a service that aliases a collection there is malformed rather than stringified.
+ * <p>
+ * {@link #parseFile} additionally keeps what multi-file projects need ({@code include},
+ * {@code extends}, {@code profiles}) and which fields were set at all.
+ * <p>
+ * Instances are immutable and thread-safe; all per-document state lives in {@link Walk}.
+ */
+final class StreamingComposeParser {
+
+    private static final int MAX_DEPTH = 64;
+    private static final String MERGE_KEY = "<<";
+
+    private final LoaderOptions loaderOptions;
+    private final int maxAliasExpansions;
+
+    StreamingComposeParser(LoaderOptions loaderOptions, int maxAliasExpansions) {
+        this.loaderOptions = loaderOptions;
+        this.maxAliasExpansions = maxAliasExpansions;
+    }
+
+    /**
+     * @param onMalformed called with the name of every service whose definition is not a mapping
+     */
+    List<ServiceNode> parse(String yamlContent, Consumer<String> onMalformed) {
+        Parser parser = new ParserImpl(new StreamReader(new StringReader(yamlContent)), loaderOptions);
+        List<ServiceNode> result = new ArrayList<>();
+        for (Map.Entry<String, ServiceFields> service : new Walk(parser, onMalformed, false).parseDocument()) {
+            ServiceNode node = service.getValue().toNode(service.getKey());
+            if (node != null) result.add(node);
+        }
+        return result;
+    }
+
+    /**
+     * Same services as {@link #parse}, classified and added straight to a {@link ServiceGraph}
+     * without building a {@link ServiceNode} per service.
+     *
+     * @param onMalformed called with the name of every service whose definition is not a mapping
+     */
+    ServiceGraph parseGraph(String yamlContent, Consumer<String> onMalformed, ServiceClassifier classifier) {
+        Parser parser = new ParserImpl(new StreamReader(new StringReader(yamlContent)), loaderOptions);
+        ServiceGraph.Builder graph = new ServiceGraph.Builder();
+        for (Map.Entry<String, ServiceFields> service : new Walk(parser, onMalformed, false).parseDocument()) {
+            service.getValue().addTo(graph, service.getKey(), classifier);
+        }
+        return graph.build();
+    }
+
+    /**
+     * @param onMalformed called with the name of every service whose definition is not a mapping
+     */
+    ComposeFile parseFile(String yamlContent, Consumer<String> onMalformed) {
+        Parser parser = new ParserImpl(new StreamReader(new StringReader(yamlContent)), loaderOptions);
+        Walk walk = new Walk(parser, onMalformed, true);
+        Map<String, ComposeFile.Service> services = new LinkedHashMap<>();
+        for (Map.Entry<String, ServiceFields> service : walk.parseDocument()) {
+            ComposeFile.Service fields = service.getValue().toService();
+            if (fields != null) services.put(service.getKey(), fields);
+        }
+        return new ComposeFile(ComposeFile.includes(walk.include), services);
+    }
+
+    /**
+     * Service fields gathered from explicit keys and from merge keys. Explicit keys win
+     * regardless of where they appear relative to {@code <<}, as in YAML merge semantics.
+     */
+    static final class ServiceFields {
+        Object image;
+        Object dependsOn;
+        Object links;
+        Object labels;
+        Object profiles;
+        Object extendsFrom;
+        boolean hasImage;
+        boolean hasDependsOn;
+        boolean hasLinks;
+        boolean hasLabels;
+        boolean hasProfiles;
+        boolean hasExtends;
+
+        void mergeFrom(ServiceFields defaults) {
+            if (!hasImage && defaults.hasImage) { image = defaults.image; hasImage = true; }
+            if (!hasDependsOn && defaults.hasDependsOn) { dependsOn = defaults.dependsOn; hasDependsOn = true; }
+            if (!hasLinks && defaults.hasLinks) { links = defaults.links; hasLinks = true; }
+            if (!hasLabels && defaults.hasLabels) { labels = defaults.labels; hasLabels = true; }
+            if (!hasProfiles && defaults.hasProfiles) { profiles = defaults.profiles; hasProfiles = true; }
+            if (!hasExtends && defaults.hasExtends) { extendsFrom = defaults.extendsFrom; hasExtends = true; }
+        }
+
+        /**
+         * Also used for services of documents loaded as a tree, where SnakeYAML has already
+         * applied merge keys.
+         */
+        static ServiceFields fromMap(Map<?, ?> map, int depth) {
+            ServiceFields fields = new ServiceFields();
+            if (map.containsKey("image")) { fields.image = map.get("image"); fields.hasImage = true; }
+            if (map.containsKey("depends_on")) { fields.dependsOn = map.get("depends_on"); fields.hasDependsOn = true; }
+            if (map.containsKey("links")) { fields.links = map.get("links"); fields.hasLinks = true; }
+            if (map.containsKey("labels")) { fields.labels = map.get("labels"); fields.hasLabels = true; }
+            if (map.containsKey("profiles")) { fields.profiles = map.get("profiles"); fields.hasProfiles = true; }
+            if (map.containsKey("extends")) { fields.extendsFrom = map.get("extends"); fields.hasExtends = true; }
+            List<ServiceFields> merged = new ArrayList<>();
+            collectMerge(map.get(MERGE_KEY), merged, depth);
+            merged.forEach(fields::mergeFrom);
+            return fields;
+        }
+
+        /**
+         * {@code <<} takes a mapping or a sequence of mappings; earlier entries take precedence.
+         */
+        static void collectMerge(Object mergeValue, List<ServiceFields> into, int depth) {
+            if (depth > MAX_DEPTH) throw new IllegalArgumentException("Merge keys nested too deeply");
+            if (mergeValue instanceof Map<?, ?> map) {
+                into.add(fromMap(map, depth + 1));
+            } else if (mergeValue instanceof List<?> list) {
+                for (Object item : list) {
+                    if (item instanceof Map<?, ?> map) into.add(fromMap(map, depth + 1));
+                }
+            }
+        }
+
+        ServiceNode toNode(String serviceName) {
+            if (serviceName == null) return null;
+            // Mirror the tree parser: an explicit null image (or null link) marks the service malformed
+            if (!scalars()) return null;
+
+            ServiceNode node = new ServiceNode();
+            node.setId(serviceName);
+            node.setImage(hasImage ? String.valueOf(image) : "unknown");
+            node.setLabels(DockerParserService.toLabels(labels));
+
+            Set<String> links = new TreeSet<>();
+            if (!addLinks(dependsOn, links) || !addLinks(this.links, links)) return null;
+            node.setLinks(new ArrayList<>(links));
+            return node;
+        }
+
+        /**
+         * Same rules as {@link #toNode}; the tier is classified here since labels are not kept.
+         */
+        void addTo(ServiceGraph.Builder graph, String serviceName, ServiceClassifier classifier) {
+            if (serviceName == null || !scalars()) return;
+            Set<String> links = new TreeSet<>();
+            if (!addLinks(dependsOn, links) || !addLinks(this.links, links)) return;
+            String imageName = hasImage ? String.valueOf(image) : "unknown";
+            int tier = classifier.classify(serviceName, imageName, DockerParserService.toLabels(labels)).layerIndex();
+            graph.add(serviceName, imageName, tier, NodeStyle.of(null, tier), links);
+        }
+
+        /**
+         * Same rules as {@link #toNode}, keeping unset fields null. Null when malformed.
+         */
+        ComposeFile.Service toService() {
+            if (!scalars()) return null;
+            Set<String> dependencies = new LinkedHashSet<>();
+            Set<String> linked = new LinkedHashSet<>();
+            if (!addLinks(dependsOn, dependencies) || !addLinks(links, linked)) return null;
+            return new ComposeFile.Service(
+                    hasImage ? String.valueOf(image) : null,
+                    hasDependsOn && dependsOn != null ? List.copyOf(dependencies) : null,
+                    hasLinks && links != null ? List.copyOf(linked) : null,
+                    hasLabels && labels != null ? Collections.unmodifiableMap(DockerParserService.toLabels(labels)) : null,
+                    hasProfiles && profiles != null ? ComposeFile.strings(profiles, "profiles") : null,
+                    hasExtends && extendsFrom != null ? ComposeFile.extendsFrom(extendsFrom) : null);
+        }
+
+        /**
+         * False when the image is set but null or a collection, or a label value is a collection.
+         */
+        private boolean scalars() {
+            return (!hasImage || DockerParserService.isScalar(image)) && DockerParserService.scalarLabels(labels);
+        }
+
+        /**
+         * Only scalar items become links; nested collections are ignored rather than stringified,
+         * which is what keeps aliased bombs from being expanded here.
+         */
+        private static boolean addLinks(Object field, Set<String> links) {
+            if (field == null) return true;
+            if (field instanceof List<?> list) {
+                for (Object item : list) {
+                    if (item == null) return false;
+                    if (item instanceof String s) links.add(s);
+                }
+            } else if (field instanceof Map<?, ?> map) {
+                for (Object key : map.keySet()) links.add(String.valueOf(key));
+            } else if (field instanceof String str) {
+                links.add(str);
+            }
+            return true;
+        }
+    }
+
+    private final class Walk {
+
+        private final Parser parser;
+        private final Consumer<String> onMalformed;
+        private final boolean project;
+        private final Map<String, Object> anchors = new HashMap<>();
+        private final Map<String, Long> anchorSizes = new HashMap<>();
+        private long aliasExpansions;
+        private long materialized; // values built or dereferenced so far, as if aliases were expanded
+        private Object include; // only read for projects
+
+        Walk(Parser parser, Consumer<String> onMalformed, boolean project) {
+            this.parser = parser;
+            this.onMalformed = onMalformed;
+            this.project = project;
+        }
+
+        /**
+         * Services in document order, by name.
+         */
+        List<Map.Entry<String, ServiceFields>> parseDocument() {
+            next(); // StreamStart
+            if (parser.checkEvent(Event.ID.StreamEnd)) return Collections.emptyList();
+            next(); // DocumentStart
+
+            Event root = next();
+            if (!(root instanceof MappingStartEvent)) return Collections.emptyList();
+
+            List<Map.Entry<String, ServiceFields>> result = Collections.emptyList();
+            while (!parser.checkEvent(Event.ID.MappingEnd)) {
+                String key = readKey();
+                Event value = next();
+                if ("services".equals(key)) {
+                    if (value instanceof MappingStartEvent mapping && mapping.getAnchor() == null) {
+                        result = parseServices();
+                    } else if (materializeOrResolve(value, 0) instanceof Map<?, ?> services) {
+                        result = servicesFromMap(services);
+                    }
+                } else if (project && "include".equals(key)) {
+                    include = materializeOrResolve(value, 0);
+                } else {
+                    skip(value, 0);
+                }
+            }
+            return result;
+        }
+
+        // --- SERVICES ---
+
+        private List<Map.Entry<String, ServiceFields>> parseServices() {
+            List<Map.Entry<String, ServiceFields>> result = new ArrayList<>();
+            while (!parser.checkEvent(Event.ID.MappingEnd)) {
+                String serviceName = readKey();
+                Event value = next();
+                ServiceFields fields;
+                if (value instanceof MappingStartEvent mapping && mapping.getAnchor() == null) {
+                    fields = readServiceFields();
+                } else {
+                    Object resolved = materializeOrResolve(value, 0);
+                    if (!(resolved instanceof Map<?, ?> map)) {
+                        onMalformed.accept(serviceName);
+                        continue;
+                    }
+                    fields = ServiceFields.fromMap(map, 0);
+                }
+                if (serviceName != null) result.add(Map.entry(serviceName, fields));
+            }
+            next(); // MappingEnd
+            return result;
+        }
+
+        private List<Map.Entry<String, ServiceFields>> servicesFromMap(Map<?, ?> services) {
+            List<Map.Entry<String, ServiceFields>> result = new ArrayList<>();
+            for (Map.Entry<?, ?> entry : services.entrySet()) {
+                if (!(entry.getValue() instanceof Map<?, ?> map)) {
+                    onMalformed.accept(String.valueOf(entry.getKey()));
+                    continue;
+                }
+                result.add(Map.entry(String.valueOf(entry.getKey()), ServiceFields.fromMap(map, 0)));
+            }
+            return result;
+        }
+
+        /**
+         * Reads one service mapping (MappingStart already consumed), skipping uninteresting keys.
+         */
+        private ServiceFields readServiceFields() {
+            ServiceFields fields = new ServiceFields();
+            List<ServiceFields> merged = new ArrayList<>();
+            while (!parser.checkEvent(Event.ID.MappingEnd)) {
+                String key = readKey();
+                Event value = next();
+                switch (key == null ? "" : key) {
+                    case "image" -> { fields.image = materializeOrResolve(value, 0); fields.hasImage = true; }
+                    case "depends_on" -> { fields.dependsOn = materializeOrResolve(value, 0); fields.hasDependsOn = true; }
+                    case "links" -> { fields.links = materializeOrResolve(value, 0); fields.hasLinks = true; }
+                    case "labels" -> { fields.labels = materializeOrResolve(value, 0); fields.hasLabels = true; }
+                    case "profiles" -> { fields.profiles = materializeOrResolve(value, 0); fields.hasProfiles = true; }
+                    case "extends" -> { fields.extendsFrom = materializeOrResolve(value, 0); fields.hasExtends = true; }
+                    case MERGE_KEY -> ServiceFields.collectMerge(materializeOrResolve(value, 0), merged, 0);
+                    default -> skip(value, 0);
+                }
+            }
+            next(); // MappingEnd
+            merged.forEach(fields::mergeFrom);
+            return fields;
+        }
+
+        // --- EVENT HELPERS ---
+
+        private Event next() {
+            return parser.getEvent();
+        }
+
+        /**
+         * Reads a mapping key. Non-scalar keys are skipped and reported as null.
+         */
+        private String readKey() {
+            Event key = next();
+            if (key instanceof ScalarEvent scalar) {
+                captureAnchor(key, scalar.getValue(), 1);
+                return scalar.getValue();
+            }
+            if (key instanceof AliasEvent alias) {
+                Object resolved = resolve(alias);
+                return resolved instanceof String s ? s : null;
+            }
+            skip(key, 0);
+            return null;
+        }
+
+        /**
+         * Consumes the subtree starting at {@code first} without building it, unless it is
+         * anchored, in which case it is captured for later aliases.
+         */
+        private void skip(Event first, int depth) {
+            if (first instanceof NodeEvent nodeEvent && nodeEvent.getAnchor() != null && !(first instanceof AliasEvent)) {
+                materialize(first, depth);
+                return;
+            }
+            if (!(first instanceof MappingStartEvent) && !(first instanceof SequenceStartEvent)) {
+                return; // Scalar or alias: nothing to consume
+            }
+            int open = 1;
+            while (open > 0) {
+                Event event = next();
+                if (event instanceof NodeEvent nodeEvent && nodeEvent.getAnchor() != null && !(event instanceof AliasEvent)) {
+                    materialize(event, depth + open);
+                } else if (event instanceof MappingStartEvent || event instanceof SequenceStartEvent) {
+                    open++;
+                    if (depth + open > MAX_DEPTH) throw new IllegalArgumentException("Document nested too deeply");
+                } else if (event.is(Event.ID.MappingEnd) || event.is(Event.ID.SequenceEnd)) {
+                    open--;
+                }
+            }
+        }
+
+        private Object materializeOrResolve(Event first, int depth) {
+            return first instanceof AliasEvent alias ? resolve(alias) : materialize(first, depth);
+        }
+
+        /**
+         * Builds a plain String / List / Map value for the subtree starting at {@code first}.
+         * Aliases resolve to the already-built anchored object (shared, not copied).
+         */
+        private Object materialize(Event first, int depth) {
+            if (depth > MAX_DEPTH) throw new IllegalArgumentException("Document nested too deeply");
+            if (first instanceof AliasEvent alias) return resolve(alias);
+
+            long start = materialized++;
+            Object value;
+            if (first instanceof ScalarEvent scalar) {
+                value = scalarValue(scalar);
+            } else if (first instanceof SequenceStartEvent) {
+                List<Object> list = new ArrayList<>();
+                while (!parser.checkEvent(Event.ID.SequenceEnd)) {
+                    list.add(materialize(next(), depth + 1));
+                }
+                next();
+                value = list;
+            } else if (first instanceof MappingStartEvent) {
+                Map<String, Object> map = new LinkedHashMap<>();
+                while (!parser.checkEvent(Event.ID.MappingEnd)) {
+                    Object key = materialize(next(), depth + 1);
+                    Object entryValue = materialize(next(), depth + 1);
+                    if (key != null && !(key instanceof Map) && !(key instanceof List)) {
+                        map.put(key.toString(), entryValue);
+                    }
+                }
+                next();
+                value = map;
+            } else {
+                throw new IllegalArgumentException("Unexpected YAML event " + first.getEventId());
+            }
+            captureAnchor(first, value, materialized - start);
+            return value;
+        }
+
+        /**
+         * @param size number of values in the anchored node with nested aliases expanded
+         */
+        private void captureAnchor(Event event, Object value, long size) {
+            if (event instanceof NodeEvent nodeEvent && nodeEvent.getAnchor() != null && !(event instanceof AliasEvent)) {
+                anchors.put(nodeEvent.getAnchor(), value);
+                anchorSizes.put(nodeEvent.getAnchor(), size);
+            }
+        }
+
+        /**
+         * Charges the expanded size of the aliased value against the expansion budget: an alias
+         * to a sequence of aliases costs what copying all of them would, so nesting cannot
+         * multiply past the budget.
+         */
+        private Object resolve(AliasEvent alias) {
+            if (!anchors.containsKey(alias.getAnchor())) {
+                throw new IllegalArgumentException("Unknown alias *" + alias.getAnchor()
+                        + " (anchors inside the services block must be defined before use)");
+            }
+            Object value = anchors.get(alias.getAnchor());
+            long size = anchorSizes.get(alias.getAnchor());
+            aliasExpansions += size;
+            materialized += size;
+            if (aliasExpansions > maxAliasExpansions) {
+                throw new IllegalArgumentException("Too many alias expansions (limit " + maxAliasExpansions + ")");
+            }
+            return value;
+        }
+
+        /**
+         * Plain scalars that YAML resolves to null become null; everything else stays a String.
+         */
+        private Object scalarValue(ScalarEvent scalar) {
+            String text = scalar.getValue();
+            if (scalar.getImplicit().canOmitTagInPlainScalar()
+                    && (text.isEmpty() || text.equals("~") || text.equalsIgnoreCase("null"))) {
+                return null;
+            }
+            return text;
+        }
+    }
+}
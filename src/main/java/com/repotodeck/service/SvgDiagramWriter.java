@@ -0,0 +1,260 @@
+package com.repotodeck.service;
+
+import java.awt.*;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the diagram as SVG, streamed element by element into the output with nothing but a
+ * write buffer in between. Arrowheads are one shared marker, so a connector is a single
+ * {@code <polyline>}; boxes are {@code <rect>}s and disks one {@code <path>} each.
+ */
+final class SvgDiagramWriter implements DiagramWriter {
+
+    private static final String FONT_FAMILY = "'DejaVu Sans', Verdana, Arial, sans-serif";
+    private static final String[] FILLS = new String[NodeStyle.values().length];
+
+    static {
+        for (NodeStyle style : NodeStyle.values()) FILLS[style.ordinal()] = color(style.fill());
+    }
+
+    @Override
+    public DiagramFormat format() {
+        return DiagramFormat.SVG;
+    }
+
+    @Override
+    public void write(SlideLayout layout, OutputStream out) throws IOException {
+        Writer svg = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 16 * 1024);
+        String width = DiagramStyle.decimal(layout.width());
+        String height = DiagramStyle.decimal(layout.height());
+        svg.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"");
+        svg.write(width);
+        svg.write("\" height=\"");
+        svg.write(height);
+        svg.write("\" viewBox=\"0 0 ");
+        svg.write(width);
+        svg.write(' ');
+        svg.write(height);
+        svg.write("\" font-family=\"");
+        svg.write(FONT_FAMILY);
+        svg.write("\">\n");
+        writeDefs(svg);
+        svg.write("<rect width=\"100%\" height=\"100%\" fill=\"");
+        svg.write(color(DiagramStyle.COLOR_BG));
+        svg.write("\"/>\n");
+
+        if (layout.isEmpty()) {
+            text(svg, DiagramStyle.EMPTY_STATE, DiagramStyle.EMPTY_STATE_X, DiagramStyle.EMPTY_STATE_Y
+                    + DiagramStyle.TEXT_INSET_Y + DiagramStyle.ASCENT * DiagramStyle.EMPTY_STATE_FONT_SIZE,
+                    DiagramStyle.EMPTY_STATE_FONT_SIZE, "start", null, DiagramStyle.COLOR_TEXT);
+        } else {
+            writeConnectors(svg, layout);
+            writeNodes(svg, layout);
+            writeHighlights(svg, layout);
+        }
+        svg.write("</svg>\n");
+        svg.flush();
+    }
+
+    // --- SECTIONS ---
+
+    private static void writeDefs(Writer svg) throws IOException {
+        // Markers scale with the stroke, like arrowheads on PowerPoint lines
+        String color = color(DiagramStyle.COLOR_LINE);
+        String size = DiagramStyle.decimal(DiagramStyle.ARROW_SIZE);
+        String half = DiagramStyle.decimal(DiagramStyle.ARROW_SIZE / 2);
+        svg.write("<defs><marker id=\"arrow\" viewBox=\"0 0 ");
+        svg.write(size + " " + size);
+        svg.write("\" refX=\"" + size + "\" refY=\"" + half + "\" markerWidth=\"" + size + "\" markerHeight=\"" + size);
+        svg.write("\" orient=\"auto-start-reverse\"><path d=\"M0,0L" + size + "," + half + "L0," + size + "Z\" fill=\"");
+        svg.write(color);
+        svg.write("\"/></marker></defs>\n");
+    }
+
+    private static void writeConnectors(Writer svg, SlideLayout layout) throws IOException {
+        if (layout.connectors().isEmpty()) return;
+        svg.write("<g fill=\"none\" stroke=\"");
+        svg.write(color(DiagramStyle.COLOR_LINE));
+        svg.write("\">\n");
+        for (SlideLayout.Connector c : layout.connectors()) {
+            svg.write("<polyline points=\"");
+            double[] path = c.path();
+            for (int i = 0; i < path.length; i += 2) {
+                if (i > 0) svg.write(' ');
+                svg.write(DiagramStyle.decimal(path[i]));
+                svg.write(',');
+                svg.write(DiagramStyle.decimal(path[i + 1]));
+            }
+            svg.write("\" stroke-width=\"");
+            svg.write(DiagramStyle.decimal(c.thickness()));
+            svg.write(c.twoWay() ? "\" marker-start=\"url(#arrow)\" marker-end=\"url(#arrow)\"/>\n" : "\" marker-end=\"url(#arrow)\"/>\n");
+        }
+        svg.write("</g>\n");
+    }
+
+    private static void writeNodes(Writer svg, SlideLayout layout) throws IOException {
+        double idSize = DiagramStyle.idFontSize(layout.scale());
+        double subtitleSize = DiagramStyle.subtitleFontSize(layout.scale());
+        String shadow = color(DiagramStyle.COLOR_SHADOW);
+        String border = color(DiagramStyle.COLOR_NODE_BORDER);
+        String borderOpacity = opacity(DiagramStyle.COLOR_NODE_BORDER);
+        for (SlideLayout.RenderNode node : layout.renderNodes()) {
+            shape(svg, node.style(), node.shadow(), shadow, shadow, null, DiagramStyle.SHADOW_BORDER_WIDTH);
+            shape(svg, node.style(), node.box(), FILLS[node.style().ordinal()], border, borderOpacity, DiagramStyle.NODE_BORDER_WIDTH);
+
+            Rectangle2D.Double box = node.box();
+            double centerX = box.x + box.width / 2;
+            text(svg, node.id(), centerX, DiagramStyle.idBaseline(box, layout.scale()), idSize, "middle", "bold", Color.WHITE);
+            String subtitle = DiagramStyle.subtitle(node);
+            if (subtitle != null) {
+                text(svg, subtitle, centerX, DiagramStyle.subtitleBaseline(box, layout.scale()), subtitleSize, "middle",
+                        "italic", DiagramStyle.COLOR_NODE_SUBTITLE);
+            }
+        }
+    }
+
+    private static void writeHighlights(Writer svg, SlideLayout layout) throws IOException {
+        String dash = DiagramStyle.decimal(DiagramStyle.HIGHLIGHT_DASH * DiagramStyle.HIGHLIGHT_WIDTH);
+        for (SlideLayout.Highlight h : layout.highlights()) {
+            boolean added = h.change() == SlideLayout.Highlight.Change.ADDED;
+            rect(svg, h.box());
+            svg.write(" fill=\"none\" stroke=\"");
+            svg.write(color(added ? DiagramStyle.COLOR_ADDED : DiagramStyle.COLOR_REMOVED));
+            svg.write("\" stroke-width=\"");
+            svg.write(DiagramStyle.decimal(DiagramStyle.HIGHLIGHT_WIDTH));
+            if (!added) svg.write("\" stroke-dasharray=\"" + dash);
+            svg.write("\"/>\n");
+        }
+    }
+
+    // --- ELEMENTS ---
+
+    private static void shape(Writer svg, NodeStyle style, Rectangle2D.Double box, String fill, String stroke,
+                              String strokeOpacity, double strokeWidth) throws IOException {
+        Shape rim = DiagramStyle.rim(style, box);
+        if (rim == null) {
+            rect(svg, box);
+        } else {
+            svg.write("<path d=\"");
+            path(svg, DiagramStyle.outline(style, box));
+            path(svg, rim);
+            svg.write('"');
+        }
+        svg.write(" fill=\"");
+        svg.write(fill);
+        svg.write("\" stroke=\"");
+        svg.write(stroke);
+        if (strokeOpacity != null) {
+            svg.write("\" stroke-opacity=\"");
+            svg.write(strokeOpacity);
+        }
+        svg.write("\" stroke-width=\"");
+        svg.write(DiagramStyle.decimal(strokeWidth));
+        svg.write("\"/>\n");
+    }
+
+    /**
+     * Opens a rounded {@code <rect>} at {@code box}; the caller adds paint and closes it.
+     */
+    private static void rect(Writer svg, Rectangle2D.Double box) throws IOException {
+        svg.write("<rect x=\"");
+        svg.write(DiagramStyle.decimal(box.x));
+        svg.write("\" y=\"");
+        svg.write(DiagramStyle.decimal(box.y));
+        svg.write("\" width=\"");
+        svg.write(DiagramStyle.decimal(box.width));
+        svg.write("\" height=\"");
+        svg.write(DiagramStyle.decimal(box.height));
+        svg.write("\" rx=\"");
+        svg.write(DiagramStyle.decimal(DiagramStyle.cornerRadius(box)));
+        svg.write('"');
+    }
+
+    private static void path(Writer svg, Shape shape) throws IOException {
+        double[] c = new double[6];
+        for (PathIterator it = shape.getPathIterator(null); !it.isDone(); it.next()) {
+            int segment = it.currentSegment(c);
+            int points = switch (segment) {
+                case PathIterator.SEG_MOVETO -> {
+                    svg.write('M');
+                    yield 1;
+                }
+                case PathIterator.SEG_LINETO -> {
+                    svg.write('L');
+                    yield 1;
+                }
+                case PathIterator.SEG_QUADTO -> {
+                    svg.write('Q');
+                    yield 2;
+                }
+                case PathIterator.SEG_CUBICTO -> {
+                    svg.write('C');
+                    yield 3;
+                }
+                default -> {
+                    svg.write('Z');
+                    yield 0;
+                }
+            };
+            for (int i = 0; i < points * 2; i += 2) {
+                if (i > 0) svg.write(' ');
+                svg.write(DiagramStyle.decimal(c[i]));
+                svg.write(',');
+                svg.write(DiagramStyle.decimal(c[i + 1]));
+            }
+        }
+    }
+
+    private static void text(Writer svg, String text, double x, double baseline, double size, String anchor,
+                             String style, Color color) throws IOException {
+        svg.write("<text x=\"");
+        svg.write(DiagramStyle.decimal(x));
+        svg.write("\" y=\"");
+        svg.write(DiagramStyle.decimal(baseline));
+        svg.write("\" font-size=\"");
+        svg.write(DiagramStyle.decimal(size));
+        svg.write("\" text-anchor=\"");
+        svg.write(anchor);
+        if ("bold".equals(style)) svg.write("\" font-weight=\"bold");
+        if ("italic".equals(style)) svg.write("\" font-style=\"italic");
+        svg.write("\" fill=\"");
+        svg.write(color(color));
+        svg.write("\">");
+        escape(svg, text);
+        svg.write("</text>\n");
+    }
+
+    /**
+     * Writes {@code text} as XML character data, dropping characters XML 1.0 doesn't allow.
+     */
+    private static void escape(Writer svg, String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            switch (ch) {
+                case '<' -> svg.write("&lt;");
+                case '>' -> svg.write("&gt;");
+                case '&' -> svg.write("&amp;");
+                default -> {
+                    if (ch >= 0x20 || ch == '\t') {
+                        if (ch != 0xFFFE && ch != 0xFFFF) svg.write(ch);
+                    }
+                }
+            }
+        }
+    }
+
+    private static String color(Color color) {
+        return String.format("#%02X%02X%02X", color.getRed(), color.getGreen(), color.getBlue());
+    }
+
+    private static String opacity(Color color) {
+        return DiagramStyle.decimal(color.getAlpha() / 255.0);
+    }
+}
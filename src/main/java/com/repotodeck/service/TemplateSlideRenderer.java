@@ -0,0 +1,465 @@
+package com.repotodeck.service;
+
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fast path for single-slide decks: writes the package without building a POI object model.
+ * <p>
+ * At construction a prototype slide (a one-way and a two-way connector, a shadow + node per
+ * style with and without an image line, and one highlight per change) is rendered once through
+ * the regular POI drawing code. Its shape XML is cut into templates: literal chunks with slots
+ * for shape name and id, coordinates, connector path and line width, font sizes and text. The
+ * other package parts are kept compressed and copied as they are, except {@code presentation.xml},
+ * which has a slot for the page size. Per request only the slots are stamped, using the same
+ * number conversions POI applies, so {@code slide1.xml} comes out identical to what
+ * {@link PptGeneratorService#drawSlide} would have produced. It is compressed in chunks (see
+ * {@link DeckZip}), so a later update can reuse most of it.
+ * <p>
+ * Anything the templates can't represent exactly (empty slides, text with control characters
+ * or surrogates) reports {@link #supports} false and goes through POI instead.
+ */
+final class TemplateSlideRenderer {
+
+    private static final String ID_SENTINEL = "ID_SENTINEL_0b7e";
+    private static final String SUBTITLE_SENTINEL = "SUBTITLE_SENTINEL_0b7e";
+    private static final double PROTOTYPE_ID_FONT = DiagramStyle.ID_FONT_SIZE;
+    private static final double PROTOTYPE_SUBTITLE_FONT = DiagramStyle.SUBTITLE_FONT_SIZE;
+    private static final double PROTOTYPE_LINE_WIDTH = 1.75; // no other shape uses it
+
+    static final String SLIDE_PART = "ppt/slides/slide1.xml";
+    static final String PRESENTATION_PART = "ppt/presentation.xml";
+    static final Pattern SLIDE_SIZE = Pattern.compile("<p:sldSz cx=\"\\d+\" cy=\"\\d+\"/>");
+
+    // What can vary inside one shape, in the order XMLBeans writes it
+    private static final Pattern SLOTS = Pattern.compile(
+            "(?<shapeId>name=\"[^\"]*\" id=\"\\d+\")"
+                    + "|(?<path><a:pathLst>.*?</a:pathLst>)"
+                    + "|(?<lineWidth><a:ln w=\"" + emu(PROTOTYPE_LINE_WIDTH) + "\")"
+                    + "|(?<off><a:off x=\"-?\\d+\" y=\"-?\\d+\"/>)"
+                    + "|(?<ext><a:ext cx=\"\\d+\" cy=\"\\d+\"/>)"
+                    // run sizes only; POI writes a fixed size on a:endParaRPr
+                    + "|(?<idSize>(?<=<a:rPr lang=\"en-US\" )sz=\"" + fontUnits(PROTOTYPE_ID_FONT) + "\")"
+                    + "|(?<subtitleSize>(?<=<a:rPr lang=\"en-US\" )sz=\"" + fontUnits(PROTOTYPE_SUBTITLE_FONT) + "\")"
+                    + "|(?<idText>" + ID_SENTINEL + ")"
+                    + "|(?<subtitleText>" + SUBTITLE_SENTINEL + ")");
+
+    private enum Slot { SHAPE_ID, PATH, LINE_WIDTH, OFF, EXT, ID_SIZE, SUBTITLE_SIZE, ID_TEXT, SUBTITLE_TEXT }
+
+    /**
+     * Literal chunks interleaved with slots: literals[0] slot[0] literals[1] ... literals[n].
+     */
+    private record Template(String[] literals, Slot[] slots) {
+
+        static Template compile(String xml) {
+            List<String> literals = new ArrayList<>();
+            List<Slot> slots = new ArrayList<>();
+            Matcher m = SLOTS.matcher(xml);
+            int last = 0;
+            while (m.find()) {
+                literals.add(xml.substring(last, m.start()));
+                slots.add(m.group("shapeId") != null ? Slot.SHAPE_ID
+                        : m.group("path") != null ? Slot.PATH
+                        : m.group("lineWidth") != null ? Slot.LINE_WIDTH
+                        : m.group("off") != null ? Slot.OFF
+                        : m.group("ext") != null ? Slot.EXT
+                        : m.group("idSize") != null ? Slot.ID_SIZE
+                        : m.group("subtitleSize") != null ? Slot.SUBTITLE_SIZE
+                        : m.group("idText") != null ? Slot.ID_TEXT
+                        : Slot.SUBTITLE_TEXT);
+                last = m.end();
+            }
+            literals.add(xml.substring(last));
+            return new Template(literals.toArray(String[]::new), slots.toArray(Slot[]::new));
+        }
+
+        boolean has(Slot slot) {
+            for (Slot s : slots) if (s == slot) return true;
+            return false;
+        }
+    }
+
+    /**
+     * Values for the slots of the shape being written. Reused for every shape of a slide.
+     */
+    private static final class Stamp {
+        String name;
+        int shapeId;
+        Rectangle2D.Double anchor;
+        double[] path;
+        double lineWidth;
+        int idSize;
+        int subtitleSize;
+        String id;
+        String subtitle;
+    }
+
+    private List<DeckZip.Entry> parts;
+    private String presentationHead;
+    private String presentationTail;
+    private String slideHead;
+    private String slideTail;
+    private Template connector;
+    private Template twoWayConnector;
+    private final Map<NodeStyle, Template> shadows = new EnumMap<>(NodeStyle.class);
+    private final Map<NodeStyle, Template> nodesWithSubtitle = new EnumMap<>(NodeStyle.class);
+    private final Map<NodeStyle, Template> nodesWithoutSubtitle = new EnumMap<>(NodeStyle.class);
+    private final Map<SlideLayout.Highlight.Change, Template> highlights =
+            new EnumMap<>(SlideLayout.Highlight.Change.class);
+
+    /**
+     * @param poiRenderer renders a layout as a complete single-slide deck through POI
+     * @throws IllegalStateException if POI's output does not have the expected shape structure
+     */
+    TemplateSlideRenderer(Function<SlideLayout, byte[]> poiRenderer) {
+        readPrototype(poiRenderer.apply(prototypeLayout()));
+    }
+
+    /**
+     * True when {@link #write} produces exactly what POI would for this layout.
+     */
+    boolean supports(SlideLayout layout) {
+        if (layout.isEmpty()) return false;
+        for (SlideLayout.RenderNode node : layout.renderNodes()) {
+            if (!supports(node)) return false;
+        }
+        for (SlideLayout.Highlight highlight : layout.highlights()) {
+            if (!isPlainName(highlight.id())) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Connectors and highlights only ever name nodes, so checking the nodes covers them too.
+     */
+    boolean supports(SlideLayout.RenderNode node) {
+        return isPlainName(node.id()) && (node.subtitle() == null || isPlainText(node.subtitle()));
+    }
+
+    /**
+     * Writes the whole deck for {@code layout} into {@code out}, which is flushed but not closed.
+     */
+    void write(SlideLayout layout, int pageWidth, int pageHeight, OutputStream out) throws IOException {
+        DeckZip.Writer zip = new DeckZip.Writer(out);
+        for (DeckZip.Entry part : parts) {
+            switch (part.name()) {
+                case PRESENTATION_PART -> zip.put(PRESENTATION_PART, (presentationHead
+                        + "<p:sldSz cx=\"" + emu(pageWidth) + "\" cy=\"" + emu(pageHeight) + "\"/>"
+                        + presentationTail).getBytes(StandardCharsets.UTF_8));
+                case SLIDE_PART -> {
+                    try (DeckZip.ChunkedOutputStream slide = zip.putChunked(SLIDE_PART)) {
+                        Writer writer = xmlWriter(slide);
+                        writeSlide(layout, writer);
+                        writer.flush();
+                    }
+                }
+                default -> zip.copy(part);
+            }
+        }
+        zip.finish();
+    }
+
+    private void writeSlide(SlideLayout layout, Writer writer) throws IOException {
+        writer.write(slideHead);
+        // Same order and numbers as PptGeneratorService.draw
+        ShapeWriter shapes = shapeWriter(writer, layout.scale(), 2);
+        for (SlideLayout.Connector c : layout.connectors()) {
+            shapes.connector(c);
+        }
+        for (SlideLayout.RenderNode node : layout.renderNodes()) {
+            shapes.shadow(node);
+            shapes.box(node);
+        }
+        for (SlideLayout.Highlight highlight : layout.highlights()) {
+            shapes.highlight(highlight);
+        }
+        writer.write(slideTail);
+    }
+
+    /**
+     * Stamps single shapes into slide XML being written, numbering them upwards from
+     * {@code firstShapeId}. Used for whole slides here and by {@link DeckUpdateService} for the
+     * shapes it splices into an existing slide.
+     */
+    ShapeWriter shapeWriter(Writer writer, double scale, int firstShapeId) {
+        return new ShapeWriter(writer, scale, firstShapeId);
+    }
+
+    final class ShapeWriter {
+
+        private final Writer writer;
+        private final Stamp stamp = new Stamp();
+
+        private ShapeWriter(Writer writer, double scale, int firstShapeId) {
+            this.writer = writer;
+            stamp.shapeId = firstShapeId - 1;
+            stamp.idSize = fontUnits(DiagramStyle.idFontSize(scale));
+            stamp.subtitleSize = fontUnits(DiagramStyle.subtitleFontSize(scale));
+        }
+
+        void connector(SlideLayout.Connector c) throws IOException {
+            stamp.name = ShapeNames.edge(c.from(), c.to(), c.twoWay());
+            stamp.shapeId++;
+            stamp.anchor = c.bounds();
+            stamp.path = c.path();
+            stamp.lineWidth = c.thickness();
+            stamp(c.twoWay() ? twoWayConnector : connector, stamp, writer);
+        }
+
+        void shadow(SlideLayout.RenderNode node) throws IOException {
+            stamp.name = ShapeNames.shadow(node.id());
+            stamp.shapeId++;
+            stamp.anchor = node.shadow();
+            stamp(shadows.get(node.style()), stamp, writer);
+        }
+
+        void box(SlideLayout.RenderNode node) throws IOException {
+            stamp.name = ShapeNames.node(node.id());
+            stamp.shapeId++;
+            stamp.anchor = node.box();
+            stamp.id = node.id();
+            stamp.subtitle = node.subtitle();
+            Template template = node.subtitle() != null
+                    ? nodesWithSubtitle.get(node.style())
+                    : nodesWithoutSubtitle.get(node.style());
+            stamp(template, stamp, writer);
+        }
+
+        void highlight(SlideLayout.Highlight highlight) throws IOException {
+            stamp.name = ShapeNames.highlight(highlight.change(), highlight.id());
+            stamp.shapeId++;
+            stamp.anchor = highlight.box();
+            stamp(highlights.get(highlight.change()), stamp, writer);
+        }
+    }
+
+    static Writer xmlWriter(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    private static void stamp(Template template, Stamp stamp, Writer writer) throws IOException {
+        String[] literals = template.literals();
+        Slot[] slots = template.slots();
+        for (int i = 0; i < slots.length; i++) {
+            writer.write(literals[i]);
+            switch (slots[i]) {
+                case SHAPE_ID -> {
+                    writer.write("name=\"");
+                    escapeAttribute(stamp.name, writer);
+                    writer.write("\" id=\"");
+                    writer.write(Integer.toString(stamp.shapeId));
+                    writer.write('"');
+                }
+                case PATH -> writePath(stamp.path, stamp.anchor, writer);
+                case LINE_WIDTH -> {
+                    writer.write("<a:ln w=\"");
+                    writer.write(Integer.toString(emu(stamp.lineWidth)));
+                    writer.write('"');
+                }
+                case OFF -> {
+                    writer.write("<a:off x=\"");
+                    writer.write(Integer.toString(emu(stamp.anchor.getX())));
+                    writer.write("\" y=\"");
+                    writer.write(Integer.toString(emu(stamp.anchor.getY())));
+                    writer.write("\"/>");
+                }
+                case EXT -> {
+                    writer.write("<a:ext cx=\"");
+                    writer.write(Integer.toString(emu(stamp.anchor.getWidth())));
+                    writer.write("\" cy=\"");
+                    writer.write(Integer.toString(emu(stamp.anchor.getHeight())));
+                    writer.write("\"/>");
+                }
+                case ID_SIZE -> {
+                    writer.write("sz=\"");
+                    writer.write(Integer.toString(stamp.idSize));
+                    writer.write('"');
+                }
+                case SUBTITLE_SIZE -> {
+                    writer.write("sz=\"");
+                    writer.write(Integer.toString(stamp.subtitleSize));
+                    writer.write('"');
+                }
+                case ID_TEXT -> escape(stamp.id, writer);
+                case SUBTITLE_TEXT -> escape(stamp.subtitle, 1, false, writer); // the leading '\n' is in the literal
+            }
+        }
+        writer.write(literals[slots.length]);
+    }
+
+    /**
+     * The path list PptGeneratorService.setPath builds: one polyline in EMU relative to the anchor.
+     */
+    private static void writePath(double[] path, Rectangle2D.Double anchor, Writer writer) throws IOException {
+        writer.write("<a:pathLst><a:path w=\"");
+        writer.write(Integer.toString(Math.max(1, emu(anchor.getWidth()))));
+        writer.write("\" h=\"");
+        writer.write(Integer.toString(Math.max(1, emu(anchor.getHeight()))));
+        writer.write("\">");
+        for (int i = 0; i < path.length; i += 2) {
+            writer.write(i == 0 ? "<a:moveTo><a:pt x=\"" : "<a:lnTo><a:pt x=\"");
+            writer.write(Integer.toString(emu(path[i] - anchor.getX())));
+            writer.write("\" y=\"");
+            writer.write(Integer.toString(emu(path[i + 1] - anchor.getY())));
+            writer.write(i == 0 ? "\"/></a:moveTo>" : "\"/></a:lnTo>");
+        }
+        writer.write("</a:path></a:pathLst>");
+    }
+
+    // --- PROTOTYPE ---
+
+    private static SlideLayout prototypeLayout() {
+        List<SlideLayout.RenderNode> nodes = new ArrayList<>();
+        for (NodeStyle style : NodeStyle.values()) {
+            Rectangle2D.Double box = new Rectangle2D.Double(100, 100, 220, 100);
+            Rectangle2D.Double shadow = new Rectangle2D.Double(106, 106, 220, 100);
+            nodes.add(new SlideLayout.RenderNode(ID_SENTINEL, "\n" + SUBTITLE_SENTINEL, style, box, shadow));
+            nodes.add(new SlideLayout.RenderNode(ID_SENTINEL, null, style, box, shadow));
+        }
+        double[] path = {500, 500, 500, 550, 600, 550, 600, 600};
+        List<SlideLayout.Connector> connectors = List.of(
+                new SlideLayout.Connector(ID_SENTINEL, ID_SENTINEL, false, path, PROTOTYPE_LINE_WIDTH),
+                new SlideLayout.Connector(ID_SENTINEL, ID_SENTINEL, true, path, PROTOTYPE_LINE_WIDTH));
+        List<SlideLayout.Highlight> highlights = new ArrayList<>();
+        for (SlideLayout.Highlight.Change change : SlideLayout.Highlight.Change.values()) {
+            highlights.add(new SlideLayout.Highlight(ID_SENTINEL, change, new Rectangle2D.Double(92, 92, 236, 116)));
+        }
+        return new SlideLayout(ServiceGraph.EMPTY, nodes, connectors, highlights,
+                PptGeneratorService.MIN_SLIDE_WIDTH, PptGeneratorService.MIN_SLIDE_HEIGHT, 1.0);
+    }
+
+    private void readPrototype(byte[] deck) {
+        parts = DeckZip.read(deck);
+        String presentation = part(PRESENTATION_PART);
+        Matcher size = SLIDE_SIZE.matcher(presentation);
+        if (!size.find()) throw new IllegalStateException("No slide size in " + PRESENTATION_PART);
+        presentationHead = presentation.substring(0, size.start());
+        presentationTail = presentation.substring(size.end());
+
+        String slide = part(SLIDE_PART);
+        // Connectors come first, so the shapes start with one and end with an auto shape
+        int first = slide.indexOf("<p:cxnSp>");
+        int end = slide.lastIndexOf("</p:sp>");
+        if (first < 0 || end < 0) throw new IllegalStateException("No shapes in prototype slide");
+        end += "</p:sp>".length();
+        slideHead = slide.substring(0, first);
+        slideTail = slide.substring(end);
+
+        List<Template> shapes = new ArrayList<>();
+        for (String shape : slide.substring(first, end).split("(?<=</p:sp>)|(?<=</p:cxnSp>)")) {
+            shapes.add(Template.compile(shape));
+        }
+        int changes = SlideLayout.Highlight.Change.values().length;
+        int expected = 2 + NodeStyle.values().length * 4 + changes;
+        if (shapes.size() != expected) {
+            throw new IllegalStateException("Prototype slide has " + shapes.size() + " shapes, expected " + expected);
+        }
+
+        connector = shapes.get(0);
+        twoWayConnector = shapes.get(1);
+        int i = 2;
+        for (NodeStyle style : NodeStyle.values()) {
+            shadows.put(style, shapes.get(i));
+            nodesWithSubtitle.put(style, shapes.get(i + 1));
+            nodesWithoutSubtitle.put(style, shapes.get(i + 3));
+            i += 4;
+        }
+        for (SlideLayout.Highlight.Change change : SlideLayout.Highlight.Change.values()) {
+            highlights.put(change, shapes.get(i++));
+        }
+        for (Template template : List.of(connector, twoWayConnector)) {
+            check(template.has(Slot.PATH) && template.has(Slot.LINE_WIDTH) && template.has(Slot.OFF)
+                    && template.has(Slot.SHAPE_ID), "connector");
+        }
+        for (NodeStyle style : NodeStyle.values()) {
+            check(nodesWithSubtitle.get(style).has(Slot.SUBTITLE_TEXT), "node with image");
+            check(nodesWithoutSubtitle.get(style).has(Slot.ID_TEXT), "node without image");
+        }
+    }
+
+    private String part(String name) {
+        for (DeckZip.Entry part : parts) {
+            if (part.name().equals(name)) return new String(DeckZip.inflate(part, Integer.MAX_VALUE).data(), StandardCharsets.UTF_8);
+        }
+        throw new IllegalStateException("Prototype deck has no " + name);
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) throw new IllegalStateException("Unexpected prototype XML for " + what);
+    }
+
+    // --- CONVERSIONS (as in POI's Units.toEMU and XSLFTextRun.setFontSize) ---
+
+    static int emu(double points) {
+        return (int) Math.rint(12700 * points);
+    }
+
+    private static int fontUnits(double points) {
+        return (int) (100 * points);
+    }
+
+    /**
+     * Text XMLBeans writes verbatim apart from escaping {@code &} and {@code <} (it escapes
+     * {@code >} only after {@code ]]}, which is left to POI).
+     */
+    private static boolean isPlainText(String text) {
+        if (text.contains("]]>")) return false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c < 0x20 && c != '\n' && c != '\t') || c == '\r' || Character.isSurrogate(c) || c >= 0xFFFE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Shape names end up in an attribute, where XMLBeans also escapes {@code "} and where line
+     * breaks and tabs would not survive a round trip; no control characters at all, then.
+     */
+    private static boolean isPlainName(String name) {
+        if (!isPlainText(name)) return false;
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) < 0x20) return false;
+        }
+        return true;
+    }
+
+    private static void escape(String text, Writer writer) throws IOException {
+        escape(text, 0, false, writer);
+    }
+
+    private static void escapeAttribute(String text, Writer writer) throws IOException {
+        escape(text, 0, true, writer);
+    }
+
+    private static void escape(String text, int from, boolean attribute, Writer writer) throws IOException {
+        int start = from;
+        for (int i = from; i < text.length(); i++) {
+            String replacement = switch (text.charAt(i)) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '"' -> attribute ? "&quot;" : null;
+                default -> null;
+            };
+            if (replacement != null) {
+                writer.write(text, start, i - start);
+                writer.write(replacement);
+                start = i + 1;
+            }
+        }
+        writer.write(text, start, text.length() - start);
+    }
+}
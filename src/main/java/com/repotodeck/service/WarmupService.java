@@ -0,0 +1,205 @@
+package com.repotodeck.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Startup warm-up and footprint report.
+ * <p>
+ * The first render of a fresh JVM pays for loading POI and its XMLBeans schema classes, Java2D
+ * and the fonts, and for running all of it interpreted. When enabled, a built-in compose file is
+ * rendered {@code renders} times in each of {@code formats} once the application has started.
+ * That happens while {@link ApplicationReadyEvent} is handled, i.e. before Spring Boot switches
+ * the readiness state to ACCEPTING_TRAFFIC, so a readiness probe keeps traffic away until it is
+ * done. With {@code http} one request per format then goes through the application's own port,
+ * so request binding, the MVC handlers and the streaming response path are warm as well. A
+ * failed warm-up is logged and never keeps the application from starting.
+ * <p>
+ * With {@code exit} the application shuts down right after the warm-up: the training run that
+ * records a Class Data Sharing archive (see the fast-start profile in pom.xml). Either way the
+ * time to ready and the resident set size are logged, and the RSS is exported as
+ * {@code repotodeck.process.rss}.
+ */
+@Service
+public class WarmupService {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmupService.class);
+
+    private static final Path PROC_STATUS = Path.of("/proc/self/status");
+
+    // Touches every tier, the layered layout, routed and two-way connectors
+    private static final String SAMPLE = """
+            services:
+              web:
+                image: nginx:latest
+                depends_on: [api, auth]
+              admin-ui:
+                image: node:20
+                depends_on: [api]
+              api:
+                image: eclipse-temurin:21
+                depends_on: [db, cache, queue, auth]
+              auth:
+                image: keycloak/keycloak:24
+                depends_on: [db, api]
+              worker:
+                image: python:3.12
+                depends_on: [queue, db]
+              queue:
+                image: rabbitmq:3
+              cache:
+                image: redis:7
+              db:
+                image: postgres:16
+            """;
+
+    private final DockerParserService dockerParserService;
+    private final PptGeneratorService pptGeneratorService;
+    private final DiagramExportService diagramExportService;
+    private final boolean enabled;
+    private final int renders;
+    private final List<DiagramFormat> formats;
+    private final boolean http;
+    private final boolean exit;
+
+    @Autowired
+    public WarmupService(DockerParserService dockerParserService,
+                         PptGeneratorService pptGeneratorService,
+                         DiagramExportService diagramExportService,
+                         @Value("${repotodeck.warmup.enabled:false}") boolean enabled,
+                         @Value("${repotodeck.warmup.renders:3}") int renders,
+                         @Value("${repotodeck.warmup.formats:PPTX,SVG,PNG,PDF}") List<DiagramFormat> formats,
+                         @Value("${repotodeck.warmup.http:true}") boolean http,
+                         @Value("${repotodeck.warmup.exit:false}") boolean exit,
+                         MeterRegistry meterRegistry) {
+        this.dockerParserService = dockerParserService;
+        this.pptGeneratorService = pptGeneratorService;
+        this.diagramExportService = diagramExportService;
+        this.enabled = enabled || exit;
+        this.renders = Math.max(1, renders);
+        this.formats = List.copyOf(formats);
+        this.http = http;
+        this.exit = exit;
+
+        Gauge.builder("repotodeck.process.rss", () -> {
+                    long rss = residentSetSize();
+                    return rss >= 0 ? rss : Double.NaN;
+                })
+                .description("Resident set size of the JVM process (Linux only)")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady(ApplicationReadyEvent event) {
+        long warmupMillis = -1;
+        if (enabled) {
+            long start = System.nanoTime();
+            try {
+                warmUp();
+                String port = event.getApplicationContext() != null
+                        ? event.getApplicationContext().getEnvironment().getProperty("local.server.port") : null;
+                if (http && port != null) {
+                    warmUpEndpoint(Integer.parseInt(port));
+                }
+                warmupMillis = (System.nanoTime() - start) / 1_000_000;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | RuntimeException e) {
+                log.atWarn().setMessage("Warm-up failed").addKeyValue("error", e.getMessage()).log();
+            }
+        }
+        long rss = residentSetSize();
+        log.atInfo().setMessage("Startup finished")
+                .addKeyValue("readyMs", event.getTimeTaken() != null ? event.getTimeTaken().toMillis() : null)
+                .addKeyValue("jvmUptimeMs", ManagementFactory.getRuntimeMXBean().getUptime())
+                .addKeyValue("warmupMs", warmupMillis >= 0 ? warmupMillis : null)
+                .addKeyValue("rssBytes", rss >= 0 ? rss : null)
+                .log();
+        if (exit) {
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+
+    /**
+     * Parses and renders the sample {@code renders} times in every format, plus one deck through
+     * the POI usermodel (the path batch decks take), writing everything to a null stream.
+     */
+    void warmUp() throws IOException {
+        OutputStream discard = OutputStream.nullOutputStream();
+        for (int i = 0; i < renders; i++) {
+            ServiceGraph graph = dockerParserService.parseGraph(SAMPLE);
+            for (DiagramFormat format : formats) {
+                diagramExportService.write(graph, format, discard);
+            }
+        }
+        SlideLayout layout = pptGeneratorService.layout(dockerParserService.parseGraph(SAMPLE));
+        try (XMLSlideShow pptx = pptGeneratorService.createDeck(List.of(layout))) {
+            pptGeneratorService.drawSlide(pptx, layout, "warm-up");
+            pptGeneratorService.writeDeck(pptx, discard);
+        }
+    }
+
+    /**
+     * Posts the sample to {@code /api/generate-slide} once per format over loopback. The first
+     * request is otherwise ~4x slower than the render itself: Jackson binding, handler lookup
+     * and the async response path all initialize on first use.
+     */
+    void warmUpEndpoint(int port) throws IOException, InterruptedException {
+        URI uri = URI.create("http://localhost:" + port + "/api/generate-slide");
+        String body = "{\"yaml\": \"" + SAMPLE.replace("\n", "\\n") + "\"}";
+        try (HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build()) {
+            for (DiagramFormat format : formats) {
+                HttpRequest request = HttpRequest.newBuilder(uri)
+                        .timeout(Duration.ofSeconds(30))
+                        .header("Content-Type", "application/json")
+                        .header("Accept", format.mediaType().toString())
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() != 200) {
+                    throw new IOException("Warm-up request for " + format + " returned " + response.statusCode());
+                }
+            }
+        }
+    }
+
+    /**
+     * VmRSS from /proc, in bytes, or -1 where there is no /proc.
+     */
+    static long residentSetSize() {
+        try {
+            for (String line : Files.readAllLines(PROC_STATUS)) {
+                if (line.startsWith("VmRSS:")) {
+                    // "VmRSS:     123456 kB"
+                    String kilobytes = line.substring(6).trim().split("\\s+")[0];
+                    return Long.parseLong(kilobytes) * 1024;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // No procfs (macOS, Windows); the gauge reports NaN
+        }
+        return -1;
+    }
+}
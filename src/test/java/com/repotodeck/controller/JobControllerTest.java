@@ -0,0 +1,197 @@
+package com.repotodeck.controller;
+
+import com.repotodeck.model.RenderJob;
+import com.repotodeck.service.DeckStore;
+import com.repotodeck.service.DockerParserService;
+import com.repotodeck.service.PptGeneratorService;
+import com.repotodeck.service.RenderAdmissionService;
+import com.repotodeck.service.RenderCacheService;
+import com.repotodeck.service.RenderJobService;
+import com.repotodeck.service.RenderScheduler;
+import com.repotodeck.service.ServiceClassifier;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+class JobControllerTest {
+
+    private static final String YAML = """
+            services:
+              web:
+                image: nginx
+                depends_on: [api]
+              api:
+                image: java:21
+            """;
+
+    // Two services by the estimate, so it is parsed (and fails) in the worker
+    private static final String BROKEN = """
+            services:
+              web:
+                image: nginx
+              api:
+                image: [java
+            """;
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RenderScheduler scheduler = new RenderScheduler(1, 64, 4, 10_000, 1, registry);
+    private RenderJobService jobs;
+    private MockMvc mvc;
+
+    @AfterEach
+    void shutdown() {
+        if (jobs != null) jobs.shutdown();
+    }
+
+    /**
+     * TEST 1: Ranges
+     * PURPOSE: One range is a 206 with Content-Range, several get the whole deck, and a range
+     * past the end is a 416 naming the deck's length.
+     */
+    @Test
+    void testDeckHonorsRanges() throws Exception {
+        RenderJob job = done(setUp().submit(YAML));
+        byte[] deck = Files.readAllBytes(jobs.deck(job.id()));
+
+        MockHttpServletResponse partial = perform(get("/api/jobs/{id}/deck", job.id())
+                .header(HttpHeaders.RANGE, "bytes=100-1099"));
+        assertEquals(206, partial.getStatus());
+        assertEquals("bytes 100-1099/" + deck.length, partial.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(deck, 100, 1100), partial.getContentAsByteArray());
+
+        MockHttpServletResponse several = perform(get("/api/jobs/{id}/deck", job.id())
+                .header(HttpHeaders.RANGE, "bytes=0-9, 20-29"));
+        assertEquals(200, several.getStatus());
+        assertNull(several.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(deck, several.getContentAsByteArray());
+
+        MockHttpServletResponse outside = perform(get("/api/jobs/{id}/deck", job.id())
+                .header(HttpHeaders.RANGE, "bytes=" + deck.length + "-"));
+        assertEquals(416, outside.getStatus());
+        assertEquals("bytes */" + deck.length, outside.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    /**
+     * TEST 2: Conditional Download
+     * PURPOSE: The deck's ETag, or "*", sent back in If-None-Match yields a 304.
+     */
+    @Test
+    void testDeckIsNotModified() throws Exception {
+        RenderJob job = done(setUp().submit(YAML));
+
+        MockHttpServletResponse full = perform(get("/api/jobs/{id}/deck", job.id()));
+        assertEquals(200, full.getStatus());
+        String etag = full.getHeader(HttpHeaders.ETAG);
+        assertEquals("\"" + job.cacheKey() + "\"", etag);
+
+        for (String ifNoneMatch : new String[]{etag, "W/" + etag, "*"}) {
+            MockHttpServletResponse cached = perform(get("/api/jobs/{id}/deck", job.id())
+                    .header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch));
+            assertEquals(304, cached.getStatus(), ifNoneMatch);
+            assertEquals(0, cached.getContentAsByteArray().length);
+        }
+    }
+
+    /**
+     * TEST 3: Sendfile
+     * PURPOSE: Where the connector supports sendfile, the range is handed to it through request
+     * attributes and no body is written.
+     */
+    @Test
+    void testDeckIsHandedToSendfile() throws Exception {
+        RenderJob job = done(setUp().submit(YAML));
+        Path deck = jobs.deck(job.id());
+
+        MvcResult result = mvc.perform(get("/api/jobs/{id}/deck", job.id())
+                .header(HttpHeaders.RANGE, "bytes=10-")
+                .requestAttr(JobController.SENDFILE_SUPPORTED, true)).andReturn();
+
+        assertFalse(result.getRequest().isAsyncStarted());
+        assertEquals(206, result.getResponse().getStatus());
+        assertEquals(0, result.getResponse().getContentAsByteArray().length);
+        assertEquals(deck.toAbsolutePath().toString(), result.getRequest().getAttribute(JobController.SENDFILE_FILENAME));
+        assertEquals(10L, result.getRequest().getAttribute(JobController.SENDFILE_START));
+        assertEquals(Files.size(deck), result.getRequest().getAttribute(JobController.SENDFILE_END));
+    }
+
+    /**
+     * TEST 4: No Deck
+     * PURPOSE: A job that is still waiting for a render slot, or that failed, answers 409 (the
+     * former with a Retry-After hint); an unknown job is a 404.
+     */
+    @Test
+    void testDeckOfUnfinishedJobsConflicts() throws Exception {
+        setUp();
+        RenderJob waiting;
+        try (RenderScheduler.Permit ignored = scheduler.acquire()) {
+            waiting = jobs.submit(YAML);
+            MockHttpServletResponse notReady = perform(get("/api/jobs/{id}/deck", waiting.id()));
+            assertEquals(409, notReady.getStatus());
+            assertEquals("1", notReady.getHeader(HttpHeaders.RETRY_AFTER));
+        }
+        done(waiting);
+
+        RenderJob failed = await(jobs.submit(BROKEN));
+        assertEquals(RenderJob.State.FAILED, failed.state());
+        MockHttpServletResponse conflict = perform(get("/api/jobs/{id}/deck", failed.id()));
+        assertEquals(409, conflict.getStatus());
+        assertTrue(conflict.getContentAsString().startsWith("Job failed"));
+
+        assertEquals(404, perform(get("/api/jobs/{id}/deck", DeckStore.newId())).getStatus());
+    }
+
+    /**
+     * Full detail up to one service, so {@link #BROKEN} is only parsed by the worker.
+     */
+    private RenderJobService setUp() throws Exception {
+        RenderCacheService cache = new RenderCacheService(1 << 20, 1 << 20, registry, ServiceClassifier.withDefaultRules());
+        RenderAdmissionService admission = new RenderAdmissionService(true, 1, 100, 1 << 20, 100, 1_000, 1 << 20,
+                1_000, 10_000, 1 << 20, RenderAdmissionService.Oversized.ASYNC, registry);
+        jobs = new RenderJobService(new DockerParserService(), new PptGeneratorService(), cache, scheduler, admission,
+                new DeckStore(dir.toString()), registry, 1, 10, 3_600_000, 1);
+        mvc = MockMvcBuilders.standaloneSetup(new JobController(jobs, Jackson2ObjectMapperBuilder.json().build(), 1))
+                .build();
+        return jobs;
+    }
+
+    private MockHttpServletResponse perform(RequestBuilder request) throws Exception {
+        MvcResult result = mvc.perform(request).andReturn();
+        return result.getRequest().isAsyncStarted()
+                ? mvc.perform(asyncDispatch(result)).andReturn().getResponse()
+                : result.getResponse();
+    }
+
+    private RenderJob done(RenderJob job) throws InterruptedException {
+        RenderJob finished = await(job);
+        assertEquals(RenderJob.State.DONE, finished.state(), finished.error());
+        return finished;
+    }
+
+    private RenderJob await(RenderJob job) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            RenderJob current = jobs.get(job.id());
+            if (current.finished()) return current;
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Job did not finish: " + jobs.get(job.id()));
+    }
+}
@@ -0,0 +1,221 @@
+package com.repotodeck.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.repotodeck.config.RequestSizeFilter;
+import com.repotodeck.service.BatchRenderService;
+import com.repotodeck.service.ComposeProjectService;
+import com.repotodeck.service.DeckStore;
+import com.repotodeck.service.DeckUpdateService;
+import com.repotodeck.service.DiagramExportService;
+import com.repotodeck.service.DockerParserService;
+import com.repotodeck.service.PaginatedDeckService;
+import com.repotodeck.service.PipelineMetrics;
+import com.repotodeck.service.PptGeneratorService;
+import com.repotodeck.service.RenderAdmissionService;
+import com.repotodeck.service.RenderCacheService;
+import com.repotodeck.service.RenderFarmService;
+import com.repotodeck.service.RenderJobService;
+import com.repotodeck.service.RenderScheduler;
+import com.repotodeck.service.ServiceClassifier;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+class PptControllerTest {
+
+    private static final int MAX_REQUEST_BYTES = 4096;
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final PptGeneratorService generator = new PptGeneratorService();
+    private final List<RenderJobService> jobServices = new ArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        jobServices.forEach(RenderJobService::shutdown);
+    }
+
+    /**
+     * TEST 1: Conditional Requests
+     * PURPOSE: The ETag of a deck sent back in If-None-Match yields a 304 without a render, and
+     * "*" on a POST is a failed precondition (412) rather than a match.
+     */
+    @Test
+    void testIfNoneMatch() throws Exception {
+        MockMvc mvc = mvc(scheduler(4, 0), admission(1_000, 2_000, 3_000));
+
+        MockHttpServletResponse rendered = perform(mvc, slide(services(3)));
+        assertEquals(200, rendered.getStatus());
+        String etag = rendered.getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        MockHttpServletResponse cached = perform(mvc, slide(services(3)).header(HttpHeaders.IF_NONE_MATCH, "\"other\", " + etag));
+        assertEquals(304, cached.getStatus());
+        assertEquals(etag, cached.getHeader(HttpHeaders.ETAG));
+
+        assertEquals(412, perform(mvc, slide(services(3)).header(HttpHeaders.IF_NONE_MATCH, "*")).getStatus());
+        MockHttpServletRequestBuilder update = post("/api/update-slide")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json(Map.of("yaml", services(4), "previous", etag)))
+                .header(HttpHeaders.IF_NONE_MATCH, "*");
+        assertEquals(412, perform(mvc, update).getStatus());
+    }
+
+    /**
+     * TEST 2: Busy Renderer
+     * PURPOSE: With every render slot taken, a full wait queue answers 429 and a timed-out wait
+     * 503, both with Retry-After.
+     */
+    @Test
+    void testBusySchedulerRejects() throws Exception {
+        RenderScheduler noQueue = scheduler(1, 0);
+        try (RenderScheduler.Permit ignored = noQueue.acquire()) {
+            MockHttpServletResponse response = perform(mvc(noQueue, admission(1_000, 2_000, 3_000)), slide(services(3)));
+            assertEquals(429, response.getStatus());
+            assertEquals("3", response.getHeader(HttpHeaders.RETRY_AFTER));
+        }
+
+        RenderScheduler shortWait = scheduler(1, 4);
+        try (RenderScheduler.Permit ignored = shortWait.acquire()) {
+            MockHttpServletResponse response = perform(mvc(shortWait, admission(1_000, 2_000, 3_000)), slide(services(3)));
+            assertEquals(503, response.getStatus());
+            assertEquals("3", response.getHeader(HttpHeaders.RETRY_AFTER));
+        }
+    }
+
+    /**
+     * TEST 3: Oversized Documents
+     * PURPOSE: Past each admission limit a document is drawn reduced, handed to the job queue
+     * (202 with the job in Location) or rejected (413), and a JSON body over the request size
+     * limit is a 413 before it is read.
+     */
+    @Test
+    void testAdmissionTiers() throws Exception {
+        MockMvc mvc = mvc(scheduler(4, 0), admission(2, 3, 4));
+
+        MockHttpServletResponse full = perform(mvc, slide(services(2)));
+        assertEquals(200, full.getStatus());
+        assertNull(full.getHeader(PptController.DETAIL_HEADER));
+
+        MockHttpServletResponse reduced = perform(mvc, slide(services(3)));
+        assertEquals(200, reduced.getStatus());
+        assertEquals("reduced", reduced.getHeader(PptController.DETAIL_HEADER));
+
+        MockHttpServletResponse queued = perform(mvc, slide(services(4)));
+        assertEquals(202, queued.getStatus());
+        assertTrue(queued.getHeader(HttpHeaders.LOCATION).startsWith("/api/jobs/"));
+        assertNotNull(queued.getHeader(HttpHeaders.RETRY_AFTER));
+
+        MockHttpServletResponse tooLarge = perform(mvc, slide(services(5)));
+        assertEquals(413, tooLarge.getStatus());
+        assertTrue(tooLarge.getContentAsString().contains("too large"));
+
+        MockHttpServletResponse tooLong = perform(mvc, slide("services:\n" + "#".repeat(MAX_REQUEST_BYTES)));
+        assertEquals(413, tooLong.getStatus());
+        assertTrue(tooLong.getContentAsString().startsWith("Request body exceeds"));
+    }
+
+    /**
+     * TEST 4: Regenerated Updates
+     * PURPOSE: An update that can't be patched is drawn at the detail its document is admitted
+     * with, and says so.
+     */
+    @Test
+    void testUpdateRegeneratesAtAdmittedDetail() throws Exception {
+        MockMvc mvc = mvc(scheduler(4, 0), admission(2, 10, 20));
+        ByteArrayOutputStream previous = new ByteArrayOutputStream();
+        generator.generateSlide(new DockerParserService().parseGraph("services:\n  legacy:\n    image: cobol\n"), previous);
+
+        MockHttpServletResponse response = perform(mvc, multipart("/api/update-slide")
+                .file(new MockMultipartFile("deck", "deck.pptx", null, previous.toByteArray()))
+                .file(new MockMultipartFile("yaml", "", MediaType.TEXT_PLAIN_VALUE,
+                        services(3).getBytes(StandardCharsets.UTF_8))));
+
+        assertEquals(200, response.getStatus());
+        assertEquals("regenerated", response.getHeader(PptController.UPDATE_HEADER));
+        assertEquals("reduced", response.getHeader(PptController.DETAIL_HEADER));
+        assertTrue(response.getContentAsByteArray().length > 0);
+    }
+
+    private MockMvc mvc(RenderScheduler scheduler, RenderAdmissionService admission) throws Exception {
+        DockerParserService parser = new DockerParserService();
+        RenderCacheService cache = new RenderCacheService(1 << 24, 1 << 24, registry, ServiceClassifier.withDefaultRules());
+        RenderJobService jobs = new RenderJobService(parser, generator, cache, scheduler, admission,
+                new DeckStore(dir.toString()), registry, 1, 10, 3_600_000, 3);
+        jobServices.add(jobs);
+        PptController controller = new PptController(parser, generator, new DiagramExportService(generator), cache,
+                new BatchRenderService(parser, generator), scheduler,
+                new DeckUpdateService(generator, PipelineMetrics.noop(), 64 << 20, 0.5),
+                new ComposeProjectService(parser, registry, 1_000, 1 << 20, 10_000),
+                new RenderFarmService(RenderFarmService.Store.NONE, dir.toString(), "localhost", 6379, "", 2_000, 1,
+                        60, 60_000, 60_000, 100, 1 << 20, 1 << 20, registry),
+                admission, jobs, new PaginatedDeckService(generator), objectMapper, 10, 2);
+        return MockMvcBuilders.standaloneSetup(controller)
+                .addFilters(new RequestSizeFilter(MAX_REQUEST_BYTES))
+                .build();
+    }
+
+    private RenderScheduler scheduler(int slots, int queueCapacity) {
+        return new RenderScheduler(slots, 64, queueCapacity, 50, 3, registry);
+    }
+
+    /**
+     * Full detail up to {@code full} services, synchronous up to {@code sync}, rejected past {@code max}.
+     */
+    private RenderAdmissionService admission(int full, int sync, int max) {
+        return new RenderAdmissionService(true, full, 10_000, 1 << 20, sync, 10_000, 1 << 20, max, 10_000, 1 << 20,
+                RenderAdmissionService.Oversized.ASYNC, registry);
+    }
+
+    private MockHttpServletRequestBuilder slide(String yaml) throws Exception {
+        return post("/api/generate-slide")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json(Map.of("yaml", yaml)));
+    }
+
+    private byte[] json(Object value) throws Exception {
+        return objectMapper.writeValueAsBytes(value);
+    }
+
+    private static String services(int count) {
+        StringBuilder yaml = new StringBuilder("services:\n");
+        for (int i = 0; i < count; i++) {
+            yaml.append("  svc-").append(i).append(":\n    image: busybox\n");
+            if (i > 0) yaml.append("    depends_on: [svc-").append(i - 1).append("]\n");
+        }
+        return yaml.toString();
+    }
+
+    private static MockHttpServletResponse perform(MockMvc mvc, RequestBuilder request) throws Exception {
+        MvcResult result = mvc.perform(request).andReturn();
+        return result.getRequest().isAsyncStarted()
+                ? mvc.perform(asyncDispatch(result)).andReturn().getResponse()
+                : result.getResponse();
+    }
+}
@@ -0,0 +1,112 @@
+package com.repotodeck.service;
+
+import com.repotodeck.model.ComposeSource;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xslf.usermodel.XSLFShape;
+import org.apache.poi.xslf.usermodel.XSLFTextShape;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchRenderServiceTest {
+
+    private final BatchRenderService batchRenderService =
+            new BatchRenderService(new DockerParserService(), new PptGeneratorService());
+
+    /**
+     * TEST 1: Ordered Deck Assembly
+     * PURPOSE: Even though layout runs in parallel, slides must come out in request order.
+     */
+    @Test
+    void testDeckKeepsRequestOrder() throws IOException {
+        List<ComposeSource> sources = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            sources.add(new ComposeSource("repo-" + i, "services:\n  svc-" + i + ":\n    image: java:17\n"));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        batchRenderService.renderDeck(batchRenderService.parseAll(sources), out);
+
+        try (XMLSlideShow pptx = new XMLSlideShow(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals(20, pptx.getSlides().size());
+            for (int i = 0; i < 20; i++) {
+                XSLFShape title = pptx.getSlides().get(i).getShapes().get(0);
+                assertEquals("repo-" + i, ((XSLFTextShape) title).getText());
+            }
+        }
+    }
+
+    /**
+     * TEST 2: ZIP Output
+     * PURPOSE: One entry per file, in order, with duplicate names made unique.
+     */
+    @Test
+    void testZipHasOneDeckPerFile() throws IOException {
+        List<ComposeSource> sources = List.of(
+                new ComposeSource("shop", "services:\n  web:\n    image: nginx\n"),
+                new ComposeSource("shop", "services:\n  db:\n    image: postgres\n"),
+                new ComposeSource(null, "services:\n  api:\n    image: java\n"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        batchRenderService.renderZip(batchRenderService.parseAll(sources), out);
+
+        List<String> entries = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (ZipEntry entry; (entry = zip.getNextEntry()) != null; ) {
+                entries.add(entry.getName());
+            }
+        }
+        assertEquals(List.of("shop.pptx", "shop-2.pptx", "compose-3.pptx"), entries);
+    }
+
+    /**
+     * TEST 3: Fail Fast
+     * PURPOSE: A broken file must be reported by name before any output is produced.
+     */
+    @Test
+    void testInvalidFileIsReportedByName() {
+        List<ComposeSource> sources = List.of(
+                new ComposeSource("good", "services:\n  web:\n    image: nginx\n"),
+                new ComposeSource("broken", "services: [unclosed"));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> batchRenderService.parseAll(sources));
+        assertTrue(e.getMessage().contains("broken"));
+    }
+
+    /**
+     * TEST 4: Admitted Detail
+     * PURPOSE: Every file is laid out at the detail it was admitted with, so one oversized file
+     * gets the cheap layout without dragging the others down with it.
+     */
+    @Test
+    void testFilesKeepTheirAdmittedDetail() throws IOException {
+        Map<String, PptGeneratorService.Detail> details = new ConcurrentHashMap<>();
+        PptGeneratorService recording = new PptGeneratorService() {
+            @Override
+            public SlideLayout layout(ServiceGraph graph, PptGeneratorService.Detail detail) {
+                details.put(graph.id(0), detail);
+                return super.layout(graph, detail);
+            }
+        };
+        BatchRenderService batch = new BatchRenderService(new DockerParserService(), recording);
+        List<ComposeSource> sources = List.of(
+                new ComposeSource("small", "services:\n  web:\n    image: nginx\n"),
+                new ComposeSource("huge", "services:\n  api:\n    image: java\n"));
+
+        batch.renderDeck(batch.parseAll(sources,
+                List.of(PptGeneratorService.Detail.FULL, PptGeneratorService.Detail.REDUCED)), new ByteArrayOutputStream());
+
+        assertEquals(Map.of("web", PptGeneratorService.Detail.FULL, "api", PptGeneratorService.Detail.REDUCED), details);
+    }
+}
@@ -0,0 +1,261 @@
+package com.repotodeck.service;
+
+import com.repotodeck.model.ComposeSource;
+import com.repotodeck.model.ServiceNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ComposeProjectServiceTest {
+
+    private static final String BASE = """
+            x-java: &java
+              image: eclipse-temurin:21
+            services:
+              web:
+                image: nginx:1.25
+                depends_on: [api]
+                labels: [team=web]
+              api:
+                extends: java-base
+                depends_on:
+                  db:
+                    condition: service_healthy
+              java-base:
+                <<: *java
+                labels: {tier: backend}
+              debug:
+                image: busybox
+                profiles: [debug]
+                depends_on: [api]
+            include:
+              - infra/compose.yaml
+            """;
+
+    private static final String OVERRIDE = """
+            services:
+              web:
+                image: nginx:1.27
+                labels: [team=edge, public=yes]
+                links: [cache]
+              worker:
+                extends:
+                  file: common/services.yml
+                  service: worker
+            """;
+
+    private static final String INFRA = """
+            services:
+              db:
+                image: postgres:16
+              cache:
+                image: redis:7
+            """;
+
+    private static final String COMMON = """
+            services:
+              worker:
+                extends: java
+                depends_on: [cache]
+                profiles: [jobs]
+              java:
+                image: eclipse-temurin:21
+            """;
+
+    /**
+     * TEST 1: Override Semantics
+     * PURPOSE: Override files, extends (same file and other file) and include must produce the
+     * graph docker compose would, identically with the streaming and the tree parser.
+     */
+    @Test
+    void testOverrideExtendsAndIncludeAreMerged() {
+        for (DockerParserService.Mode mode : DockerParserService.Mode.values()) {
+            ComposeProjectService projects = service(parser(mode));
+            Map<String, ServiceNode> nodes = byId(projects.load(project(), List.of(), List.of("jobs")));
+
+            assertEquals(List.of("db", "cache", "web", "api", "java-base", "worker"), List.copyOf(nodes.keySet()), mode.name());
+            ServiceNode web = nodes.get("web");
+            assertEquals("nginx:1.27", web.getImage());
+            assertEquals(Map.of("team", "edge", "public", "yes"), web.getLabels());
+            assertEquals(List.of("api", "cache"), web.getLinks());
+
+            ServiceNode api = nodes.get("api");
+            assertEquals("eclipse-temurin:21", api.getImage());
+            assertEquals(Map.of("tier", "backend"), api.getLabels());
+            assertEquals(List.of("db"), api.getLinks());
+
+            assertEquals("eclipse-temurin:21", nodes.get("worker").getImage());
+            assertEquals(List.of("cache"), nodes.get("worker").getLinks());
+            assertEquals("DATABASE", nodes.get("db").getType());
+        }
+    }
+
+    /**
+     * TEST 2: Profiles And Discovery
+     * PURPOSE: Services with profiles only appear when a profile is active, links to them are
+     * dropped, and a ZIP wrapped in a top-level directory is found without naming its files.
+     */
+    @Test
+    void testProfilesAndZipDiscovery() throws IOException {
+        ComposeProjectService projects = service(new DockerParserService());
+        List<ComposeSource> zipped = projects.readZip(new ByteArrayInputStream(zip("repo-main/", project())));
+
+        Map<String, ServiceNode> none = byId(projects.load(zipped, null, null));
+        assertFalse(none.containsKey("debug"));
+        assertFalse(none.containsKey("worker"));
+        assertEquals(List.of("api", "cache"), none.get("web").getLinks());
+
+        Map<String, ServiceNode> all = byId(projects.load(zipped, null, List.of("*")));
+        assertTrue(all.containsKey("debug") && all.containsKey("worker"));
+
+        Map<String, ServiceNode> baseOnly = byId(projects.load(project(), List.of("./compose.yaml"), List.of()));
+        assertEquals("nginx:1.25", baseOnly.get("web").getImage());
+        assertFalse(baseOnly.containsKey("worker"));
+    }
+
+    /**
+     * TEST 3: Errors And Memoization
+     * PURPOSE: Broken references, cycles and conflicting includes fail with the file named;
+     * a file shared by several projects is parsed once, even across requests.
+     */
+    @Test
+    void testErrorsAndMemoizedParses() {
+        AtomicInteger parses = new AtomicInteger();
+        DockerParserService counting = new DockerParserService() {
+            @Override
+            ComposeFile parseFile(String yamlContent) {
+                parses.incrementAndGet();
+                return super.parseFile(yamlContent);
+            }
+        };
+        ComposeProjectService projects = service(counting);
+
+        projects.load(project(), List.of(), List.of());
+        int first = parses.get();
+        assertEquals(4, first);
+        List<ComposeSource> other = new ArrayList<>(project());
+        other.set(1, new ComposeSource("compose.override.yaml", "services:\n  web:\n    image: caddy\n"));
+        assertEquals("caddy", byId(projects.load(other, List.of(), List.of())).get("web").getImage());
+        assertEquals(first + 1, parses.get(), "only the changed file is parsed again");
+
+        IllegalArgumentException missing = assertThrows(IllegalArgumentException.class, () -> projects.load(
+                List.of(source("compose.yaml", "include: [nope.yml]\nservices: {}\n")), List.of(), List.of()));
+        assertTrue(missing.getMessage().contains("nope.yml"));
+
+        IllegalArgumentException cycle = assertThrows(IllegalArgumentException.class, () -> projects.load(List.of(
+                source("compose.yaml", "include: [a.yml]\n"),
+                source("a.yml", "include: [compose.yaml]\n")), List.of(), List.of()));
+        assertTrue(cycle.getMessage().contains("cycle"));
+
+        IllegalArgumentException conflict = assertThrows(IllegalArgumentException.class, () -> projects.load(List.of(
+                source("compose.yaml", "include: [a.yml]\nservices:\n  db:\n    image: mysql\n"),
+                source("a.yml", "services:\n  db:\n    image: postgres\n")), List.of(), List.of()));
+        assertTrue(conflict.getMessage().contains("db"));
+
+        IllegalArgumentException invalid = assertThrows(IllegalArgumentException.class, () -> projects.load(List.of(
+                source("compose.yaml", "services: [unclosed\n")), List.of(), List.of()));
+        assertTrue(invalid.getMessage().startsWith("'compose.yaml'"));
+
+        assertThrows(IllegalArgumentException.class, () -> projects.load(List.of(
+                source("compose.yaml", "include: [../outside.yml]\n")), List.of(), List.of()));
+    }
+
+    /**
+     * TEST 4: Variables And Link Aliases
+     * PURPOSE: Images are interpolated from the project's .env file and defaults, never from the
+     * server's environment, and "service:alias" links still link to the service.
+     */
+    @Test
+    void testImageVariablesAndLinkAliases() throws IOException {
+        ComposeProjectService projects = service(new DockerParserService());
+        List<ComposeSource> sources = List.of(
+                source("compose.yaml", """
+                        services:
+                          web:
+                            image: ${REGISTRY:-docker.io}/shop/web:${TAG}
+                            links: ["api:backend", "db:database"]
+                          api:
+                            image: "$${literal}-${MISSING}-${EMPTY:-fallback}-${PATH}"
+                          db:
+                            image: ${DB_IMAGE?set DB_IMAGE}
+                        """),
+                source(".env", """
+                        # release
+                        TAG=1.4.2
+                        export DB_IMAGE="postgres:16"
+                        EMPTY=
+                        """));
+
+        for (List<ComposeSource> project : List.of(sources,
+                projects.readZip(new ByteArrayInputStream(zip("repo/", sources))))) {
+            Map<String, ServiceNode> nodes = byId(projects.load(project, null, null));
+            assertEquals("docker.io/shop/web:1.4.2", nodes.get("web").getImage());
+            assertEquals("${literal}-${MISSING}-fallback-${PATH}", nodes.get("api").getImage());
+            assertEquals("postgres:16", nodes.get("db").getImage());
+            assertEquals(List.of("api", "db"), nodes.get("web").getLinks());
+        }
+
+        Map<String, String> env = Map.of("A", "a", "B", "");
+        assertEquals("a-x-", ComposeProjectService.interpolate("$A-${B:-x}-${B-x}", env));
+        assertEquals("y--${C:?no}-$", ComposeProjectService.interpolate("${A:+y}-${B:+y}-${C:?no}-$", env));
+        assertEquals("${C:-${A}", ComposeProjectService.interpolate("${C:-${A}", env));
+        assertEquals("a", ComposeProjectService.interpolate("${C:-${A}}", env));
+    }
+
+    // --- HELPER METHODS ---
+
+    private static ComposeProjectService service(DockerParserService parser) {
+        return new ComposeProjectService(parser, new SimpleMeterRegistry(), 1000, 1 << 20, 10_000);
+    }
+
+    private static DockerParserService parser(DockerParserService.Mode mode) {
+        return new DockerParserService(ServiceClassifier.withDefaultRules(), PipelineMetrics.noop(), mode, 1 << 20, 50, 100_000);
+    }
+
+    private static List<ComposeSource> project() {
+        return List.of(
+                source("compose.yaml", BASE),
+                source("compose.override.yaml", OVERRIDE),
+                source("infra/compose.yaml", INFRA),
+                source("common/services.yml", COMMON),
+                source("README.yml", "not: [a, compose, file]\n"));
+    }
+
+    private static ComposeSource source(String name, String yaml) {
+        return new ComposeSource(name, yaml);
+    }
+
+    private static Map<String, ServiceNode> byId(List<ServiceNode> nodes) {
+        Map<String, ServiceNode> byId = new LinkedHashMap<>();
+        for (ServiceNode node : nodes) byId.put(node.getId(), node);
+        return byId;
+    }
+
+    private static byte[] zip(String prefix, List<ComposeSource> sources) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry(prefix + "docs/diagram.png"));
+            zip.write(new byte[]{1, 2, 3});
+            zip.closeEntry();
+            for (ComposeSource source : sources) {
+                zip.putNextEntry(new ZipEntry(prefix + source.name()));
+                zip.write(source.yaml().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,146 @@
+package com.repotodeck.service;
+
+import com.repotodeck.model.ServiceNode;
+import org.apache.poi.sl.usermodel.LineDecoration;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xslf.usermodel.XSLFConnectorShape;
+import org.apache.poi.xslf.usermodel.XSLFShape;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectorRouterTest {
+
+    /**
+     * TEST 1: Obstacle Avoidance
+     * PURPOSE: On both layout engines every routed connector runs from the border of its source
+     * to the border of its target in horizontal and vertical segments, and crosses no other box.
+     */
+    @Test
+    void testRoutesGoAroundBoxes() {
+        List<ServiceNode> nodes = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            nodes.add(node("svc-" + i, i % 7 == 0 ? "postgres" : "java:21",
+                    "svc-" + (i * 13 % 60), "svc-" + (i * 29 % 60), "svc-" + ((i + 1) % 60)));
+        }
+        for (PptGeneratorService.LayoutMode mode : PptGeneratorService.LayoutMode.values()) {
+            PptGeneratorService generator = new PptGeneratorService(ServiceClassifier.withDefaultRules(),
+                    PipelineMetrics.noop(), mode, 1_000, 20_000, 1_000, PptGeneratorService.Renderer.POI);
+            SlideLayout layout = generator.layout(nodes);
+            assertFalse(layout.connectors().isEmpty());
+
+            for (SlideLayout.Connector c : layout.connectors()) {
+                double[] path = c.path();
+                Rectangle2D.Double from = layout.positions().get(c.from());
+                Rectangle2D.Double to = layout.positions().get(c.to());
+                assertTrue(onBorder(from, path[0], path[1]), mode + " " + c.from() + " start");
+                assertTrue(onBorder(to, path[path.length - 2], path[path.length - 1]), mode + " " + c.to() + " end");
+                for (int i = 2; i < path.length; i += 2) {
+                    assertTrue(path[i] == path[i - 2] || path[i + 1] == path[i - 1], "segment is not orthogonal");
+                    Line2D.Double segment = new Line2D.Double(path[i - 2], path[i - 1], path[i], path[i + 1]);
+                    for (Map.Entry<String, Rectangle2D.Double> box : layout.positions().entrySet()) {
+                        if (box.getKey().equals(c.from()) || box.getKey().equals(c.to())) continue;
+                        assertFalse(box.getValue().intersectsLine(segment),
+                                mode + " " + c.from() + "→" + c.to() + " crosses " + box.getKey());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * TEST 2: Links and Arrowheads
+     * PURPOSE: Self links, repeated links and links to unplaced services get no connector; a
+     * pair linking each other gets one connector with an arrowhead at both ends.
+     */
+    @Test
+    void testLinksAreMergedIntoTwoWayConnectors() throws Exception {
+        List<ServiceNode> nodes = List.of(
+                node("web", "nginx", "api", "api", "web", "missing"),
+                node("api", "java:21", "web", "db"),
+                node("db", "postgres"));
+        PptGeneratorService generator = new PptGeneratorService();
+        List<ConnectorRouter.Link> links = ConnectorRouter.links(generator.graph(nodes));
+        assertEquals(List.of(new ConnectorRouter.Link(0, 1, true), new ConnectorRouter.Link(1, 2, false)), links);
+
+        try (XMLSlideShow pptx = new XMLSlideShow(new ByteArrayInputStream(generator.generateSlide(nodes)))) {
+            Map<String, XSLFConnectorShape> connectors = new HashMap<>();
+            for (XSLFShape shape : pptx.getSlides().get(0).getShapes()) {
+                if (shape instanceof XSLFConnectorShape c) connectors.put(c.getShapeName(), c);
+            }
+            assertEquals(Set.of("edge:web↔api", "edge:api→db"), connectors.keySet());
+            XSLFConnectorShape twoWay = connectors.get("edge:web↔api");
+            assertEquals(LineDecoration.DecorationShape.TRIANGLE, twoWay.getLineHeadDecoration());
+            assertEquals(LineDecoration.DecorationShape.TRIANGLE, twoWay.getLineTailDecoration());
+            XSLFConnectorShape oneWay = connectors.get("edge:api→db");
+            assertEquals(LineDecoration.DecorationShape.NONE, oneWay.getLineHeadDecoration());
+            assertEquals(LineDecoration.DecorationShape.TRIANGLE, oneWay.getLineTailDecoration());
+        }
+    }
+
+    /**
+     * TEST 3: Routing Budget
+     * PURPOSE: 10k links are routed within the per-request budget; once the budget is spent the
+     * remaining links still get a (straight) connector, so nothing is ever missing.
+     */
+    @Test
+    void testRoutingBudgetBoundsLargeGraphs() {
+        List<ServiceNode> nodes = new ArrayList<>();
+        int n = 2_500;
+        for (int i = 0; i < n; i++) {
+            nodes.add(node("svc-" + i, "java:21", "svc-" + ((i + 1) % n), "svc-" + ((i * 7 + 3) % n),
+                    "svc-" + ((i * 31 + 11) % n), "svc-" + ((i + n / 2 + 5) % n)));
+        }
+
+        SlideLayout routed = generator(1_000).layout(nodes);
+        assertTrue(routed.connectors().size() >= 9_000, "expected ~10k connectors");
+        long routedLinks = routed.connectors().stream().filter(c -> isOrthogonal(c.path())).count();
+        assertEquals(routed.connectors().size(), routedLinks, "everything is routed with a generous budget");
+
+        SlideLayout unrouted = generator(0).layout(nodes);
+        assertEquals(routed.connectors().size(), unrouted.connectors().size());
+        for (SlideLayout.Connector c : unrouted.connectors()) {
+            assertEquals(4, c.path().length, "straight connectors once the budget is spent");
+        }
+    }
+
+    // --- HELPER METHODS ---
+
+    private static PptGeneratorService generator(long routingBudgetMs) {
+        return new PptGeneratorService(ServiceClassifier.withDefaultRules(), PipelineMetrics.noop(),
+                PptGeneratorService.LayoutMode.TIERED, 250, 20_000, routingBudgetMs, PptGeneratorService.Renderer.POI);
+    }
+
+    private static boolean onBorder(Rectangle2D.Double box, double x, double y) {
+        double e = 1e-6;
+        boolean inX = x >= box.getMinX() - e && x <= box.getMaxX() + e;
+        boolean inY = y >= box.getMinY() - e && y <= box.getMaxY() + e;
+        return inX && inY && (Math.abs(x - box.getMinX()) < e || Math.abs(x - box.getMaxX()) < e
+                || Math.abs(y - box.getMinY()) < e || Math.abs(y - box.getMaxY()) < e);
+    }
+
+    private static boolean isOrthogonal(double[] path) {
+        for (int i = 2; i < path.length; i += 2) {
+            if (path[i] != path[i - 2] && path[i + 1] != path[i - 1]) return false;
+        }
+        return true;
+    }
+
+    private static ServiceNode node(String id, String image, String... links) {
+        ServiceNode node = new ServiceNode();
+        node.setId(id);
+        node.setImage(image);
+        if (image.contains("postgres")) node.setType("DATABASE");
+        node.getLinks().addAll(List.of(links));
+        return node;
+    }
+}
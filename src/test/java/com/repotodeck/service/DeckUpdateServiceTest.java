@@ -0,0 +1,206 @@
+package com.repotodeck.service;
+
+import com.repotodeck.model.ServiceNode;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xslf.usermodel.XSLFShape;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeckUpdateServiceTest {
+
+    private static final Pattern SHAPE = Pattern.compile("<p:sp>.*?</p:sp>|<p:cxnSp>.*?</p:cxnSp>", Pattern.DOTALL);
+    private static final Pattern NAME = Pattern.compile("name=\"([^\"]*)\"");
+    private static final Pattern OFF = Pattern.compile("<a:off [^>]*>");
+
+    private final PptGeneratorService generator = new PptGeneratorService();
+    private final DeckUpdateService updater = new DeckUpdateService(generator, PipelineMetrics.noop(), 64 << 20, 0.5);
+
+    /**
+     * TEST 1: One-Line Change
+     * PURPOSE: Changing one image must re-stamp only that service's shapes; every other shape is
+     * copied verbatim and the result is still a valid deck, compressed in reusable chunks.
+     */
+    @Test
+    void testImageChangePatchesOnlyThatService() throws IOException {
+        List<ServiceNode> before = chain(30);
+        byte[] previous = generator.generateSlide(before);
+
+        List<ServiceNode> after = chain(30);
+        after.get(5).setImage("java:21");
+        DeckUpdateService.Plan plan = updater.plan(previous, after, true);
+
+        assertTrue(plan.patchable(), plan.reason());
+        assertEquals(List.of("svc-5"), plan.diff().changed());
+        assertTrue(plan.diff().added().isEmpty() && plan.diff().removed().isEmpty());
+
+        byte[] patched = write(plan);
+        Map<String, String> oldShapes = shapes(previous);
+        Map<String, String> newShapes = shapes(patched);
+        assertEquals(oldShapes.keySet(), newShapes.keySet());
+        for (Map.Entry<String, String> shape : oldShapes.entrySet()) {
+            if (shape.getKey().endsWith(":svc-5")) continue;
+            assertEquals(shape.getValue(), newShapes.get(shape.getKey()), shape.getKey());
+        }
+        assertTrue(newShapes.get("node:svc-5").contains("java:21"));
+        assertOff(oldShapes, newShapes, "node:svc-5");
+        assertValidDeck(patched);
+        assertTrue(chunked(previous) && chunked(patched), "slide must stay reusable for the next patch");
+    }
+
+    /**
+     * TEST 2: Added / Removed Services
+     * PURPOSE: Added services are placed without moving anyone else and ringed; removed ones stay
+     * as ringed ghosts. Updating the patched deck again with no changes drops the markers.
+     */
+    @Test
+    void testAddedAndRemovedServicesAreHighlighted() throws IOException {
+        byte[] previous = generator.generateSlide(chain(12));
+
+        List<ServiceNode> after = chain(12);
+        after.removeIf(n -> n.getId().equals("svc-11"));
+        after.add(node("billing", "java:17", "svc-0"));
+        DeckUpdateService.Plan plan = updater.plan(previous, after, true);
+
+        assertTrue(plan.patchable(), plan.reason());
+        assertEquals(List.of("billing"), plan.diff().added());
+        assertEquals(List.of("svc-11"), plan.diff().removed());
+        assertEquals(1, plan.diff().linksAdded());
+        assertEquals(1, plan.diff().linksRemoved()); // svc-10 -> svc-11
+
+        byte[] patched = write(plan);
+        Map<String, String> oldShapes = shapes(previous);
+        Map<String, String> newShapes = shapes(patched);
+        assertTrue(newShapes.containsKey("added:billing"));
+        assertTrue(newShapes.containsKey("edge:billing→svc-0"));
+        assertTrue(newShapes.containsKey("removed:svc-11"));
+        assertTrue(newShapes.containsKey("node:svc-11"), "removed service is kept as a ghost");
+        assertFalse(newShapes.containsKey("edge:svc-10→svc-11"));
+        for (int i = 0; i < 11; i++) {
+            assertEquals(oldShapes.get("node:svc-" + i), newShapes.get("node:svc-" + i));
+        }
+        assertValidDeck(patched);
+
+        DeckUpdateService.Plan again = updater.plan(patched, after, true);
+        assertTrue(again.patchable(), again.reason());
+        assertTrue(again.diff().isEmpty(), again.diff().summary());
+        Map<String, String> settled = shapes(write(again));
+        assertFalse(settled.containsKey("added:billing"));
+        assertFalse(settled.containsKey("removed:svc-11"));
+        assertFalse(settled.containsKey("node:svc-11"));
+        assertEquals(newShapes.get("node:billing"), settled.get("node:billing"));
+    }
+
+    /**
+     * TEST 3: Unpatchable Input
+     * PURPOSE: Decks we can't read back, or changes too big to patch, must be reported so the
+     * caller renders from scratch; bytes that aren't a deck at all are rejected.
+     */
+    @Test
+    void testUnpatchableDecksAreReported() throws IOException {
+        byte[] foreign;
+        try (XMLSlideShow pptx = new XMLSlideShow(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            pptx.createSlide().createAutoShape();
+            pptx.write(out);
+            foreign = out.toByteArray();
+        }
+        assertFalse(updater.plan(foreign, chain(3), true).patchable());
+
+        List<ServiceNode> renamed = new ArrayList<>();
+        for (int i = 0; i < 10; i++) renamed.add(node("other-" + i, "java:17"));
+        DeckUpdateService.Plan plan = updater.plan(generator.generateSlide(chain(10)), renamed, true);
+        assertFalse(plan.patchable());
+        assertEquals(10, plan.diff().added().size());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> updater.plan("not a deck".getBytes(StandardCharsets.UTF_8), chain(3), true));
+    }
+
+    // --- HELPER METHODS ---
+
+    private byte[] write(DeckUpdateService.Plan plan) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        updater.write(plan, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * svc-0 -> svc-1 -> ... with a frontend at the head and a database at the tail.
+     */
+    private List<ServiceNode> chain(int size) {
+        List<ServiceNode> nodes = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            String image = i == 0 ? "nginx" : i == size - 1 ? "postgres" : "java:17";
+            nodes.add(node("svc-" + i, image, i + 1 < size ? "svc-" + (i + 1) : null));
+        }
+        return nodes;
+    }
+
+    private ServiceNode node(String id, String image, String... links) {
+        ServiceNode node = new ServiceNode();
+        node.setId(id);
+        node.setImage(image);
+        if (image.contains("postgres")) node.setType("DATABASE");
+        for (String link : links) {
+            if (link != null) node.getLinks().add(link);
+        }
+        return node;
+    }
+
+    private Map<String, String> shapes(byte[] deck) throws IOException {
+        String slide = null;
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(deck))) {
+            for (ZipEntry e; (e = zip.getNextEntry()) != null; ) {
+                if (e.getName().equals("ppt/slides/slide1.xml")) slide = new String(zip.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
+        assertNotNull(slide);
+        Map<String, String> shapes = new LinkedHashMap<>();
+        Matcher m = SHAPE.matcher(slide);
+        while (m.find()) {
+            Matcher name = NAME.matcher(m.group());
+            assertTrue(name.find());
+            assertNull(shapes.put(name.group(1), m.group()), "duplicate shape " + name.group(1));
+        }
+        return shapes;
+    }
+
+    private boolean chunked(byte[] deck) {
+        for (DeckZip.Entry entry : DeckZip.read(deck)) {
+            if (entry.name().equals("ppt/slides/slide1.xml")) return DeckZip.inflate(entry, 64 << 20).chunked();
+        }
+        return false;
+    }
+
+    private void assertOff(Map<String, String> expected, Map<String, String> actual, String shape) {
+        Matcher before = OFF.matcher(expected.get(shape));
+        Matcher after = OFF.matcher(actual.get(shape));
+        assertTrue(before.find() && after.find());
+        assertEquals(before.group(), after.group(), shape + " moved");
+    }
+
+    private void assertValidDeck(byte[] deck) throws IOException {
+        try (XMLSlideShow pptx = new XMLSlideShow(new ByteArrayInputStream(deck))) {
+            assertEquals(1, pptx.getSlides().size());
+            Set<Integer> ids = new HashSet<>();
+            for (XSLFShape shape : pptx.getSlides().get(0).getShapes()) {
+                assertTrue(ids.add(shape.getShapeId()), "duplicate shape id " + shape.getShapeId());
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.repotodeck.service;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import javax.imageio.ImageIO;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiagramExportServiceTest {
+
+    private final PptGeneratorService pptGeneratorService = new PptGeneratorService();
+    private final DiagramExportService exportService = new DiagramExportService(pptGeneratorService);
+
+    /**
+     * TEST 1: Streaming SVG
+     * PURPOSE: The SVG is well-formed XML sized like the slide, with one connector per link, a
+     * box or disk plus shadow per service and labels escaped as character data.
+     */
+    @Test
+    void testSvgMatchesLayout() throws Exception {
+        ServiceGraph graph = graph();
+        SlideLayout layout = pptGeneratorService.layout(graph);
+
+        Document svg = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(write(graph, DiagramFormat.SVG)));
+
+        assertEquals("svg", svg.getDocumentElement().getTagName());
+        assertEquals(DiagramStyle.decimal(layout.width()), svg.getDocumentElement().getAttribute("width"));
+        assertEquals(layout.connectors().size(), svg.getElementsByTagName("polyline").getLength());
+        // Background, then shadow and box of both plain services; the database is drawn as paths
+        assertEquals(1 + 2 * 2, svg.getElementsByTagName("rect").getLength());
+        assertEquals(1 + 2, svg.getElementsByTagName("path").getLength(), "arrow marker, then the disk's shadow and body");
+
+        List<String> labels = new ArrayList<>();
+        NodeList texts = svg.getElementsByTagName("text");
+        for (int i = 0; i < texts.getLength(); i++) labels.add(texts.item(i).getTextContent());
+        assertTrue(labels.contains("web<&>"), "ids are escaped, not dropped: " + labels);
+        assertTrue(labels.contains("postgres:16"), "image lines lose their leading line break: " + labels);
+    }
+
+    /**
+     * TEST 2: PNG Raster
+     * PURPOSE: The PNG decodes to the page size, with the background outside the boxes and each
+     * node's tier fill inside them.
+     */
+    @Test
+    void testPngPaintsNodes() throws Exception {
+        ServiceGraph graph = graph();
+        SlideLayout layout = pptGeneratorService.layout(graph);
+
+        BufferedImage png = ImageIO.read(new ByteArrayInputStream(write(graph, DiagramFormat.PNG)));
+
+        assertEquals((int) Math.floor(layout.width()), png.getWidth());
+        assertEquals((int) Math.floor(layout.height()), png.getHeight());
+        assertEquals(DiagramStyle.COLOR_BG.getRGB(), png.getRGB(2, 2));
+        for (SlideLayout.RenderNode node : layout.renderNodes()) {
+            Rectangle2D.Double box = node.box();
+            // Low in the box: below the labels and inside the disk's body
+            int x = (int) (box.x + box.width * 0.15);
+            int y = (int) (box.y + box.height * 0.75);
+            assertEquals(node.style().fill().getRGB(), png.getRGB(x, y), "fill of " + node.id());
+        }
+    }
+
+    /**
+     * TEST 3: PDF Structure
+     * PURPOSE: The hand-written PDF has a cross-reference table whose offsets point at their
+     * objects, a MediaBox matching the slide and a content stream that inflates to the drawing.
+     */
+    @Test
+    void testPdfIsWellFormed() throws Exception {
+        ServiceGraph graph = graph();
+        SlideLayout layout = pptGeneratorService.layout(graph);
+        byte[] pdf = write(graph, DiagramFormat.PDF);
+        String text = new String(pdf, StandardCharsets.ISO_8859_1);
+
+        assertTrue(text.startsWith("%PDF-1.4"));
+        assertTrue(text.endsWith("%%EOF\n"));
+        int xref = Integer.parseInt(text.substring(text.lastIndexOf("startxref\n") + 10, text.lastIndexOf("\n%%EOF")));
+        assertTrue(text.startsWith("xref\n", xref));
+
+        Matcher entry = Pattern.compile("(\\d{10}) 00000 n ").matcher(text.substring(xref));
+        int object = 1;
+        while (entry.find()) {
+            int offset = Integer.parseInt(entry.group(1));
+            assertTrue(text.startsWith(object + " 0 obj\n", offset), "offset of object " + object);
+            object++;
+        }
+        assertEquals(10, object);
+        assertTrue(text.contains("/MediaBox [0 0 " + DiagramStyle.decimal(layout.width()) + " "
+                + DiagramStyle.decimal(layout.height()) + "]"));
+
+        String content = inflate(pdf, text);
+        assertTrue(content.contains("(web<&>) Tj"));
+        assertTrue(content.contains("(postgres:16) Tj"));
+        assertEquals(layout.connectors().size(), count(content, " w\n") - layout.renderNodes().size() * 2);
+    }
+
+    /**
+     * TEST 4: Accept Negotiation
+     * PURPOSE: Formats are picked by quality and specificity, wildcards and a missing header
+     * mean the deck, and a header naming none of the formats yields null.
+     */
+    @Test
+    void testFormatForAccept() {
+        assertEquals(DiagramFormat.PPTX, DiagramFormat.forAccept(null));
+        assertEquals(DiagramFormat.PPTX, DiagramFormat.forAccept("*/*"));
+        assertEquals(DiagramFormat.SVG, DiagramFormat.forAccept("image/svg+xml"));
+        assertEquals(DiagramFormat.SVG, DiagramFormat.forAccept("image/*"), "ties go to the earlier format");
+        assertEquals(DiagramFormat.PDF, DiagramFormat.forAccept("image/png;q=0.5, application/pdf"));
+        assertEquals(DiagramFormat.PNG, DiagramFormat.forAccept("image/*, image/svg+xml;q=0"));
+        assertEquals(DiagramFormat.PNG, DiagramFormat.forAccept("text/html, image/png, */*;q=0.8"));
+        assertNull(DiagramFormat.forAccept("application/json"));
+    }
+
+    // --- HELPER METHODS ---
+
+    /**
+     * web -> api -> db, with an id that needs escaping in every format.
+     */
+    private ServiceGraph graph() {
+        return new ServiceGraph.Builder()
+                .add("web<&>", "nginx:latest", 0, NodeStyle.FRONTEND, List.of("api"))
+                .add("api", "eclipse-temurin:21", 1, NodeStyle.SERVICE, List.of("db"))
+                .add("db", "postgres:16", 2, NodeStyle.DATABASE, null)
+                .build();
+    }
+
+    private byte[] write(ServiceGraph graph, DiagramFormat format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = exportService.write(graph, format, out);
+        assertEquals(out.size(), written);
+        return out.toByteArray();
+    }
+
+    private static String inflate(byte[] pdf, String text) throws Exception {
+        int start = text.indexOf("stream\n") + 7;
+        int end = text.indexOf("\nendstream");
+        Inflater inflater = new Inflater();
+        inflater.setInput(pdf, start, end - start);
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        while (!inflater.finished()) {
+            int n = inflater.inflate(buffer);
+            if (n == 0 && inflater.needsInput()) break;
+            content.write(buffer, 0, n);
+        }
+        inflater.end();
+        return content.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    private static int count(String text, String token) {
+        int count = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + 1)) count++;
+        return count;
+    }
+}
@@ -0,0 +1,221 @@
+package com.repotodeck.service;
+
+import com.repotodeck.model.ServiceNode;
+import com.repotodeck.model.ServiceTier;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DockerParserServiceTest {
+
+    private static final String COMPOSE = """
+            version: '3.8'
+            x-defaults: &defaults
+              image: eclipse-temurin:21
+              depends_on: [cache]
+              environment:
+                - LOG_LEVEL=info
+            services:
+              web:
+                image: nginx:latest
+                depends_on:
+                  api:
+                    condition: service_healthy
+                links: [api]
+                labels: [com.example.team=web, repotodeck.tier=frontend]
+                environment: &env
+                  JAVA_OPTS: "-Xmx1g"
+                  NESTED: { a: [1, 2, 3] }
+              api:
+                <<: *defaults
+                depends_on: [db, cache]
+                environment: *env
+              worker:
+                <<: *defaults
+              db:
+                image: postgres:16
+                labels:
+                  com.example.backup: "daily"
+              cache:
+                image: redis:7
+              broken: just-a-string
+            volumes:
+              data: {}
+            """;
+
+    private final DockerParserService streaming = new DockerParserService();
+    private final DockerParserService tree =
+            new DockerParserService(ServiceClassifier.withDefaultRules(), PipelineMetrics.noop(), DockerParserService.Mode.TREE, 10 * 1024 * 1024, 50, 100_000);
+
+    /**
+     * TEST 1: Mode Equivalence
+     * PURPOSE: The streaming parser must produce exactly what the full tree load produces,
+     * including merge keys, aliases, map-style depends_on and both label syntaxes.
+     */
+    @Test
+    void testStreamingMatchesTreeParser() {
+        List<ServiceNode> expected = tree.parse(COMPOSE);
+        List<ServiceNode> actual = streaming.parse(COMPOSE);
+
+        assertEquals(expected, actual);
+        assertEquals(5, actual.size());
+
+        ServiceNode api = actual.get(1);
+        assertEquals("eclipse-temurin:21", api.getImage());
+        assertEquals(List.of("cache", "db"), api.getLinks());
+
+        ServiceNode worker = actual.get(2);
+        assertEquals(List.of("cache"), worker.getLinks());
+        assertEquals("DATABASE", actual.get(3).getType());
+        assertEquals("frontend", actual.get(0).getLabels().get("repotodeck.tier"));
+        assertEquals("daily", actual.get(3).getLabels().get("com.example.backup"));
+    }
+
+    /**
+     * TEST 2: Billion Laughs
+     * PURPOSE: An exponential alias bomb must not be expanded. The streaming parser charges each
+     * alias its expanded size and gives up in linear time; the tree parser is stopped by
+     * SnakeYAML's alias limit.
+     */
+    @Test
+    void testAliasBombIsNotExpanded() {
+        StringBuilder yaml = new StringBuilder("a0: &a0 [\"lol\",\"lol\",\"lol\",\"lol\",\"lol\",\"lol\",\"lol\",\"lol\",\"lol\"]\n");
+        for (int i = 1; i <= 9; i++) {
+            yaml.append("a").append(i).append(": &a").append(i).append(" [");
+            for (int j = 0; j < 9; j++) {
+                yaml.append(j == 0 ? "" : ",").append("*a").append(i - 1);
+            }
+            yaml.append("]\n");
+        }
+        yaml.append("services:\n  web:\n    image: nginx\n    depends_on: *a9\n");
+
+        RuntimeException e = assertTimeoutPreemptively(java.time.Duration.ofSeconds(5),
+                () -> assertThrows(RuntimeException.class, () -> streaming.parse(yaml.toString())));
+        assertTrue(e.getMessage().contains("alias"));
+
+        assertThrows(RuntimeException.class, () -> tree.parse(yaml.toString()));
+    }
+
+    /**
+     * TEST 3: Limits
+     * PURPOSE: Oversized documents and excessive alias use are rejected up front.
+     */
+    @Test
+    void testLimitsAreEnforced() {
+        DockerParserService small = new DockerParserService(ServiceClassifier.withDefaultRules(), PipelineMetrics.noop(), DockerParserService.Mode.STREAMING, 64, 50, 3);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> small.parse("services:\n  web:\n    image: " + "x".repeat(100) + "\n"));
+
+        String manyAliases = "x: &img nginx\nservices:\n"
+                + "  a:\n    image: *img\n  b:\n    image: *img\n  c:\n    image: *img\n  d:\n    image: *img\n";
+        DockerParserService tight = new DockerParserService(ServiceClassifier.withDefaultRules(), PipelineMetrics.noop(), DockerParserService.Mode.STREAMING, 1024, 50, 3);
+        RuntimeException e = assertThrows(RuntimeException.class, () -> tight.parse(manyAliases));
+        assertTrue(e.getMessage().contains("alias"));
+    }
+
+    /**
+     * TEST 4: Metrics
+     * PURPOSE: Every parse is timed and sized, and services with unusable definitions are
+     * counted in both modes instead of being printed to stderr.
+     */
+    @Test
+    void testParseIsMetered() {
+        for (DockerParserService.Mode mode : DockerParserService.Mode.values()) {
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            DockerParserService parser = new DockerParserService(ServiceClassifier.withDefaultRules(),
+                    new PipelineMetrics(registry), mode, 10 * 1024 * 1024, 50, 100_000);
+
+            parser.parse(COMPOSE);
+
+            assertEquals(1, registry.get("repotodeck.pipeline.stage").tag("stage", "parse").timer().count(), mode.name());
+            assertEquals(COMPOSE.length(), registry.get("repotodeck.pipeline.input").summary().totalAmount(), mode.name());
+            assertEquals(1.0, registry.get("repotodeck.parser.malformed").counter().count(), mode.name());
+        }
+    }
+
+    /**
+     * TEST 5: One Classification Per Service
+     * PURPOSE: Building the graph classifies every service once in both modes, and the graphs
+     * agree on tiers and styles.
+     */
+    @Test
+    void testGraphClassifiesEachServiceOnce() {
+        ServiceGraph expected = streaming.parseGraph(COMPOSE);
+        for (DockerParserService.Mode mode : DockerParserService.Mode.values()) {
+            AtomicInteger calls = new AtomicInteger();
+            ServiceClassifier counting = new ServiceClassifier(new DefaultResourceLoader(), "classpath:classification-rules.yml") {
+                @Override
+                public ServiceTier classify(String id, String image, Map<String, String> labels) {
+                    calls.incrementAndGet();
+                    return super.classify(id, image, labels);
+                }
+            };
+            DockerParserService parser = new DockerParserService(counting, PipelineMetrics.noop(), mode,
+                    10 * 1024 * 1024, 50, 100_000);
+
+            ServiceGraph graph = parser.parseGraph(COMPOSE);
+
+            assertEquals(graph.size(), calls.get(), mode.name());
+            for (int u = 0; u < graph.size(); u++) {
+                assertEquals(expected.tier(u), graph.tier(u), mode + " " + graph.id(u));
+                assertEquals(expected.style(u), graph.style(u), mode + " " + graph.id(u));
+            }
+        }
+        assertEquals(NodeStyle.DATABASE, expected.style(expected.indexOf("db")));
+    }
+
+    /**
+     * TEST 6: Nested Alias Bomb In A Scalar Field
+     * PURPOSE: A small document whose image aliases a nested bomb is rejected by every entry
+     * point in both modes instead of being stringified, and a service whose image or label value
+     * is a plain collection is skipped as malformed.
+     */
+    @Test
+    void testNestedAliasBombIsRejected() {
+        String bomb = """
+                a: &a ["lol","lol","lol","lol","lol","lol","lol","lol","lol"]
+                b: &b [*a,*a,*a,*a,*a,*a,*a,*a,*a]
+                c: &c [*b,*b,*b,*b,*b,*b,*b,*b,*b]
+                d: &d [*c,*c,*c,*c,*c,*c,*c,*c,*c]
+                e: &e [*d,*d,*d,*d,*d,*d,*d,*d,*d]
+                f: &f [*e,*e,*e,*e,*e,*e,*e,*e,*e]
+                g: &g [*f,*f,*f,*f,*f,*f,*f,*f,*f]
+                h: &h [*g,*g,*g,*g,*g,*g,*g,*g,*g]
+                i: &i [*h,*h,*h,*h,*h,*h,*h,*h,*h]
+                services:
+                  web:
+                    image: *i
+                """;
+        for (DockerParserService parser : List.of(streaming, tree)) {
+            assertTimeoutPreemptively(java.time.Duration.ofSeconds(5), () -> {
+                assertThrows(RuntimeException.class, () -> parser.parse(bomb));
+                assertThrows(RuntimeException.class, () -> parser.parseGraph(bomb));
+                assertThrows(RuntimeException.class, () -> parser.parseFile(bomb));
+            });
+        }
+
+        String collections = """
+                services:
+                  web:
+                    image: [nginx]
+                  api:
+                    image: api:1
+                    labels:
+                      team: { name: core }
+                  db:
+                    image: postgres:16
+                """;
+        for (DockerParserService parser : List.of(streaming, tree)) {
+            assertEquals(List.of("db"), parser.parse(collections).stream().map(ServiceNode::getId).toList());
+            assertEquals(1, parser.parseGraph(collections).size());
+            assertEquals(List.of("db"), List.copyOf(parser.parseFile(collections).services().keySet()));
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.repotodeck.service;
+
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xslf.usermodel.XSLFShape;
+import org.apache.poi.xslf.usermodel.XSLFSlide;
+import org.apache.poi.xslf.usermodel.XSLFTextParagraph;
+import org.apache.poi.xslf.usermodel.XSLFTextRun;
+import org.apache.poi.xslf.usermodel.XSLFTextShape;
+import org.junit.jupiter.api.Test;
+import org.openxmlformats.schemas.drawingml.x2006.main.CTHyperlink;
+import org.openxmlformats.schemas.presentationml.x2006.main.CTShape;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaginatedDeckServiceTest {
+
+    private static final int MAX_SHAPES = 40;
+
+    private final PaginatedDeckService paginated = new PaginatedDeckService(new PptGeneratorService(),
+            PaginatedDeckService.Clustering.COMPONENTS, MAX_SHAPES, 3, 0);
+
+    /**
+     * TEST 1: Overview And Drill-Down
+     * PURPOSE: One slide per connected component behind an overview whose boxes jump to them;
+     * services of tiny components share an "Other services" slide.
+     */
+    @Test
+    void testOverviewLinksToClusterSlides() throws IOException {
+        ServiceGraph.Builder builder = new ServiceGraph.Builder();
+        builder.add("gateway", "nginx", 0, NodeStyle.FRONTEND, List.of("a1", "a2", "a3", "a4", "a5"));
+        for (int i = 1; i <= 5; i++) builder.add("a" + i, "java", 1, NodeStyle.SERVICE, List.of());
+        builder.add("db", "postgres", 2, NodeStyle.DATABASE, List.of());
+        for (int i = 1; i <= 4; i++) builder.add("b" + i, "java", 1, NodeStyle.SERVICE, List.of("db"));
+        builder.add("x", "busybox", 1, NodeStyle.SERVICE, List.of());
+        builder.add("y", "busybox", 1, NodeStyle.SERVICE, List.of());
+
+        try (XMLSlideShow pptx = render(builder.build())) {
+            List<XSLFSlide> slides = pptx.getSlides();
+            assertEquals(4, slides.size());
+            assertTrue(title(slides.get(0)).startsWith(PaginatedDeckService.OVERVIEW_TITLE), title(slides.get(0)));
+            assertEquals(List.of("gateway", "db", ClusterPartitioner.OTHER),
+                    List.of(title(slides.get(1)), title(slides.get(2)), title(slides.get(3))));
+            assertEquals(List.of("x", "y"), nodes(slides.get(3)).stream().sorted().toList());
+
+            for (int p = 1; p <= 3; p++) {
+                XSLFShape box = shape(slides.get(0), ShapeNames.node(title(slides.get(p))));
+                CTHyperlink link = ((CTShape) box.getXmlObject()).getNvSpPr().getCNvPr().getHlinkClick();
+                assertSlideJump(slides.get(0), link, slides.get(p));
+                assertSlideJump(slides.get(p), navigation(slides.get(p)).get(0).getHyperlink().getXmlObject(), slides.get(0));
+            }
+        }
+    }
+
+    /**
+     * TEST 2: Shape Cap
+     * PURPOSE: A cluster too big for one slide is split into parts that stay under the cap, keep
+     * every service exactly once and link to their neighbouring parts.
+     */
+    @Test
+    void testLargeClusterIsSplitUnderTheCap() throws IOException {
+        ServiceGraph.Builder builder = new ServiceGraph.Builder();
+        for (int i = 0; i < 30; i++) {
+            builder.add("s" + i, "java", 1, NodeStyle.SERVICE, i < 29 ? List.of("s" + (i + 1)) : List.of());
+        }
+
+        try (XMLSlideShow pptx = render(builder.build())) {
+            List<XSLFSlide> slides = pptx.getSlides();
+            assertTrue(slides.size() > 2, "expected several parts, got " + slides.size());
+
+            List<String> services = new ArrayList<>();
+            for (XSLFSlide slide : slides) {
+                assertTrue(slide.getShapes().size() <= MAX_SHAPES, title(slide) + ": " + slide.getShapes().size());
+                if (slide != slides.get(0)) services.addAll(nodes(slide));
+            }
+            assertEquals(30, services.size());
+            assertEquals(30, services.stream().distinct().count());
+
+            // Middle parts of a chain link to the part before and the part after
+            List<XSLFTextRun> middle = navigation(slides.get(2));
+            assertTrue(middle.stream().anyMatch(run -> run.getRawText().equals(title(slides.get(1)))));
+            assertTrue(middle.stream().anyMatch(run -> run.getRawText().equals(title(slides.get(3)))));
+        }
+    }
+
+    /**
+     * TEST 3: Name Prefixes
+     * PURPOSE: PREFIX clustering groups services by the id before the first separator.
+     */
+    @Test
+    void testPrefixClustering() {
+        ServiceGraph.Builder builder = new ServiceGraph.Builder();
+        for (String id : List.of("billing-api", "shop.web", "billing-db", "admin", "shop.cart", "billing_worker", "shop.db")) {
+            builder.add(id, null, 1, NodeStyle.SERVICE, List.of());
+        }
+        ServiceGraph graph = builder.build();
+
+        ClusterPartitioner.Partition partition = ClusterPartitioner.partition(
+                graph, PaginatedDeckService.Clustering.PREFIX, MAX_SHAPES, 3);
+
+        List<String> names = partition.pages().stream().map(ClusterPartitioner.Page::name).toList();
+        assertEquals(List.of("billing", "shop", ClusterPartitioner.OTHER), names);
+        assertEquals(0, partition.pageOf()[graph.indexOf("billing_worker")]);
+        assertEquals(2, partition.pageOf()[graph.indexOf("admin")]);
+    }
+
+    /**
+     * TEST 4: Nothing To Split
+     * PURPOSE: A graph that fits on one slide keeps the single-slide deck, and pagination is
+     * only automatic above the configured size.
+     */
+    @Test
+    void testSmallGraphStaysOnOneSlide() throws IOException {
+        ServiceGraph graph = new ServiceGraph.Builder()
+                .add("web", "nginx", 0, NodeStyle.FRONTEND, List.of("api"))
+                .add("api", "java", 1, NodeStyle.SERVICE, List.of("db"))
+                .add("db", "postgres", 2, NodeStyle.DATABASE, List.of())
+                .build();
+
+        try (XMLSlideShow pptx = render(graph)) {
+            assertEquals(1, pptx.getSlides().size());
+        }
+
+        PaginatedDeckService auto = new PaginatedDeckService(new PptGeneratorService(),
+                PaginatedDeckService.Clustering.COMPONENTS, MAX_SHAPES, 3, 100);
+        assertFalse(auto.paginates(null, new RenderCost(99, 0, 0)));
+        assertTrue(auto.paginates(null, new RenderCost(100, 0, 0)));
+        assertFalse(auto.paginates(false, new RenderCost(100, 0, 0)));
+        assertFalse(paginated.paginates(null, new RenderCost(1_000_000, 0, 0)));
+    }
+
+    /**
+     * TEST 5: Reduced Pages
+     * PURPOSE: A paged deck of a document admitted at reduced detail lays out the overview and
+     * every cluster slide with the cheap layout, not at full detail.
+     */
+    @Test
+    void testPagesKeepTheAdmittedDetail() throws IOException {
+        List<PptGeneratorService.Detail> details = Collections.synchronizedList(new ArrayList<>());
+        PptGeneratorService recording = new PptGeneratorService() {
+            @Override
+            public SlideLayout layout(ServiceGraph graph, PptGeneratorService.Detail detail) {
+                details.add(detail);
+                return super.layout(graph, detail);
+            }
+        };
+        PaginatedDeckService reduced = new PaginatedDeckService(recording,
+                PaginatedDeckService.Clustering.COMPONENTS, MAX_SHAPES, 3, 0);
+        ServiceGraph.Builder builder = new ServiceGraph.Builder();
+        for (int i = 0; i < 30; i++) {
+            builder.add("s" + i, "java", 1, NodeStyle.SERVICE, i < 29 ? List.of("s" + (i + 1)) : List.of());
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        reduced.write(builder.build(), PptGeneratorService.Detail.REDUCED, out);
+
+        try (XMLSlideShow pptx = new XMLSlideShow(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals(pptx.getSlides().size(), details.size());
+        }
+        assertTrue(details.stream().allMatch(d -> d == PptGeneratorService.Detail.REDUCED), details.toString());
+    }
+
+    private XMLSlideShow render(ServiceGraph graph) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        paginated.write(graph, out);
+        return new XMLSlideShow(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static String title(XSLFSlide slide) {
+        return ((XSLFTextShape) slide.getShapes().get(0)).getText();
+    }
+
+    private static List<String> nodes(XSLFSlide slide) {
+        return slide.getShapes().stream()
+                .map(XSLFShape::getShapeName)
+                .filter(name -> name.startsWith(ShapeNames.NODE))
+                .map(name -> name.substring(ShapeNames.NODE.length()))
+                .toList();
+    }
+
+    private static XSLFShape shape(XSLFSlide slide, String name) {
+        return slide.getShapes().stream()
+                .filter(shape -> name.equals(shape.getShapeName()))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("no shape " + name));
+    }
+
+    /**
+     * Runs of the navigation line, the last text box of a cluster slide.
+     */
+    private static List<XSLFTextRun> navigation(XSLFSlide slide) {
+        List<XSLFShape> shapes = slide.getShapes();
+        List<XSLFTextParagraph> paragraphs = ((XSLFTextShape) shapes.get(shapes.size() - 1)).getTextParagraphs();
+        return paragraphs.get(paragraphs.size() - 1).getTextRuns();
+    }
+
+    private static void assertSlideJump(XSLFSlide from, CTHyperlink link, XSLFSlide to) {
+        assertNotNull(link);
+        assertEquals("ppaction://hlinksldjump", link.getAction());
+        String target = from.getPackagePart().getRelationship(link.getId()).getTargetURI().toString();
+        String part = to.getPackagePart().getPartName().getName();
+        assertTrue(target.endsWith(part.substring(part.lastIndexOf('/') + 1)), target + " -> " + part);
+    }
+}
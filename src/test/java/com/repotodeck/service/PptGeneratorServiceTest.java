@@ -1,14 +1,26 @@
 package com.repotodeck.service;
 
 import com.repotodeck.model.ServiceNode;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
 import org.junit.jupiter.api.Test;
 
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -89,8 +101,177 @@ class PptGeneratorServiceTest {
         assertTrue(resultNull.length > 0);
     }
 
+    /**
+     * TEST 4: Streaming Output
+     * PURPOSE: The OutputStream overload must produce the same deck as the byte[] variant.
+     */
+    @Test
+    void testStreamingMatchesBufferedOutput() throws IOException {
+        List<ServiceNode> nodes = new ArrayList<>();
+        nodes.add(createNode("web", "nginx", "api"));
+        nodes.add(createNode("api", "java:17", "db"));
+        nodes.add(createNode("db", "postgres", null));
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        pptGeneratorService.generateSlide(nodes, streamed);
+        byte[] buffered = pptGeneratorService.generateSlide(nodes);
+
+        try (XMLSlideShow fromStream = new XMLSlideShow(new ByteArrayInputStream(streamed.toByteArray()));
+             XMLSlideShow fromBuffer = new XMLSlideShow(new ByteArrayInputStream(buffered))) {
+            assertEquals(1, fromStream.getSlides().size());
+            assertEquals(fromBuffer.getSlides().get(0).getShapes().size(),
+                         fromStream.getSlides().get(0).getShapes().size());
+        }
+    }
+
+    /**
+     * TEST 5: Dependency Layering
+     * PURPOSE: Inside a tier, a service sits above what it depends on; cycles don't break the
+     * layout and no two boxes overlap.
+     */
+    @Test
+    void testLayeredLayoutFollowsDependencies() {
+        List<ServiceNode> nodes = new ArrayList<>();
+        nodes.add(createNode("gateway", "nginx", "orders"));
+        nodes.add(createNode("orders", "java:17", "billing", "orders-db"));
+        nodes.add(createNode("billing", "java:17", "ledger"));
+        nodes.add(createNode("ledger", "java:17", "billing")); // cycle with billing
+        nodes.add(createNode("orders-db", "postgres", null));
+
+        SlideLayout layout = pptGeneratorService.layout(nodes);
+        Map<String, Rectangle2D.Double> pos = layout.positions();
+
+        assertEquals(5, pos.size());
+        assertTrue(pos.get("gateway").y < pos.get("orders").y);
+        assertTrue(pos.get("orders").y < pos.get("billing").y);
+        assertNotEquals(pos.get("billing").y, pos.get("ledger").y);
+        assertTrue(pos.get("ledger").y < pos.get("orders-db").y);
+        assertNoOverlaps(pos);
+        assertEquals(1.0, layout.scale());
+    }
+
+    /**
+     * TEST 6: Scale and Budget
+     * PURPOSE: 1,500 services lay out on a page no larger than PowerPoint allows, whichever way
+     * the time budget goes; with no budget at all the tiered grid is taken and still places everything.
+     */
+    @Test
+    void testLargeGraphStaysWithinBudgetAndPageLimit() {
+        String[] images = {"nginx", "java:17", "python:3.12", "postgres", "redis"};
+        Random random = new Random(7);
+        List<ServiceNode> nodes = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            nodes.add(createNode("svc-" + i, images[random.nextInt(images.length)],
+                    "svc-" + random.nextInt(1500), "svc-" + random.nextInt(1500), "svc-" + random.nextInt(1500)));
+        }
+
+        SlideLayout layout = pptGeneratorService.layout(nodes);
+
+        assertEquals(1500, layout.positions().size());
+        assertTrue(layout.width() <= PptGeneratorService.MAX_SLIDE_SIZE);
+        assertTrue(layout.height() <= PptGeneratorService.MAX_SLIDE_SIZE);
+        assertNoOverlaps(layout.positions());
+
+        PptGeneratorService noBudget = new PptGeneratorService(
+                ServiceClassifier.withDefaultRules(), PipelineMetrics.noop(), PptGeneratorService.LayoutMode.LAYERED, 0, 20_000,
+                PptGeneratorService.Renderer.TEMPLATE);
+        PptGeneratorService tiered = new PptGeneratorService(
+                ServiceClassifier.withDefaultRules(), PipelineMetrics.noop(), PptGeneratorService.LayoutMode.TIERED, 250, 20_000,
+                PptGeneratorService.Renderer.TEMPLATE);
+        SlideLayout fallback = noBudget.layout(nodes);
+        assertEquals(1500, fallback.positions().size());
+        assertEquals(tiered.layout(nodes).positions(), fallback.positions());
+        assertTrue(fallback.width() <= PptGeneratorService.MAX_SLIDE_SIZE);
+        assertTrue(fallback.height() <= PptGeneratorService.MAX_SLIDE_SIZE);
+    }
+
+    /**
+     * TEST 7: Render Model
+     * PURPOSE: Style, label text and connector geometry are resolved at layout time, one entry
+     * per placed node and per resolvable link, and the drawn slide matches it shape for shape.
+     */
+    @Test
+    void testRenderModelIsResolvedOnce() throws IOException {
+        List<ServiceNode> nodes = new ArrayList<>();
+        nodes.add(createNode("web", "nginx", "api"));
+        nodes.add(createNode("api", "java:17", "db", "missing"));
+        nodes.add(createNode("db", "postgres", null));
+        ServiceNode noImage = createNode("sidecar", "", null);
+        nodes.add(noImage);
+
+        SlideLayout layout = pptGeneratorService.layout(nodes);
+        Map<String, SlideLayout.RenderNode> byId = new HashMap<>();
+        layout.renderNodes().forEach(n -> byId.put(n.id(), n));
+
+        assertEquals(4, layout.renderNodes().size());
+        assertEquals(2, layout.connectors().size());
+        assertEquals(NodeStyle.FRONTEND, byId.get("web").style());
+        assertEquals(NodeStyle.SERVICE, byId.get("api").style());
+        assertEquals(NodeStyle.DATABASE, byId.get("db").style());
+        assertEquals("\nnginx", byId.get("web").subtitle());
+        assertNull(byId.get("sidecar").subtitle());
+
+        try (XMLSlideShow pptx = pptGeneratorService.createDeck(List.of(layout))) {
+            pptGeneratorService.drawSlide(pptx, layout, null);
+            // connectors + shadow and box per node
+            assertEquals(2 + 2 * 4, pptx.getSlides().get(0).getShapes().size());
+        }
+    }
+
+    /**
+     * TEST 8: Template Renderer
+     * PURPOSE: The template fast path must write the same slide XML and page size as the POI
+     * usermodel, including escaped text, nodes without an image, scaled fonts and routed connectors.
+     */
+    @Test
+    void testTemplateRendererMatchesPoi() throws IOException {
+        PptGeneratorService poi = new PptGeneratorService(ServiceClassifier.withDefaultRules(), PipelineMetrics.noop(),
+                PptGeneratorService.LayoutMode.LAYERED, 250, 20_000, PptGeneratorService.Renderer.POI);
+
+        List<ServiceNode> small = new ArrayList<>();
+        small.add(createNode("web & <ui> \"x\" 'y'", "nginx", "api"));
+        small.add(createNode("api", "java:17 > jdk", "db", "web & <ui> \"x\" 'y'"));
+        small.add(createNode("db", "postgres", null));
+        small.add(createNode("no-image", "", null));
+
+        List<ServiceNode> large = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            large.add(createNode("svc-" + i, i % 7 == 0 ? "redis" : "java:17", "svc-" + (i * 31 % 400), "svc-" + (i * 17 % 400)));
+        }
+
+        for (List<ServiceNode> nodes : List.of(small, large)) {
+            Map<String, String> expected = unzip(poi.generateSlide(nodes));
+            Map<String, String> actual = unzip(pptGeneratorService.generateSlide(nodes));
+
+            assertEquals(expected.keySet(), actual.keySet());
+            assertEquals(expected.get("ppt/slides/slide1.xml"), actual.get("ppt/slides/slide1.xml"));
+            assertEquals(expected.get("ppt/presentation.xml"), actual.get("ppt/presentation.xml"));
+        }
+        assertTrue(pptGeneratorService.layout(large).scale() < 1.0);
+    }
+
     // --- HELPER METHODS ---
 
+    private Map<String, String> unzip(byte[] deck) throws IOException {
+        Map<String, String> parts = new TreeMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(deck))) {
+            for (ZipEntry e; (e = zip.getNextEntry()) != null; ) {
+                parts.put(e.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return parts;
+    }
+
+    private void assertNoOverlaps(Map<String, Rectangle2D.Double> positions) {
+        List<Rectangle2D.Double> boxes = new ArrayList<>(positions.values());
+        boxes.sort(Comparator.comparingDouble((Rectangle2D.Double b) -> b.y).thenComparingDouble(b -> b.x));
+        for (int i = 1; i < boxes.size(); i++) {
+            Rectangle2D.Double a = boxes.get(i - 1);
+            Rectangle2D.Double b = boxes.get(i);
+            if (a.y == b.y) assertTrue(b.x >= a.getMaxX(), "overlap at " + a + " / " + b);
+        }
+    }
+
     private ServiceNode createNode(String id, String image, String... links) {
         ServiceNode node = new ServiceNode();
         node.setId(id);
@@ -0,0 +1,263 @@
+package com.repotodeck.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderAdmissionServiceTest {
+
+    private static final String COMPOSE = """
+            version: '3.8'
+            # comment
+            services:
+              web:
+                image: nginx
+                depends_on:
+                  - api
+                  - auth
+                environment:
+                  - A=1
+              api:
+                image: node
+                depends_on: [db, cache]
+                links:
+                  - auth
+              auth:
+                image: keycloak
+                depends_on:
+                  db:
+                    condition: service_healthy
+              db:
+                image: postgres
+              cache:
+                image: redis
+            volumes:
+              data:
+            """;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    /**
+     * TEST 1: Pre-scan
+     * PURPOSE: The estimate counts services and every depends_on/links syntax without parsing.
+     */
+    @Test
+    void testEstimateCountsServicesAndLinks() {
+        RenderCost cost = RenderAdmissionService.estimate(COMPOSE);
+
+        assertEquals(5, cost.services());
+        // web: 2, api: 2 + 1, auth: 1 (long syntax)
+        assertEquals(6, cost.edges());
+        assertEquals(COMPOSE.length(), cost.chars());
+    }
+
+    /**
+     * TEST 2: Agreement With The Parser
+     * PURPOSE: On generated documents the estimate matches what the parser builds.
+     */
+    @Test
+    void testEstimateMatchesParsedGraph() {
+        StringBuilder yaml = new StringBuilder("services:\n");
+        for (int i = 0; i < 300; i++) {
+            yaml.append("  svc-").append(i).append(":\n    image: busybox\n");
+            if (i > 0) {
+                yaml.append("    depends_on:\n      - svc-").append(i - 1).append('\n');
+            }
+        }
+        RenderCost cost = RenderAdmissionService.estimate(yaml.toString());
+        ServiceGraph graph = new DockerParserService().parseGraph(yaml.toString());
+
+        assertEquals(graph.size(), cost.services());
+        assertEquals(299, cost.edges());
+    }
+
+    /**
+     * TEST 3: Decisions
+     * PURPOSE: Each threshold moves a document to the next, cheaper treatment.
+     */
+    @Test
+    void testThresholdsPickTheTreatment() {
+        RenderAdmissionService admission = service(RenderAdmissionService.Oversized.ASYNC);
+
+        RenderAdmissionService.Admission small = admission.admit(new RenderCost(10, 10, 1_000));
+        assertEquals(RenderAdmissionService.Decision.FULL, small.decision());
+        assertEquals(PptGeneratorService.Detail.FULL, small.detail());
+        assertEquals(1, small.weight());
+
+        RenderAdmissionService.Admission reduced = admission.admit(new RenderCost(250, 10, 1_000));
+        assertEquals(RenderAdmissionService.Decision.REDUCED, reduced.decision());
+        assertEquals(PptGeneratorService.Detail.REDUCED, reduced.detail());
+        assertEquals(3, reduced.weight());
+
+        // Links alone are enough to cross a threshold
+        RenderAdmissionService.Admission async = admission.admit(new RenderCost(10, 5_000, 1_000));
+        assertEquals(RenderAdmissionService.Decision.ASYNC, async.decision());
+
+        assertThrows(RenderTooLargeException.class, () -> admission.admit(new RenderCost(10, 10, 2_000_000)));
+        assertEquals(1, registry.get("repotodeck.admission.decisions").tag("decision", "rejected").counter().count());
+    }
+
+    /**
+     * TEST 4: Synchronous Paths
+     * PURPOSE: Without a job queue to fall back on, documents over the sync limits are rejected,
+     * while background jobs only answer to the hard maximum.
+     */
+    @Test
+    void testSyncPathsRejectWhatWouldGoAsync() {
+        RenderAdmissionService admission = service(RenderAdmissionService.Oversized.ASYNC);
+        RenderCost oversized = new RenderCost(600, 10, 1_000);
+
+        assertThrows(RenderTooLargeException.class, () -> admission.admitSync(oversized));
+        assertEquals(6, admission.admitJob(oversized).weight());
+        assertThrows(RenderTooLargeException.class,
+                () -> service(RenderAdmissionService.Oversized.REJECT).admit(oversized));
+    }
+
+    /**
+     * TEST 5: Disabled
+     * PURPOSE: The default constructor admits everything at full detail in one slot.
+     */
+    @Test
+    void testDisabledAdmitsEverything() {
+        RenderAdmissionService.Admission admission = new RenderAdmissionService()
+                .admit(new RenderCost(1_000_000, 1_000_000, Long.MAX_VALUE));
+
+        assertEquals(RenderAdmissionService.Decision.FULL, admission.decision());
+        assertEquals(1, admission.weight());
+    }
+
+    /**
+     * TEST 6: Flow Style And JSON
+     * PURPOSE: Services and links written as flow collections or JSON are counted like block
+     * style, so such documents can't slip under the limits with a cost of zero.
+     */
+    @Test
+    void testEstimateCountsFlowStyleAndJson() {
+        String json = """
+                {
+                  "version": "3.8",
+                  "services": {
+                    "web": {"image": "nginx:1.25", "depends_on": ["api", "auth"], "ports": ["80:80"]},
+                    "api": {
+                      "image": "node",
+                      "depends_on": {"db": {"condition": "service_healthy"}, "cache": {}},
+                      "links": ["auth"]
+                    },
+                    "auth": {"image": "keycloak", "command": "start --x={\\"y\\": [1]}"},
+                    "db": {"image": "postgres"},
+                    "cache": {"image": "redis"}
+                  },
+                  "volumes": {"data": {}}
+                }
+                """;
+        String flow = """
+                services: {web: {image: nginx, depends_on: [api]},
+                  api: {image: 'java:21', links: [db]}, db: {image: postgres}}
+                """;
+        String mixed = """
+                services:
+                  web: {image: nginx, depends_on: [api, db]}
+                  api:
+                    image: node
+                    depends_on: [
+                      db
+                    ]
+                  db: {image: postgres}
+                """;
+
+        assertEquals(new RenderCost(5, 5, json.length()), RenderAdmissionService.estimate(json));
+        assertEquals(new RenderCost(3, 2, flow.length()), RenderAdmissionService.estimate(flow));
+        assertEquals(new RenderCost(3, 3, mixed.length()), RenderAdmissionService.estimate(mixed));
+        for (String document : new String[]{json, flow, mixed}) {
+            assertEquals(new DockerParserService().parseGraph(document).size(),
+                    RenderAdmissionService.estimate(document).services());
+        }
+    }
+
+    /**
+     * TEST 7: Quoted And Spaced Keys
+     * PURPOSE: Block-style keys written quoted or with spaces before the ':' are recognised, so
+     * a document can't zero its estimate by spelling "services" differently.
+     */
+    @Test
+    void testEstimateAcceptsQuotedAndSpacedKeys() {
+        String quoted = """
+                "services":
+                  "web":
+                    image: nginx
+                    "depends_on":
+                      - api
+                  'api':
+                    image: node
+                    'links': [db]
+                  db:
+                    image: postgres
+                """;
+        String spaced = """
+                services :
+                  web :
+                    image: nginx
+                    depends_on :
+                      - api
+                  api:
+                    image: node
+                    links : [db]
+                  db:
+                    image: postgres
+                """;
+
+        for (String document : new String[]{quoted, spaced}) {
+            assertEquals(new RenderCost(3, 2, document.length()), RenderAdmissionService.estimate(document));
+            assertEquals(new DockerParserService().parseGraph(document).size(),
+                    RenderAdmissionService.estimate(document).services());
+        }
+    }
+
+    /**
+     * TEST 8: Checked Again After Parsing
+     * PURPOSE: A graph the estimate undercounted (here, services behind an alias the pre-scan
+     * can't see) is weighed and drawn as what it is, or rejected on synchronous paths, and a
+     * graph within its estimate keeps its admission.
+     */
+    @Test
+    void testRecheckCatchesUndercountedGraphs() {
+        RenderAdmissionService admission = service(RenderAdmissionService.Oversized.ASYNC);
+
+        String reducedYaml = aliasedServices(250);
+        RenderAdmissionService.Admission estimated = admission.admitSync(RenderAdmissionService.estimate(reducedYaml));
+        assertEquals(RenderAdmissionService.Decision.FULL, estimated.decision());
+        RenderAdmissionService.Admission parsed =
+                admission.recheck(estimated, new DockerParserService().parseGraph(reducedYaml));
+        assertEquals(RenderAdmissionService.Decision.REDUCED, parsed.decision());
+        assertEquals(250, parsed.cost().services());
+        assertEquals(3, parsed.weight());
+
+        String asyncYaml = aliasedServices(600);
+        ServiceGraph graph = new DockerParserService().parseGraph(asyncYaml);
+        RenderAdmissionService.Admission small = admission.admitSync(RenderAdmissionService.estimate(asyncYaml));
+        assertThrows(RenderTooLargeException.class, () -> admission.recheck(small, graph));
+        RenderAdmissionService.Admission job = admission.recheckJob(small, graph);
+        assertEquals(RenderAdmissionService.Decision.ASYNC, job.decision());
+        assertEquals(6, job.weight());
+
+        RenderAdmissionService.Admission exact = admission.admitSync(RenderAdmissionService.estimate(COMPOSE));
+        assertSame(exact, admission.recheck(exact, new DockerParserService().parseGraph(COMPOSE)));
+    }
+
+    private static String aliasedServices(int count) {
+        StringBuilder yaml = new StringBuilder("x-services: &services\n");
+        for (int i = 0; i < count; i++) {
+            yaml.append("  svc-").append(i).append(":\n    image: busybox\n");
+        }
+        return yaml.append("services: *services\n").toString();
+    }
+
+    private RenderAdmissionService service(RenderAdmissionService.Oversized oversized) {
+        return new RenderAdmissionService(true,
+                new RenderAdmissionService.Limits(100, 400, 100_000),
+                new RenderAdmissionService.Limits(500, 2_000, 500_000),
+                new RenderAdmissionService.Limits(1_000, 10_000, 1_000_000),
+                oversized, registry);
+    }
+}
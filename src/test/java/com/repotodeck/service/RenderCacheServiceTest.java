@@ -0,0 +1,84 @@
+package com.repotodeck.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderCacheServiceTest {
+
+    /**
+     * TEST 1: Key Normalization
+     * PURPOSE: Formatting noise (CRLF, trailing spaces, trailing newlines) must not change the key.
+     */
+    @Test
+    void testKeyIgnoresFormattingNoise() {
+        RenderCacheService cache = new RenderCacheService(1024, 1024, new SimpleMeterRegistry(), ServiceClassifier.withDefaultRules());
+
+        String key = cache.keyFor("services:\n  web:\n    image: nginx\n");
+        assertEquals(key, cache.keyFor("services:  \r\n  web:\r\n    image: nginx\r\n\r\n"));
+        assertNotEquals(key, cache.keyFor("services:\n  web:\n    image: httpd\n"));
+    }
+
+    /**
+     * TEST 2: Hit / Miss
+     * PURPOSE: A second request for the same key must not render again.
+     */
+    @Test
+    void testSecondLookupIsServedFromCache() throws IOException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RenderCacheService cache = new RenderCacheService(1024, 1024, registry, ServiceClassifier.withDefaultRules());
+        AtomicInteger renders = new AtomicInteger();
+
+        byte[] first = cache.get("k", () -> { renders.incrementAndGet(); return new byte[10]; });
+        byte[] second = cache.get("k", () -> { renders.incrementAndGet(); return new byte[10]; });
+
+        assertSame(first, second);
+        assertEquals(1, renders.get());
+        assertEquals(1.0, registry.get("cache.gets").tag("result", "miss").functionCounter().count());
+    }
+
+    /**
+     * TEST 3: Oversized Entries
+     * PURPOSE: Decks above the per-entry limit are returned to the caller but never stored.
+     */
+    @Test
+    void testOversizedDeckIsNotCached() throws IOException {
+        RenderCacheService cache = new RenderCacheService(1024, 100, new SimpleMeterRegistry(), ServiceClassifier.withDefaultRules());
+
+        byte[] result = cache.get("big", () -> new byte[500]);
+
+        assertEquals(500, result.length);
+        assertNull(cache.getIfPresent("big"));
+    }
+
+    /**
+     * TEST 4: Streamed Copy
+     * PURPOSE: A deck streamed through the caching stream, byte by byte or in chunks, is cached as
+     * written, and one that grows past the per-entry limit is dropped.
+     */
+    @Test
+    void testCachingStreamKeepsWhatWasWritten() throws IOException {
+        RenderCacheService cache = new RenderCacheService(1024, 8, new SimpleMeterRegistry(), ServiceClassifier.withDefaultRules());
+
+        ByteArrayOutputStream small = new ByteArrayOutputStream();
+        RenderCacheService.CachingOutputStream smallOut = cache.cachingStream("small", small);
+        smallOut.write(1);
+        smallOut.write(new byte[]{2, 3, 4}, 0, 3);
+        smallOut.write(0xFF);
+        smallOut.commit();
+        assertArrayEquals(new byte[]{1, 2, 3, 4, (byte) 0xFF}, small.toByteArray());
+        assertArrayEquals(small.toByteArray(), cache.getIfPresent("small"));
+
+        ByteArrayOutputStream big = new ByteArrayOutputStream();
+        RenderCacheService.CachingOutputStream bigOut = cache.cachingStream("big", big);
+        for (int i = 0; i < 9; i++) bigOut.write(i);
+        bigOut.commit();
+        assertEquals(9, big.size());
+        assertNull(cache.getIfPresent("big"));
+    }
+}
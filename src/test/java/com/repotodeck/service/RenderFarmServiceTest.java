@@ -0,0 +1,349 @@
+package com.repotodeck.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderFarmServiceTest {
+
+    private static final String KEY = "0123456789abcdef".repeat(4);
+    private static final byte[] DECK = "PK\r\n\u0000deck\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    /**
+     * TEST 1: Single Flight Across Replicas
+     * PURPOSE: Two replicas sharing a directory get 16 concurrent requests for one compose file
+     * between them and render it once; a later request is served from the shared store.
+     */
+    @Test
+    void testConcurrentRequestsRenderOnce(@TempDir Path dir) throws Exception {
+        RenderFarmService first = farm(new FileRenderStore(dir));
+        RenderFarmService second = farm(new FileRenderStore(dir));
+        AtomicInteger renders = new AtomicInteger();
+
+        List<byte[]> decks = concurrently(16, i -> (i % 2 == 0 ? first : second).render(KEY, slowRender(renders)));
+        assertEquals(1, renders.get());
+        decks.forEach(deck -> assertArrayEquals(DECK, deck));
+
+        assertArrayEquals(DECK, farm(new FileRenderStore(dir)).render(KEY, slowRender(renders)));
+        assertEquals(1, renders.get());
+        assertEquals(1.0, registry.counter("repotodeck.cluster.renders", "result", "rendered").count());
+        // A concurrent request that starts after the deck is stored reads it instead of joining
+        assertEquals(16.0, registry.counter("repotodeck.cluster.renders", "result", "shared_hit").count()
+                + registry.counter("repotodeck.cluster.renders", "result", "joined").count());
+    }
+
+    /**
+     * TEST 2: Redis Protocol
+     * PURPOSE: The Redis store round-trips binary decks and keeps a lock with its owner; through
+     * it, two replicas again render a key only once.
+     */
+    @Test
+    void testRedisStoreAgainstStandIn() throws Exception {
+        try (RespStandIn redis = new RespStandIn()) {
+            RedisRenderStore store = new RedisRenderStore("localhost", redis.port(), "secret", 2_000, 2);
+            assertNull(store.get(KEY));
+            store.put(KEY, DECK, Duration.ofMinutes(1));
+            assertArrayEquals(DECK, store.get(KEY));
+
+            assertTrue(store.tryLock("k", "a", Duration.ofMinutes(1)));
+            assertFalse(store.tryLock("k", "b", Duration.ofMinutes(1)));
+            store.unlock("k", "b");
+            assertFalse(store.tryLock("k", "b", Duration.ofMinutes(1)), "only the owner releases a lock");
+            store.unlock("k", "a");
+            assertTrue(store.tryLock("k", "b", Duration.ofMinutes(1)));
+            assertTrue(store.tryLock("lease", "a", Duration.ofMillis(1)));
+            Thread.sleep(20);
+            assertTrue(store.tryLock("lease", "b", Duration.ofMinutes(1)), "an expired lease is free again");
+            store.close();
+
+            RenderFarmService first = farm(new RedisRenderStore("localhost", redis.port(), "secret", 2_000, 4));
+            RenderFarmService second = farm(new RedisRenderStore("localhost", redis.port(), "secret", 2_000, 4));
+            AtomicInteger renders = new AtomicInteger();
+            String key = "fedcba9876543210".repeat(4);
+            concurrently(8, i -> (i % 2 == 0 ? first : second).render(key, slowRender(renders)));
+            assertEquals(1, renders.get());
+        }
+    }
+
+    /**
+     * TEST 3: Failed Render
+     * PURPOSE: A render error reaches every request that joined it and releases the lock, so the
+     * next request renders again instead of waiting for a deck that never comes.
+     */
+    @Test
+    void testFailureReachesJoinersAndReleasesLock() throws Exception {
+        MemoryRenderStore store = new MemoryRenderStore(1 << 20);
+        RenderFarmService farm = farm(store);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            Future<byte[]> leader = pool.submit(() -> farm.render(KEY, () -> {
+                started.countDown();
+                awaitQuietly(release);
+                throw new IllegalArgumentException("No services found");
+            }));
+            started.await();
+            Future<byte[]> follower = pool.submit(() -> farm.render(KEY, () -> DECK));
+            while (registry.counter("repotodeck.cluster.renders", "result", "joined").count() < 1) Thread.sleep(1);
+            release.countDown();
+
+            for (Future<byte[]> result : List.of(leader, follower)) {
+                Exception e = assertThrows(Exception.class, result::get);
+                assertInstanceOf(IllegalArgumentException.class, e.getCause());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertTrue(store.tryLock(KEY, "someone-else", Duration.ofSeconds(1)), "lock was released");
+        store.unlock(KEY, "someone-else");
+        assertArrayEquals(DECK, farm.render(KEY, () -> DECK));
+    }
+
+    /**
+     * TEST 4: Store Outage
+     * PURPOSE: With the store unreachable every request is still rendered, locally, and cluster
+     * mode off means no shared state at all.
+     */
+    @Test
+    void testUnreachableStoreFallsBackToLocalRender() throws Exception {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        RenderFarmService farm = farm(new RedisRenderStore("localhost", closedPort, null, 200, 1));
+        assertArrayEquals(DECK, farm.render(KEY, () -> DECK));
+        assertEquals(1.0, registry.counter("repotodeck.cluster.renders", "result", "fallback").count());
+
+        RenderFarmService off = new RenderFarmService(null, Duration.ofMinutes(1), Duration.ofMinutes(1),
+                1_000, 5, 1 << 20, registry);
+        assertFalse(off.isEnabled());
+        assertArrayEquals(DECK, off.render(KEY, () -> DECK));
+    }
+
+    /**
+     * TEST 5: Orphaned Temporary Files
+     * PURPOSE: A temporary file left by a writer that died is purged a minute after it was
+     * created, although its modification time is already the (distant) expiry of the deck.
+     */
+    @Test
+    void testOrphanedTempFilesArePurged(@TempDir Path dir) throws Exception {
+        FileRenderStore store = new FileRenderStore(dir);
+        FileTime expiry = FileTime.from(Instant.now().plus(Duration.ofHours(1)));
+        Path orphan = dir.resolve(FileRenderStore.tempName(KEY, System.currentTimeMillis() - 120_000));
+        Path writing = dir.resolve(FileRenderStore.tempName(KEY, System.currentTimeMillis()));
+        for (Path temp : List.of(orphan, writing)) {
+            Files.write(temp, DECK);
+            Files.setLastModifiedTime(temp, expiry);
+        }
+        store.put(KEY, DECK, Duration.ofHours(1));
+
+        store.purgeExpired();
+
+        assertFalse(Files.exists(orphan));
+        assertTrue(Files.exists(writing), "still being written");
+        assertArrayEquals(DECK, store.get(KEY));
+    }
+
+    // --- HELPER METHODS ---
+
+    private interface Call {
+        byte[] run(int i) throws Exception;
+    }
+
+    private RenderFarmService farm(SharedRenderStore store) {
+        return new RenderFarmService(store, Duration.ofMinutes(1), Duration.ofSeconds(10), 10_000, 5, 1 << 20, registry);
+    }
+
+    private static RenderCacheService.Renderer slowRender(AtomicInteger renders) {
+        return () -> {
+            renders.incrementAndGet();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return DECK.clone();
+        };
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<byte[]> concurrently(int calls, Call call) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<byte[]>> futures = new ArrayList<>();
+            for (int i = 0; i < calls; i++) {
+                int index = i;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return call.run(index);
+                }));
+            }
+            start.countDown();
+            List<byte[]> results = new ArrayList<>();
+            for (Future<byte[]> future : futures) results.add(future.get());
+            return results;
+        }
+    }
+
+    /**
+     * A local stand-in for a Redis server: just the RESP2 commands {@link RedisRenderStore} sends.
+     */
+    private static final class RespStandIn implements AutoCloseable {
+
+        private record Value(byte[] data, long expiresAt) {
+        }
+
+        private final ServerSocket server = new ServerSocket(0);
+        private final Map<String, Value> data = new HashMap<>();
+        private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+
+        RespStandIn() throws IOException {
+            connections.submit(() -> {
+                while (!server.isClosed()) {
+                    Socket socket = server.accept();
+                    connections.submit(() -> serve(socket));
+                }
+                return null;
+            });
+        }
+
+        int port() {
+            return server.getLocalPort();
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+            connections.shutdownNow();
+        }
+
+        private Void serve(Socket socket) throws IOException {
+            try (socket; InputStream in = new BufferedInputStream(socket.getInputStream());
+                 OutputStream out = new BufferedOutputStream(socket.getOutputStream())) {
+                boolean authenticated = false;
+                for (List<byte[]> command; (command = readCommand(in)) != null; ) {
+                    String name = text(command.get(0)).toUpperCase();
+                    if (name.equals("AUTH")) {
+                        authenticated = text(command.get(1)).equals("secret");
+                        out.write((authenticated ? "+OK\r\n" : "-WRONGPASS\r\n").getBytes(StandardCharsets.US_ASCII));
+                    } else if (!authenticated) {
+                        out.write("-NOAUTH Authentication required.\r\n".getBytes(StandardCharsets.US_ASCII));
+                    } else {
+                        out.write(execute(name, command));
+                    }
+                    out.flush();
+                }
+            }
+            return null;
+        }
+
+        private synchronized byte[] execute(String name, List<byte[]> command) {
+            String key = text(command.get(1));
+            Value current = data.get(key);
+            if (current != null && current.expiresAt() <= System.currentTimeMillis()) {
+                data.remove(key);
+                current = null;
+            }
+            switch (name) {
+                case "GET" -> {
+                    return current == null ? "$-1\r\n".getBytes(StandardCharsets.US_ASCII) : bulk(current.data());
+                }
+                case "SET" -> {
+                    boolean nx = false;
+                    long px = Long.MAX_VALUE;
+                    for (int i = 3; i < command.size(); i++) {
+                        String option = text(command.get(i)).toUpperCase();
+                        if (option.equals("NX")) nx = true;
+                        if (option.equals("PX")) px = Long.parseLong(text(command.get(++i)));
+                    }
+                    if (nx && current != null) return "$-1\r\n".getBytes(StandardCharsets.US_ASCII);
+                    data.put(key, new Value(command.get(2), System.currentTimeMillis() + px));
+                    return "+OK\r\n".getBytes(StandardCharsets.US_ASCII);
+                }
+                case "EVAL" -> {
+                    // The compare-and-delete unlock script: KEYS[1] = command[3], ARGV[1] = command[4]
+                    String lock = text(command.get(3));
+                    Value held = data.get(lock);
+                    boolean owned = held != null && text(held.data()).equals(text(command.get(4)));
+                    if (owned) data.remove(lock);
+                    return (":" + (owned ? 1 : 0) + "\r\n").getBytes(StandardCharsets.US_ASCII);
+                }
+                default -> {
+                    return ("-ERR unknown command '" + name + "'\r\n").getBytes(StandardCharsets.US_ASCII);
+                }
+            }
+        }
+
+        private static List<byte[]> readCommand(InputStream in) throws IOException {
+            int type = in.read();
+            if (type < 0) return null;
+            int count = Integer.parseInt(line(in));
+            List<byte[]> args = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                in.read(); // '$'
+                byte[] arg = in.readNBytes(Integer.parseInt(line(in)));
+                in.read();
+                in.read();
+                args.add(arg);
+            }
+            return args;
+        }
+
+        private static String line(InputStream in) throws IOException {
+            StringBuilder line = new StringBuilder();
+            for (int c; (c = in.read()) != '\r'; ) line.append((char) c);
+            in.read();
+            return line.toString();
+        }
+
+        private static byte[] bulk(byte[] value) {
+            byte[] header = ("$" + value.length + "\r\n").getBytes(StandardCharsets.US_ASCII);
+            byte[] reply = new byte[header.length + value.length + 2];
+            System.arraycopy(header, 0, reply, 0, header.length);
+            System.arraycopy(value, 0, reply, header.length, value.length);
+            reply[reply.length - 2] = '\r';
+            reply[reply.length - 1] = '\n';
+            return reply;
+        }
+
+        private static String text(byte[] value) {
+            return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.repotodeck.service;
+
+import com.repotodeck.model.RenderJob;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderJobServiceTest {
+
+    private static final String YAML = """
+            services:
+              web:
+                image: nginx
+                depends_on: [api]
+              api:
+                image: java:21
+                depends_on: [db]
+              db:
+                image: postgres
+            """;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RenderCacheService cache =
+            new RenderCacheService(1 << 20, 1 << 20, registry, ServiceClassifier.withDefaultRules());
+    private final RenderScheduler scheduler = new RenderScheduler(1, 64, 4, 50, 0, registry);
+
+    /**
+     * TEST 1: Submit And Download
+     * PURPOSE: A job renders in the background into a file, and any byte range of that file can
+     * be sent to a channel without reading the deck onto the heap.
+     */
+    @Test
+    void testJobRendersDeckToStore(@TempDir Path dir) throws Exception {
+        RenderJobService jobs = service(new DeckStore(dir.toString()), 2, 10, 3_600_000);
+
+        RenderJob queued = jobs.submit(YAML);
+        assertEquals(3, queued.services());
+        RenderJob done = await(jobs, queued.id());
+        assertEquals(RenderJob.State.DONE, done.state());
+        assertEquals(cache.keyFor(YAML), done.cacheKey());
+
+        Path deck = jobs.deck(done.id());
+        byte[] file = Files.readAllBytes(deck);
+        assertEquals(done.bytes(), file.length);
+        try (XMLSlideShow pptx = new XMLSlideShow(new ByteArrayInputStream(file))) {
+            assertEquals(1, pptx.getSlides().size());
+        }
+        // Written through to the render cache, so the deck can be the base of /update-slide
+        assertArrayEquals(file, cache.getIfPresent(done.cacheKey()));
+        assertFalse(Files.exists(dir.resolve(done.id() + ".yaml")), "input is dropped once rendered");
+
+        ByteArrayOutputStream range = new ByteArrayOutputStream();
+        try (FileChannel channel = FileChannel.open(deck)) {
+            DeckStore.transfer(channel, 100, 1000, Channels.newChannel(range));
+        }
+        assertArrayEquals(Arrays.copyOfRange(file, 100, 1100), range.toByteArray());
+
+        assertThrows(RuntimeException.class, () -> jobs.submit("services: [broken"));
+        assertThrows(IllegalArgumentException.class, () -> jobs.submit(" "));
+        assertEquals(1, Files.list(dir).filter(p -> p.toString().endsWith(".job")).count());
+        jobs.shutdown();
+    }
+
+    /**
+     * TEST 2: Restart
+     * PURPOSE: A new instance on the same directory keeps serving finished decks, re-renders jobs
+     * that were interrupted, and cleans up half-written files.
+     */
+    @Test
+    void testJobsSurviveRestart(@TempDir Path dir) throws Exception {
+        DeckStore store = new DeckStore(dir.toString());
+        RenderJobService before = service(store, 1, 10, 3_600_000);
+        RenderJob finished = await(before, before.submit(YAML).id());
+        before.shutdown();
+
+        // A job that was still running when the process died, and its half-written deck
+        RenderJob interrupted = RenderJob.queued(DeckStore.newId(), cache.keyFor(YAML + "\n  # v2"), 3).running();
+        store.saveInput(interrupted.id(), YAML.replace("postgres", "mysql"));
+        store.save(interrupted);
+        Files.writeString(dir.resolve(interrupted.id() + ".pptx.tmp"), "partial");
+
+        RenderJobService after = service(new DeckStore(dir.toString()), 1, 10, 3_600_000);
+        assertEquals(finished, after.get(finished.id()));
+        assertTrue(Files.exists(after.deck(finished.id())));
+
+        RenderJob resumed = await(after, interrupted.id());
+        assertEquals(RenderJob.State.DONE, resumed.state());
+        assertEquals(interrupted.createdAt(), resumed.createdAt());
+        assertFalse(Files.exists(dir.resolve(interrupted.id() + ".pptx.tmp")));
+        assertFalse(Files.exists(dir.resolve(interrupted.id() + ".yaml")));
+        after.shutdown();
+    }
+
+    /**
+     * TEST 3: Bounded Queue
+     * PURPOSE: Jobs wait for a render slot like every other render, and once the worker and its
+     * queue are busy, further submissions are rejected instead of piling up (429 path).
+     */
+    @Test
+    void testFullJobQueueRejects(@TempDir Path dir) throws Exception {
+        RenderJobService jobs = service(new DeckStore(dir.toString()), 1, 1, 3_600_000);
+
+        RenderScheduler.Permit held = scheduler.acquire();
+        RenderJob first = jobs.submit(YAML);
+        RenderJob second = jobs.submit(YAML);
+        RenderRejectedException e = assertThrows(RenderRejectedException.class, () -> jobs.submit(YAML));
+        assertEquals(RenderRejectedException.Reason.QUEUE_FULL, e.getReason());
+        assertNotEquals(RenderJob.State.DONE, jobs.get(first.id()).state());
+
+        held.close();
+        assertEquals(RenderJob.State.DONE, await(jobs, first.id()).state());
+        assertEquals(RenderJob.State.DONE, await(jobs, second.id()).state());
+        assertEquals(2, Files.list(dir).filter(p -> p.toString().endsWith(".job")).count());
+        jobs.shutdown();
+    }
+
+    /**
+     * TEST 4: Expiry
+     * PURPOSE: Finished jobs and their decks are removed once their TTL has passed; unknown and
+     * malformed ids are simply not found.
+     */
+    @Test
+    void testFinishedJobsExpire(@TempDir Path dir) throws Exception {
+        RenderJobService jobs = service(new DeckStore(dir.toString()), 1, 10, 0);
+        RenderJob done = await(jobs, jobs.submit(YAML).id());
+        Path deck = jobs.deck(done.id());
+
+        jobs.evictExpired();
+        assertNull(jobs.get(done.id()));
+        assertNull(jobs.deck(done.id()));
+        assertFalse(Files.exists(deck));
+        try (var files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+
+        assertNull(jobs.get(DeckStore.newId()));
+        assertNull(jobs.get("../" + done.id()));
+        assertNull(jobs.get(null));
+        jobs.shutdown();
+    }
+
+    /**
+     * TEST 5: Oversized Jobs
+     * PURPOSE: Documents over the full limits are stored unparsed and parsed by the worker, so an
+     * invalid one fails its job instead of the submit, and a valid one is rendered with reduced
+     * detail under its own cache key.
+     */
+    @Test
+    void testOversizedJobsAreParsedByTheWorker(@TempDir Path dir) throws Exception {
+        RenderAdmissionService admission = new RenderAdmissionService(true,
+                new RenderAdmissionService.Limits(2, 100, 100_000),
+                new RenderAdmissionService.Limits(100, 1_000, 1_000_000),
+                new RenderAdmissionService.Limits(1_000, 10_000, 10_000_000),
+                RenderAdmissionService.Oversized.ASYNC, registry);
+        RenderJobService jobs = service(new DeckStore(dir.toString()), 1, 10, 3_600_000, admission);
+
+        RenderJob queued = jobs.submit(YAML);
+        assertEquals(3, queued.services(), "estimated, not parsed");
+        RenderJob done = await(jobs, queued.id());
+        assertEquals(RenderJob.State.DONE, done.state());
+        assertEquals(cache.keyForDetail(cache.keyFor(YAML), PptGeneratorService.Detail.REDUCED), done.cacheKey());
+
+        RenderJob broken = jobs.submit(YAML + "  broken: [unclosed\n");
+        assertEquals(RenderJob.State.FAILED, await(jobs, broken.id()).state());
+        jobs.shutdown();
+    }
+
+    // --- HELPER METHODS ---
+
+    private RenderJobService service(DeckStore store, int workers, int queueCapacity, long ttlMillis) throws IOException {
+        return service(store, workers, queueCapacity, ttlMillis, new RenderAdmissionService());
+    }
+
+    private RenderJobService service(DeckStore store, int workers, int queueCapacity, long ttlMillis,
+                                     RenderAdmissionService admission) throws IOException {
+        return new RenderJobService(new DockerParserService(), new PptGeneratorService(), cache, scheduler,
+                admission, store,
+                registry, workers, queueCapacity, ttlMillis, 0);
+    }
+
+    private static RenderJob await(RenderJobService jobs, String id) throws InterruptedException {
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        RenderJob job = jobs.get(id);
+        while (!job.finished()) {
+            assertTrue(System.nanoTime() < deadline, "job did not finish");
+            Thread.sleep(10);
+            job = jobs.get(id);
+        }
+        return job;
+    }
+}
@@ -0,0 +1,93 @@
+package com.repotodeck.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderSchedulerTest {
+
+    /**
+     * TEST 1: Timeout
+     * PURPOSE: With every slot taken, a waiter gives up after the queue timeout (503 path).
+     */
+    @Test
+    void testWaitTimesOut() {
+        RenderScheduler scheduler = new RenderScheduler(1, 64, 4, 50, 3, new SimpleMeterRegistry());
+
+        try (RenderScheduler.Permit ignored = scheduler.acquire()) {
+            RenderRejectedException e = assertThrows(RenderRejectedException.class, scheduler::acquire);
+            assertEquals(RenderRejectedException.Reason.TIMEOUT, e.getReason());
+            assertEquals(3, e.getRetryAfterSeconds());
+        }
+        // Slot is free again once the permit is closed
+        assertDoesNotThrow(() -> scheduler.acquire().close());
+    }
+
+    /**
+     * TEST 2: Bounded Queue
+     * PURPOSE: Once the wait queue is full, new callers are rejected immediately (429 path).
+     */
+    @Test
+    void testFullQueueRejectsImmediately() throws InterruptedException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RenderScheduler scheduler = new RenderScheduler(1, 64, 1, 5_000, 2, registry);
+        RenderScheduler.Permit held = scheduler.acquire();
+
+        CountDownLatch waiterDone = new CountDownLatch(1);
+        Thread waiter = Thread.ofVirtual().start(() -> {
+            scheduler.acquire().close();
+            waiterDone.countDown();
+        });
+        while (registry.get("repotodeck.render.queue.depth").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+
+        long start = System.nanoTime();
+        RenderRejectedException e = assertThrows(RenderRejectedException.class, scheduler::acquire);
+        assertEquals(RenderRejectedException.Reason.QUEUE_FULL, e.getReason());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1_000);
+
+        held.close();
+        assertTrue(waiterDone.await(5, TimeUnit.SECONDS));
+        waiter.join();
+    }
+
+    /**
+     * TEST 3: Double Release
+     * PURPOSE: Closing a permit twice must not hand out an extra slot.
+     */
+    @Test
+    void testPermitReleasesOnce() {
+        RenderScheduler scheduler = new RenderScheduler(1, 64, 0, 10, 1, new SimpleMeterRegistry());
+
+        RenderScheduler.Permit permit = scheduler.acquire();
+        permit.close();
+        permit.close();
+
+        RenderScheduler.Permit again = scheduler.acquire();
+        assertThrows(RenderRejectedException.class, scheduler::acquire);
+        again.close();
+    }
+
+    /**
+     * TEST 4: Growing A Permit
+     * PURPOSE: A permit raised to a larger weight holds the extra slots (capped at the total)
+     * and gives all of them back when closed.
+     */
+    @Test
+    void testPermitGrowsAndReleasesAllSlots() {
+        RenderScheduler scheduler = new RenderScheduler(3, 64, 0, 10, 1, new SimpleMeterRegistry());
+
+        RenderScheduler.Permit permit = scheduler.acquire();
+        permit.growTo(10);
+        assertThrows(RenderRejectedException.class, scheduler::acquire);
+        permit.growTo(1);
+        permit.close();
+
+        assertDoesNotThrow(() -> scheduler.acquire(3).close());
+    }
+}
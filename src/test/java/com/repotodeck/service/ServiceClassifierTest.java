@@ -0,0 +1,108 @@
+package com.repotodeck.service;
+
+import com.repotodeck.model.ServiceTier;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServiceClassifierTest {
+
+    private final ServiceClassifier classifier = ServiceClassifier.withDefaultRules();
+
+    /**
+     * TEST 1: Bundled Rules
+     * PURPOSE: The default rules reproduce the old hard-coded heuristics, database winning over frontend.
+     */
+    @Test
+    void testDefaultRules() {
+        assertEquals(ServiceTier.FRONTEND, classifier.classify("web-ui", "nginx:latest", Map.of()));
+        assertEquals(ServiceTier.FRONTEND, classifier.classify("edge", "netflix-zuul", Map.of()));
+        assertEquals(ServiceTier.SERVICE, classifier.classify("payments", "java:17", Map.of()));
+        assertEquals(ServiceTier.DATABASE, classifier.classify("orders-db", "java:17", Map.of()));
+        assertEquals(ServiceTier.DATABASE, classifier.classify("cache", "REDIS:7", Map.of()));
+        // "web" in the image but also "mongo": database has precedence
+        assertEquals(ServiceTier.DATABASE, classifier.classify("x", "mongo-web-console", Map.of()));
+    }
+
+    /**
+     * TEST 2: Labels
+     * PURPOSE: An explicit tier label overrides every keyword heuristic.
+     */
+    @Test
+    void testLabelOverridesKeywords() {
+        assertEquals(ServiceTier.SERVICE,
+                classifier.classify("orders-db", "postgres", Map.of("repotodeck.tier", "service")));
+        assertEquals(ServiceTier.DATABASE,
+                classifier.classify("ledger", "java:17", Map.of("repotodeck.tier", "database")));
+    }
+
+    /**
+     * TEST 3: Hot Reload
+     * PURPOSE: Editing a rules file on disk takes effect without a restart and changes the fingerprint.
+     */
+    @Test
+    void testRulesFileIsReloaded(@TempDir Path dir) throws IOException {
+        Path rules = dir.resolve("rules.yml");
+        Files.writeString(rules, "tiers:\n  DATABASE:\n    registry: [bitnami]\n");
+        ServiceClassifier fromFile = new ServiceClassifier(new DefaultResourceLoader(), rules.toUri().toString());
+        String before = fromFile.getFingerprint();
+
+        assertEquals(ServiceTier.DATABASE, fromFile.classify("queue", "bitnami/rabbitmq", Map.of()));
+        assertEquals(ServiceTier.SERVICE, fromFile.classify("queue", "library/rabbitmq", Map.of()));
+
+        Files.writeString(rules, "tiers:\n  DATABASE:\n    image: [rabbitmq]\n");
+        Files.setLastModifiedTime(rules, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        fromFile.reloadIfChanged();
+
+        assertEquals(ServiceTier.DATABASE, fromFile.classify("queue", "library/rabbitmq", Map.of()));
+        assertNotEquals(before, fromFile.getFingerprint());
+
+        // A broken edit keeps the previous rules
+        Files.writeString(rules, "tiers: [not, a, mapping]\n");
+        Files.setLastModifiedTime(rules, FileTime.fromMillis(System.currentTimeMillis() + 20_000));
+        fromFile.reloadIfChanged();
+        assertEquals(ServiceTier.DATABASE, fromFile.classify("queue", "library/rabbitmq", Map.of()));
+    }
+
+    /**
+     * TEST 4: Broken Rules File
+     * PURPOSE: A rules file that fails to load is tried once per change, not on every poll, and
+     * the next good edit is picked up.
+     */
+    @Test
+    void testBrokenRulesFileIsTriedOncePerChange(@TempDir Path dir) throws IOException {
+        Path rules = dir.resolve("rules.yml");
+        Files.writeString(rules, "tiers:\n  DATABASE:\n    registry: [bitnami]\n");
+        AtomicInteger reloads = new AtomicInteger();
+        ServiceClassifier fromFile = new ServiceClassifier(new DefaultResourceLoader(), rules.toUri().toString()) {
+            @Override
+            public synchronized void reload() {
+                reloads.incrementAndGet();
+                super.reload();
+            }
+        };
+
+        Files.writeString(rules, "tiers: [not, a, mapping]\n");
+        Files.setLastModifiedTime(rules, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        fromFile.reloadIfChanged();
+        fromFile.reloadIfChanged();
+        fromFile.reloadIfChanged();
+        assertEquals(2, reloads.get(), "startup and one attempt at the broken file");
+        assertEquals(ServiceTier.DATABASE, fromFile.classify("queue", "bitnami/rabbitmq", Map.of()));
+
+        Files.writeString(rules, "tiers:\n  DATABASE:\n    image: [rabbitmq]\n");
+        Files.setLastModifiedTime(rules, FileTime.fromMillis(System.currentTimeMillis() + 20_000));
+        fromFile.reloadIfChanged();
+        assertEquals(3, reloads.get());
+        assertEquals(ServiceTier.DATABASE, fromFile.classify("queue", "library/rabbitmq", Map.of()));
+    }
+}
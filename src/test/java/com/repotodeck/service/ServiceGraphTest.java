@@ -0,0 +1,137 @@
+package com.repotodeck.service;
+
+import com.repotodeck.model.ServiceNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServiceGraphTest {
+
+    private static final String COMPOSE = """
+            x-defaults: &defaults
+              image: eclipse-temurin:21
+              depends_on: [cache]
+            services:
+              web:
+                image: nginx:latest
+                depends_on: [api, web, missing]
+                links: [api]
+                labels: [repotodeck.tier=frontend]
+              api:
+                <<: *defaults
+                depends_on: [db, cache, web]
+              worker:
+                <<: *defaults
+              db:
+                image: postgres:16
+              cache:
+                image: redis:7
+              docs: {}
+              broken: just-a-string
+            """;
+
+    /**
+     * TEST 1: Interning and CSR Links
+     * PURPOSE: Ids are numbered in input order and found again through the lookup table; links
+     * become indices, and self links, unknown targets, repeated links and repeated ids are dropped.
+     */
+    @Test
+    void testBuilderResolvesLinks() {
+        ServiceGraph graph = new ServiceGraph.Builder()
+                .add("web", "nginx", 0, NodeStyle.FRONTEND, List.of("api", "api", "web", "missing"))
+                .add("api", "", 1, NodeStyle.SERVICE, List.of("db", "web"))
+                .add("db", "postgres", 2, NodeStyle.DATABASE, null)
+                .add("web", "ignored", 1, NodeStyle.SERVICE, List.of("db"))
+                .build();
+
+        assertEquals(3, graph.size());
+        assertEquals(3, graph.linkCount());
+        assertEquals(List.of(1), targets(graph, 0));
+        assertEquals(List.of(2, 0), targets(graph, 1));
+        assertEquals(List.of(), targets(graph, 2));
+        assertEquals("nginx", graph.image(0));
+        assertNull(graph.image(1), "an empty image is stored as none");
+        assertEquals(NodeStyle.DATABASE, graph.style(2));
+
+        for (int i = 0; i < graph.size(); i++) assertEquals(i, graph.indexOf(graph.id(i)));
+        assertEquals(-1, graph.indexOf("missing"));
+        assertEquals(-1, graph.indexOf(null));
+        assertEquals(-1, ServiceGraph.EMPTY.indexOf("web"));
+    }
+
+    /**
+     * TEST 2: Parser Parity
+     * PURPOSE: The graph the streaming parser builds directly, without ServiceNodes, is the one
+     * converted from the parsed node list, in both parser modes.
+     */
+    @Test
+    void testParsedGraphMatchesNodeList() {
+        DockerParserService streaming = new DockerParserService();
+        DockerParserService tree = new DockerParserService(ServiceClassifier.withDefaultRules(),
+                PipelineMetrics.noop(), DockerParserService.Mode.TREE, 1 << 20, 50, 100_000);
+        ServiceGraph expected = ServiceGraph.of(streaming.parse(COMPOSE), ServiceClassifier.withDefaultRules());
+
+        for (DockerParserService parser : List.of(streaming, tree)) {
+            ServiceGraph graph = parser.parseGraph(COMPOSE);
+            assertEquals(6, graph.size());
+            assertEquals(describe(expected), describe(graph));
+        }
+        assertEquals(0, expected.tier(expected.indexOf("web")));
+        assertEquals(NodeStyle.DATABASE, expected.style(expected.indexOf("db")));
+        assertEquals(List.of(expected.indexOf("cache"), expected.indexOf("db"), expected.indexOf("web")),
+                targets(expected, expected.indexOf("api")));
+        assertTrue(streaming.parseGraph("  ").isEmpty());
+    }
+
+    /**
+     * TEST 3: Layout Parity
+     * PURPOSE: Laying out the parsed graph draws the same slide as laying out the node list, and
+     * nodes come out in tier order with input order kept inside a tier.
+     */
+    @Test
+    void testGraphLayoutMatchesNodeLayout() {
+        DockerParserService parser = new DockerParserService();
+        for (PptGeneratorService.LayoutMode mode : PptGeneratorService.LayoutMode.values()) {
+            PptGeneratorService generator = new PptGeneratorService(ServiceClassifier.withDefaultRules(),
+                    PipelineMetrics.noop(), mode, 1_000, 20_000, 1_000, PptGeneratorService.Renderer.POI);
+            SlideLayout fromNodes = generator.layout(parser.parse(COMPOSE));
+            SlideLayout fromGraph = generator.layout(parser.parseGraph(COMPOSE));
+
+            assertEquals(fromNodes.renderNodes(), fromGraph.renderNodes());
+            assertEquals(fromNodes.connectors().size(), fromGraph.connectors().size());
+            for (int i = 0; i < fromNodes.connectors().size(); i++) {
+                SlideLayout.Connector a = fromNodes.connectors().get(i);
+                SlideLayout.Connector b = fromGraph.connectors().get(i);
+                assertEquals(a.from() + a.to() + a.twoWay(), b.from() + b.to() + b.twoWay());
+                assertArrayEquals(a.path(), b.path());
+            }
+            assertEquals(fromNodes.width(), fromGraph.width());
+            assertEquals(fromNodes.height(), fromGraph.height());
+        }
+
+        ServiceGraph graph = parser.parseGraph(COMPOSE);
+        List<String> order = new ArrayList<>();
+        for (int node : graph.tierOrder()) order.add(graph.id(node));
+        assertEquals(List.of("web", "api", "worker", "docs", "db", "cache"), order);
+    }
+
+    // --- HELPER METHODS ---
+
+    private static List<Integer> targets(ServiceGraph graph, int node) {
+        int[] offsets = graph.linkOffsets();
+        return Arrays.stream(graph.linkTargets(), offsets[node], offsets[node + 1]).boxed().toList();
+    }
+
+    private static List<String> describe(ServiceGraph graph) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < graph.size(); i++) {
+            lines.add(graph.id(i) + " " + graph.image(i) + " " + graph.tier(i) + " " + graph.style(i) + " "
+                    + targets(graph, i));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,98 @@
+package com.repotodeck.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WarmupServiceTest {
+
+    private final PptGeneratorService pptGeneratorService = new PptGeneratorService();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    /**
+     * TEST 1: Warm-Up Renders
+     * PURPOSE: Every configured format is rendered once per round, from a sample with services
+     * in it, and nothing but formats from the list is touched.
+     */
+    @Test
+    void testWarmUpRendersEveryFormat() throws Exception {
+        List<DiagramFormat> rendered = new ArrayList<>();
+        DiagramExportService export = new DiagramExportService(pptGeneratorService) {
+            @Override
+            public long write(ServiceGraph graph, DiagramFormat format, OutputStream out) throws IOException {
+                assertTrue(graph.size() > 1, "the sample is a real project");
+                rendered.add(format);
+                return super.write(graph, format, out);
+            }
+        };
+
+        service(export, true, 2, List.of(DiagramFormat.SVG, DiagramFormat.PDF)).warmUp();
+
+        assertEquals(List.of(DiagramFormat.SVG, DiagramFormat.PDF, DiagramFormat.SVG, DiagramFormat.PDF), rendered);
+    }
+
+    /**
+     * TEST 2: Failed Warm-Up
+     * PURPOSE: A warm-up that throws is logged and swallowed, so the application still becomes
+     * ready; a disabled warm-up renders nothing.
+     */
+    @Test
+    void testWarmUpNeverBlocksStartup() {
+        List<DiagramFormat> rendered = new ArrayList<>();
+        DiagramExportService failing = new DiagramExportService(pptGeneratorService) {
+            @Override
+            public long write(ServiceGraph graph, DiagramFormat format, OutputStream out) throws IOException {
+                rendered.add(format);
+                throw new IOException("disk full");
+            }
+        };
+
+        assertDoesNotThrow(() -> service(failing, true, 3, List.of(DiagramFormat.PNG)).onReady(readyEvent()));
+        assertEquals(List.of(DiagramFormat.PNG), rendered, "the first failure ends the warm-up");
+
+        rendered.clear();
+        service(failing, false, 3, List.of(DiagramFormat.PNG)).onReady(readyEvent());
+        assertTrue(rendered.isEmpty());
+    }
+
+    /**
+     * TEST 3: RSS Gauge
+     * PURPOSE: The resident set size is exported as a gauge; on Linux it is a plausible byte
+     * count, elsewhere the reader reports -1 rather than failing.
+     */
+    @Test
+    void testResidentSetSizeGauge() {
+        service(new DiagramExportService(pptGeneratorService), false, 1, List.of());
+
+        double gauge = registry.get("repotodeck.process.rss").gauge().value();
+        if (Files.isReadable(Path.of("/proc/self/status"))) {
+            assertTrue(WarmupService.residentSetSize() > 1 << 20, "a JVM uses more than a megabyte");
+            assertTrue(gauge > 1 << 20);
+        } else {
+            assertEquals(-1, WarmupService.residentSetSize());
+            assertTrue(Double.isNaN(gauge));
+        }
+    }
+
+    // --- HELPER METHODS ---
+
+    private WarmupService service(DiagramExportService export, boolean enabled, int renders, List<DiagramFormat> formats) {
+        return new WarmupService(new DockerParserService(), pptGeneratorService, export,
+                enabled, renders, formats, false, false, registry);
+    }
+
+    private static ApplicationReadyEvent readyEvent() {
+        return new ApplicationReadyEvent(new SpringApplication(), new String[0], null, Duration.ofMillis(1));
+    }
+}